@@ -0,0 +1,132 @@
+package io.github.stevenalbert.gradeit.database;
+
+import android.arch.persistence.db.SupportSQLiteDatabase;
+import android.arch.persistence.db.SupportSQLiteOpenHelper;
+import android.arch.persistence.db.framework.FrameworkSQLiteOpenHelperFactory;
+import android.arch.persistence.room.Room;
+import android.content.Context;
+import android.database.Cursor;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import io.github.stevenalbert.gradeit.model.AnswerKey;
+import io.github.stevenalbert.gradeit.model.AnswerSheet;
+import io.github.stevenalbert.gradeit.model.AnswerSheetConverter;
+import io.github.stevenalbert.gradeit.model.Option;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Migration of a database of version 1, with the answers and verdicts as text, to
+ * the current version. The schemas are not exported, so the database of version 1
+ * is made with the tables Room made for it, then opened by Room with the
+ * migrations, which checks the migrated tables against the entities.
+ */
+@RunWith(AndroidJUnit4.class)
+public class AppDatabaseMigrationTest {
+
+    private static final String TEST_DB = "migration-test.db";
+
+    private Context context;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getTargetContext();
+        context.deleteDatabase(TEST_DB);
+    }
+
+    @After
+    public void tearDown() {
+        context.deleteDatabase(TEST_DB);
+    }
+
+    @Test
+    public void migrate1To3() throws Exception {
+        SupportSQLiteOpenHelper helper = new FrameworkSQLiteOpenHelperFactory().create(
+                SupportSQLiteOpenHelper.Configuration.builder(context)
+                        .name(TEST_DB)
+                        .callback(new SupportSQLiteOpenHelper.Callback(1) {
+                            @Override
+                            public void onCreate(SupportSQLiteDatabase db) {
+                                db.execSQL("CREATE TABLE IF NOT EXISTS `answer_sheet` ("
+                                        + "`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, `ex_code` INTEGER NOT NULL, "
+                                        + "`m_code` INTEGER NOT NULL, `answers` TEXT, `verdicts` TEXT, "
+                                        + "`correct` INTEGER NOT NULL, `total_number` INTEGER NOT NULL)");
+                                db.execSQL("CREATE UNIQUE INDEX `index_answer_sheet_ex_code_m_code` "
+                                        + "ON `answer_sheet` (`ex_code`, `m_code`)");
+                                db.execSQL("CREATE TABLE IF NOT EXISTS `answer_key` (`m_code` INTEGER NOT NULL, "
+                                        + "`answer_keys` TEXT, `total_number` INTEGER NOT NULL, PRIMARY KEY(`m_code`))");
+                            }
+
+                            @Override
+                            public void onUpgrade(SupportSQLiteDatabase db, int oldVersion, int newVersion) {
+                            }
+                        })
+                        .build());
+        SupportSQLiteDatabase db = helper.getWritableDatabase();
+        // Numbers 3 and 4 of the first sheet have no chosen option
+        db.execSQL("INSERT INTO `answer_sheet` VALUES (1, 1, 5, 'A,BE,,', '1200', 1, 4)");
+        db.execSQL("INSERT INTO `answer_sheet` VALUES (2, 2, 5, 'C,D,E', '100', 1, -1)");
+        db.execSQL("INSERT INTO `answer_sheet` VALUES (3, 3, 6, NULL, NULL, 0, -1)");
+        db.execSQL("INSERT INTO `answer_key` VALUES (5, 'ABCD', 4)");
+        helper.close();
+
+        AppDatabase database = Room.databaseBuilder(context, AppDatabase.class, TEST_DB)
+                .addMigrations(AppDatabase.MIGRATION_1_2, AppDatabase.MIGRATION_2_3)
+                .allowMainThreadQueries()
+                .build();
+        try {
+            AnswerSheet first = database.answerSheetDao().findAnswerSheet(1, 5);
+            assertNotNull(first);
+            assertEquals(4, first.getAnswers().size());
+            assertEquals(4, first.getTotalNumber());
+            assertEquals(1, first.getTotalCorrect());
+            assertEquals("A,BE,,", answersOf(first));
+            assertArrayEquals(new int[] {1, 2, 0, 0}, first.getVerdicts());
+
+            AnswerSheet second = database.answerSheetDao().findAnswerSheet(2, 5);
+            assertEquals("C,D,E", answersOf(second));
+            assertArrayEquals(new int[] {1, 0, 0}, second.getVerdicts());
+
+            AnswerKey answerKey = database.answerKeyDao().findAnswerKey(5);
+            assertArrayEquals(new Option[] {Option.A, Option.B, Option.C, Option.D}, answerKey.getAnswerKeys());
+
+            // One item per number of the sheets with answers, none for the empty sheet
+            Cursor cursor = database.getOpenHelper().getReadableDatabase().query(
+                    "SELECT `sheet_id`, `m_code`, `number`, `chosen_mask`, `verdict` FROM `answer_item` "
+                            + "ORDER BY `sheet_id`, `number`");
+            try {
+                int[][] expected = {
+                        {1, 5, 1, 0x01, 1}, {1, 5, 2, 0x12, 2}, {1, 5, 3, 0, 0}, {1, 5, 4, 0, 0},
+                        {2, 5, 1, 0x04, 1}, {2, 5, 2, 0x08, 0}, {2, 5, 3, 0x10, 0}
+                };
+                for(int[] item : expected) {
+                    assertTrue(cursor.moveToNext());
+                    int[] actual = new int[item.length];
+                    for(int i = 0; i < actual.length; i++) {
+                        actual[i] = cursor.getInt(i);
+                    }
+                    assertArrayEquals(item, actual);
+                }
+                assertFalse(cursor.moveToNext());
+            } finally {
+                cursor.close();
+            }
+        } finally {
+            database.close();
+        }
+    }
+
+    private static String answersOf(AnswerSheet answerSheet) {
+        return AnswerSheetConverter.packedAnswersToString(answerSheet.getAnswers());
+    }
+}
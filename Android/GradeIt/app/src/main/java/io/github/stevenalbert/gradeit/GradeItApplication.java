@@ -0,0 +1,39 @@
+package io.github.stevenalbert.gradeit;
+
+import android.app.Application;
+import android.content.Context;
+import android.os.Build;
+import android.util.Log;
+
+import io.github.stevenalbert.gradeit.process.PipelineMetrics;
+import io.github.stevenalbert.gradeit.process.PipelineMetricsSummary;
+
+/**
+ * Holds what the screens grading answer sheets share for the whole run of the app,
+ * the metrics of the grading are summed over all of them.
+ */
+public class GradeItApplication extends Application {
+
+    // TAG
+    private static final String TAG = GradeItApplication.class.getSimpleName();
+
+    private final PipelineMetricsSummary pipelineMetrics = new PipelineMetricsSummary();
+
+    public static GradeItApplication of(Context context) {
+        return (GradeItApplication) context.getApplicationContext();
+    }
+
+    public PipelineMetrics getPipelineMetrics() {
+        return pipelineMetrics;
+    }
+
+    /**
+     * Log the metrics summed so far on debug builds, called once at the end of a
+     * batch or a scan, not for every answer sheet
+     */
+    public void logPipelineMetrics() {
+        if(BuildConfig.DEBUG) {
+            Log.d(TAG, "Pipeline metrics on " + Build.MANUFACTURER + " " + Build.MODEL + ":\n" + pipelineMetrics);
+        }
+    }
+}
@@ -20,6 +20,8 @@ import io.github.stevenalbert.gradeit.model.AnswerKeyCode;
 public interface AnswerKeyDao {
     @Insert(onConflict = OnConflictStrategy.REPLACE)
     long insert(AnswerKey answerKey);
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    long[] insertAll(List<AnswerKey> answerKeys);
     @Update(onConflict = OnConflictStrategy.REPLACE)
     int update(AnswerKey answerKey);
     @Delete
@@ -34,4 +36,6 @@ public interface AnswerKeyDao {
     LiveData<List<AnswerKey>> getAllAnswerKeys();
     @Query("SELECT * FROM answer_key WHERE m_code = :mCode")
     LiveData<AnswerKey> getAnswerKey(int mCode);
+    @Query("SELECT * FROM answer_key WHERE m_code = :mCode")
+    AnswerKey findAnswerKey(int mCode);
 }
@@ -1,41 +1,132 @@
 package io.github.stevenalbert.gradeit.dao;
 
 import android.arch.lifecycle.LiveData;
+import android.arch.paging.DataSource;
 import android.arch.persistence.room.Dao;
 import android.arch.persistence.room.Delete;
 import android.arch.persistence.room.Insert;
 import android.arch.persistence.room.OnConflictStrategy;
 import android.arch.persistence.room.Query;
+import android.arch.persistence.room.Transaction;
 import android.arch.persistence.room.Update;
 
 import java.util.List;
 
+import io.github.stevenalbert.gradeit.model.AnswerItem;
 import io.github.stevenalbert.gradeit.model.AnswerSheet;
 import io.github.stevenalbert.gradeit.model.AnswerSheetCode;
+import io.github.stevenalbert.gradeit.model.ItemAnswerCount;
+import io.github.stevenalbert.gradeit.model.ItemCorrectCount;
+import io.github.stevenalbert.gradeit.model.ScoreCount;
 
 /**
  * Created by Steven Albert on 7/4/2018.
+ * <p>
+ * Every write of answer sheets writes their {@link AnswerItem} in the same
+ * transaction, so the items are always the numbers of the saved answer sheets.
  */
 @Dao
-public interface AnswerSheetDao {
-    @Insert(onConflict = OnConflictStrategy.REPLACE)
-    long insert(AnswerSheet answerSheet);
-    @Update(onConflict = OnConflictStrategy.REPLACE)
-    int update(AnswerSheet answerSheet);
-    @Delete
-    int delete(AnswerSheet answerSheet);
-    @Query("DELETE FROM answer_sheet WHERE m_code = :mCode")
-    void deleteAllByMCode(int mCode);
-    @Query("DELETE FROM answer_sheet")
-    void deleteAll();
+public abstract class AnswerSheetDao {
+    @Transaction
+    public long insert(AnswerSheet answerSheet) {
+        // The answer sheet replaces the saved one with its id or codes
+        deleteReplacedAnswerItems(answerSheet.getId(), answerSheet.getExCode(), answerSheet.getMCode());
+        long id = insertAnswerSheet(answerSheet);
+        insertAnswerItems(AnswerItem.fromAnswerSheet(id, answerSheet));
+        return id;
+    }
+    @Transaction
+    public long[] insertAll(List<AnswerSheet> answerSheets) {
+        long[] ids = new long[answerSheets.size()];
+        for(int i = 0; i < ids.length; i++) {
+            ids[i] = insert(answerSheets.get(i));
+        }
+        return ids;
+    }
+    @Transaction
+    public int update(AnswerSheet answerSheet) {
+        int updated = updateAnswerSheet(answerSheet);
+        if(updated > 0) {
+            deleteAnswerItems(answerSheet.getId());
+            insertAnswerItems(AnswerItem.fromAnswerSheet(answerSheet.getId(), answerSheet));
+        }
+        return updated;
+    }
+    @Transaction
+    public int updateAll(List<AnswerSheet> answerSheets) {
+        int updated = 0;
+        for(AnswerSheet answerSheet : answerSheets) {
+            updated += update(answerSheet);
+        }
+        return updated;
+    }
+    @Transaction
+    public int delete(AnswerSheet answerSheet) {
+        deleteAnswerItems(answerSheet.getId());
+        return deleteAnswerSheet(answerSheet);
+    }
+    @Transaction
+    public void deleteAllByMCode(int mCode) {
+        deleteAnswerItemsByMCode(mCode);
+        deleteAnswerSheetsByMCode(mCode);
+    }
+    @Transaction
+    public void deleteAll() {
+        deleteAllAnswerItems();
+        deleteAllAnswerSheets();
+    }
+
+    @Query("SELECT ex_code, m_code, correct, total_number FROM answer_sheet ORDER BY m_code, ex_code ASC")
+    public abstract LiveData<List<AnswerSheetCode>> getAllAnswerSheetsMetadata();
+    @Query("SELECT ex_code, m_code, correct, total_number FROM answer_sheet WHERE m_code = :mCode ORDER BY m_code, ex_code ASC")
+    public abstract LiveData<List<AnswerSheetCode>> getAllAnswerSheetsMetadataByMCode(int mCode);
     @Query("SELECT ex_code, m_code, correct, total_number FROM answer_sheet ORDER BY m_code, ex_code ASC")
-    LiveData<List<AnswerSheetCode>> getAllAnswerSheetsMetadata();
+    public abstract DataSource.Factory<Integer, AnswerSheetCode> getPagedAnswerSheetsMetadata();
     @Query("SELECT ex_code, m_code, correct, total_number FROM answer_sheet WHERE m_code = :mCode ORDER BY m_code, ex_code ASC")
-    LiveData<List<AnswerSheetCode>> getAllAnswerSheetsMetadataByMCode(int mCode);
+    public abstract DataSource.Factory<Integer, AnswerSheetCode> getPagedAnswerSheetsMetadataByMCode(int mCode);
     @Query("SELECT * FROM answer_sheet ORDER BY m_code, ex_code ASC")
-    LiveData<List<AnswerSheet>> getAllAnswerSheets();
+    public abstract LiveData<List<AnswerSheet>> getAllAnswerSheets();
     @Query("SELECT * FROM answer_sheet WHERE m_code = :mCode ORDER BY m_code, ex_code ASC")
-    LiveData<List<AnswerSheet>> getAnswerSheetsByMCode(int mCode);
+    public abstract LiveData<List<AnswerSheet>> getAnswerSheetsByMCode(int mCode);
+    @Query("SELECT * FROM answer_sheet WHERE ex_code = :exCode AND m_code = :mCode")
+    public abstract LiveData<AnswerSheet> getAnswerSheet(int exCode, int mCode);
     @Query("SELECT * FROM answer_sheet WHERE ex_code = :exCode AND m_code = :mCode")
-    LiveData<AnswerSheet> getAnswerSheet(int exCode, int mCode);
+    public abstract AnswerSheet findAnswerSheet(int exCode, int mCode);
+    @Query("SELECT * FROM answer_sheet WHERE m_code = :mCode")
+    public abstract List<AnswerSheet> findAnswerSheetsByMCode(int mCode);
+
+    // Statistics of the answer sheets of an MCode, counted by SQLite
+    @Query("SELECT correct AS score, COUNT(*) AS count FROM answer_sheet WHERE m_code = :mCode GROUP BY correct")
+    public abstract List<ScoreCount> getScoreCounts(int mCode);
+    // Verdict 1 is a correct answer
+    @Query("SELECT answer_item.number AS number, COUNT(*) AS count, SUM(answer_sheet.correct) AS score_sum "
+            + "FROM answer_item INNER JOIN answer_sheet ON answer_sheet.id = answer_item.sheet_id "
+            + "WHERE answer_item.m_code = :mCode AND answer_item.verdict = 1 GROUP BY answer_item.number")
+    public abstract List<ItemCorrectCount> getItemCorrectCounts(int mCode);
+    @Query("SELECT number, chosen_mask, COUNT(*) AS count FROM answer_item "
+            + "WHERE m_code = :mCode AND chosen_mask != 0 GROUP BY number, chosen_mask")
+    public abstract List<ItemAnswerCount> getItemAnswerCounts(int mCode);
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    protected abstract long insertAnswerSheet(AnswerSheet answerSheet);
+    @Update(onConflict = OnConflictStrategy.REPLACE)
+    protected abstract int updateAnswerSheet(AnswerSheet answerSheet);
+    @Delete
+    protected abstract int deleteAnswerSheet(AnswerSheet answerSheet);
+    @Query("DELETE FROM answer_sheet WHERE m_code = :mCode")
+    protected abstract void deleteAnswerSheetsByMCode(int mCode);
+    @Query("DELETE FROM answer_sheet")
+    protected abstract void deleteAllAnswerSheets();
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    protected abstract void insertAnswerItems(List<AnswerItem> answerItems);
+    @Query("DELETE FROM answer_item WHERE sheet_id IN "
+            + "(SELECT id FROM answer_sheet WHERE id = :id OR (ex_code = :exCode AND m_code = :mCode))")
+    protected abstract void deleteReplacedAnswerItems(long id, int exCode, int mCode);
+    @Query("DELETE FROM answer_item WHERE sheet_id = :sheetId")
+    protected abstract void deleteAnswerItems(long sheetId);
+    @Query("DELETE FROM answer_item WHERE m_code = :mCode")
+    protected abstract void deleteAnswerItemsByMCode(int mCode);
+    @Query("DELETE FROM answer_item")
+    protected abstract void deleteAllAnswerItems();
 }
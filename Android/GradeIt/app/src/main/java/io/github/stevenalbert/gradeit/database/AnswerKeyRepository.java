@@ -2,7 +2,6 @@ package io.github.stevenalbert.gradeit.database;
 
 import android.app.Application;
 import android.arch.lifecycle.LiveData;
-import android.os.AsyncTask;
 
 import java.util.List;
 
@@ -18,6 +17,7 @@ public class AnswerKeyRepository {
     private static final int NO_CURRENT_MCODE = -2;
 
     private AnswerKeyDao answerKeyDao;
+    private DatabaseWriter writer;
     private LiveData<List<AnswerKeyCode>> answerKeysMetadata;
     private LiveData<List<AnswerKey>> answerKeys;
     private LiveData<AnswerKey> answerKey;
@@ -27,6 +27,7 @@ public class AnswerKeyRepository {
     public AnswerKeyRepository(Application application) {
         AppDatabase database = AppDatabase.getInstance(application);
         answerKeyDao = database.answerKeyDao();
+        writer = DatabaseWriter.getInstance(application);
         currentMCode = NO_CURRENT_MCODE;
     }
 
@@ -52,79 +53,54 @@ public class AnswerKeyRepository {
         return answerKey;
     }
 
-    public void insert(AnswerKey answerKey) {
-        new InsertAsyncTask(answerKeyDao).execute(answerKey);
-    }
-
-    public void delete(AnswerKey answerKey) {
-        new DeleteAsyncTask(answerKeyDao).execute(answerKey);
+    /**
+     * Query the answer key on the calling thread, it must not be the main thread
+     */
+    public AnswerKey findAnswerKeyByMCode(int mCode) {
+        return answerKeyDao.findAnswerKey(mCode);
     }
 
-    public void deleteByMCode(Integer mCode) {
-        new DeleteByMCodeAsyncTask(answerKeyDao).execute(mCode);
-    }
-
-    public void deleteAll() {
-        new DeleteAllAsyncTask(answerKeyDao).execute();
+    public void insert(AnswerKey answerKey) {
+        writer.insert(answerKey);
     }
 
-    private static class InsertAsyncTask extends AsyncTask<AnswerKey, Void, Void> {
-
-        private AnswerKeyDao answerKeyDao;
-
-        private InsertAsyncTask(AnswerKeyDao answerKeyDao) {
-            this.answerKeyDao = answerKeyDao;
-        }
-
-        @Override
-        protected Void doInBackground(AnswerKey... answerKeys) {
-            answerKeyDao.insert(answerKeys[0]);
-            return null;
-        }
+    /**
+     * Insert the answer key and wait until it is written, it must not be called on
+     * the main thread
+     */
+    public void insertNow(final AnswerKey answerKey) {
+        writer.writeAndWait(new Runnable() {
+            @Override
+            public void run() {
+                answerKeyDao.insert(answerKey);
+            }
+        });
     }
 
-    private static class DeleteAsyncTask extends AsyncTask<AnswerKey, Void, Void> {
-
-        private AnswerKeyDao answerKeyDao;
-
-        private DeleteAsyncTask(AnswerKeyDao answerKeyDao) {
-            this.answerKeyDao = answerKeyDao;
-        }
-
-        @Override
-        protected Void doInBackground(AnswerKey... answerKeys) {
-            answerKeyDao.delete(answerKeys[0]);
-            return null;
-        }
+    public void delete(final AnswerKey answerKey) {
+        writer.write(new Runnable() {
+            @Override
+            public void run() {
+                answerKeyDao.delete(answerKey);
+            }
+        });
     }
 
-    private static class DeleteByMCodeAsyncTask extends AsyncTask<Integer, Void, Void> {
-
-        private AnswerKeyDao answerKeyDao;
-
-        private DeleteByMCodeAsyncTask(AnswerKeyDao answerKeyDao) {
-            this.answerKeyDao = answerKeyDao;
-        }
-
-        @Override
-        protected Void doInBackground(Integer... mCodes) {
-            answerKeyDao.deleteByMCode(mCodes[0]);
-            return null;
-        }
+    public void deleteByMCode(final Integer mCode) {
+        writer.write(new Runnable() {
+            @Override
+            public void run() {
+                answerKeyDao.deleteByMCode(mCode);
+            }
+        });
     }
 
-    private static class DeleteAllAsyncTask extends AsyncTask<Void, Void, Void> {
-
-        private AnswerKeyDao answerKeyDao;
-
-        private DeleteAllAsyncTask(AnswerKeyDao answerKeyDao) {
-            this.answerKeyDao = answerKeyDao;
-        }
-
-        @Override
-        protected Void doInBackground(Void... voids) {
-            answerKeyDao.deleteAll();
-            return null;
-        }
+    public void deleteAll() {
+        writer.write(new Runnable() {
+            @Override
+            public void run() {
+                answerKeyDao.deleteAll();
+            }
+        });
     }
 }
@@ -2,13 +2,18 @@ package io.github.stevenalbert.gradeit.database;
 
 import android.app.Application;
 import android.arch.lifecycle.LiveData;
-import android.os.AsyncTask;
+import android.arch.paging.DataSource;
+import android.arch.paging.LivePagedListBuilder;
+import android.arch.paging.PagedList;
 
 import java.util.List;
 
 import io.github.stevenalbert.gradeit.dao.AnswerSheetDao;
+import io.github.stevenalbert.gradeit.model.AnswerKey;
 import io.github.stevenalbert.gradeit.model.AnswerSheet;
 import io.github.stevenalbert.gradeit.model.AnswerSheetCode;
+import io.github.stevenalbert.gradeit.process.BulkScorer;
+import io.github.stevenalbert.gradeit.process.ItemStatistics;
 
 /**
  * Created by Steven Albert on 7/5/2018.
@@ -18,8 +23,18 @@ public class AnswerSheetRepository {
     private static final int NO_CURRENT_MCODE = -2;
     public static final int ALL_MCODE = -1;
 
+    // Rows loaded at once, a screen holds about ten rows
+    private static final int PAGE_SIZE = 50;
+    private static final PagedList.Config PAGED_LIST_CONFIG = new PagedList.Config.Builder()
+            .setPageSize(PAGE_SIZE)
+            .setPrefetchDistance(PAGE_SIZE)
+            .setInitialLoadSizeHint(2 * PAGE_SIZE)
+            .setEnablePlaceholders(true)
+            .build();
+
     private AnswerSheetDao answerSheetDao;
-    private LiveData<List<AnswerSheetCode>> answerSheetsMetadata;
+    private DatabaseWriter writer;
+    private LiveData<PagedList<AnswerSheetCode>> answerSheetsMetadata;
     private LiveData<List<AnswerSheet>> answerSheets;
     private LiveData<AnswerSheet> answerSheet;
     private int currentMCode;
@@ -30,14 +45,21 @@ public class AnswerSheetRepository {
     public AnswerSheetRepository(Application application) {
         AppDatabase database = AppDatabase.getInstance(application);
         answerSheetDao = database.answerSheetDao();
+        writer = DatabaseWriter.getInstance(application);
         currentMCode = NO_CURRENT_MCODE;
         metadataMCode = NO_CURRENT_MCODE;
     }
 
-    public LiveData<List<AnswerSheetCode>> getAnswerSheetsMetadata(int mCode) {
+    /**
+     * Metadata of the answer sheets, loaded a page at a time while the list is
+     * scrolled
+     */
+    public LiveData<PagedList<AnswerSheetCode>> getAnswerSheetsMetadata(int mCode) {
         if(metadataMCode != mCode){
-            answerSheetsMetadata = (mCode == ALL_MCODE ?
-                    answerSheetDao.getAllAnswerSheetsMetadata() : answerSheetDao.getAllAnswerSheetsMetadataByMCode(mCode));
+            DataSource.Factory<Integer, AnswerSheetCode> factory = (mCode == ALL_MCODE ?
+                    answerSheetDao.getPagedAnswerSheetsMetadata() : answerSheetDao.getPagedAnswerSheetsMetadataByMCode(mCode));
+            answerSheetsMetadata = new LivePagedListBuilder<>(factory, PAGED_LIST_CONFIG).build();
+            metadataMCode = mCode;
         }
         return answerSheetsMetadata;
     }
@@ -60,79 +82,89 @@ public class AnswerSheetRepository {
         return answerSheet;
     }
 
+    /**
+     * Queue the answer sheet, it is written with the other queued rows in one
+     * transaction
+     */
     public void insert(AnswerSheet answerSheet) {
-        new InsertAsyncTask(answerSheetDao).execute(answerSheet);
+        writer.insert(answerSheet);
     }
 
-    public void delete(AnswerSheet answerSheet) {
-        new DeleteAsyncTask(answerSheetDao).execute(answerSheet);
+    /**
+     * Score all saved answer sheets of the MCode of the answer key again, e.g. after
+     * the answer key is changed
+     */
+    public void rescore(final AnswerKey answerKey) {
+        writer.write(new Runnable() {
+            @Override
+            public void run() {
+                rescoreAnswerSheets(answerKey);
+            }
+        });
     }
 
-    public void deleteByMCode(Integer mCode) {
-        new DeleteByMCodeAsyncTask(answerSheetDao).execute(mCode);
+    /**
+     * Score the saved answer sheets again and wait until they are written, it must
+     * not be called on the main thread
+     *
+     * @return number of answer sheets scored
+     */
+    public int rescoreNow(final AnswerKey answerKey) {
+        final int[] scored = new int[1];
+        writer.writeAndWait(new Runnable() {
+            @Override
+            public void run() {
+                scored[0] = rescoreAnswerSheets(answerKey);
+            }
+        });
+        return scored[0];
     }
 
-    public void deleteAll() {
-        new DeleteAllAsyncTask(answerSheetDao).execute();
+    private int rescoreAnswerSheets(AnswerKey answerKey) {
+        List<AnswerSheet> answerSheets = answerSheetDao.findAnswerSheetsByMCode(answerKey.getMCode());
+        if(answerSheets.isEmpty()) return 0;
+        int scored = BulkScorer.scoreAnswerSheets(answerKey, answerSheets);
+        answerSheetDao.updateAll(answerSheets);
+        writer.onAnswerSheetsRescored(answerKey.getMCode(), answerSheets);
+        return scored;
     }
 
-    private static class InsertAsyncTask extends AsyncTask<AnswerSheet, Void, Void> {
-
-        private AnswerSheetDao answerSheetDao;
-
-        public InsertAsyncTask(AnswerSheetDao answerSheetDao) {
-            this.answerSheetDao = answerSheetDao;
-        }
-
-        @Override
-        protected Void doInBackground(AnswerSheet... answerSheets) {
-            answerSheetDao.insert(answerSheets[0]);
-            return null;
-        }
+    /**
+     * Statistics of the saved answer sheets of the MCode, it must not be called on
+     * the main thread
+     */
+    public ItemStatistics getItemStatistics(int mCode) {
+        return writer.getItemStatistics(mCode);
     }
 
-    private static class DeleteAsyncTask extends AsyncTask<AnswerSheet, Void, Void> {
-
-        private AnswerSheetDao answerSheetDao;
-
-        private DeleteAsyncTask(AnswerSheetDao answerSheetDao) {
-            this.answerSheetDao = answerSheetDao;
-        }
-
-        @Override
-        protected Void doInBackground(AnswerSheet... answerSheets) {
-            answerSheetDao.delete(answerSheets[0]);
-            return null;
-        }
+    public void delete(final AnswerSheet answerSheet) {
+        writer.write(new Runnable() {
+            @Override
+            public void run() {
+                AnswerSheet savedAnswerSheet = answerSheetDao.findAnswerSheet(answerSheet.getExCode(), answerSheet.getMCode());
+                if(answerSheetDao.delete(answerSheet) > 0 && savedAnswerSheet != null)
+                    writer.onAnswerSheetDeleted(savedAnswerSheet);
+            }
+        });
     }
 
-    private static class DeleteByMCodeAsyncTask extends AsyncTask<Integer, Void, Void> {
-
-        private AnswerSheetDao answerSheetDao;
-
-        private DeleteByMCodeAsyncTask(AnswerSheetDao answerSheetDao) {
-            this.answerSheetDao = answerSheetDao;
-        }
-
-        @Override
-        protected Void doInBackground(Integer... mCodes) {
-            answerSheetDao.deleteAllByMCode(mCodes[0]);
-            return null;
-        }
+    public void deleteByMCode(final Integer mCode) {
+        writer.write(new Runnable() {
+            @Override
+            public void run() {
+                answerSheetDao.deleteAllByMCode(mCode);
+                writer.onAnswerSheetsDeleted(mCode);
+            }
+        });
     }
 
-    private static class DeleteAllAsyncTask extends AsyncTask<Void, Void, Void> {
-
-        private AnswerSheetDao answerSheetDao;
-
-        private DeleteAllAsyncTask(AnswerSheetDao answerSheetDao) {
-            this.answerSheetDao = answerSheetDao;
-        }
-
-        @Override
-        protected Void doInBackground(Void... voids) {
-            answerSheetDao.deleteAll();
-            return null;
-        }
+    public void deleteAll() {
+        writer.write(new Runnable() {
+            @Override
+            public void run() {
+                answerSheetDao.deleteAll();
+                writer.onAllAnswerSheetsDeleted();
+            }
+        });
     }
 }
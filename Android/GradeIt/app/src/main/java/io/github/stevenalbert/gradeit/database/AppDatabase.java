@@ -1,19 +1,26 @@
 package io.github.stevenalbert.gradeit.database;
 
+import android.arch.persistence.db.SupportSQLiteDatabase;
+import android.arch.persistence.db.SupportSQLiteStatement;
 import android.arch.persistence.room.Database;
 import android.arch.persistence.room.Room;
 import android.arch.persistence.room.RoomDatabase;
+import android.arch.persistence.room.migration.Migration;
 import android.content.Context;
+import android.database.Cursor;
 
 import io.github.stevenalbert.gradeit.dao.AnswerKeyDao;
 import io.github.stevenalbert.gradeit.dao.AnswerSheetDao;
+import io.github.stevenalbert.gradeit.model.AnswerItem;
 import io.github.stevenalbert.gradeit.model.AnswerKey;
 import io.github.stevenalbert.gradeit.model.AnswerSheet;
+import io.github.stevenalbert.gradeit.model.AnswerSheetConverter;
+import io.github.stevenalbert.gradeit.model.PackedAnswers;
 
 /**
  * Created by Steven Albert on 7/4/2018.
  */
-@Database(entities = {AnswerSheet.class, AnswerKey.class}, version = 1, exportSchema = false)
+@Database(entities = {AnswerSheet.class, AnswerKey.class, AnswerItem.class}, version = 3, exportSchema = false)
 public abstract class AppDatabase extends RoomDatabase {
     private static AppDatabase instance;
     private static final String DB_NAME = "gradeit.db";
@@ -21,6 +28,93 @@ public abstract class AppDatabase extends RoomDatabase {
     public abstract AnswerSheetDao answerSheetDao();
     public abstract AnswerKeyDao answerKeyDao();
 
+    /**
+     * Version 2 stores the answers and verdicts of the answer sheets as binary BLOB
+     * instead of text. SQLite cannot change the type of a column, so the table is
+     * copied into a new table, converting every row.
+     */
+    static final Migration MIGRATION_1_2 = new Migration(1, 2) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            database.execSQL("CREATE TABLE IF NOT EXISTS `answer_sheet_new` ("
+                    + "`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, `ex_code` INTEGER NOT NULL, "
+                    + "`m_code` INTEGER NOT NULL, `answers` BLOB, `verdicts` BLOB, "
+                    + "`correct` INTEGER NOT NULL, `total_number` INTEGER NOT NULL)");
+
+            SupportSQLiteStatement insert = database.compileStatement("INSERT INTO `answer_sheet_new` "
+                    + "(`id`, `ex_code`, `m_code`, `answers`, `verdicts`, `correct`, `total_number`) "
+                    + "VALUES (?, ?, ?, ?, ?, ?, ?)");
+            Cursor cursor = database.query("SELECT `id`, `ex_code`, `m_code`, `answers`, `verdicts`, "
+                    + "`correct`, `total_number` FROM `answer_sheet`");
+            try {
+                while(cursor.moveToNext()) {
+                    insert.clearBindings();
+                    insert.bindLong(1, cursor.getLong(0));
+                    insert.bindLong(2, cursor.getLong(1));
+                    insert.bindLong(3, cursor.getLong(2));
+                    if(cursor.isNull(3)) insert.bindNull(4);
+                    else insert.bindBlob(4, AnswerSheetConverter.packedAnswersToBytes(
+                            AnswerSheetConverter.packedAnswersFromString(cursor.getString(3))));
+                    if(cursor.isNull(4)) insert.bindNull(5);
+                    else insert.bindBlob(5, AnswerSheetConverter.verdictsToBytes(
+                            AnswerSheetConverter.verdictsFromString(cursor.getString(4))));
+                    insert.bindLong(6, cursor.getLong(5));
+                    insert.bindLong(7, cursor.getLong(6));
+                    insert.executeInsert();
+                }
+            } finally {
+                cursor.close();
+            }
+
+            database.execSQL("DROP TABLE `answer_sheet`");
+            database.execSQL("ALTER TABLE `answer_sheet_new` RENAME TO `answer_sheet`");
+            database.execSQL("CREATE UNIQUE INDEX `index_answer_sheet_ex_code_m_code` "
+                    + "ON `answer_sheet` (`ex_code`, `m_code`)");
+        }
+    };
+
+    /**
+     * Version 3 adds the answer items, one row per number of every answer sheet,
+     * filled from the saved answer sheets.
+     */
+    static final Migration MIGRATION_2_3 = new Migration(2, 3) {
+        @Override
+        public void migrate(SupportSQLiteDatabase database) {
+            database.execSQL("CREATE TABLE IF NOT EXISTS `answer_item` ("
+                    + "`sheet_id` INTEGER NOT NULL, `m_code` INTEGER NOT NULL, `number` INTEGER NOT NULL, "
+                    + "`chosen_mask` INTEGER NOT NULL, `verdict` INTEGER NOT NULL, "
+                    + "PRIMARY KEY(`sheet_id`, `number`))");
+            database.execSQL("CREATE INDEX `index_answer_item_m_code_number` "
+                    + "ON `answer_item` (`m_code`, `number`)");
+
+            SupportSQLiteStatement insert = database.compileStatement("INSERT INTO `answer_item` "
+                    + "(`sheet_id`, `m_code`, `number`, `chosen_mask`, `verdict`) VALUES (?, ?, ?, ?, ?)");
+            Cursor cursor = database.query("SELECT `id`, `m_code`, `answers`, `verdicts`, `total_number` "
+                    + "FROM `answer_sheet`");
+            try {
+                while(cursor.moveToNext()) {
+                    if(cursor.isNull(2) || cursor.isNull(3)) continue;
+                    PackedAnswers answers = AnswerSheetConverter.packedAnswersFromBytes(cursor.getBlob(2));
+                    int[] verdicts = AnswerSheetConverter.verdictsFromBytes(cursor.getBlob(3));
+                    int totalNumber = cursor.getInt(4);
+                    int numberCount = Math.min(totalNumber == -1 ? answers.size() : totalNumber,
+                            Math.min(answers.size(), verdicts.length));
+                    for(int number = 1; number <= numberCount; number++) {
+                        insert.clearBindings();
+                        insert.bindLong(1, cursor.getLong(0));
+                        insert.bindLong(2, cursor.getLong(1));
+                        insert.bindLong(3, number);
+                        insert.bindLong(4, answers.getBits(number - 1));
+                        insert.bindLong(5, verdicts[number - 1]);
+                        insert.executeInsert();
+                    }
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+    };
+
     public static AppDatabase getInstance(final Context context) {
         if(instance == null) {
             synchronized (AppDatabase.class) {
@@ -34,7 +128,9 @@ public abstract class AppDatabase extends RoomDatabase {
                                 }
                             })
 */
-                            .fallbackToDestructiveMigration()
+                            .addMigrations(MIGRATION_1_2, MIGRATION_2_3)
+                            // Readers do not wait for the writer
+                            .setJournalMode(JournalMode.WRITE_AHEAD_LOGGING)
                             .build();
                 }
             }
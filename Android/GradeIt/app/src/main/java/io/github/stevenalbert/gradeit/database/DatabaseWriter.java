@@ -0,0 +1,327 @@
+package io.github.stevenalbert.gradeit.database;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import io.github.stevenalbert.gradeit.dao.AnswerSheetDao;
+import io.github.stevenalbert.gradeit.model.AnswerKey;
+import io.github.stevenalbert.gradeit.model.AnswerSheet;
+import io.github.stevenalbert.gradeit.model.PackedAnswers;
+import io.github.stevenalbert.gradeit.process.ItemStatistics;
+
+/**
+ * The only thread writing the database. Inserted answer sheets and answer keys are
+ * queued, all rows queued while the previous batch is written are inserted in one
+ * transaction, so a fast scan does not commit every row on its own. Other writes
+ * run on the same thread after the rows queued before them, in the order they are
+ * given.
+ * <p>
+ * An answer sheet is scored before it is queued, so its answer key may be replaced
+ * while it waits. The queued answer sheets are scored again with the saved answer
+ * key of their MCode in the transaction inserting them.
+ * <p>
+ * The writer also keeps the {@link ItemStatistics} of every MCode asked for, counted
+ * once by the database from the answer items and then updated with every answer
+ * sheet it writes or deletes.
+ * <p>
+ * A batch which can't be written is logged and dropped, the writer thread keeps
+ * running. If the batch is written before a write or the statistics, the error is
+ * thrown to their caller.
+ */
+public class DatabaseWriter {
+
+    private static final String TAG = DatabaseWriter.class.getSimpleName();
+
+    private static volatile DatabaseWriter instance;
+
+    private final AppDatabase database;
+    private final ExecutorService executor;
+
+    private final Object lock = new Object();
+    private ArrayList<AnswerSheet> pendingAnswerSheets = new ArrayList<>();
+    private ArrayList<AnswerKey> pendingAnswerKeys = new ArrayList<>();
+    private boolean isFlushQueued = false;
+
+    // Only used on the writer thread
+    private final HashMap<Integer, ItemStatistics> statistics = new HashMap<>();
+
+    private final Runnable flushTask = new Runnable() {
+        @Override
+        public void run() {
+            try {
+                flush();
+            } catch (RuntimeException e) {
+                // Logged by the flush, the thread is kept for the next batches
+            }
+        }
+    };
+
+    private DatabaseWriter(AppDatabase database) {
+        this.database = database;
+        this.executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "database-writer");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    public static DatabaseWriter getInstance(final Context context) {
+        if(instance == null) {
+            synchronized (DatabaseWriter.class) {
+                if(instance == null) {
+                    instance = new DatabaseWriter(AppDatabase.getInstance(context));
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Queue the answer sheet, it is inserted or replaced with the next batch
+     */
+    public void insert(AnswerSheet answerSheet) {
+        synchronized (lock) {
+            pendingAnswerSheets.add(answerSheet);
+            queueFlush();
+        }
+    }
+
+    /**
+     * Queue the answer key, it is inserted or replaced with the next batch
+     */
+    public void insert(AnswerKey answerKey) {
+        synchronized (lock) {
+            pendingAnswerKeys.add(answerKey);
+            queueFlush();
+        }
+    }
+
+    /**
+     * Run the write on the writer thread, after the rows queued before it are written.
+     * If they can't be written, the write is not run and the future fails with the
+     * error of their transaction.
+     */
+    public Future<?> write(final Runnable write) {
+        return executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                flush();
+                write.run();
+            }
+        });
+    }
+
+    /**
+     * Run the write on the writer thread and wait until it is done. It must not be
+     * called on the writer thread.
+     */
+    public void writeAndWait(Runnable write) {
+        await(write(write));
+    }
+
+    /**
+     * Statistics of the saved answer sheets of the MCode, after the rows queued
+     * before are written. It must not be called on the writer thread.
+     *
+     * @return copy of the statistics, not changed by later writes
+     */
+    public ItemStatistics getItemStatistics(final int mCode) {
+        return await(executor.submit(new Callable<ItemStatistics>() {
+            @Override
+            public ItemStatistics call() {
+                flush();
+                return new ItemStatistics(statisticsOf(mCode));
+            }
+        }));
+    }
+
+    private static <T> T await(Future<T> future) {
+        boolean interrupted = false;
+        try {
+            while(true) {
+                try {
+                    return future.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    if(e.getCause() instanceof RuntimeException)
+                        throw (RuntimeException) e.getCause();
+                    throw new RuntimeException(e.getCause());
+                }
+            }
+        } finally {
+            if(interrupted)
+                Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Called on the writer thread after the saved answer sheet is deleted
+     */
+    void onAnswerSheetDeleted(AnswerSheet answerSheet) {
+        ItemStatistics itemStatistics = statistics.get(answerSheet.getMCode());
+        if(itemStatistics != null)
+            itemStatistics.remove(answerSheet);
+    }
+
+    /**
+     * Called on the writer thread after the answer sheets of the MCode are deleted
+     */
+    void onAnswerSheetsDeleted(int mCode) {
+        statistics.remove(mCode);
+    }
+
+    /**
+     * Called on the writer thread after all answer sheets are deleted
+     */
+    void onAllAnswerSheetsDeleted() {
+        statistics.clear();
+    }
+
+    /**
+     * Called on the writer thread after all answer sheets of the MCode are scored
+     * again and updated
+     */
+    void onAnswerSheetsRescored(int mCode, List<AnswerSheet> answerSheets) {
+        if(statistics.containsKey(mCode))
+            statistics.put(mCode, ItemStatistics.of(mCode, answerSheets));
+    }
+
+    private ItemStatistics statisticsOf(int mCode) {
+        ItemStatistics itemStatistics = statistics.get(mCode);
+        if(itemStatistics == null) {
+            // Counted by SQLite on the answer items, the answer sheets are not read
+            AnswerSheetDao answerSheetDao = database.answerSheetDao();
+            itemStatistics = ItemStatistics.of(mCode, answerSheetDao.getScoreCounts(mCode),
+                    answerSheetDao.getItemCorrectCounts(mCode), answerSheetDao.getItemAnswerCounts(mCode));
+            statistics.put(mCode, itemStatistics);
+        }
+        return itemStatistics;
+    }
+
+    private void queueFlush() {
+        if(!isFlushQueued) {
+            isFlushQueued = true;
+            executor.execute(flushTask);
+        }
+    }
+
+    /**
+     * Insert all queued rows in one transaction, called on the writer thread. If the
+     * transaction fails, the rows are dropped, the statistics are kept as they were
+     * and the error is logged and thrown.
+     */
+    private void flush() {
+        final ArrayList<AnswerSheet> answerSheets;
+        final ArrayList<AnswerKey> answerKeys;
+        synchronized (lock) {
+            isFlushQueued = false;
+            if(pendingAnswerSheets.isEmpty() && pendingAnswerKeys.isEmpty())
+                return;
+            answerSheets = pendingAnswerSheets;
+            answerKeys = pendingAnswerKeys;
+            pendingAnswerSheets = new ArrayList<>();
+            pendingAnswerKeys = new ArrayList<>();
+        }
+
+        final List<AnswerSheet> replacedAnswerSheets;
+        try {
+            replacedAnswerSheets = findReplaced(answerSheets);
+            database.runInTransaction(new Runnable() {
+                @Override
+                public void run() {
+                    if(!answerKeys.isEmpty())
+                        database.answerKeyDao().insertAll(answerKeys);
+                    if(!answerSheets.isEmpty()) {
+                        scoreWithSavedAnswerKeys(answerSheets);
+                        database.answerSheetDao().insertAll(answerSheets);
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Failed to write " + answerSheets.size() + " answer sheets and "
+                    + answerKeys.size() + " answer keys", e);
+            throw e;
+        }
+
+        // Only the committed rows change the statistics
+        for(AnswerSheet answerSheet : replacedAnswerSheets) {
+            statistics.get(answerSheet.getMCode()).remove(answerSheet);
+        }
+        for(AnswerSheet answerSheet : answerSheets) {
+            ItemStatistics itemStatistics = statistics.get(answerSheet.getMCode());
+            if(itemStatistics != null)
+                itemStatistics.add(answerSheet);
+        }
+    }
+
+    /**
+     * Replace the queued answer sheets scored with another answer key than the saved
+     * one of their MCode by a copy scored with the saved one. The answer sheets given
+     * to the callers are not changed.
+     */
+    private void scoreWithSavedAnswerKeys(List<AnswerSheet> answerSheets) {
+        HashMap<Integer, AnswerKey> answerKeys = new HashMap<>();
+        HashMap<Integer, PackedAnswers> packedKeys = new HashMap<>();
+        int rescored = 0;
+        for(int i = 0; i < answerSheets.size(); i++) {
+            AnswerSheet answerSheet = answerSheets.get(i);
+            int mCode = answerSheet.getMCode();
+            if(!answerKeys.containsKey(mCode)) {
+                AnswerKey answerKey = database.answerKeyDao().findAnswerKey(mCode);
+                answerKeys.put(mCode, answerKey);
+                if(answerKey != null)
+                    packedKeys.put(mCode, answerKey.toPackedAnswers());
+            }
+            AnswerKey answerKey = answerKeys.get(mCode);
+            if(answerKey == null || answerKey.getTotalNumber() > answerSheet.getAnswers().size()) continue;
+
+            AnswerSheet scored = new AnswerSheet(answerSheet);
+            scored.scoreAnswerSheet(answerKey, packedKeys.get(mCode));
+            if(scored.getTotalNumber() != answerSheet.getTotalNumber()
+                    || scored.getTotalCorrect() != answerSheet.getTotalCorrect()
+                    || !Arrays.equals(scored.getVerdicts(), answerSheet.getVerdicts())) {
+                answerSheets.set(i, scored);
+                rescored++;
+            }
+        }
+        if(rescored > 0)
+            Log.i(TAG, rescored + " queued answer sheets scored again with the saved answer key");
+    }
+
+    /**
+     * @return the answer sheets replaced by the batch, saved or earlier in the batch,
+     *         of the MCodes with statistics
+     */
+    private List<AnswerSheet> findReplaced(List<AnswerSheet> answerSheets) {
+        ArrayList<AnswerSheet> replacedAnswerSheets = new ArrayList<>();
+        if(statistics.isEmpty()) return replacedAnswerSheets;
+
+        HashMap<Long, AnswerSheet> batchAnswerSheets = new HashMap<>();
+        for(AnswerSheet answerSheet : answerSheets) {
+            if(!statistics.containsKey(answerSheet.getMCode())) continue;
+
+            long code = ((long) answerSheet.getMCode() << Integer.SIZE) | answerSheet.getExCode();
+            AnswerSheet replaced = batchAnswerSheets.put(code, answerSheet);
+            if(replaced == null)
+                replaced = database.answerSheetDao().findAnswerSheet(answerSheet.getExCode(), answerSheet.getMCode());
+            if(replaced != null)
+                replacedAnswerSheets.add(replaced);
+        }
+        return replacedAnswerSheets;
+    }
+}
@@ -0,0 +1,42 @@
+package io.github.stevenalbert.gradeit.database;
+
+import android.app.Application;
+
+import io.github.stevenalbert.gradeit.model.AnswerKey;
+import io.github.stevenalbert.gradeit.model.AnswerSheet;
+import io.github.stevenalbert.gradeit.process.GradingPipeline;
+
+/**
+ * Store of the {@link GradingPipeline} on the Room database. It is called on the
+ * threads of the pipeline. The answer keys are written before they are returned,
+ * so the next answer sheets are scored with them, and the saved answer sheets of
+ * their MCode are scored again, as the answer keys saved from the gallery. The
+ * answer sheets are queued to the {@link DatabaseWriter}, which writes them in
+ * batches.
+ */
+public class GradingStore implements GradingPipeline.Store {
+
+    private AnswerKeyRepository answerKeyRepository;
+    private AnswerSheetRepository answerSheetRepository;
+
+    public GradingStore(Application application) {
+        answerKeyRepository = new AnswerKeyRepository(application);
+        answerSheetRepository = new AnswerSheetRepository(application);
+    }
+
+    @Override
+    public AnswerKey findAnswerKey(int mCode) {
+        return answerKeyRepository.findAnswerKeyByMCode(mCode);
+    }
+
+    @Override
+    public void saveAnswerKey(AnswerKey answerKey) {
+        answerKeyRepository.insertNow(answerKey);
+        answerSheetRepository.rescoreNow(answerKey);
+    }
+
+    @Override
+    public void saveAnswerSheet(AnswerSheet answerSheet) {
+        answerSheetRepository.insert(answerSheet);
+    }
+}
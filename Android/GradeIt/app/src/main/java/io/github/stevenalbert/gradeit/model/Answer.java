@@ -1,34 +1,56 @@
 package io.github.stevenalbert.gradeit.model;
 
-import java.util.EnumMap;
-
+/**
+ * Chosen options of one number. An answer of an answer sheet is a view of the
+ * number in its {@link PackedAnswers}, so setting an option changes the answer
+ * sheet.
+ */
 public class Answer {
 
-    private EnumMap<Option, Boolean> isChosen;
+    private final PackedAnswers answers;
+    private final int index;
 
     public Answer() {
-        isChosen = new EnumMap<>(Option.class);
+        this(new PackedAnswers(1), 0);
+    }
+
+    Answer(PackedAnswers answers, int index) {
+        this.answers = answers;
+        this.index = index;
     }
 
     public void setOptionChosen(Option option, boolean value) {
-        isChosen.put(option, value);
+        answers.setChosen(index, option, value);
     }
 
     public boolean isOptionChosen(Option option) {
-        return ( isChosen.containsKey(option) ? isChosen.get(option) : false );
+        return option != null && answers.isChosen(index, option);
+    }
+
+    /**
+     * @return chosen options as bits, see {@link #maskOf(Option)}
+     */
+    public int getBits() {
+        return answers.getBits(index);
+    }
+
+    /**
+     * @return bit of the option in the chosen options, or 0 for null
+     */
+    public static int maskOf(Option option) {
+        return option == null ? 0 : 1 << option.ordinal();
     }
 
     @Override
     public boolean equals(Object obj) {
         if (obj instanceof Answer) {
-            Answer answer = (Answer) obj;
-            Option[] options = Option.values();
-            for (Option option : options) {
-                if (this.isOptionChosen(option) != answer.isOptionChosen(option))
-                    return false;
-            }
-            return true;
+            return getBits() == ((Answer) obj).getBits();
         }
         return false;
     }
+
+    @Override
+    public int hashCode() {
+        return getBits();
+    }
 }
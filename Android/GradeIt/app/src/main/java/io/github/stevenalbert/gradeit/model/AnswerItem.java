@@ -0,0 +1,53 @@
+package io.github.stevenalbert.gradeit.model;
+
+import android.arch.persistence.room.ColumnInfo;
+import android.arch.persistence.room.Entity;
+import android.arch.persistence.room.Index;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One number of a saved answer sheet. The numbers of the answer sheets are kept in
+ * their own table next to the answer sheets, so the numbers of an MCode can be
+ * counted by SQLite without reading the answer sheets.
+ */
+@Entity (tableName = "answer_item",
+        primaryKeys = {"sheet_id", "number"},
+        indices = {@Index(value = {"m_code", "number"})})
+public class AnswerItem {
+    @ColumnInfo(name = "sheet_id")
+    public long sheetId;
+    @ColumnInfo(name = "m_code")
+    public int mCode;
+    @ColumnInfo(name = "number")
+    public int number;
+    @ColumnInfo(name = "chosen_mask")
+    public int chosenMask;
+    @ColumnInfo(name = "verdict")
+    public int verdict;
+
+    public AnswerItem(long sheetId, int mCode, int number, int chosenMask, int verdict) {
+        this.sheetId = sheetId;
+        this.mCode = mCode;
+        this.number = number;
+        this.chosenMask = chosenMask;
+        this.verdict = verdict;
+    }
+
+    /**
+     * @param sheetId
+     *            - id of the saved answer sheet
+     * @return one item per number of the answer sheet
+     */
+    public static List<AnswerItem> fromAnswerSheet(long sheetId, AnswerSheet answerSheet) {
+        PackedAnswers answers = answerSheet.getAnswers();
+        int numberCount = Math.min(answerSheet.getTotalAnswer(), answers.size());
+        List<AnswerItem> answerItems = new ArrayList<>(numberCount);
+        for(int number = 1; number <= numberCount; number++) {
+            answerItems.add(new AnswerItem(sheetId, answerSheet.getMCode(), number,
+                    answers.getBits(number - 1), answerSheet.getAnswerVerdict(number)));
+        }
+        return answerItems;
+    }
+}
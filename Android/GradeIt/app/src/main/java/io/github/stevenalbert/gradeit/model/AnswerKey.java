@@ -106,6 +106,18 @@ public class AnswerKey implements Parcelable {
         return answerKeys;
     }
 
+    /**
+     * @return the answer keys packed as answers, the option of the answer key of
+     *         every number is chosen
+     */
+    public PackedAnswers toPackedAnswers() {
+        PackedAnswers answers = new PackedAnswers(answerKeys.length);
+        for(int i = 0; i < answerKeys.length; i++) {
+            answers.setBits(i, Answer.maskOf(answerKeys[i]));
+        }
+        return answers;
+    }
+
     public Option getAnswerKey(int number) {
         if (number >= 1 && number <= this.answerKeys.length) {
             return this.answerKeys[number - 1];
@@ -122,17 +134,12 @@ public class AnswerKey implements Parcelable {
         if(answerSheet.getExCode() == ANSWER_KEY_EX_CODE) {
             AnswerKey answerKey = new AnswerKey(answerSheet.getMCode(), answerSheet.getTotalAnswer());
             Option[] options = Option.values();
+            PackedAnswers answers = answerSheet.getAnswers();
             for(int i = 1; i <= answerSheet.getTotalAnswer(); i++) {
-                boolean hasAnswer = false;
-                Answer answer = answerSheet.getAnswerOn(i);
-                for(Option option : options) {
-                    if(answer.isOptionChosen(option)) {
-                        answerKey.setAnswerKey(i, option);
-                        hasAnswer = true;
-                        break;
-                    }
-                }
-                if(hasAnswer) {
+                int bits = answers.getBits(i - 1);
+                if(bits != 0) {
+                    // The first chosen option is the answer key
+                    answerKey.setAnswerKey(i, options[Integer.numberOfTrailingZeros(bits)]);
                     answerKey.totalNumber = i;
                 }
             }
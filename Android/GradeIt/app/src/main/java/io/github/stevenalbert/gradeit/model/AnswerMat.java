@@ -9,10 +9,20 @@ import io.github.stevenalbert.gradeit.model.label.AnswerSheetLabel;
 public class AnswerMat extends Mat implements Comparable<AnswerMat> {
 
     private AnswerSheetLabel label;
+    private int labelCode;
 
     public AnswerMat(Mat mat, AnswerSheetLabel label) {
+        this(mat, label, AnswerSheetLayout.createLabelCode(label));
+    }
+
+    /**
+     * @param labelCode
+     *            - label code of the label, see {@link AnswerSheetLayout}
+     */
+    public AnswerMat(Mat mat, AnswerSheetLabel label, int labelCode) {
         super(invertMat(mat), Range.all());
         this.label = label;
+        this.labelCode = labelCode;
     }
 
     private static Mat invertMat(Mat mat) {
@@ -25,8 +35,12 @@ public class AnswerMat extends Mat implements Comparable<AnswerMat> {
         return label;
     }
 
+    public int getLabelCode() {
+        return labelCode;
+    }
+
     @Override
     public int compareTo(AnswerMat o) {
-        return this.label.compareTo(o.getLabel());
+        return Integer.compare(this.labelCode, o.getLabelCode());
     }
 }
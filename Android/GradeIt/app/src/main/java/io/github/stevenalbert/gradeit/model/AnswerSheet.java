@@ -46,7 +46,7 @@ public class AnswerSheet implements Parcelable {
     @ColumnInfo(name = "m_code")
     protected int mCode;
     @ColumnInfo(name = "answers")
-    protected Answer[] answers;
+    protected PackedAnswers answers;
     @ColumnInfo(name = "verdicts")
     protected int[] verdicts;
     @ColumnInfo(name = "correct")
@@ -54,7 +54,7 @@ public class AnswerSheet implements Parcelable {
     @ColumnInfo(name = "total_number")
     protected int totalNumber = -1;
 
-    public AnswerSheet(int exCode, int mCode, Answer[] answers, int[] verdicts, int totalCorrect) {
+    public AnswerSheet(int exCode, int mCode, PackedAnswers answers, int[] verdicts, int totalCorrect) {
         setExCode(exCode);
         setMCode(mCode);
         setAnswers(answers);
@@ -62,6 +62,11 @@ public class AnswerSheet implements Parcelable {
         this.totalCorrect = totalCorrect;
     }
 
+    @Ignore
+    public AnswerSheet(int exCode, int mCode, Answer[] answers, int[] verdicts, int totalCorrect) {
+        this(exCode, mCode, answers == null ? null : new PackedAnswers(answers), verdicts, totalCorrect);
+    }
+
     @Ignore
     public AnswerSheet(int exCode, int mCode, int totalAnswer) {
         setExCode(exCode);
@@ -74,8 +79,8 @@ public class AnswerSheet implements Parcelable {
     public AnswerSheet(int exCode, int mCode, Answer[] answers) {
         setExCode(exCode);
         setMCode(mCode);
-        setAnswers(answers);
-        createAnswerVerdicts(this.answers.length);
+        setAnswers(answers == null ? null : new PackedAnswers(answers));
+        createAnswerVerdicts(this.answers.size());
     }
 
     @Ignore
@@ -103,12 +108,27 @@ public class AnswerSheet implements Parcelable {
         this(exCode, mCode, DEFAULT_TOTAL_ANSWER);
     }
 
+    /**
+     * Copy of the answer sheet, scoring the copy does not change the answer sheet
+     */
+    @Ignore
+    public AnswerSheet(AnswerSheet answerSheet) {
+        id = answerSheet.id;
+        exCode = answerSheet.exCode;
+        mCode = answerSheet.mCode;
+        answers = answerSheet.answers == null ? null
+                : new PackedAnswers(answerSheet.answers.size(), answerSheet.answers.getWords().clone());
+        verdicts = answerSheet.verdicts == null ? null : answerSheet.verdicts.clone();
+        totalCorrect = answerSheet.totalCorrect;
+        totalNumber = answerSheet.totalNumber;
+    }
+
     @Ignore
     protected AnswerSheet(Parcel in) {
         id = in.readLong();
         exCode = in.readInt();
         mCode = in.readInt();
-        answers = AnswerSheetConverter.answersFromString(in.readString());
+        answers = new PackedAnswers(in.readInt(), in.createLongArray());
         verdicts = in.createIntArray();
         totalCorrect = in.readInt();
     }
@@ -127,25 +147,43 @@ public class AnswerSheet implements Parcelable {
     };
 
     public void scoreAnswerSheet(AnswerKey answerKey) {
+        scoreAnswerSheet(answerKey, answerKey.toPackedAnswers());
+    }
+
+    /**
+     * Score eight numbers at once on the packed words of the answers and the
+     * answer key
+     *
+     * @param packedKey
+     *            - answer key packed by {@link AnswerKey#toPackedAnswers()}, it can
+     *            be shared by all answer sheets scored with the answer key
+     */
+    public void scoreAnswerSheet(AnswerKey answerKey, PackedAnswers packedKey) {
         if(this.getMCode() == answerKey.getMCode()) {
-            int totalCorrect = 0;
-            Option[] options = Option.values();
             this.totalNumber = answerKey.getTotalNumber();
-            for(int number = 1; number <= getTotalAnswer(); number++) {
-                Option keyOption = answerKey.getAnswerKey(number);
-                Answer answer = getAnswerOn(number);
-                if(answer.isOptionChosen(keyOption)) {
-                    setAnswerVerdict(number, ANSWER_TRUE);
-                    totalCorrect++;
-                    for(Option option : options) {
-                        if(!option.equals(keyOption) && answer.isOptionChosen(option)) {
-                            setAnswerVerdict(number, ANSWER_MULTIPLE);
-                            totalCorrect--;
-                            break;
-                        }
-                    }
-                } else {
-                    setAnswerVerdict(number, ANSWER_FALSE);
+            int numberCount = getTotalAnswer();
+            if(numberCount > answers.size())
+                throw new IndexOutOfBoundsException("Number starts from 1 to " + answers.size());
+            long[] words = answers.getWords();
+            long[] keyWords = packedKey.getWords();
+            int totalCorrect = 0;
+            for(int word = 0; word * PackedAnswers.NUMBERS_PER_WORD < numberCount; word++) {
+                long numbers = PackedAnswers.numbersBefore(word, numberCount);
+                long keyChosen = PackedAnswers.chosenNumbers(words[word] & keyWords[word]);
+                long otherChosen = PackedAnswers.chosenNumbers(words[word] & ~keyWords[word]);
+                long correct = keyChosen & ~otherChosen & numbers;
+                long multiple = keyChosen & otherChosen & numbers;
+                totalCorrect += Long.bitCount(correct);
+
+                int first = word * PackedAnswers.NUMBERS_PER_WORD;
+                for(int i = 0; i < PackedAnswers.NUMBERS_PER_WORD && first + i < numberCount; i++) {
+                    int shift = i * PackedAnswers.BITS_PER_NUMBER;
+                    if(((correct >>> shift) & 1) != 0)
+                        verdicts[first + i] = ANSWER_TRUE;
+                    else if(((multiple >>> shift) & 1) != 0)
+                        verdicts[first + i] = ANSWER_MULTIPLE;
+                    else
+                        verdicts[first + i] = ANSWER_FALSE;
                 }
             }
             this.totalCorrect = totalCorrect;
@@ -174,7 +212,7 @@ public class AnswerSheet implements Parcelable {
             this.mCode = MINIMUM_M_CODE;
     }
 
-    private void setAnswers(Answer[] answers) {
+    private void setAnswers(PackedAnswers answers) {
         if (answers == null)
             createEmptyAnswers(DEFAULT_TOTAL_ANSWER);
         else
@@ -184,7 +222,7 @@ public class AnswerSheet implements Parcelable {
     private void setVerdicts(int[] verdicts) {
         if (verdicts == null)
             if(answers == null) createAnswerVerdicts(DEFAULT_TOTAL_ANSWER);
-            else createAnswerVerdicts(answers.length);
+            else createAnswerVerdicts(answers.size());
         else
             this.verdicts = verdicts;
     }
@@ -193,11 +231,7 @@ public class AnswerSheet implements Parcelable {
         if (totalAnswer < 0)
             totalAnswer = DEFAULT_TOTAL_ANSWER;
 
-        this.answers = new Answer[totalAnswer];
-
-        for (int i = 0; i < this.answers.length; i++) {
-            this.answers[i] = new Answer();
-        }
+        this.answers = new PackedAnswers(totalAnswer);
     }
 
     private void createAnswerVerdicts(int totalAnswer) {
@@ -210,27 +244,27 @@ public class AnswerSheet implements Parcelable {
     }
 
     public void setAnswerOn(int number, Answer answer) {
-        if (number >= 1 && number <= this.answers.length) {
-            this.answers[number - 1] = answer;
-        } else throw new IndexOutOfBoundsException("Number starts from 1 to " + answers.length);
+        if (number >= 1 && number <= this.answers.size()) {
+            this.answers.setBits(number - 1, answer.getBits());
+        } else throw new IndexOutOfBoundsException("Number starts from 1 to " + answers.size());
     }
 
     public void setAnswerOn(int number, Option option, boolean isChosen) {
-        if (number >= 1 && number <= this.answers.length) {
-            this.answers[number - 1].setOptionChosen(option, isChosen);
-        } else throw new IndexOutOfBoundsException("Number starts from 1 to " + answers.length);
+        if (number >= 1 && number <= this.answers.size()) {
+            this.answers.setChosen(number - 1, option, isChosen);
+        } else throw new IndexOutOfBoundsException("Number starts from 1 to " + answers.size());
     }
 
     public void setAnswerVerdict(int number, int verdict) {
-        if (number >= 1 && number <= this.answers.length) {
+        if (number >= 1 && number <= this.answers.size()) {
             this.verdicts[number - 1] = verdict;
-        } else throw new IndexOutOfBoundsException("Number starts from 1 to " + answers.length);
+        } else throw new IndexOutOfBoundsException("Number starts from 1 to " + answers.size());
     }
 
     public Answer getAnswerOn(int number) {
-        if (number >= 1 && number <= this.answers.length) {
-            return this.answers[number - 1];
-        } else throw new IndexOutOfBoundsException("Number starts from 1 to " + answers.length);
+        if (number >= 1 && number <= this.answers.size()) {
+            return new Answer(this.answers, number - 1);
+        } else throw new IndexOutOfBoundsException("Number starts from 1 to " + answers.size());
     }
 
     public void setTotalNumber(int totalNumber) {
@@ -242,7 +276,7 @@ public class AnswerSheet implements Parcelable {
     }
 
     public int getTotalAnswer() {
-        return totalNumber == -1 ? answers.length : totalNumber;
+        return totalNumber == -1 ? answers.size() : totalNumber;
     }
 
     public int getExCode() {
@@ -268,9 +302,9 @@ public class AnswerSheet implements Parcelable {
     }
 
     public int getAnswerVerdict(int number) {
-        if (number >= 1 && number <= this.answers.length) {
+        if (number >= 1 && number <= this.answers.size()) {
             return this.verdicts[number - 1];
-        } else throw new IndexOutOfBoundsException("Number starts from 1 to " + answers.length);
+        } else throw new IndexOutOfBoundsException("Number starts from 1 to " + answers.size());
     }
 
     public boolean isAnswerTrue(int number) {
@@ -297,7 +331,7 @@ public class AnswerSheet implements Parcelable {
         return id;
     }
 
-    public Answer[] getAnswers() {
+    public PackedAnswers getAnswers() {
         return answers;
     }
 
@@ -315,7 +349,8 @@ public class AnswerSheet implements Parcelable {
         dest.writeLong(id);
         dest.writeInt(getExCode());
         dest.writeInt(getMCode());
-        dest.writeString(AnswerSheetConverter.answersToString(getAnswers()));
+        dest.writeInt(answers.size());
+        dest.writeLongArray(answers.getWords());
         dest.writeIntArray(getVerdicts());
         dest.writeInt(totalCorrect);
     }
@@ -8,20 +8,32 @@ import android.arch.persistence.room.TypeConverter;
 public class AnswerSheetConverter {
 
     private static final String SEPARATOR = ",";
+    private static final Option[] OPTIONS = Option.values();
 
-    @TypeConverter
+    // First byte of the binary answers and verdicts, a new encoding gets a new version
+    private static final byte BINARY_VERSION = 1;
+    // Version, then the number of numbers as an int
+    private static final int HEADER_LENGTH = 5;
+    private static final int BITS_PER_VERDICT = 2;
+    private static final int VERDICTS_PER_BYTE = 4;
+    private static final int VERDICT_MASK = 0x3;
+
+    // The text forms are not Room converters, no column is stored as text since
+    // version 2. They read the columns of version 1 and show the answers.
     public static String answerToString(Answer answer) {
-        StringBuilder builder = new StringBuilder();
-        Option[] options = Option.values();
-        for (Option option : options) {
-            if (answer.isOptionChosen(option))
-                builder.append(option.getOption());
-        }
+        return bitsToString(answer.getBits());
+    }
 
+    /**
+     * @param bits
+     *            - chosen options as bits, see {@link Answer#maskOf(Option)}
+     */
+    public static String bitsToString(int bits) {
+        StringBuilder builder = new StringBuilder();
+        appendBits(builder, bits);
         return builder.toString();
     }
 
-    @TypeConverter
     public static Answer answerFromString(String string) {
         Answer answer = new Answer();
         for(int i = 0; i < string.length(); i++) {
@@ -30,7 +42,6 @@ public class AnswerSheetConverter {
         return answer;
     }
 
-    @TypeConverter
     public static String answersToString(Answer[] answers) {
         StringBuilder builder = new StringBuilder();
         int length = answers.length;
@@ -41,7 +52,6 @@ public class AnswerSheetConverter {
         return builder.toString();
     }
 
-    @TypeConverter
     public static Answer[] answersFromString(String string) {
         String[] values = string.split(SEPARATOR);
         Answer[] answers = new Answer[values.length];
@@ -52,7 +62,37 @@ public class AnswerSheetConverter {
         return answers;
     }
 
-    @TypeConverter
+    public static String packedAnswersToString(PackedAnswers answers) {
+        StringBuilder builder = new StringBuilder();
+        int length = answers.size();
+        for(int i = 0; i < length; i++) {
+            appendBits(builder, answers.getBits(i));
+            if(i < length - 1) builder.append(SEPARATOR);
+        }
+        return builder.toString();
+    }
+
+    public static PackedAnswers packedAnswersFromString(String string) {
+        // Keep the trailing numbers without chosen option
+        String[] values = string.split(SEPARATOR, -1);
+        PackedAnswers answers = new PackedAnswers(values.length);
+        for(int i = 0; i < values.length; i++) {
+            int bits = 0;
+            for(int j = 0; j < values[i].length(); j++) {
+                bits |= Answer.maskOf(Option.getOption(values[i].charAt(j)));
+            }
+            answers.setBits(i, bits);
+        }
+        return answers;
+    }
+
+    private static void appendBits(StringBuilder builder, int bits) {
+        for(Option option : OPTIONS) {
+            if((bits & Answer.maskOf(option)) != 0)
+                builder.append(option.getOption());
+        }
+    }
+
     public static String verdictsToString(int[] verdicts) {
         StringBuilder builder = new StringBuilder();
         for(int i : verdicts) {
@@ -61,12 +101,98 @@ public class AnswerSheetConverter {
         return builder.toString();
     }
 
-    @TypeConverter
     public static int[] verdictsFromString(String string) {
         int[] verdicts = new int[string.length()];
         for(int i = 0; i < verdicts.length; i++) {
-            verdicts[i] = Integer.valueOf(string.substring(i, i + 1));
+            verdicts[i] = string.charAt(i) - '0';
         }
         return verdicts;
     }
+
+    /**
+     * Answers as a BLOB: the version, the number of numbers, then the chosen options
+     * of every number as one byte, in the bits of {@link PackedAnswers}
+     */
+    @TypeConverter
+    public static byte[] packedAnswersToBytes(PackedAnswers answers) {
+        if(answers == null) return null;
+        int size = answers.size();
+        byte[] bytes = newBinary(size, size);
+        long[] words = answers.getWords();
+        for(int i = 0; i < size; i++) {
+            bytes[HEADER_LENGTH + i] = (byte) (words[i / PackedAnswers.NUMBERS_PER_WORD]
+                    >>> ((i % PackedAnswers.NUMBERS_PER_WORD) * PackedAnswers.BITS_PER_NUMBER));
+        }
+        return bytes;
+    }
+
+    @TypeConverter
+    public static PackedAnswers packedAnswersFromBytes(byte[] bytes) {
+        if(bytes == null) return null;
+        int size = readSize(bytes);
+        checkLength(bytes, size);
+        PackedAnswers answers = new PackedAnswers(size);
+        long[] words = answers.getWords();
+        for(int i = 0; i < size; i++) {
+            words[i / PackedAnswers.NUMBERS_PER_WORD] |= (bytes[HEADER_LENGTH + i] & PackedAnswers.NUMBER_MASK)
+                    << ((i % PackedAnswers.NUMBERS_PER_WORD) * PackedAnswers.BITS_PER_NUMBER);
+        }
+        return answers;
+    }
+
+    /**
+     * Verdicts as a BLOB: the version, the number of verdicts, then two bits for
+     * every verdict, four verdicts in a byte
+     */
+    @TypeConverter
+    public static byte[] verdictsToBytes(int[] verdicts) {
+        if(verdicts == null) return null;
+        byte[] bytes = newBinary(verdicts.length, verdictBytes(verdicts.length));
+        for(int i = 0; i < verdicts.length; i++) {
+            bytes[HEADER_LENGTH + i / VERDICTS_PER_BYTE] |=
+                    (verdicts[i] & VERDICT_MASK) << ((i % VERDICTS_PER_BYTE) * BITS_PER_VERDICT);
+        }
+        return bytes;
+    }
+
+    @TypeConverter
+    public static int[] verdictsFromBytes(byte[] bytes) {
+        if(bytes == null) return null;
+        int size = readSize(bytes);
+        checkLength(bytes, verdictBytes(size));
+        int[] verdicts = new int[size];
+        for(int i = 0; i < size; i++) {
+            verdicts[i] = (bytes[HEADER_LENGTH + i / VERDICTS_PER_BYTE]
+                    >>> ((i % VERDICTS_PER_BYTE) * BITS_PER_VERDICT)) & VERDICT_MASK;
+        }
+        return verdicts;
+    }
+
+    private static int verdictBytes(int size) {
+        return (size + VERDICTS_PER_BYTE - 1) / VERDICTS_PER_BYTE;
+    }
+
+    private static byte[] newBinary(int size, int dataLength) {
+        byte[] bytes = new byte[HEADER_LENGTH + dataLength];
+        bytes[0] = BINARY_VERSION;
+        bytes[1] = (byte) (size >>> 24);
+        bytes[2] = (byte) (size >>> 16);
+        bytes[3] = (byte) (size >>> 8);
+        bytes[4] = (byte) size;
+        return bytes;
+    }
+
+    private static int readSize(byte[] bytes) {
+        if(bytes.length < HEADER_LENGTH || bytes[0] != BINARY_VERSION)
+            throw new IllegalArgumentException("Unknown binary version");
+        int size = (bytes[1] & 0xFF) << 24 | (bytes[2] & 0xFF) << 16 | (bytes[3] & 0xFF) << 8 | (bytes[4] & 0xFF);
+        if(size < 0)
+            throw new IllegalArgumentException("Binary size cannot be negative");
+        return size;
+    }
+
+    private static void checkLength(byte[] bytes, int dataLength) {
+        if(bytes.length != HEADER_LENGTH + dataLength)
+            throw new IllegalArgumentException("Binary length does not match its size");
+    }
 }
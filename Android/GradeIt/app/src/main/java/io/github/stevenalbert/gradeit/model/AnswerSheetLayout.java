@@ -0,0 +1,231 @@
+package io.github.stevenalbert.gradeit.model;
+
+import java.util.Arrays;
+
+import io.github.stevenalbert.gradeit.model.AnswerSheetMetadata.Value;
+import io.github.stevenalbert.gradeit.model.label.AnswerLabel;
+import io.github.stevenalbert.gradeit.model.label.AnswerSheetLabel;
+import io.github.stevenalbert.gradeit.model.label.ExCodeLabel;
+import io.github.stevenalbert.gradeit.model.label.MCodeLabel;
+
+/**
+ * Compiled form of {@link AnswerSheetMetadata}. Every cell of the answer sheet is
+ * stored in flat arrays in the order of its label, together with an integer label
+ * code and the index of its row and column center. For each sheet, only the row
+ * and column centers of every block need to be computed from the anchors.
+ *
+ * A label code sorts the same way as its {@link AnswerSheetLabel}: answer labels by
+ * number then option, ExCode and MCode labels by column then value.
+ */
+public class AnswerSheetLayout {
+
+    public static final int KIND_ANSWER = 0;
+    public static final int KIND_EX_CODE = 1;
+    public static final int KIND_M_CODE = 2;
+
+    private static final int KIND_SHIFT = 20;
+    private static final int PRIMARY_SHIFT = 8;
+    private static final int PRIMARY_MASK = 0xFFF;
+    private static final int SECONDARY_MASK = 0xFF;
+
+    private final Value[] blocks;
+    private final int[] blockRowOffsets;
+    private final int[] blockColumnOffsets;
+    private final int rowCenterCount;
+    private final int columnCenterCount;
+
+    private final int[] cellBlocks;
+    private final int[] cellRowCenterIndices;
+    private final int[] cellColumnCenterIndices;
+    private final int[] cellLabelCodes;
+    private final AnswerSheetLabel[] cellLabels;
+
+    private final int totalAnswer;
+
+    AnswerSheetLayout(AnswerSheetMetadata metadata) {
+        int blockCount = metadata.getValueLength();
+        blocks = new Value[blockCount];
+        blockRowOffsets = new int[blockCount];
+        blockColumnOffsets = new int[blockCount];
+
+        int rowOffset = 0, columnOffset = 0, cellCount = 0;
+        for (int i = 0; i < blockCount; i++) {
+            blocks[i] = metadata.getValue(i);
+            blockRowOffsets[i] = rowOffset;
+            blockColumnOffsets[i] = columnOffset;
+            rowOffset += blocks[i].rowCount;
+            columnOffset += blocks[i].columnCount;
+            cellCount += blocks[i].rowCount * blocks[i].columnCount;
+        }
+        rowCenterCount = rowOffset;
+        columnCenterCount = columnOffset;
+
+        // Label code of every cell in metadata order, with its index to keep the sort stable
+        long[] orderedCells = new long[cellCount];
+        int[] blockOf = new int[cellCount], rowOf = new int[cellCount], columnOf = new int[cellCount];
+        int cell = 0;
+        for (int block = 0; block < blockCount; block++) {
+            for (int i = 0; i < blocks[block].rowCount; i++) {
+                for (int j = 0; j < blocks[block].columnCount; j++, cell++) {
+                    blockOf[cell] = block;
+                    rowOf[cell] = i;
+                    columnOf[cell] = j;
+                    orderedCells[cell] = ((long) createLabelCode(blocks[block], i, j) << 32) | cell;
+                }
+            }
+        }
+        Arrays.sort(orderedCells);
+
+        cellBlocks = new int[cellCount];
+        cellRowCenterIndices = new int[cellCount];
+        cellColumnCenterIndices = new int[cellCount];
+        cellLabelCodes = new int[cellCount];
+        cellLabels = new AnswerSheetLabel[cellCount];
+        int maxNumber = 0;
+        for (int i = 0; i < cellCount; i++) {
+            int source = (int) orderedCells[i];
+            int block = blockOf[source];
+            cellBlocks[i] = block;
+            cellRowCenterIndices[i] = blockRowOffsets[block] + rowOf[source];
+            cellColumnCenterIndices[i] = blockColumnOffsets[block] + columnOf[source];
+            cellLabelCodes[i] = (int) (orderedCells[i] >>> 32);
+            cellLabels[i] = createLabel(cellLabelCodes[i]);
+            if (getKind(cellLabelCodes[i]) == KIND_ANSWER)
+                maxNumber = Math.max(maxNumber, getPrimary(cellLabelCodes[i]));
+        }
+        totalAnswer = maxNumber;
+    }
+
+    public int getBlockCount() {
+        return blocks.length;
+    }
+
+    public Value getBlock(int block) {
+        return blocks[block];
+    }
+
+    /**
+     * @return index of the center of the first row of the block
+     */
+    public int getBlockRowOffset(int block) {
+        return blockRowOffsets[block];
+    }
+
+    /**
+     * @return index of the center of the first column of the block
+     */
+    public int getBlockColumnOffset(int block) {
+        return blockColumnOffsets[block];
+    }
+
+    /**
+     * @return total rows of all blocks
+     */
+    public int getRowCenterCount() {
+        return rowCenterCount;
+    }
+
+    /**
+     * @return total columns of all blocks
+     */
+    public int getColumnCenterCount() {
+        return columnCenterCount;
+    }
+
+    public int getCellCount() {
+        return cellLabelCodes.length;
+    }
+
+    public int getCellBlock(int cell) {
+        return cellBlocks[cell];
+    }
+
+    public int getCellRowCenterIndex(int cell) {
+        return cellRowCenterIndices[cell];
+    }
+
+    public int getCellColumnCenterIndex(int cell) {
+        return cellColumnCenterIndices[cell];
+    }
+
+    public int getCellLabelCode(int cell) {
+        return cellLabelCodes[cell];
+    }
+
+    public AnswerSheetLabel getCellLabel(int cell) {
+        return cellLabels[cell];
+    }
+
+    /**
+     * @return the biggest answer number of the answer sheet
+     */
+    public int getTotalAnswer() {
+        return totalAnswer;
+    }
+
+    public static int createLabelCode(int kind, int primary, int secondary) {
+        return (kind << KIND_SHIFT) | ((primary & PRIMARY_MASK) << PRIMARY_SHIFT) | (secondary & SECONDARY_MASK);
+    }
+
+    /**
+     * @return label code of the given label
+     */
+    public static int createLabelCode(AnswerSheetLabel label) {
+        if (label instanceof AnswerLabel) {
+            AnswerLabel answerLabel = (AnswerLabel) label;
+            return createLabelCode(KIND_ANSWER, answerLabel.getNumber(), answerLabel.getOption().ordinal());
+        } else if (label instanceof ExCodeLabel) {
+            ExCodeLabel exCodeLabel = (ExCodeLabel) label;
+            return createLabelCode(KIND_EX_CODE, exCodeLabel.getColumnNumber(), exCodeLabel.getValue());
+        } else if (label instanceof MCodeLabel) {
+            MCodeLabel mCodeLabel = (MCodeLabel) label;
+            return createLabelCode(KIND_M_CODE, mCodeLabel.getColumnNumber(), mCodeLabel.getValue());
+        }
+        throw new IllegalArgumentException("Unknown label " + label);
+    }
+
+    /**
+     * @return KIND_ANSWER, KIND_EX_CODE or KIND_M_CODE
+     */
+    public static int getKind(int labelCode) {
+        return labelCode >>> KIND_SHIFT;
+    }
+
+    /**
+     * @return answer number, or column number of ExCode and MCode
+     */
+    public static int getPrimary(int labelCode) {
+        return (labelCode >>> PRIMARY_SHIFT) & PRIMARY_MASK;
+    }
+
+    /**
+     * @return ordinal of the answer option, or value of ExCode and MCode
+     */
+    public static int getSecondary(int labelCode) {
+        return labelCode & SECONDARY_MASK;
+    }
+
+    private static int createLabelCode(Value value, int row, int column) {
+        switch (value.label) {
+            case "ExCode":
+                return createLabelCode(KIND_EX_CODE, value.startColumnChar + column - '1', value.startRowInteger + row);
+            case "MCode":
+                return createLabelCode(KIND_M_CODE, value.startColumnChar + column - '1', value.startRowInteger + row);
+            default:
+                Option option = Option.getOption((char) (value.startColumnChar + column));
+                // Let AnswerLabel reject invalid number and option
+                return createLabelCode(new AnswerLabel(value.startRowInteger + row, option));
+        }
+    }
+
+    private static AnswerSheetLabel createLabel(int labelCode) {
+        switch (getKind(labelCode)) {
+            case KIND_EX_CODE:
+                return new ExCodeLabel(getPrimary(labelCode), getSecondary(labelCode));
+            case KIND_M_CODE:
+                return new MCodeLabel(getPrimary(labelCode), getSecondary(labelCode));
+            default:
+                return new AnswerLabel(getPrimary(labelCode), Option.values()[getSecondary(labelCode)]);
+        }
+    }
+}
@@ -1,23 +1,30 @@
 package io.github.stevenalbert.gradeit.model;
 
 import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
 
+/**
+ * Paper dimension and blocks of an answer sheet form, read from an .asmf file. It
+ * is not changed after it is read, so one instance can be shared by every answer
+ * sheet graded with the form.
+ */
 public class AnswerSheetMetadata {
 
     public class Value {
-        public String label;
-        public int startVerticalIndex;
-        public int endVerticalIndex;
-        public int startHorizontalIndex;
-        public int endHorizontalIndex;
-        public int columnCount;
-        public int rowCount;
-        public char startColumnChar;
-        public int startRowInteger;
+        public final String label;
+        public final int startVerticalIndex;
+        public final int endVerticalIndex;
+        public final int startHorizontalIndex;
+        public final int endHorizontalIndex;
+        public final int columnCount;
+        public final int rowCount;
+        public final char startColumnChar;
+        public final int startRowInteger;
 
         public Value(String label, int startVerticalIndex, int endVerticalIndex, int startHorizontalIndex,
                 int endHorizontalIndex, int columnCount, int rowCount, int startRowInteger, char startColumnChar) {
@@ -34,11 +41,11 @@ public class AnswerSheetMetadata {
     }
 
     public class PaperDimension {
-        public int width;
-        public int height;
-        public int squareWidth;
-        public int squareHeight;
-        public int squareAnswerBorder;
+        public final int width;
+        public final int height;
+        public final int squareWidth;
+        public final int squareHeight;
+        public final int squareAnswerBorder;
 
         public PaperDimension(int width, int height, int squareWidth, int squareHeight, int squareAnswerBorder,
                 double scale) {
@@ -52,6 +59,13 @@ public class AnswerSheetMetadata {
 
     private static final String METADATA_EXTENSION = "asmf";
 
+    // Version of the binary form, changed whenever writeTo is changed
+    private static final int BINARY_VERSION = 1;
+
+    // "Dim", the 5 dimensions and the scale
+    private static final int DIMENSION_DATA_COUNT = 7;
+    private static final int VALUE_DATA_COUNT = 9;
+
     private static final String DIMENSION_FORMAT_KEY = "Dim";
 
     private static final String DIMENSION_FORMAT = "\"" + DIMENSION_FORMAT_KEY
@@ -59,17 +73,76 @@ public class AnswerSheetMetadata {
 
     private PaperDimension dimension;
 
-    private ArrayList<Value> values;
+    private final ArrayList<Value> values = new ArrayList<>();
+
+    private AnswerSheetLayout layout;
 
     public AnswerSheetMetadata(InputStream metadataInputStream) {
         readMetadataFile(metadataInputStream);
+        validate();
+    }
+
+    private AnswerSheetMetadata() {
+    }
+
+    /**
+     * Read the metadata written by {@link #writeTo(DataOutputStream)}, without
+     * parsing the text of the .asmf file.
+     *
+     * @throws IOException
+     *             if the binary form is of another version or is cut
+     */
+    public static AnswerSheetMetadata readFrom(DataInputStream input) throws IOException {
+        int version = input.readInt();
+        if (version != BINARY_VERSION)
+            throw new IOException("Binary metadata version " + version + " is not " + BINARY_VERSION);
+
+        AnswerSheetMetadata metadata = new AnswerSheetMetadata();
+        // The dimensions are written scaled
+        metadata.dimension = metadata.new PaperDimension(input.readInt(), input.readInt(), input.readInt(),
+                input.readInt(), input.readInt(), 1);
+        int valueCount = input.readInt();
+        for (int i = 0; i < valueCount; i++) {
+            metadata.values.add(metadata.new Value(input.readUTF(), input.readInt(), input.readInt(), input.readInt(),
+                    input.readInt(), input.readInt(), input.readInt(), input.readInt(), input.readChar()));
+        }
+        try {
+            metadata.validate();
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Binary metadata is not valid", e);
+        }
+        return metadata;
+    }
+
+    /**
+     * Write the metadata in a compact binary form, read back with
+     * {@link #readFrom(DataInputStream)}.
+     */
+    public void writeTo(DataOutputStream output) throws IOException {
+        output.writeInt(BINARY_VERSION);
+        output.writeInt(dimension.width);
+        output.writeInt(dimension.height);
+        output.writeInt(dimension.squareWidth);
+        output.writeInt(dimension.squareHeight);
+        output.writeInt(dimension.squareAnswerBorder);
+        output.writeInt(values.size());
+        for (Value value : values) {
+            output.writeUTF(value.label);
+            output.writeInt(value.startVerticalIndex);
+            output.writeInt(value.endVerticalIndex);
+            output.writeInt(value.startHorizontalIndex);
+            output.writeInt(value.endHorizontalIndex);
+            output.writeInt(value.columnCount);
+            output.writeInt(value.rowCount);
+            output.writeInt(value.startRowInteger);
+            output.writeChar(value.startColumnChar);
+        }
     }
 
     private void readMetadataFile(InputStream metadataInputStream) {
         if (metadataInputStream == null)
             throw new IllegalArgumentException("Metadata cannot be null");
 
-        values = new ArrayList<>();
         BufferedReader reader = new BufferedReader(new InputStreamReader(metadataInputStream));
         String metadata = null;
         try {
@@ -104,6 +177,25 @@ public class AnswerSheetMetadata {
         }
     }
 
+    private void validate() {
+        if (dimension == null)
+            throw new IllegalArgumentException("There is no dimension row. Expected once: " + DIMENSION_FORMAT);
+        if (dimension.width <= 0 || dimension.height <= 0 || dimension.squareWidth <= 0
+                || dimension.squareHeight <= 0 || dimension.squareAnswerBorder < 0)
+            throw new IllegalArgumentException("Dimension must be positive. Format:\n\t" + DIMENSION_FORMAT);
+        if (values.isEmpty())
+            throw new IllegalArgumentException("There is no metadata line besides the dimension");
+
+        for (Value value : values) {
+            if (value.startVerticalIndex < 0 || value.startVerticalIndex > value.endVerticalIndex
+                    || value.startHorizontalIndex < 0 || value.startHorizontalIndex > value.endHorizontalIndex)
+                throw new IllegalArgumentException("\"" + value.label + "\" black mark indices must start from 0"
+                        + " and not end before they start");
+            if (value.columnCount <= 0 || value.rowCount <= 0)
+                throw new IllegalArgumentException("\"" + value.label + "\" must have columns and rows");
+        }
+    }
+
     public Value getValue(int index) {
         return values.get(index);
     }
@@ -116,6 +208,18 @@ public class AnswerSheetMetadata {
         return values.size();
     }
 
+    /**
+     * Get the compiled cell layout of this metadata. It is compiled on first use and
+     * shared by every answer sheet processed with this metadata.
+     *
+     * @return cell layout of the answer sheet
+     */
+    public synchronized AnswerSheetLayout getLayout() {
+        if (layout == null)
+            layout = new AnswerSheetLayout(this);
+        return layout;
+    }
+
     private boolean isCommentOrEmpty(String metadata) {
         return metadata.startsWith("#") || metadata.trim().length() == 0;
     }
@@ -124,18 +228,10 @@ public class AnswerSheetMetadata {
         if (!metadata.startsWith("Dim"))
             return null;
 
-        String[] data = metadata.split("\\s*,\\s*");
-        int expectedTotalData = PaperDimension.class.getDeclaredFields().length
-                - PaperDimension.class.getDeclaredMethods().length
-                - PaperDimension.class.getDeclaredConstructors().length + 2; // Latest +2 is for scale attribute and
-                                                                             // "Dim" string
-        if (data.length != expectedTotalData) {
+        String[] data = splitData(metadata);
+        if (data.length != DIMENSION_DATA_COUNT) {
             throw new IllegalArgumentException("\"" + metadata + "\", format is not true.\nTotal data: " + data.length
-                    + ", expected total data: " + expectedTotalData + "\nFormat:\n\t" + DIMENSION_FORMAT);
-        }
-
-        for (int i = 0; i < data.length; i++) {
-            data[i].trim();
+                    + ", expected total data: " + DIMENSION_DATA_COUNT + "\nFormat:\n\t" + DIMENSION_FORMAT);
         }
 
         return new PaperDimension(Integer.valueOf(data[1]), Integer.valueOf(data[2]), Integer.valueOf(data[3]),
@@ -143,20 +239,32 @@ public class AnswerSheetMetadata {
     }
 
     private Value processMetadataLine(String metadata) {
-        String[] data = metadata.split(",\\s*");
-        int expectedTotalData = Value.class.getDeclaredFields().length - Value.class.getDeclaredMethods().length
-                - Value.class.getDeclaredConstructors().length;
-        if (data.length != expectedTotalData) {
+        String[] data = splitData(metadata);
+        if (data.length != VALUE_DATA_COUNT) {
             throw new IllegalArgumentException("\"" + metadata + "\", format is not true.\nTotal data: " + data.length
-                    + ", expected total data: " + expectedTotalData);
-        }
-
-        for (int i = 0; i < data.length; i++) {
-            data[i].trim();
+                    + ", expected total data: " + VALUE_DATA_COUNT);
         }
 
         return new Value(data[0], Integer.valueOf(data[1]), Integer.valueOf(data[2]), Integer.valueOf(data[3]),
                 Integer.valueOf(data[4]), Integer.valueOf(data[5]), Integer.valueOf(data[6]), Integer.valueOf(data[7]),
                 Character.valueOf(data[8].charAt(0)));
     }
+
+    /**
+     * Split the line by commas and trim every data, empty data at the end are
+     * dropped
+     */
+    private static String[] splitData(String metadata) {
+        ArrayList<String> data = new ArrayList<>();
+        int start = 0;
+        for (int i = 0; i <= metadata.length(); i++) {
+            if (i == metadata.length() || metadata.charAt(i) == ',') {
+                data.add(metadata.substring(start, i).trim());
+                start = i + 1;
+            }
+        }
+        while (!data.isEmpty() && data.get(data.size() - 1).isEmpty())
+            data.remove(data.size() - 1);
+        return data.toArray(new String[data.size()]);
+    }
 }
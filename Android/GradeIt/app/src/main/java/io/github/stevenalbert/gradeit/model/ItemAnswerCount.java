@@ -0,0 +1,21 @@
+package io.github.stevenalbert.gradeit.model;
+
+import android.arch.persistence.room.ColumnInfo;
+
+/**
+ * Number of answer sheets with the chosen options on the number
+ */
+public class ItemAnswerCount {
+    @ColumnInfo(name = "number")
+    public int number;
+    @ColumnInfo(name = "chosen_mask")
+    public int chosenMask;
+    @ColumnInfo(name = "count")
+    public int count;
+
+    public ItemAnswerCount(int number, int chosenMask, int count) {
+        this.number = number;
+        this.chosenMask = chosenMask;
+        this.count = count;
+    }
+}
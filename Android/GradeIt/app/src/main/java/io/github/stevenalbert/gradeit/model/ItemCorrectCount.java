@@ -0,0 +1,21 @@
+package io.github.stevenalbert.gradeit.model;
+
+import android.arch.persistence.room.ColumnInfo;
+
+/**
+ * Number of answer sheets correct on the number and the sum of their scores
+ */
+public class ItemCorrectCount {
+    @ColumnInfo(name = "number")
+    public int number;
+    @ColumnInfo(name = "count")
+    public int count;
+    @ColumnInfo(name = "score_sum")
+    public long scoreSum;
+
+    public ItemCorrectCount(int number, int count, long scoreSum) {
+        this.number = number;
+        this.count = count;
+        this.scoreSum = scoreSum;
+    }
+}
@@ -0,0 +1,18 @@
+package io.github.stevenalbert.gradeit.model;
+
+import android.arch.persistence.room.ColumnInfo;
+
+/**
+ * Number of answer sheets with the score
+ */
+public class ScoreCount {
+    @ColumnInfo(name = "score")
+    public int score;
+    @ColumnInfo(name = "count")
+    public int count;
+
+    public ScoreCount(int score, int count) {
+        this.score = score;
+        this.count = count;
+    }
+}
@@ -0,0 +1,71 @@
+package io.github.stevenalbert.gradeit.process;
+
+import com.itextpdf.text.Document;
+import com.itextpdf.text.DocumentException;
+import com.itextpdf.text.Element;
+import com.itextpdf.text.Font;
+import com.itextpdf.text.PageSize;
+import com.itextpdf.text.Phrase;
+import com.itextpdf.text.pdf.PdfPCell;
+import com.itextpdf.text.pdf.PdfPTable;
+import com.itextpdf.text.pdf.PdfWriter;
+
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Writes the {@link AnalysisSummary} as a PDF table. The table is a large element,
+ * the rows added are written to the document every {@link #FLUSH_ROWS} rows and
+ * dropped from the table, so only the header and the rows of the last part are in
+ * memory however many answer sheets there are.
+ */
+public class AnalysisPdfWriter {
+
+    private static final int FLUSH_ROWS = 50;
+    private static final float FONT_SIZE = 7;
+    private static final float CELL_HEIGHT = 25;
+
+    public static void write(AnalysisSummary summary, OutputStream outputStream) throws DocumentException {
+        Document document = new Document(PageSize.A3.rotate());
+        PdfWriter.getInstance(document, outputStream);
+        document.open();
+
+        Font font = new Font(Font.FontFamily.TIMES_ROMAN, FONT_SIZE);
+
+        int columnCount = summary.getColumnCount();
+        int[] columnWidths = new int[columnCount];
+        Arrays.fill(columnWidths, 1);
+        columnWidths[0] = columnWidths[1] = columnWidths[columnCount - 1] = 2;
+
+        PdfPTable table = new PdfPTable(columnCount);
+        table.setWidths(columnWidths);
+        table.setHeaderRows(AnalysisSummary.HEADER_ROWS);
+        table.setComplete(false);
+
+        // Every cell is made from the default cell
+        PdfPCell defaultCell = table.getDefaultCell();
+        defaultCell.setFixedHeight(CELL_HEIGHT);
+        defaultCell.setHorizontalAlignment(Element.ALIGN_CENTER);
+        defaultCell.setVerticalAlignment(Element.ALIGN_MIDDLE);
+
+        int rowCount = summary.getRowCount();
+        for(int row = 0; row < rowCount; row++) {
+            int rowColumnCount = summary.getColumnCount(row);
+            // An empty row is one empty cell, as an empty line of the CSV
+            if(rowColumnCount == 0)
+                table.addCell(new Phrase("", font));
+            for(int column = 0; column < rowColumnCount; column++) {
+                table.addCell(new Phrase(summary.getCell(row, column), font));
+            }
+            table.completeRow();
+
+            // The header rows are kept in the table and repeated on every page
+            if(row >= AnalysisSummary.HEADER_ROWS && (row + 1) % FLUSH_ROWS == 0)
+                document.add(table);
+        }
+
+        table.setComplete(true);
+        document.add(table);
+        document.close();
+    }
+}
@@ -0,0 +1,289 @@
+package io.github.stevenalbert.gradeit.process;
+
+import java.text.DecimalFormatSymbols;
+import java.util.List;
+import java.util.Locale;
+
+import io.github.stevenalbert.gradeit.model.AnswerKey;
+import io.github.stevenalbert.gradeit.model.AnswerKeyConverter;
+import io.github.stevenalbert.gradeit.model.AnswerSheet;
+import io.github.stevenalbert.gradeit.model.AnswerSheetConverter;
+import io.github.stevenalbert.gradeit.model.Option;
+
+/**
+ * Analysis of the answer sheets of one MCode. The answers and results of the answer
+ * sheets and the statistics of every number are kept in arrays, the cells of the
+ * table are given from them when asked for, so a view showing a part of the table
+ * or a writer going through it a row at a time does not make the whole table.
+ * <p>
+ * The rows of the table are the header, the answer key, one row per answer sheet,
+ * validity, difficulty level, two empty rows, reliability, an empty row and the
+ * total of every option. The columns are MCode, ExCode, the numbers and Result.
+ */
+public class AnalysisSummary {
+
+    // Header and answer key
+    public static final int HEADER_ROWS = 2;
+    // MCode and ExCode
+    public static final int FIXED_COLUMNS = 2;
+
+    private static final Option[] OPTIONS = Option.values();
+    // Text of the chosen options by their bits
+    private static final String[] ANSWER_CELLS = new String[1 << OPTIONS.length];
+    private static final String[] OPTION_TOTAL_CELLS = new String[OPTIONS.length];
+    private static final String EMPTY_CELL = "";
+    private static final String NO_VALUE_CELL = "---";
+
+    static {
+        for(int bits = 0; bits < ANSWER_CELLS.length; bits++) {
+            ANSWER_CELLS[bits] = AnswerSheetConverter.bitsToString(bits);
+        }
+        for(Option option : OPTIONS) {
+            OPTION_TOTAL_CELLS[option.ordinal()] = "Total " + option.getOption();
+        }
+    }
+
+    private final int mCode;
+    private final int totalNumber;
+    private final int answerSheetCount;
+
+    // Per answer sheet, the answers are totalNumber per answer sheet
+    private final int[] exCodes;
+    private final int[] results;
+    private final byte[] answerBits;
+
+    // Per number, the option counts are OPTIONS.length per number
+    private final double[] validity;
+    private final double[] difficultyLevel;
+    private final int[] optionCounts;
+    private final double reliability;
+
+    // Text of the cells not made from the answers
+    private final String mCodeCell;
+    private final String[] keyCells;
+    private final String[] numberCells;
+    private final String[] exCodeCells;
+    private final String[] resultCells;
+    private final String[] validityCells;
+    private final String[] difficultyLevelCells;
+    private final String[] optionCountCells;
+    private final String reliabilityCell;
+    private final int longestAnswer;
+
+    AnalysisSummary(List<AnswerSheet> answerSheets, AnswerKey answerKey, ItemStatistics statistics) {
+        final char decimalSeparator = DecimalFormatSymbols.getInstance(Locale.getDefault()).getDecimalSeparator();
+
+        this.mCode = answerKey.getMCode();
+        this.totalNumber = answerKey.getTotalNumber();
+        this.answerSheetCount = answerSheets.size();
+        this.mCodeCell = answerKey.getMCodeString();
+
+        String optionsString = AnswerKeyConverter.optionsToString(answerKey.getAnswerKeys());
+        keyCells = new String[totalNumber];
+        numberCells = new String[totalNumber];
+        for(int i = 0; i < totalNumber; i++) {
+            keyCells[i] = String.valueOf(optionsString.charAt(i));
+            numberCells[i] = String.valueOf(i + 1);
+        }
+
+        exCodes = new int[answerSheetCount];
+        results = new int[answerSheetCount];
+        answerBits = new byte[answerSheetCount * totalNumber];
+        exCodeCells = new String[answerSheetCount];
+        resultCells = new String[answerSheetCount];
+        int longestAnswer = 0;
+        for(int sheet = 0; sheet < answerSheetCount; sheet++) {
+            AnswerSheet answerSheet = answerSheets.get(sheet);
+            int result = 0;
+            for(int number = 1; number <= totalNumber; number++) {
+                int bits = answerSheet.getAnswers().getBits(number - 1);
+                answerBits[sheet * totalNumber + number - 1] = (byte) bits;
+                longestAnswer = Math.max(longestAnswer, Integer.bitCount(bits));
+                result += answerSheet.isAnswerTrue(number) ? 1 : 0;
+            }
+            exCodes[sheet] = answerSheet.getExCode();
+            results[sheet] = result;
+            exCodeCells[sheet] = answerSheet.getExCodeString();
+            resultCells[sheet] = String.valueOf(result);
+        }
+        this.longestAnswer = longestAnswer;
+
+        validity = new double[totalNumber];
+        difficultyLevel = new double[totalNumber];
+        optionCounts = new int[totalNumber * OPTIONS.length];
+        validityCells = new String[totalNumber];
+        difficultyLevelCells = new String[totalNumber];
+        optionCountCells = new String[totalNumber * OPTIONS.length];
+        for(int number = 1; number <= totalNumber; number++) {
+            validity[number - 1] = statistics.getValidity(number);
+            difficultyLevel[number - 1] = statistics.getDifficultyLevel(number);
+            validityCells[number - 1] = Double.isNaN(validity[number - 1]) ? NO_VALUE_CELL :
+                    AnalysisProcess.formatDecimal(validity[number - 1], decimalSeparator);
+            difficultyLevelCells[number - 1] = AnalysisProcess.formatDecimal(difficultyLevel[number - 1], decimalSeparator);
+            for(Option option : OPTIONS) {
+                int index = (number - 1) * OPTIONS.length + option.ordinal();
+                optionCounts[index] = statistics.getOptionCount(number, option);
+                optionCountCells[index] = String.valueOf(optionCounts[index]);
+            }
+        }
+        reliability = statistics.getReliability(totalNumber);
+        reliabilityCell = AnalysisProcess.formatDecimal(reliability, decimalSeparator);
+    }
+
+    public int getMCode() {
+        return mCode;
+    }
+
+    public int getTotalNumber() {
+        return totalNumber;
+    }
+
+    public int getAnswerSheetCount() {
+        return answerSheetCount;
+    }
+
+    /**
+     * @param sheet
+     *            - index of the answer sheet, starts from 0
+     */
+    public int getExCode(int sheet) {
+        return exCodes[sheet];
+    }
+
+    public int getResult(int sheet) {
+        return results[sheet];
+    }
+
+    /**
+     * @param number
+     *            - number starts from 1
+     * @return chosen options as bits
+     */
+    public int getAnswerBits(int sheet, int number) {
+        return answerBits[sheet * totalNumber + number - 1] & 0xFF;
+    }
+
+    public double getValidity(int number) {
+        return validity[number - 1];
+    }
+
+    public double getDifficultyLevel(int number) {
+        return difficultyLevel[number - 1];
+    }
+
+    public int getOptionCount(int number, Option option) {
+        return optionCounts[(number - 1) * OPTIONS.length + option.ordinal()];
+    }
+
+    public double getReliability() {
+        return reliability;
+    }
+
+    public int getRowCount() {
+        return optionRow() + OPTIONS.length;
+    }
+
+    /**
+     * @return number of columns of the widest rows
+     */
+    public int getColumnCount() {
+        // MCode, ExCode, the numbers and Result
+        return FIXED_COLUMNS + totalNumber + 1;
+    }
+
+    /**
+     * @return number of cells of the row, the rows are not all as wide
+     */
+    public int getColumnCount(int row) {
+        if(row == difficultyLevelRow()) return FIXED_COLUMNS + totalNumber;
+        if(row == reliabilityRow()) return 3;
+        if(row > difficultyLevelRow() && row < optionRow()) return 0;
+        return getColumnCount();
+    }
+
+    /**
+     * @return text of the cell, empty outside of the row
+     */
+    public String getCell(int row, int column) {
+        if(row < 0 || row >= getRowCount() || column < 0 || column >= getColumnCount(row))
+            return EMPTY_CELL;
+
+        int resultColumn = FIXED_COLUMNS + totalNumber;
+        int index = column - FIXED_COLUMNS;
+        if(row == 0) {
+            if(column == 0) return "MCode";
+            if(column == 1) return "ExCode";
+            return column == resultColumn ? "Result" : numberCells[index];
+        }
+        if(row == 1) {
+            if(column == 0) return mCodeCell;
+            if(column == 1) return "000";
+            return column == resultColumn ? "KEY" : keyCells[index];
+        }
+        if(row < validityRow()) {
+            int sheet = row - HEADER_ROWS;
+            if(column == 0) return mCodeCell;
+            if(column == 1) return exCodeCells[sheet];
+            return column == resultColumn ? resultCells[sheet] : ANSWER_CELLS[answerBits[sheet * totalNumber + index] & 0xFF];
+        }
+        if(row == validityRow()) {
+            if(column == 0 || column == resultColumn) return EMPTY_CELL;
+            return column == 1 ? "Validity score" : validityCells[index];
+        }
+        if(row == difficultyLevelRow()) {
+            if(column == 0) return EMPTY_CELL;
+            return column == 1 ? "Difficulty level" : difficultyLevelCells[index];
+        }
+        if(row == reliabilityRow()) {
+            if(column == 0) return EMPTY_CELL;
+            return column == 1 ? "Reliability score" : reliabilityCell;
+        }
+        Option option = OPTIONS[row - optionRow()];
+        if(column == 0 || column == resultColumn) return EMPTY_CELL;
+        return column == 1 ? OPTION_TOTAL_CELLS[option.ordinal()] : optionCountCells[index * OPTIONS.length + option.ordinal()];
+    }
+
+    /**
+     * @return the longest text of the column, so the column can be sized without
+     *         going through every cell
+     */
+    public String getLongestCell(int column) {
+        String longest = EMPTY_CELL;
+        for(int row = 0; row < HEADER_ROWS; row++) {
+            longest = longer(longest, getCell(row, column));
+        }
+        for(int row = validityRow(); row < getRowCount(); row++) {
+            longest = longer(longest, getCell(row, column));
+        }
+        if(answerSheetCount > 0) {
+            if(column == 1) {
+                longest = longer(longest, exCodeCells[0]);
+            } else if(column == FIXED_COLUMNS + totalNumber) {
+                longest = longer(longest, String.valueOf(totalNumber));
+            } else if(column >= FIXED_COLUMNS && column < FIXED_COLUMNS + totalNumber) {
+                longest = longer(longest, ANSWER_CELLS[(1 << longestAnswer) - 1]);
+            }
+        }
+        return longest;
+    }
+
+    private static String longer(String first, String second) {
+        return second.length() > first.length() ? second : first;
+    }
+
+    private int validityRow() {
+        return HEADER_ROWS + answerSheetCount;
+    }
+
+    private int difficultyLevelRow() {
+        return validityRow() + 1;
+    }
+
+    private int reliabilityRow() {
+        return validityRow() + 4;
+    }
+
+    private int optionRow() {
+        return validityRow() + 6;
+    }
+}
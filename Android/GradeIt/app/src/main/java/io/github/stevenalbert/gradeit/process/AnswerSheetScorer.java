@@ -9,6 +9,7 @@ import org.opencv.core.Point;
 import org.opencv.core.Rect;
 import org.opencv.core.Scalar;
 import org.opencv.core.Size;
+import org.opencv.core.TermCriteria;
 import org.opencv.imgproc.Imgproc;
 
 import java.math.BigDecimal;
@@ -21,17 +22,31 @@ import java.util.Comparator;
 import io.github.stevenalbert.gradeit.model.AnswerKey;
 import io.github.stevenalbert.gradeit.model.AnswerMat;
 import io.github.stevenalbert.gradeit.model.AnswerSheet;
+import io.github.stevenalbert.gradeit.model.AnswerSheetLayout;
 import io.github.stevenalbert.gradeit.model.AnswerSheetMetadata;
 import io.github.stevenalbert.gradeit.model.AnswerSheetMetadata.PaperDimension;
 import io.github.stevenalbert.gradeit.model.AnswerSheetMetadata.Value;
 import io.github.stevenalbert.gradeit.model.Option;
-import io.github.stevenalbert.gradeit.model.label.AnswerLabel;
-import io.github.stevenalbert.gradeit.model.label.AnswerSheetLabel;
-import io.github.stevenalbert.gradeit.model.label.ExCodeLabel;
-import io.github.stevenalbert.gradeit.model.label.MCodeLabel;
 
 public class AnswerSheetScorer {
 
+    // Adaptive Gaussian Thresholding
+    static final int ADAPTIVE_BLOCK_SIZE = 171;
+    static final int ADAPTIVE_C = 6;
+
+    // Maximum pixels of the pyramid level used to find the paper
+    public static final long MAX_DETECTION_PIXELS = 1000000;
+
+    // Corner refinement on the full resolution photo
+    private static final int CORNER_MIN_WIN_SIZE = 5;
+    private static final int CORNER_MAX_ITERATION = 30;
+    private static final double CORNER_EPSILON = 0.01;
+
+    // Feature values this close to the X threshold are counted as ambiguous
+    private static final double AMBIGUOUS_MARGIN = 5.0;
+
+    private static final Option[] OPTIONS = Option.values();
+
     /**
      * Convert answer sheet photo image to processable answer sheet image
      * 
@@ -40,51 +55,171 @@ public class AnswerSheetScorer {
      * @return processable answer sheet image
      */
     public static Mat convertAnswerSheet(Mat src, AnswerSheetMetadata metadata) {
-        // long ttlTime = -System.nanoTime();
+        ScoringContext context = new ScoringContext();
+        try {
+            Mat perspective = convertAnswerSheet(src, metadata, context);
+            return (perspective != null ? perspective.clone() : null);
+        } finally {
+            context.release();
+        }
+    }
+
+    /**
+     * Convert answer sheet photo image to processable answer sheet image using the
+     * scratch Mats of the context
+     *
+     * @param src
+     *            - answer sheet photo image
+     * @param context
+     *            - scoring context of the grading session
+     * @return processable answer sheet image, owned by the context
+     */
+    public static Mat convertAnswerSheet(Mat src, AnswerSheetMetadata metadata, ScoringContext context) {
         // Check whether the argument is valid
         if (src == null) {
             throw new IllegalArgumentException("Argument cannot be null");
         }
 
+        // Native memory is counted from here until the answer sheet is processed
+        context.takeAllocatedBytes();
+
+        // Find the paper on a smaller image when the photo is large
+        if (context.isPyramidDetection() && src.total() > MAX_DETECTION_PIXELS) {
+            return convertAnswerSheetCoarseToFine(src, metadata, context);
+        }
+
         // Declare variables
+        PipelineMetrics metrics = context.getMetrics();
+        long startTime = System.nanoTime();
         int srcRows = src.rows(), srcCols = src.cols();
-        Mat result = new Mat(srcRows, srcCols, CvType.CV_8UC1);
+        Mat result = context.getGray(srcRows, srcCols);
 
         // Turn the photo image to grayscale image
-        if(src.channels() == 4) Imgproc.cvtColor(src, result, Imgproc.COLOR_RGBA2GRAY);
-        else Imgproc.cvtColor(src, result, Imgproc.COLOR_RGB2GRAY);
+        toGray(src, result);
+        startTime = onStage(metrics, PipelineMetrics.Stage.GRAYSCALE, startTime);
 
 		// Normalized Box Blur
 		Imgproc.blur(result, result, new Size(3, 3));
 
         // Adaptive Gaussian Thresholding
-        int blockSize = 171;
-        int C = 6;
+        Imgproc.adaptiveThreshold(result, result, 255, Imgproc.ADAPTIVE_THRESH_GAUSSIAN_C, Imgproc.THRESH_BINARY,
+                ADAPTIVE_BLOCK_SIZE, ADAPTIVE_C);
+        startTime = onStage(metrics, PipelineMetrics.Stage.THRESHOLD, startTime);
+
+        // Find sorted 4 points : top left, top right, bottom right, bottom left
+        Point[] corners = findPaperCorners(result,
+                0.02 * Math.min(metadata.getDimension().height, metadata.getDimension().width), context);
+        startTime = onStage(metrics, PipelineMetrics.Stage.CONTOURS, startTime);
+        if (corners == null) {
+            onCounter(metrics, PipelineMetrics.Counter.NATIVE_BYTES_ALLOCATED, context.takeAllocatedBytes());
+            return null;
+        }
+
+        Mat perspective = context.getPerspective(metadata.getDimension());
+        warpToPaper(result, perspective, corners, metadata.getDimension());
+
+        Imgproc.adaptiveThreshold(perspective, perspective, 255, Imgproc.ADAPTIVE_THRESH_GAUSSIAN_C,
+                Imgproc.THRESH_BINARY, ADAPTIVE_BLOCK_SIZE, ADAPTIVE_C);
+        onStage(metrics, PipelineMetrics.Stage.WARP, startTime);
+
+        return perspective;
+    }
+
+    /**
+     * Convert answer sheet photo image by finding the paper on a level of the image
+     * pyramid with at most MAX_DETECTION_PIXELS pixels. Only the four corners are
+     * refined on the full resolution photo, then the photo is warped and thresholded
+     * on the paper dimension.
+     */
+    private static Mat convertAnswerSheetCoarseToFine(Mat src, AnswerSheetMetadata metadata,
+            ScoringContext context) {
+        PaperDimension dimension = metadata.getDimension();
+        PipelineMetrics metrics = context.getMetrics();
+        long startTime = System.nanoTime();
+
+        // Go down the image pyramid until the image is small enough
+        Mat level = src;
+        int scale = 1, levelIndex = 0;
+        while (level.total() > MAX_DETECTION_PIXELS) {
+            Mat nextLevel = context.getPyramidLevel(levelIndex, (level.rows() + 1) / 2, (level.cols() + 1) / 2,
+                    level.type());
+            levelIndex = 1 - levelIndex;
+            Imgproc.pyrDown(level, nextLevel);
+            level = nextLevel;
+            scale *= 2;
+        }
 
-        // long time = -System.nanoTime();
+        // Same steps as the full resolution detection with the sizes scaled down
+        Mat result = context.getGray(level.rows(), level.cols());
+        toGray(level, result);
+        startTime = onStage(metrics, PipelineMetrics.Stage.GRAYSCALE, startTime);
+        Imgproc.blur(result, result, new Size(3, 3));
+        int blockSize = Math.max(3, (ADAPTIVE_BLOCK_SIZE / scale) | 1);
         Imgproc.adaptiveThreshold(result, result, 255, Imgproc.ADAPTIVE_THRESH_GAUSSIAN_C, Imgproc.THRESH_BINARY,
-                blockSize, C);
-        // time += System.nanoTime();
-        // System.out.println("convert - Adaptive: " + String.format("%.3f", time / 1e9) + "s");
+                blockSize, ADAPTIVE_C);
+        startTime = onStage(metrics, PipelineMetrics.Stage.THRESHOLD, startTime);
+
+        Point[] corners = findPaperCorners(result, 0.02 * Math.min(dimension.height, dimension.width) / scale,
+                context);
+        if (corners == null) {
+            onStage(metrics, PipelineMetrics.Stage.CONTOURS, startTime);
+            onCounter(metrics, PipelineMetrics.Counter.NATIVE_BYTES_ALLOCATED, context.takeAllocatedBytes());
+            return null;
+        }
+
+        // Refine every corner in a small window of the full resolution photo
+        int winSize = Math.max(CORNER_MIN_WIN_SIZE, 2 * scale);
+        for (int i = 0; i < corners.length; i++) {
+            corners[i] = refineCorner(src, new Point(corners[i].x * scale, corners[i].y * scale), winSize, context);
+        }
+        startTime = onStage(metrics, PipelineMetrics.Stage.CONTOURS, startTime);
+
+        // Warp the photo, then threshold it on the paper dimension
+        Mat paperPhoto = context.getPaperPhoto(dimension, src.type());
+        warpToPaper(src, paperPhoto, corners, dimension);
+        Mat perspective = context.getPerspective(dimension);
+        toGray(paperPhoto, perspective);
+        Imgproc.blur(perspective, perspective, new Size(3, 3));
+        Imgproc.adaptiveThreshold(perspective, perspective, 255, Imgproc.ADAPTIVE_THRESH_GAUSSIAN_C,
+                Imgproc.THRESH_BINARY, ADAPTIVE_BLOCK_SIZE, ADAPTIVE_C);
+        onStage(metrics, PipelineMetrics.Stage.WARP, startTime);
+
+        return perspective;
+    }
+
+    /**
+     * Find the corners of the paper in the thresholded photo
+     *
+     * @param binary
+     *            - thresholded photo image
+     * @param approxEpsilon
+     *            - accuracy of the contour approximation
+     * @return top left, top right, bottom right and bottom left corners, or null if
+     *         the paper is not found
+     */
+    static Point[] findPaperCorners(Mat binary, double approxEpsilon, ScoringContext context) {
+        int srcRows = binary.rows(), srcCols = binary.cols();
+
         // Find all contour on mat
         ArrayList<MatOfPoint> contours = new ArrayList<>();
-        // time = -System.nanoTime();
-        Mat copyResultForContour = result.clone();
-        Imgproc.findContours(copyResultForContour, contours, new Mat(), Imgproc.RETR_LIST, Imgproc.CHAIN_APPROX_SIMPLE);
-        copyResultForContour.release();
-        // time += System.nanoTime();
-        // System.out.println("convert - Find contours: " + String.format("%.3f", time / 1e9) + "s");
+        Mat copyResultForContour = context.getPhotoContour(srcRows, srcCols);
+        binary.copyTo(copyResultForContour);
+        Imgproc.findContours(copyResultForContour, contours, context.getHierarchy(), Imgproc.RETR_LIST,
+                Imgproc.CHAIN_APPROX_SIMPLE);
+        onCounter(context.getMetrics(), PipelineMetrics.Counter.PAPER_CONTOURS_FOUND, contours.size());
 
         ArrayList<MatOfPoint> squares = new ArrayList<>();
 
         // Test contours
-        // time = -System.nanoTime();
-        MatOfPoint2f approx = new MatOfPoint2f();
+        MatOfPoint2f curve = context.getCurve(), approx = context.getApprox();
+        MatOfPoint approxPoints = context.getApproxPoints();
         for (int i = 0; i < contours.size(); i++) {
             // approximate contour with accuracy proportional
             // to the contour perimeter
-            Imgproc.approxPolyDP(new MatOfPoint2f(contours.get(i).toArray()), approx,
-                    0.02 * Math.min(metadata.getDimension().height, metadata.getDimension().width)
+            contours.get(i).convertTo(curve, CvType.CV_32F);
+            context.addAllocatedBytes(contours.get(i).total() * contours.get(i).elemSize());
+            contours.get(i).release();
+            Imgproc.approxPolyDP(curve, approx, approxEpsilon
                     //Imgproc.arcLength(new MatOfPoint2f(contours.get(i).toArray()), true) * 0.005
                     , true);
 
@@ -92,19 +227,18 @@ public class AnswerSheetScorer {
             // area may be positive or negative - in accordance with the
             // contour orientation
             double area = Math.abs(Imgproc.contourArea(approx));
-            MatOfPoint approxArray = new MatOfPoint(approx.toArray());
-            if (approx.toArray().length == 4 && area > srcCols * srcRows * 2 / 10
-                    && area < srcCols * srcRows * 98 / 100
-                    && Imgproc.isContourConvex(approxArray)) {
-                squares.add(approxArray);
+            if (approx.total() == 4 && area > srcCols * srcRows * 2 / 10
+                    && area < srcCols * srcRows * 98 / 100) {
+                approx.convertTo(approxPoints, CvType.CV_32S);
+                if (Imgproc.isContourConvex(approxPoints)) {
+                    squares.add(new MatOfPoint(approx.toArray()));
+                }
             }
         }
-        // time += System.nanoTime();
-        // System.out.println("convert - Filter contours: " + String.format("%.3f", time / 1e9) + "s");
+        contours.clear();
 
         double maxArea = -1, secondMaxArea = -1;
         int maxIdx = -1, secondMaxIdx = -1;
-        // time = -System.nanoTime();
         for (int j = 0; j < squares.size(); j++) {
             Rect rect = Imgproc.boundingRect(squares.get(j));
             double area = rect.area();
@@ -118,8 +252,6 @@ public class AnswerSheetScorer {
                 secondMaxIdx = j;
             }
         }
-        // time += System.nanoTime();
-        // System.out.println("convert - Find 2nd max area: " + String.format("%.3f", time / 1e9) + "s");
 
         if (secondMaxIdx < 0 && maxIdx < 0)
             return null;
@@ -128,6 +260,9 @@ public class AnswerSheetScorer {
 
         // Find sorted 4 points : top left, top right, bottom right, bottom left
         Point[] points = squares.get(idx).toArray();
+        for (MatOfPoint square : squares) {
+            square.release();
+        }
         Point topLeftPoint, topRightPoint, bottomRightPoint, bottomLeftPoint;
         // Find the most top and second most top
         int mostTopIdx = -1, secondMostTopIdx = -1;
@@ -167,28 +302,65 @@ public class AnswerSheetScorer {
 
         assert topLeftPoint != null && topRightPoint != null && bottomLeftPoint != null && bottomRightPoint != null;
 
-        int perspectiveWidth, perspectiveHeight;
-        perspectiveHeight = metadata.getDimension().height;
-        perspectiveWidth = metadata.getDimension().width;
+        return new Point[] { topLeftPoint, topRightPoint, bottomRightPoint, bottomLeftPoint };
+    }
 
-        // time = -System.nanoTime();
-        Mat perspective = new Mat(perspectiveHeight, perspectiveWidth, src.type());
-        MatOfPoint2f srcPoints = new MatOfPoint2f(topLeftPoint, topRightPoint, bottomRightPoint, bottomLeftPoint);
-        MatOfPoint2f dst = new MatOfPoint2f(new Point(0, 0), new Point(perspectiveWidth - 1, 0),
-                new Point(perspectiveWidth - 1, perspectiveHeight - 1), new Point(0, perspectiveHeight - 1));
+    /**
+     * Refine a corner found on a smaller pyramid level in a small window around it
+     *
+     * @param src
+     *            - full resolution photo image
+     * @param corner
+     *            - corner scaled to the full resolution
+     * @param winSize
+     *            - half of the side length of the search window
+     * @return refined corner
+     */
+    private static Point refineCorner(Mat src, Point corner, int winSize, ScoringContext context) {
+        // Take a window big enough for the search window to move around the corner
+        int margin = 2 * winSize + 1;
+        int left = Math.max(0, (int) corner.x - margin), top = Math.max(0, (int) corner.y - margin);
+        int right = Math.min(src.cols(), (int) corner.x + margin + 1);
+        int bottom = Math.min(src.rows(), (int) corner.y + margin + 1);
+        if (right - left <= 2 * winSize + 5 || bottom - top <= 2 * winSize + 5)
+            return corner;
+
+        Mat window = src.submat(top, bottom, left, right);
+        Mat grayWindow = context.getCornerWindow();
+        toGray(window, grayWindow);
+        window.release();
+
+        MatOfPoint2f refined = context.getCorner();
+        refined.fromArray(new Point(corner.x - left, corner.y - top));
+        Imgproc.cornerSubPix(grayWindow, refined, new Size(winSize, winSize), new Size(-1, -1),
+                new TermCriteria(TermCriteria.EPS + TermCriteria.COUNT, CORNER_MAX_ITERATION, CORNER_EPSILON));
+        Point result = refined.toArray()[0];
+        result.x += left;
+        result.y += top;
+
+        return result;
+    }
 
-        Mat transform = Imgproc.getPerspectiveTransform(srcPoints, dst);
-        Imgproc.warpPerspective(result, perspective, transform, new Size(perspectiveWidth, perspectiveHeight));
-        // time += System.nanoTime();
-        // System.out.println("convert - Perspective transform: " + String.format("%.3f", time / 1e9) + "s");
+    private static void warpToPaper(Mat src, Mat dst, Point[] corners, PaperDimension dimension) {
+        warpToPaper(src, dst, corners, dimension.width, dimension.height);
+    }
 
-        Imgproc.adaptiveThreshold(perspective, perspective, 255, Imgproc.ADAPTIVE_THRESH_GAUSSIAN_C,
-                Imgproc.THRESH_BINARY, blockSize, C);
+    static void warpToPaper(Mat src, Mat dst, Point[] corners, int perspectiveWidth, int perspectiveHeight) {
+        MatOfPoint2f srcPoints = new MatOfPoint2f(corners);
+        MatOfPoint2f dstPoints = new MatOfPoint2f(new Point(0, 0), new Point(perspectiveWidth - 1, 0),
+                new Point(perspectiveWidth - 1, perspectiveHeight - 1), new Point(0, perspectiveHeight - 1));
 
-        // ttlTime += System.nanoTime();
-        // System.out.println("convert - Total time: " + String.format("%.3f", ttlTime / 1e9) + "s");
+        Mat transform = Imgproc.getPerspectiveTransform(srcPoints, dstPoints);
+        Imgproc.warpPerspective(src, dst, transform, new Size(perspectiveWidth, perspectiveHeight));
+        transform.release();
+        srcPoints.release();
+        dstPoints.release();
+    }
 
-        return perspective;
+    static void toGray(Mat src, Mat dst) {
+        if (src.channels() == 4) Imgproc.cvtColor(src, dst, Imgproc.COLOR_RGBA2GRAY);
+        else if (src.channels() == 3) Imgproc.cvtColor(src, dst, Imgproc.COLOR_RGB2GRAY);
+        else src.copyTo(dst);
     }
 
     /**
@@ -199,6 +371,28 @@ public class AnswerSheetScorer {
      * @return answerMats
      */
     public static ArrayList<AnswerMat> processAnswerSheet(Mat src, Mat outputDraw, AnswerSheetMetadata metadata) throws Exception {
+        ScoringContext context = new ScoringContext();
+        try {
+            return processAnswerSheet(src, outputDraw, metadata, context, null);
+        } finally {
+            context.release();
+        }
+    }
+
+    /**
+     * Process converted answer sheet image to get identity and all the answers. The
+     * cells are found and cropped on the worker pool when it is given
+     *
+     * @param src
+     *            - converted answer sheet image
+     * @param context
+     *            - scoring context of the grading session
+     * @param pool
+     *            - worker pool, or null to process on the calling thread
+     * @return answerMats
+     */
+    public static ArrayList<AnswerMat> processAnswerSheet(final Mat src, Mat outputDraw, AnswerSheetMetadata metadata,
+            ScoringContext context, CellWorkerPool pool) throws Exception {
         // Check whether the argument is valid
         if (src == null)
             throw new Exception("Paper not found");
@@ -207,45 +401,59 @@ public class AnswerSheetScorer {
         if(outputDraw.rows() != src.rows() || outputDraw.cols() != src.cols() || outputDraw.channels() != 3) {
             throw new IllegalArgumentException("Argument outputDraw must have the same rows and cols as src with 3 channels");
         }
+        PipelineMetrics metrics = context.getMetrics();
+        long startTime = System.nanoTime();
         Imgproc.cvtColor(src, outputDraw, Imgproc.COLOR_GRAY2BGR);
 
         // Find all contours
         ArrayList<MatOfPoint> contours = new ArrayList<>();
-        Mat copyForContour = src.clone();
-        Imgproc.findContours(copyForContour, contours, new Mat(), Imgproc.RETR_LIST, Imgproc.CHAIN_APPROX_SIMPLE);
-        copyForContour.release();
+        Mat copyForContour = context.getPaperContour(src.rows(), src.cols());
+        src.copyTo(copyForContour);
+        Imgproc.findContours(copyForContour, contours, context.getHierarchy(), Imgproc.RETR_LIST,
+                Imgproc.CHAIN_APPROX_SIMPLE);
+        onCounter(metrics, PipelineMetrics.Counter.CONTOURS_FOUND, contours.size());
 
         // Find the fit squares
-        ArrayList<MatOfPoint> squares = new ArrayList<>();
-        MatOfPoint2f approx = new MatOfPoint2f();
+        ArrayList<Rect> squares = new ArrayList<>();
+        MatOfPoint2f point2f = context.getCurve(), approx = context.getApprox();
+        MatOfPoint approxPoints = context.getApproxPoints();
         int area = metadata.getDimension().squareHeight * metadata.getDimension().squareWidth;
         for (int i = 0; i < contours.size(); i++) {
             // approximate contour with accuracy proportional
             // to the contour perimeter
-            MatOfPoint2f point2f = new MatOfPoint2f(contours.get(i).toArray());
+            contours.get(i).convertTo(point2f, CvType.CV_32F);
+            context.addAllocatedBytes(contours.get(i).total() * contours.get(i).elemSize());
+            contours.get(i).release();
             Imgproc.approxPolyDP(point2f, approx,
                     Imgproc.arcLength(point2f, true) * 0.08, true);
 
-            MatOfPoint approxArray = new MatOfPoint(approx.toArray());
-            if (approx.toArray().length == 4 && Math.abs(Imgproc.contourArea(approx)) > area
-                    && Imgproc.isContourConvex(approxArray)) {
-                squares.add(approxArray);
+            if (approx.total() == 4 && Math.abs(Imgproc.contourArea(approx)) > area) {
+                approx.convertTo(approxPoints, CvType.CV_32S);
+                if (Imgproc.isContourConvex(approxPoints)) {
+                    squares.add(Imgproc.boundingRect(approxPoints));
+                }
             }
         }
+        contours.clear();
+
+        // Count black pixels of the whole sheet once
+        final BlackPixelIntegral blackPixel = new BlackPixelIntegral(src);
 
         // Filter the black squares only
         ArrayList<Rect> blackSquaresRect = new ArrayList<>();
         for (int i = 0; i < squares.size(); i++) {
             // Calculate non zero color
-            Rect rect = Imgproc.boundingRect(squares.get(i));
-            int nonZero = Core.countNonZero(src.submat(rect));
+            Rect rect = squares.get(i);
             int total = rect.height * rect.width;
+            int nonZero = total - blackPixel.count(rect);
             double percentage = 1.0 - ((double) nonZero) / ((double) total);
             if (percentage > 0.8) {
                 blackSquaresRect.add(rect);
             }
         }
 
+        onCounter(metrics, PipelineMetrics.Counter.BLACK_SQUARES_ACCEPTED, blackSquaresRect.size());
+
         for(Rect rect : blackSquaresRect) {
             drawContour(outputDraw, rect, new Scalar(255, 0, 0), 2);
         }
@@ -313,71 +521,125 @@ public class AnswerSheetScorer {
         }
         averageWidth = averageWidth / horizontalSquares.size() + (averageWidth % horizontalSquares.size() * 2 >= horizontalSquares.size() ? 1 : 0);
 //        averageWidth = averageWidth * 96 / 100;
-
-        ArrayList<AnswerMat> answerMats = new ArrayList<>();
-        // Get all rectangles using meta data
-        for (int i = 0; i < metadata.getValueLength(); i++) {
-            answerMats.addAll(findAllRect(src, outputDraw, verticalSquares, horizontalSquares, metadata.getValue(i),
-                    averageWidth, averageHeight, metadata.getDimension()));
+        startTime = onStage(metrics, PipelineMetrics.Stage.ANCHOR_SEARCH, startTime);
+
+        // Place the rows and columns of every block of the compiled layout on the anchors
+        final AnswerSheetLayout layout = metadata.getLayout();
+        final double[] rowCenters = new double[layout.getRowCenterCount()];
+        final double[] columnCenters = new double[layout.getColumnCenterCount()];
+        for (int i = 0; i < layout.getBlockCount(); i++) {
+            findBlockCenters(verticalSquares, horizontalSquares, layout, i, rowCenters, columnCenters);
         }
 
-        // Filter Noise AnswerMat
-        for (AnswerMat answerMat : answerMats) {
-            Scalar blackScalar = new Scalar(0);
-//            drawContour(answerMat, new Rect(0, 0, answerMat.cols(), answerMat.rows()), blackScalar, 2);
-            ArrayList<MatOfPoint> answerMatContours = new ArrayList<>(), filledContours = new ArrayList<>();
-            Mat copyAnswerMat = answerMat.clone();
-            Imgproc.findContours(copyAnswerMat, answerMatContours, new Mat(), Imgproc.RETR_LIST,
-                    Imgproc.CHAIN_APPROX_SIMPLE);
-            copyAnswerMat.release();
-            for (MatOfPoint contour : answerMatContours) {
-                Rect contourRect = Imgproc.boundingRect(contour);
-                if (contourRect.area() < area / 25) {
-                    filledContours.add(contour);
+        // Find, crop and filter noise of every cell, each range of cells may run on other thread
+        final AnswerMat[] cellMats = new AnswerMat[layout.getCellCount()];
+        final Rect[] cellRects = new Rect[layout.getCellCount()];
+        final int width = averageWidth, height = averageHeight, noiseArea = area / 25;
+        final PaperDimension dimension = metadata.getDimension();
+        CellWorkerPool.run(pool, cellMats.length, new CellWorkerPool.CellTask() {
+            @Override
+            public void run(int start, int end) {
+                for (int i = start; i < end; i++) {
+                    int x = (int) Math.round(columnCenters[layout.getCellColumnCenterIndex(i)]);
+                    int y = (int) Math.round(rowCenters[layout.getCellRowCenterIndex(i)]);
+                    cellRects[i] = findSquareFromCenter(blackPixel, x, y, width, height, dimension);
+                    Mat cell = src.submat(cellRects[i]);
+                    cellMats[i] = new AnswerMat(cell, layout.getCellLabel(i), layout.getCellLabelCode(i));
+                    cell.release();
+                    filterNoise(cellMats[i], noiseArea);
                 }
             }
-            Imgproc.drawContours(answerMat, filledContours, -1, blackScalar, Core.FILLED);
-            answerMatContours.clear();
-            filledContours.clear();
+        });
+
+        for (Rect rect : cellRects) {
+            drawContour(outputDraw, rect, new Scalar(0, 255, 0), 2);
+        }
+        onStage(metrics, PipelineMetrics.Stage.CELL_LOCATE, startTime);
+
+        if (metrics != null) {
+            for (AnswerMat cellMat : cellMats) {
+                context.addAllocatedBytes(cellMat.total() * cellMat.elemSize());
+            }
+            onCounter(metrics, PipelineMetrics.Counter.NATIVE_BYTES_ALLOCATED, context.takeAllocatedBytes());
         }
 
-        // End draw
-        Collections.sort(answerMats);
-        return answerMats;
+        // End draw, the cells of the layout are already sorted by label
+        return new ArrayList<>(Arrays.asList(cellMats));
     }
 
     public static AnswerSheet recognizeAnswerSheet(ArrayList<AnswerMat> answerMats) {
+        return recognizeAnswerSheet(answerMats, null, null);
+    }
+
+    public static AnswerSheet recognizeAnswerSheet(ArrayList<AnswerMat> answerMats, CellWorkerPool pool) {
+        return recognizeAnswerSheet(answerMats, pool, null);
+    }
+
+    /**
+     * Recognize all cells, the feature of every range of cells is computed on the
+     * worker pool when it is given
+     *
+     * @param answerMats
+     *            - cells from processAnswerSheet
+     * @param pool
+     *            - worker pool, or null to recognize on the calling thread
+     * @param metrics
+     *            - listener of the recognition time and ambiguous cells, or null
+     * @return recognized answer sheet
+     */
+    public static AnswerSheet recognizeAnswerSheet(final ArrayList<AnswerMat> answerMats, CellWorkerPool pool,
+            PipelineMetrics metrics) {
+        long startTime = System.nanoTime();
         int totalAnswer = 0;
         for (AnswerMat answerMat : answerMats) {
-            if (answerMat.getLabel() instanceof AnswerLabel) {
-                totalAnswer = Math.max(totalAnswer, ((AnswerLabel) answerMat.getLabel()).getNumber());
+            int labelCode = answerMat.getLabelCode();
+            if (AnswerSheetLayout.getKind(labelCode) == AnswerSheetLayout.KIND_ANSWER) {
+                totalAnswer = Math.max(totalAnswer, AnswerSheetLayout.getPrimary(labelCode));
             }
         }
         AnswerSheet answerSheet = new AnswerSheet(totalAnswer);
         StringBuilder mCode = new StringBuilder("999");
         StringBuilder exCode = new StringBuilder("999");
 
-        for (AnswerMat answerMat : answerMats) {
-            int value = (int) FeatureExtractor.getFeatureX(answerMat);
+        final int[] values = new int[answerMats.size()];
+        CellWorkerPool.run(pool, values.length, new CellWorkerPool.CellTask() {
+            @Override
+            public void run(int start, int end) {
+                XFeatureKernel featureKernel = new XFeatureKernel();
+                for (int i = start; i < end; i++) {
+                    values[i] = (int) featureKernel.getFeatureX(answerMats.get(i));
+                }
+            }
+        });
+
+        int ambiguousCells = 0;
+        for (int i = 0; i < answerMats.size(); i++) {
+            AnswerMat answerMat = answerMats.get(i);
+            int value = values[i];
             double zVal = BigDecimal.valueOf((double) value).round(new MathContext(3)).doubleValue();
             final double zThreshold = 15.0;
             boolean isX = (zVal >= zThreshold);
-
-            AnswerSheetLabel label = answerMat.getLabel();
-            if (label instanceof AnswerLabel) {
-                AnswerLabel answerLabel = (AnswerLabel) label;
-                // Set true if the X is recognized, otherwise false.
-                answerSheet.setAnswerOn(answerLabel.getNumber(), answerLabel.getOption(), isX);
-            } else if (label instanceof ExCodeLabel) {
-                ExCodeLabel exCodeLabel = (ExCodeLabel) label;
-                // Change the value if it recognized as X
-                if (isX)
-                    exCode.setCharAt(exCodeLabel.getColumnNumber(), (char) (exCodeLabel.getValue() + '0'));
-            } else if (label instanceof MCodeLabel) {
-                MCodeLabel mCodeLabel = (MCodeLabel) label;
-                // Change the value if it recognized as X
-                if (isX)
-                    mCode.setCharAt(mCodeLabel.getColumnNumber(), (char) (mCodeLabel.getValue() + '0'));
+            if (Math.abs(zVal - zThreshold) < AMBIGUOUS_MARGIN)
+                ambiguousCells++;
+
+            int labelCode = answerMat.getLabelCode();
+            int primary = AnswerSheetLayout.getPrimary(labelCode);
+            int secondary = AnswerSheetLayout.getSecondary(labelCode);
+            switch (AnswerSheetLayout.getKind(labelCode)) {
+                case AnswerSheetLayout.KIND_ANSWER:
+                    // Set true if the X is recognized, otherwise false.
+                    answerSheet.setAnswerOn(primary, OPTIONS[secondary], isX);
+                    break;
+                case AnswerSheetLayout.KIND_EX_CODE:
+                    // Change the value if it recognized as X
+                    if (isX)
+                        exCode.setCharAt(primary, (char) (secondary + '0'));
+                    break;
+                case AnswerSheetLayout.KIND_M_CODE:
+                    // Change the value if it recognized as X
+                    if (isX)
+                        mCode.setCharAt(primary, (char) (secondary + '0'));
+                    break;
             }
         }
 
@@ -385,60 +647,54 @@ public class AnswerSheetScorer {
         answerSheet.setExCode(exCode.toString());
         answerSheet.setMCode(mCode.toString());
 
+        onStage(metrics, PipelineMetrics.Stage.RECOGNIZE, startTime);
+        onCounter(metrics, PipelineMetrics.Counter.AMBIGUOUS_CELLS, ambiguousCells);
+
         return answerSheet;
     }
 
     public static void scoreAnswerSheet(AnswerSheet answerSheet, AnswerKey answerKey) {
-        answerSheet.scoreAnswerSheet(answerKey);
+        scoreAnswerSheet(answerSheet, answerKey, null);
     }
 
-    private static ArrayList<AnswerMat> findAllRect(Mat src, Mat outputDraw, ArrayList<Rect> vertical,
-            ArrayList<Rect> horizontal, Value metadataValue, int width, int height, PaperDimension paperDimension) {
-        return findAllRect(src, outputDraw, vertical.get(metadataValue.startVerticalIndex),
-                vertical.get(metadataValue.endVerticalIndex), horizontal.get(metadataValue.startHorizontalIndex),
-                horizontal.get(metadataValue.endHorizontalIndex), metadataValue.rowCount, metadataValue.columnCount,
-                width, height, metadataValue.label, metadataValue.startRowInteger, metadataValue.startColumnChar,
-                paperDimension);
+    /**
+     * @param metrics
+     *            - listener of the scoring time, or null
+     */
+    public static void scoreAnswerSheet(AnswerSheet answerSheet, AnswerKey answerKey, PipelineMetrics metrics) {
+        long startTime = System.nanoTime();
+        answerSheet.scoreAnswerSheet(answerKey);
+        onStage(metrics, PipelineMetrics.Stage.SCORE, startTime);
     }
 
-    private static ArrayList<AnswerMat> findAllRect(Mat src, Mat outputDraw, Rect firstVerticalRect,
-            Rect secondVerticalRect, Rect firstHorizontalRect, Rect secondHorizontalRect, int numberOfRows,
-            int numberOfCols, int averageWidth, int averageHeight, String firstname, int firstExt, int secondExt,
-            PaperDimension paperDimension) {
-        ArrayList<AnswerMat> answerMats = new ArrayList<>();
-        Point centerStartVerticalPoint = getCenter(firstVerticalRect);
-        Point centerEndVerticalPoint = getCenter(secondVerticalRect);
-        Point centerStartHorizontalPoint = getCenter(firstHorizontalRect);
-        Point centerEndHorizontalPoint = getCenter(secondHorizontalRect);
+    /**
+     * Compute the center of every row and column of one block of the layout from
+     * its anchors
+     */
+    private static void findBlockCenters(ArrayList<Rect> vertical, ArrayList<Rect> horizontal,
+            AnswerSheetLayout layout, int block, double[] rowCenters, double[] columnCenters) {
+        Value metadataValue = layout.getBlock(block);
+        Point centerStartVerticalPoint = getCenter(vertical.get(metadataValue.startVerticalIndex));
+        Point centerEndVerticalPoint = getCenter(vertical.get(metadataValue.endVerticalIndex));
+        Point centerStartHorizontalPoint = getCenter(horizontal.get(metadataValue.startHorizontalIndex));
+        Point centerEndHorizontalPoint = getCenter(horizontal.get(metadataValue.endHorizontalIndex));
+        int numberOfRows = metadataValue.rowCount, numberOfCols = metadataValue.columnCount;
         double vDiff = (centerEndVerticalPoint.y - centerStartVerticalPoint.y) / (double) (numberOfRows - 1);
         double hDiff = (centerEndHorizontalPoint.x - centerStartHorizontalPoint.x) / (double) (numberOfCols - 1);
+
+        int rowOffset = layout.getBlockRowOffset(block);
         double startCenterY = centerStartVerticalPoint.y;
         for (int i = 0; i < numberOfRows; i++, startCenterY += vDiff) {
-            double startCenterX = centerStartHorizontalPoint.x;
-            for (int j = 0; j < numberOfCols; j++, startCenterX += hDiff) {
-                Mat mat = findSquareFromCenter(src, outputDraw, (int) Math.round(startCenterX),
-                        (int) Math.round(startCenterY), averageWidth, averageHeight, paperDimension);
-
-                AnswerSheetLabel label;
-                switch (firstname) {
-                    case "ExCode":
-                        label = new ExCodeLabel(secondExt + j - '1', firstExt + i);
-                        break;
-                    case "MCode":
-                        label = new MCodeLabel(secondExt + j - '1', firstExt + i);
-                        break;
-                    default:
-                        label = new AnswerLabel(firstExt + i, Option.getOption((char) (secondExt + j)));
-                        break;
-                }
-                answerMats.add(new AnswerMat(mat, label));
-            }
+            rowCenters[rowOffset + i] = startCenterY;
+        }
+        int columnOffset = layout.getBlockColumnOffset(block);
+        double startCenterX = centerStartHorizontalPoint.x;
+        for (int j = 0; j < numberOfCols; j++, startCenterX += hDiff) {
+            columnCenters[columnOffset + j] = startCenterX;
         }
-
-        return answerMats;
     }
 
-    private static Mat findSquareFromCenter(Mat src, Mat outputDraw, int x, int y, int width, int height,
+    private static Rect findSquareFromCenter(BlackPixelIntegral blackPixel, int x, int y, int width, int height,
             PaperDimension dimension) {
         Point currentCenter = new Point(x, y);
 
@@ -449,67 +705,84 @@ public class AnswerSheetScorer {
         Rect currentRect = new Rect(
                 new Point(currentCenter.x - overscaleWidth / 2, currentCenter.y - overscaleHeight / 2),
                 new Size(overscaleWidth, overscaleHeight));
-        Mat square = src.submat(currentRect);
-        Mat sqOutputDraw = outputDraw.submat(currentRect);
+        if (currentRect.x < 0 || currentRect.y < 0 || currentRect.x + currentRect.width > blackPixel.cols()
+                || currentRect.y + currentRect.height > blackPixel.rows()) {
+            throw new IndexOutOfBoundsException("Answer square is outside of the paper");
+        }
 
         // Find the most fit rectangle
-        Point rectStartPoint = findMostFitRect(square, width, height, dimension.squareAnswerBorder);
+        Point rectStartPoint = findMostFitRect(blackPixel, currentRect, width, height, dimension.squareAnswerBorder);
 
         int contentPadding = dimension.squareAnswerBorder;
-        currentRect = new Rect((int) (rectStartPoint.x + contentPadding), (int) (rectStartPoint.y + contentPadding),
-                width - 2 * contentPadding, height - 2 * contentPadding);
-
-        drawContour(sqOutputDraw, currentRect, new Scalar(0, 255, 0), 2);
+        return new Rect((int) (currentRect.x + rectStartPoint.x + contentPadding),
+                (int) (currentRect.y + rectStartPoint.y + contentPadding), width - 2 * contentPadding,
+                height - 2 * contentPadding);
+    }
 
-        return square.submat(currentRect).clone();
+    private static void filterNoise(AnswerMat answerMat, int noiseArea) {
+        Scalar blackScalar = new Scalar(0);
+        ArrayList<MatOfPoint> answerMatContours = new ArrayList<>(), filledContours = new ArrayList<>();
+        Mat copyAnswerMat = answerMat.clone();
+        Mat hierarchy = new Mat();
+        Imgproc.findContours(copyAnswerMat, answerMatContours, hierarchy, Imgproc.RETR_LIST,
+                Imgproc.CHAIN_APPROX_SIMPLE);
+        copyAnswerMat.release();
+        hierarchy.release();
+        for (MatOfPoint contour : answerMatContours) {
+            Rect contourRect = Imgproc.boundingRect(contour);
+            if (contourRect.area() < noiseArea) {
+                filledContours.add(contour);
+            }
+        }
+        Imgproc.drawContours(answerMat, filledContours, -1, blackScalar, Core.FILLED);
+        for (MatOfPoint contour : answerMatContours) {
+            contour.release();
+        }
     }
 
-    private static Point findMostFitRect(Mat mat, int width, int height, int insideBorderThickness) {
-        int maxCol = mat.cols() - width + 1, maxRow = mat.rows() - height + 1;
+    private static Point findMostFitRect(BlackPixelIntegral blackPixel, Rect window, int width, int height,
+            int insideBorderThickness) {
+        int maxCol = window.width - width + 1, maxRow = window.height - height + 1;
         if (maxCol <= 0 || maxRow <= 0)
             return new Point(0, 0);
         int x, y, maxBlackPixel, xStart, yStart, outsideRectBlackPixel, insideRectBlackPixel, currBlackPixel;
-        int[][] blackPixel = new int[mat.rows() + 1][mat.cols() + 1];
-        for (y = 0; y < mat.rows(); y++) {
-            blackPixel[y][0] = 0;
-        }
-        for (x = 0; x < mat.cols(); x++) {
-            blackPixel[0][x] = 0;
-        }
-
-        // Integral image
-        for (y = 1; y <= mat.rows(); y++) {
-            for (x = 1; x <= mat.cols(); x++) {
-                blackPixel[y][x] = blackPixel[y - 1][x] + blackPixel[y][x - 1] - blackPixel[y - 1][x - 1];
-                if (mat.get(y - 1, x - 1)[0] == 0) { // if the color is black
-                    blackPixel[y][x]++;
-                }
-            }
-        }
+        int insideWidth = width - 2 * insideBorderThickness, insideHeight = height - 2 * insideBorderThickness;
 
         xStart = yStart = -1;
         maxBlackPixel = -1;
-        for (y = 1; y <= maxRow; y++) {
-            for (x = 1; x <= maxCol; x++) {
-                outsideRectBlackPixel = blackPixel[y + height - 1][x + width - 1] - blackPixel[y + height - 1][x - 1]
-                        - blackPixel[y - 1][x + width - 1] + blackPixel[y - 1][x - 1];
-
-                insideRectBlackPixel = blackPixel[y + height - insideBorderThickness - 1][x + width
-                        - insideBorderThickness - 1]
-                        - blackPixel[y + height - insideBorderThickness - 1][x + insideBorderThickness - 1]
-                        - blackPixel[y + insideBorderThickness - 1][x + width - insideBorderThickness - 1]
-                        + blackPixel[y + insideBorderThickness - 1][x + insideBorderThickness - 1];
+        for (y = window.y; y < window.y + maxRow; y++) {
+            for (x = window.x; x < window.x + maxCol; x++) {
+                outsideRectBlackPixel = blackPixel.count(x, y, width, height);
+                insideRectBlackPixel = blackPixel.count(x + insideBorderThickness, y + insideBorderThickness,
+                        insideWidth, insideHeight);
 
                 currBlackPixel = outsideRectBlackPixel - insideRectBlackPixel;
                 if (maxBlackPixel < currBlackPixel) {
                     maxBlackPixel = currBlackPixel;
-                    xStart = x;
-                    yStart = y;
+                    xStart = x - window.x;
+                    yStart = y - window.y;
                 }
             }
         }
 
-        return new Point(xStart - 1, yStart - 1);
+        return new Point(xStart, yStart);
+    }
+
+    /**
+     * Report the time since startTime to the metrics
+     *
+     * @return current time, the start time of the next stage
+     */
+    private static long onStage(PipelineMetrics metrics, PipelineMetrics.Stage stage, long startTime) {
+        long endTime = System.nanoTime();
+        if (metrics != null)
+            metrics.onStage(stage, endTime - startTime);
+        return endTime;
+    }
+
+    private static void onCounter(PipelineMetrics metrics, PipelineMetrics.Counter counter, long value) {
+        if (metrics != null)
+            metrics.onCounter(counter, value);
     }
 
     private static Point getCenter(Rect rect) {
@@ -0,0 +1,79 @@
+package io.github.stevenalbert.gradeit.process;
+
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+
+/**
+ * Integral image of the black pixels of a binary image. It is built once per
+ * answer sheet so the number of black pixels inside any rectangle can be
+ * answered in constant time.
+ */
+public class BlackPixelIntegral {
+
+    private final int rows;
+    private final int cols;
+    private final int stride;
+    private final int[] blackPixel;
+
+    /**
+     * Build the integral image of the black (zero) pixels of a single channel
+     * 8-bit image
+     *
+     * @param src
+     *            binary image
+     */
+    public BlackPixelIntegral(Mat src) {
+        if (src == null || src.channels() != 1) {
+            throw new IllegalArgumentException("Argument must be a single channel image");
+        }
+
+        rows = src.rows();
+        cols = src.cols();
+        stride = cols + 1;
+        blackPixel = new int[(rows + 1) * stride];
+
+        byte[] rowPixels = new byte[cols];
+        for (int y = 1; y <= rows; y++) {
+            src.get(y - 1, 0, rowPixels);
+            int rowBlackPixel = 0;
+            int index = y * stride + 1;
+            for (int x = 0; x < cols; x++, index++) {
+                if (rowPixels[x] == 0) { // if the color is black
+                    rowBlackPixel++;
+                }
+                blackPixel[index] = blackPixel[index - stride] + rowBlackPixel;
+            }
+        }
+    }
+
+    public int rows() {
+        return rows;
+    }
+
+    public int cols() {
+        return cols;
+    }
+
+    /**
+     * Count the black pixels inside the rectangle starting from (x, y)
+     *
+     * @param x
+     *            left column of the rectangle
+     * @param y
+     *            top row of the rectangle
+     * @param width
+     *            width of the rectangle
+     * @param height
+     *            height of the rectangle
+     * @return number of black pixels
+     */
+    public int count(int x, int y, int width, int height) {
+        int top = y * stride, bottom = (y + height) * stride;
+        return blackPixel[bottom + x + width] - blackPixel[bottom + x] - blackPixel[top + x + width]
+                + blackPixel[top + x];
+    }
+
+    public int count(Rect rect) {
+        return count(rect.x, rect.y, rect.width, rect.height);
+    }
+}
@@ -0,0 +1,65 @@
+package io.github.stevenalbert.gradeit.process;
+
+import java.util.List;
+
+import io.github.stevenalbert.gradeit.model.AnswerKey;
+import io.github.stevenalbert.gradeit.model.AnswerSheet;
+import io.github.stevenalbert.gradeit.model.PackedAnswers;
+
+/**
+ * Scores many answer sheets with one answer key, e.g. all answer sheets of an MCode
+ * when its answer key is changed. The answer key is packed once and every answer
+ * sheet is scored eight numbers at a time on the packed words. Large lists are
+ * split into ranges scored in parallel.
+ */
+public class BulkScorer {
+
+    // Below this many answer sheets the workers cost more than they save
+    public static final int MINIMUM_PARALLEL_SHEETS = 512;
+
+    /**
+     * Score the answer sheets on the calling thread, or on a temporary pool if
+     * there are at least {@link #MINIMUM_PARALLEL_SHEETS} answer sheets
+     *
+     * @return number of answer sheets with the MCode of the answer key, only those
+     *         are scored
+     */
+    public static int scoreAnswerSheets(AnswerKey answerKey, List<AnswerSheet> answerSheets) {
+        if (answerSheets.size() < MINIMUM_PARALLEL_SHEETS)
+            return scoreAnswerSheets(answerKey, answerSheets, null);
+
+        CellWorkerPool pool = new CellWorkerPool();
+        try {
+            return scoreAnswerSheets(answerKey, answerSheets, pool);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * @param pool
+     *            - workers of large lists, or null to score on the calling thread
+     * @return number of answer sheets with the MCode of the answer key, only those
+     *         are scored
+     */
+    public static int scoreAnswerSheets(final AnswerKey answerKey, final List<AnswerSheet> answerSheets,
+            CellWorkerPool pool) {
+        final PackedAnswers packedKey = answerKey.toPackedAnswers();
+        CellWorkerPool.run(answerSheets.size() < MINIMUM_PARALLEL_SHEETS ? null : pool, answerSheets.size(),
+                new CellWorkerPool.CellTask() {
+                    @Override
+                    public void run(int start, int end) {
+                        for (int i = start; i < end; i++) {
+                            answerSheets.get(i).scoreAnswerSheet(answerKey, packedKey);
+                        }
+                    }
+                });
+
+        int scored = 0;
+        for (AnswerSheet answerSheet : answerSheets) {
+            if (answerSheet.getMCode() == answerKey.getMCode())
+                scored++;
+        }
+        return scored;
+    }
+}
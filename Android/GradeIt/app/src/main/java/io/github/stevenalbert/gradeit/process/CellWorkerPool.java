@@ -0,0 +1,136 @@
+package io.github.stevenalbert.gradeit.process;
+
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Bounded pool of worker threads used to process the cells of an answer sheet in
+ * parallel. The cells are split into contiguous ranges, one range per worker, so
+ * every worker can keep its own scratch state and write its results by cell index.
+ */
+public class CellWorkerPool {
+
+    /**
+     * Work done on the cells from index start (inclusive) to end (exclusive). It is
+     * always called from a single thread.
+     */
+    public interface CellTask {
+        void run(int start, int end);
+    }
+
+    private final int parallelism;
+    private final ExecutorService executor;
+
+    /**
+     * Create a pool with as many workers as the available processors
+     */
+    public CellWorkerPool() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public CellWorkerPool(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1");
+        }
+        this.parallelism = parallelism;
+        // The calling thread works on the first range
+        this.executor = (parallelism > 1 ? Executors.newFixedThreadPool(parallelism - 1) : null);
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Run the task on all cells and wait until every range is done.
+     *
+     * @param pool
+     *            worker pool, or null to run the task on the calling thread
+     * @param cellCount
+     *            number of cells
+     * @param task
+     *            work for each range of cells
+     */
+    public static void run(CellWorkerPool pool, int cellCount, CellTask task) {
+        if (pool == null) {
+            task.run(0, cellCount);
+        } else {
+            pool.run(cellCount, task);
+        }
+    }
+
+    public void run(int cellCount, final CellTask task) {
+        int rangeCount = Math.min(parallelism, cellCount);
+        if (rangeCount <= 1) {
+            task.run(0, cellCount);
+            return;
+        }
+
+        // Ranges the pool does not take, e.g. after it is shut down, run on the calling thread
+        ArrayList<Future<?>> futures = new ArrayList<>(rangeCount - 1);
+        int callerEnd = rangeStart(1, rangeCount, cellCount);
+        ArrayList<int[]> rejectedRanges = new ArrayList<>();
+        for (int i = 1; i < rangeCount; i++) {
+            final int start = rangeStart(i, rangeCount, cellCount);
+            final int end = rangeStart(i + 1, rangeCount, cellCount);
+            try {
+                futures.add(executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        task.run(start, end);
+                    }
+                }));
+            } catch (RejectedExecutionException e) {
+                rejectedRanges.add(new int[] { start, end });
+            }
+        }
+
+        // Always wait for all ranges, the cells may refer to native memory owned by the caller
+        Throwable failure = null;
+        try {
+            task.run(0, callerEnd);
+            for (int[] range : rejectedRanges) {
+                task.run(range[0], range[1]);
+            }
+        } catch (RuntimeException | Error e) {
+            failure = e;
+        }
+        boolean interrupted = false;
+        for (Future<?> future : futures) {
+            while (true) {
+                try {
+                    future.get();
+                    break;
+                } catch (ExecutionException e) {
+                    if (failure == null)
+                        failure = e.getCause();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+
+        if (failure instanceof RuntimeException)
+            throw (RuntimeException) failure;
+        if (failure instanceof Error)
+            throw (Error) failure;
+        if (failure != null)
+            throw new RuntimeException(failure);
+    }
+
+    public void shutdown() {
+        if (executor != null)
+            executor.shutdown();
+    }
+
+    private static int rangeStart(int range, int rangeCount, int cellCount) {
+        return (int) ((long) cellCount * range / rangeCount);
+    }
+}
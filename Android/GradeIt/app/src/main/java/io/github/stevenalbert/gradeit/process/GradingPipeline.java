@@ -0,0 +1,357 @@
+package io.github.stevenalbert.gradeit.process;
+
+import org.opencv.core.Mat;
+
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.github.stevenalbert.gradeit.model.AnswerKey;
+import io.github.stevenalbert.gradeit.model.AnswerMat;
+import io.github.stevenalbert.gradeit.model.AnswerSheet;
+import io.github.stevenalbert.gradeit.model.AnswerSheetMetadata;
+
+/**
+ * Grades consecutive answer sheets in a pipeline of stages: decode, convert,
+ * process, recognize, score and store. Every stage runs on its own thread and the
+ * stages are connected by small bounded queues, so the next photo is decoded and
+ * converted while the previous one is still being recognized, and at most a few
+ * photos are held in native memory at any time.
+ *
+ * Sheets leave the pipeline in the order they were submitted. A sheet which fails
+ * on a stage skips the next stages and is reported to the {@link Listener} by the
+ * store stage. Call {@link #shutdown()} when no more sheets will be submitted.
+ *
+ * @param <T>
+ *            - input of the pipeline, e.g. the Uri of a photo
+ */
+public class GradingPipeline<T> {
+
+    /**
+     * Read the input as a photo image, called on the decode thread
+     */
+    public interface Decoder<T> {
+        Mat decode(T input) throws Exception;
+    }
+
+    /**
+     * Storage of the answer keys and answer sheets. The answer key is looked up and
+     * saved on the score thread, the answer sheet is saved on the store thread.
+     */
+    public interface Store {
+        AnswerKey findAnswerKey(int mCode);
+
+        void saveAnswerKey(AnswerKey answerKey);
+
+        void saveAnswerSheet(AnswerSheet answerSheet);
+    }
+
+    /**
+     * Result of every submitted input, called on the store thread
+     */
+    public interface Listener<T> {
+        /**
+         * @param answerSheet
+         *            - scored and saved answer sheet, or the answer sheet of a saved
+         *            answer key
+         */
+        void onGraded(T input, AnswerSheet answerSheet);
+
+        /**
+         * @param answerSheet
+         *            - recognized answer sheet which could not be scored, or null if
+         *            the answer sheet was not recognized
+         * @param e
+         *            - error of the job, an {@link Error} is the cause of the exception
+         */
+        void onFailed(T input, AnswerSheet answerSheet, Exception e);
+    }
+
+    // Sheets waiting between two stages
+    public static final int QUEUE_CAPACITY = 2;
+
+    // Inputs waiting to be decoded
+    public static final int INPUT_CAPACITY = 64;
+
+    private static class Job<T> {
+        private final T input;
+        private Mat photo;
+        private Mat converted;
+        private long convertedBytes;
+        private ArrayList<AnswerMat> answerMats;
+        private AnswerSheet answerSheet;
+        private Exception error;
+
+        private Job(T input) {
+            this.input = input;
+        }
+
+        private void release() {
+            if (photo != null) {
+                photo.release();
+                photo = null;
+            }
+            if (converted != null) {
+                converted.release();
+                converted = null;
+            }
+            if (answerMats != null) {
+                for (AnswerMat answerMat : answerMats) {
+                    answerMat.release();
+                }
+                answerMats = null;
+            }
+        }
+    }
+
+    /**
+     * Work of one stage on a job, always called from the thread of the stage
+     */
+    private abstract class StageTask {
+        abstract void run(Job<T> job) throws Exception;
+
+        /**
+         * Called on the thread of the stage when it stops
+         */
+        void release() {
+        }
+    }
+
+    private final AnswerSheetMetadata metadata;
+    private final Decoder<T> decoder;
+    private final Store store;
+    private final Listener<T> listener;
+    private final PipelineMetrics metrics;
+
+    private final BlockingQueue<Job<T>> inputQueue = new ArrayBlockingQueue<>(INPUT_CAPACITY);
+    private final Job<T> endOfInput = new Job<>(null);
+    private final AtomicInteger pendingCount = new AtomicInteger();
+    private volatile boolean isShutdown = false;
+
+    /**
+     * Create the pipeline and start the threads of all stages
+     *
+     * @param metrics
+     *            - listener of the stage timings and counters, or null
+     */
+    public GradingPipeline(final AnswerSheetMetadata metadata, Decoder<T> decoder, Store store, Listener<T> listener,
+            PipelineMetrics metrics) {
+        if (metadata == null || decoder == null || store == null || listener == null) {
+            throw new IllegalArgumentException("Argument cannot be null");
+        }
+        this.metadata = metadata;
+        this.decoder = decoder;
+        this.store = store;
+        this.listener = listener;
+        this.metrics = metrics;
+
+        BlockingQueue<Job<T>> queue = inputQueue;
+        queue = startStage("decode", PipelineMetrics.Stage.DECODE, queue, newQueue(), new StageTask() {
+            @Override
+            void run(Job<T> job) throws Exception {
+                job.photo = GradingPipeline.this.decoder.decode(job.input);
+                if (job.photo == null)
+                    throw new Exception("Photo can't be decoded");
+            }
+        });
+        queue = startStage("convert", null, queue, newQueue(), new StageTask() {
+            private final ScoringContext context = createContext(true);
+
+            @Override
+            void run(Job<T> job) throws Exception {
+                Mat converted = AnswerSheetScorer.convertAnswerSheet(job.photo, metadata, context);
+                job.photo.release();
+                job.photo = null;
+                if (converted == null)
+                    throw new Exception("Paper not found");
+                // The converted image of the context is overwritten by the next photo
+                job.converted = converted.clone();
+                job.convertedBytes = context.takeAllocatedBytes() + converted.total() * converted.elemSize();
+            }
+
+            @Override
+            void release() {
+                context.release();
+            }
+        });
+        queue = startStage("process", null, queue, newQueue(), new StageTask() {
+            private final ScoringContext context = createContext(false);
+
+            @Override
+            void run(Job<T> job) throws Exception {
+                context.addAllocatedBytes(job.convertedBytes);
+                // The stages already run in parallel, so the cells are located on this thread
+                Mat outputDraw = context.getOutputDraw(metadata.getDimension());
+                job.answerMats = AnswerSheetScorer.processAnswerSheet(job.converted, outputDraw, metadata, context,
+                        null);
+                job.converted.release();
+                job.converted = null;
+            }
+
+            @Override
+            void release() {
+                context.release();
+            }
+        });
+        queue = startStage("recognize", null, queue, newQueue(), new StageTask() {
+            private final CellWorkerPool pool = new CellWorkerPool();
+
+            @Override
+            void run(Job<T> job) throws Exception {
+                job.answerSheet = AnswerSheetScorer.recognizeAnswerSheet(job.answerMats, pool,
+                        GradingPipeline.this.metrics);
+                for (AnswerMat answerMat : job.answerMats) {
+                    answerMat.release();
+                }
+                job.answerMats = null;
+            }
+
+            @Override
+            void release() {
+                pool.shutdown();
+            }
+        });
+        queue = startStage("score", null, queue, newQueue(), new StageTask() {
+            @Override
+            void run(Job<T> job) throws Exception {
+                // Answer keys are saved here so the next sheets are scored with them
+                if (AnswerKey.isAnswerKey(job.answerSheet)) {
+                    GradingPipeline.this.store.saveAnswerKey(AnswerKey.fromAnswerSheet(job.answerSheet));
+                    return;
+                }
+                AnswerKey answerKey = GradingPipeline.this.store.findAnswerKey(job.answerSheet.getMCode());
+                if (answerKey == null)
+                    throw new Exception("No answer key with MCode " + job.answerSheet.getMCodeString());
+                AnswerSheetScorer.scoreAnswerSheet(job.answerSheet, answerKey, GradingPipeline.this.metrics);
+            }
+        });
+        startStage("store", PipelineMetrics.Stage.STORE, queue, null, new StageTask() {
+            @Override
+            void run(Job<T> job) throws Exception {
+                if (!AnswerKey.isAnswerKey(job.answerSheet)) {
+                    GradingPipeline.this.store.saveAnswerSheet(job.answerSheet);
+                }
+            }
+        });
+    }
+
+    /**
+     * Add the input at the end of the pipeline without blocking
+     *
+     * @return false if the pipeline is full or has been shut down
+     */
+    public boolean offer(T input) {
+        if (input == null) {
+            throw new IllegalArgumentException("Argument cannot be null");
+        }
+        if (isShutdown)
+            return false;
+        pendingCount.incrementAndGet();
+        if (!inputQueue.offer(new Job<>(input))) {
+            pendingCount.decrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return number of inputs which have been submitted and not reported yet
+     */
+    public int getPendingCount() {
+        return pendingCount.get();
+    }
+
+    public AnswerSheetMetadata getMetadata() {
+        return metadata;
+    }
+
+    /**
+     * Stop taking inputs. The inputs which have been submitted are still graded,
+     * then the threads stop and release their native memory.
+     */
+    public void shutdown() {
+        if (isShutdown)
+            return;
+        isShutdown = true;
+        try {
+            inputQueue.put(endOfInput);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private ScoringContext createContext(boolean pyramidDetection) {
+        ScoringContext context = new ScoringContext();
+        context.setPyramidDetection(pyramidDetection);
+        context.setMetrics(metrics);
+        return context;
+    }
+
+    private BlockingQueue<Job<T>> newQueue() {
+        return new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    }
+
+    /**
+     * Start the thread of a stage taking the jobs from the input queue
+     *
+     * @param stage
+     *            - stage reported to the metrics, or null if the scorer reports it
+     * @param output
+     *            - queue of the next stage, or null for the last stage
+     * @return output queue
+     */
+    private BlockingQueue<Job<T>> startStage(String name, final PipelineMetrics.Stage stage,
+            final BlockingQueue<Job<T>> input, final BlockingQueue<Job<T>> output, final StageTask task) {
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while (true) {
+                        Job<T> job = input.take();
+                        if (job == endOfInput) {
+                            if (output != null)
+                                output.put(job);
+                            return;
+                        }
+
+                        if (job.error == null) {
+                            long startTime = System.nanoTime();
+                            try {
+                                task.run(job);
+                            } catch (Throwable t) {
+                                // Errors too, e.g. out of memory on a large photo, fail only
+                                // the job, the thread keeps taking the next jobs
+                                job.error = t instanceof Exception ? (Exception) t : new Exception(t);
+                                job.release();
+                            }
+                            if (stage != null && metrics != null)
+                                metrics.onStage(stage, System.nanoTime() - startTime);
+                        }
+
+                        if (output != null) {
+                            output.put(job);
+                        } else {
+                            finish(job);
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    task.release();
+                }
+            }
+        }, "grading-" + name);
+        thread.start();
+        return output;
+    }
+
+    private void finish(Job<T> job) {
+        pendingCount.decrementAndGet();
+        if (job.error == null) {
+            listener.onGraded(job.input, job.answerSheet);
+        } else {
+            listener.onFailed(job.input, job.answerSheet, job.error);
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package io.github.stevenalbert.gradeit.process;
+
+import java.util.Arrays;
+import java.util.List;
+
+import io.github.stevenalbert.gradeit.model.AnswerSheet;
+import io.github.stevenalbert.gradeit.model.ItemAnswerCount;
+import io.github.stevenalbert.gradeit.model.ItemCorrectCount;
+import io.github.stevenalbert.gradeit.model.Option;
+import io.github.stevenalbert.gradeit.model.PackedAnswers;
+import io.github.stevenalbert.gradeit.model.ScoreCount;
+
+/**
+ * Running sums of the answer sheets of one MCode, enough to get the validity,
+ * difficulty level and reliability of every number without the answer sheets. An
+ * answer sheet is added when it is saved and removed when it is deleted or
+ * replaced, so the statistics cost one pass over its numbers instead of one pass
+ * over all answer sheets.
+ */
+public class ItemStatistics {
+
+    private static final Option[] OPTIONS = Option.values();
+
+    private final int mCode;
+    private int answerSheetCount;
+    private long sumOfScore;
+    private long sumOfSquareScore;
+
+    // Per number, the option counts are OPTIONS.length per number
+    private int[] correctCount;
+    private long[] sumOfCorrectScore;
+    private int[] optionCount;
+
+    public ItemStatistics(int mCode) {
+        this.mCode = mCode;
+        this.correctCount = new int[0];
+        this.sumOfCorrectScore = new long[0];
+        this.optionCount = new int[0];
+    }
+
+    public ItemStatistics(ItemStatistics statistics) {
+        this.mCode = statistics.mCode;
+        this.answerSheetCount = statistics.answerSheetCount;
+        this.sumOfScore = statistics.sumOfScore;
+        this.sumOfSquareScore = statistics.sumOfSquareScore;
+        this.correctCount = statistics.correctCount.clone();
+        this.sumOfCorrectScore = statistics.sumOfCorrectScore.clone();
+        this.optionCount = statistics.optionCount.clone();
+    }
+
+    /**
+     * @return statistics of the answer sheets with the MCode, the others are
+     *         skipped
+     */
+    public static ItemStatistics of(int mCode, List<AnswerSheet> answerSheets) {
+        ItemStatistics statistics = new ItemStatistics(mCode);
+        for(AnswerSheet answerSheet : answerSheets) {
+            if(answerSheet.getMCode() == mCode)
+                statistics.add(answerSheet);
+        }
+        return statistics;
+    }
+
+    /**
+     * @return statistics of the counts of the saved answer sheets of the MCode, as
+     *         counted by the database
+     */
+    public static ItemStatistics of(int mCode, List<ScoreCount> scoreCounts,
+                                    List<ItemCorrectCount> itemCorrectCounts, List<ItemAnswerCount> itemAnswerCounts) {
+        ItemStatistics statistics = new ItemStatistics(mCode);
+        for(ScoreCount scoreCount : scoreCounts) {
+            long score = scoreCount.score;
+            statistics.answerSheetCount += scoreCount.count;
+            statistics.sumOfScore += scoreCount.count * score;
+            statistics.sumOfSquareScore += scoreCount.count * score * score;
+        }
+        for(ItemCorrectCount itemCorrectCount : itemCorrectCounts) {
+            statistics.ensureNumbers(itemCorrectCount.number);
+            statistics.correctCount[itemCorrectCount.number - 1] += itemCorrectCount.count;
+            statistics.sumOfCorrectScore[itemCorrectCount.number - 1] += itemCorrectCount.scoreSum;
+        }
+        for(ItemAnswerCount itemAnswerCount : itemAnswerCounts) {
+            statistics.ensureNumbers(itemAnswerCount.number);
+            statistics.addOptionCounts(itemAnswerCount.number - 1, itemAnswerCount.chosenMask, itemAnswerCount.count);
+        }
+        return statistics;
+    }
+
+    public void add(AnswerSheet answerSheet) {
+        update(answerSheet, 1);
+    }
+
+    /**
+     * @param answerSheet
+     *            - answer sheet added before, with the same answers, verdicts and
+     *            score
+     */
+    public void remove(AnswerSheet answerSheet) {
+        update(answerSheet, -1);
+    }
+
+    private void update(AnswerSheet answerSheet, int sign) {
+        if(answerSheet.getMCode() != mCode)
+            throw new IllegalArgumentException("Answer sheet MCode " + answerSheet.getMCodeString()
+                    + " is not " + mCode);
+
+        PackedAnswers answers = answerSheet.getAnswers();
+        int numberCount = Math.min(answerSheet.getTotalAnswer(), answers.size());
+        ensureNumbers(numberCount);
+
+        long score = answerSheet.getTotalCorrect();
+        answerSheetCount += sign;
+        sumOfScore += sign * score;
+        sumOfSquareScore += sign * score * score;
+
+        for(int i = 0; i < numberCount; i++) {
+            if(answerSheet.isAnswerTrue(i + 1)) {
+                correctCount[i] += sign;
+                sumOfCorrectScore[i] += sign * score;
+            }
+            addOptionCounts(i, answers.getBits(i), sign);
+        }
+    }
+
+    private void addOptionCounts(int index, int bits, int count) {
+        while(bits != 0) {
+            int ordinal = Integer.numberOfTrailingZeros(bits);
+            if(ordinal < OPTIONS.length)
+                optionCount[index * OPTIONS.length + ordinal] += count;
+            bits &= bits - 1;
+        }
+    }
+
+    private void ensureNumbers(int numberCount) {
+        if(numberCount > correctCount.length) {
+            correctCount = Arrays.copyOf(correctCount, numberCount);
+            sumOfCorrectScore = Arrays.copyOf(sumOfCorrectScore, numberCount);
+            optionCount = Arrays.copyOf(optionCount, numberCount * OPTIONS.length);
+        }
+    }
+
+    public int getMCode() {
+        return mCode;
+    }
+
+    public int getAnswerSheetCount() {
+        return answerSheetCount;
+    }
+
+    /**
+     * @param number
+     *            - number starts from 1
+     */
+    public int getCorrectCount(int number) {
+        return number >= 1 && number <= correctCount.length ? correctCount[number - 1] : 0;
+    }
+
+    public int getOptionCount(int number, Option option) {
+        return number >= 1 && number <= correctCount.length ?
+                optionCount[(number - 1) * OPTIONS.length + option.ordinal()] : 0;
+    }
+
+    /**
+     * @return fraction of answer sheets not correct on the number
+     */
+    public double getDifficultyLevel(int number) {
+        return 1.0 - ((double) getCorrectCount(number)) / (double) answerSheetCount;
+    }
+
+    /**
+     * @return correlation of the verdict of the number with the score, NaN if
+     *         every answer sheet has the same verdict or the same score
+     */
+    public double getValidity(int number) {
+        double n = answerSheetCount,
+                sumOfX = getCorrectCount(number),
+                sumOfXY = number >= 1 && number <= sumOfCorrectScore.length ? sumOfCorrectScore[number - 1] : 0,
+                sumOfY = sumOfScore,
+                sumOfSquareY = sumOfSquareScore;
+
+        // The verdict is 0 or 1, so the sum of its squares is its sum
+        return (n * sumOfXY - sumOfX * sumOfY) /
+                Math.sqrt((n * sumOfX - sumOfX * sumOfX) * (n * sumOfSquareY - sumOfY * sumOfY));
+    }
+
+    /**
+     * @return population variance of the scores
+     */
+    public double getScoreVariance() {
+        double mean = sumOfScore / (double) answerSheetCount;
+        return sumOfSquareScore / (double) answerSheetCount - mean * mean;
+    }
+
+    /**
+     * @param totalNumber
+     *            - number of numbers of the answer key
+     * @return KR-20 reliability of the first totalNumber numbers
+     */
+    public double getReliability(int totalNumber) {
+        double sumOfPQ = 0;
+        for(int number = 1; number <= totalNumber; number++) {
+            double p = ((double) getCorrectCount(number)) / (double) answerSheetCount;
+            sumOfPQ += p * (1 - p);
+        }
+        return (((double) totalNumber) / (double) (totalNumber - 1)) * (1 - sumOfPQ / getScoreVariance());
+    }
+}
@@ -0,0 +1,61 @@
+package io.github.stevenalbert.gradeit.process;
+
+/**
+ * Listener of the stage timings and counters of {@link AnswerSheetScorer}. Set it
+ * on the {@link ScoringContext} of a grading session, it is called on the thread
+ * which runs the scorer, once for every stage and counter of every answer sheet.
+ */
+public interface PipelineMetrics {
+
+    enum Stage {
+        /** Photo file to image, only reported by {@link GradingPipeline} */
+        DECODE,
+        /** Photo to grayscale, including the image pyramid */
+        GRAYSCALE,
+        /** Blur and adaptive threshold of the photo */
+        THRESHOLD,
+        /** Contours of the photo and the paper corners */
+        CONTOURS,
+        /** Perspective transform and threshold of the paper */
+        WARP,
+        /** Contours, black squares and anchors of the answer sheet */
+        ANCHOR_SEARCH,
+        /** Find, crop and filter noise of every cell */
+        CELL_LOCATE,
+        /** X feature of every cell */
+        RECOGNIZE,
+        /** Compare the answer sheet with the answer key */
+        SCORE,
+        /** Save the answer sheet, only reported by {@link GradingPipeline} */
+        STORE
+    }
+
+    enum Counter {
+        /** Contours found on the photo while looking for the paper */
+        PAPER_CONTOURS_FOUND,
+        /** Contours found on the answer sheet */
+        CONTOURS_FOUND,
+        /** Black squares accepted as anchor candidates */
+        BLACK_SQUARES_ACCEPTED,
+        /** Cells whose X feature is close to the threshold */
+        AMBIGUOUS_CELLS,
+        /** Native memory allocated for the answer sheet, in bytes */
+        NATIVE_BYTES_ALLOCATED
+    }
+
+    /**
+     * @param stage
+     *            - finished stage
+     * @param nanos
+     *            - elapsed time of the stage in nanoseconds
+     */
+    void onStage(Stage stage, long nanos);
+
+    /**
+     * @param counter
+     *            - counter of the stage which has just finished
+     * @param value
+     *            - value of the counter for the current answer sheet
+     */
+    void onCounter(Counter counter, long value);
+}
@@ -0,0 +1,92 @@
+package io.github.stevenalbert.gradeit.process;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * {@link PipelineMetrics} which keeps the count, total and maximum of every stage
+ * and counter over all processed answer sheets. It is thread safe, so the summary
+ * can be read while another thread is grading.
+ */
+public class PipelineMetricsSummary implements PipelineMetrics {
+
+    private final long[] stageCounts = new long[Stage.values().length];
+    private final long[] stageTotals = new long[Stage.values().length];
+    private final long[] stageMaxima = new long[Stage.values().length];
+
+    private final long[] counterCounts = new long[Counter.values().length];
+    private final long[] counterTotals = new long[Counter.values().length];
+    private final long[] counterMaxima = new long[Counter.values().length];
+
+    @Override
+    public synchronized void onStage(Stage stage, long nanos) {
+        int index = stage.ordinal();
+        stageCounts[index]++;
+        stageTotals[index] += nanos;
+        stageMaxima[index] = Math.max(stageMaxima[index], nanos);
+    }
+
+    @Override
+    public synchronized void onCounter(Counter counter, long value) {
+        int index = counter.ordinal();
+        counterCounts[index]++;
+        counterTotals[index] += value;
+        counterMaxima[index] = Math.max(counterMaxima[index], value);
+    }
+
+    public synchronized long getStageCount(Stage stage) {
+        return stageCounts[stage.ordinal()];
+    }
+
+    /**
+     * @return average time of the stage in nanoseconds, or 0 if the stage never ran
+     */
+    public synchronized long getStageAverage(Stage stage) {
+        int index = stage.ordinal();
+        return (stageCounts[index] > 0 ? stageTotals[index] / stageCounts[index] : 0);
+    }
+
+    public synchronized long getStageMaximum(Stage stage) {
+        return stageMaxima[stage.ordinal()];
+    }
+
+    /**
+     * @return average value of the counter per answer sheet, or 0 if it was never reported
+     */
+    public synchronized double getCounterAverage(Counter counter) {
+        int index = counter.ordinal();
+        return (counterCounts[index] > 0 ? (double) counterTotals[index] / counterCounts[index] : 0);
+    }
+
+    public synchronized long getCounterMaximum(Counter counter) {
+        return counterMaxima[counter.ordinal()];
+    }
+
+    public synchronized void reset() {
+        for (long[] values : new long[][] { stageCounts, stageTotals, stageMaxima, counterCounts, counterTotals,
+                counterMaxima }) {
+            Arrays.fill(values, 0);
+        }
+    }
+
+    /**
+     * @return one line for every stage and counter which has been reported
+     */
+    @Override
+    public synchronized String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (Stage stage : Stage.values()) {
+            if (stageCounts[stage.ordinal()] == 0)
+                continue;
+            builder.append(String.format(Locale.US, "%s: n=%d avg=%.1fms max=%.1fms%n", stage,
+                    stageCounts[stage.ordinal()], getStageAverage(stage) / 1e6, getStageMaximum(stage) / 1e6));
+        }
+        for (Counter counter : Counter.values()) {
+            if (counterCounts[counter.ordinal()] == 0)
+                continue;
+            builder.append(String.format(Locale.US, "%s: n=%d avg=%.1f max=%d%n", counter,
+                    counterCounts[counter.ordinal()], getCounterAverage(counter), getCounterMaximum(counter)));
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,212 @@
+package io.github.stevenalbert.gradeit.process;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfPoint;
+import org.opencv.core.MatOfPoint2f;
+import org.opencv.core.Size;
+
+import java.util.HashMap;
+
+import io.github.stevenalbert.gradeit.model.AnswerSheetMetadata.PaperDimension;
+
+/**
+ * Scratch Mats reused by {@link AnswerSheetScorer} across consecutive answer
+ * sheets, so the native memory of one grading session is allocated once instead
+ * of for every sheet. Mats with the size of the paper are kept for each paper
+ * dimension. Call {@link #release()} at the end of the session.
+ *
+ * Mats returned by the scorer from a context (e.g. the converted answer sheet) are
+ * owned by the context and are only valid until the next sheet is processed. A
+ * context is not thread safe, use one context per grading thread.
+ */
+public class ScoringContext {
+
+    /**
+     * Mats with the size of the paper
+     */
+    private static class PaperMats {
+        private final Mat perspective = new Mat();
+        private final Mat contour = new Mat();
+        private final Mat outputDraw = new Mat();
+        private final Mat photo = new Mat();
+
+        private void release() {
+            perspective.release();
+            photo.release();
+            contour.release();
+            outputDraw.release();
+        }
+    }
+
+    // Mats with the size of the photo, or of a pyramid level of it
+    private final Mat gray = new Mat();
+    private final Mat photoContour = new Mat();
+    private final Mat[] pyramidLevels = new Mat[] { new Mat(), new Mat() };
+
+    // Mats with the size of the paper, keyed by the paper dimension
+    private final HashMap<Size, PaperMats> paperMats = new HashMap<>();
+
+    // Small Mats reused for every contour
+    private final Mat hierarchy = new Mat();
+    private final MatOfPoint2f curve = new MatOfPoint2f();
+    private final MatOfPoint2f approx = new MatOfPoint2f();
+    private final MatOfPoint approxPoints = new MatOfPoint();
+
+    // Corner refinement
+    private final Mat cornerWindow = new Mat();
+    private final MatOfPoint2f corner = new MatOfPoint2f();
+
+    private boolean pyramidDetection = false;
+
+    private PipelineMetrics metrics;
+    private long allocatedBytes = 0;
+
+    /**
+     * Find the paper on a smaller level of the image pyramid, then refine its corners
+     * on the full resolution photo. It is used for photos with more than
+     * {@link AnswerSheetScorer#MAX_DETECTION_PIXELS} pixels.
+     *
+     * @param pyramidDetection
+     *            true to use coarse to fine paper detection
+     */
+    public void setPyramidDetection(boolean pyramidDetection) {
+        this.pyramidDetection = pyramidDetection;
+    }
+
+    public boolean isPyramidDetection() {
+        return pyramidDetection;
+    }
+
+    /**
+     * @param metrics
+     *            listener of the stage timings and counters, or null
+     */
+    public void setMetrics(PipelineMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public PipelineMetrics getMetrics() {
+        return metrics;
+    }
+
+    Mat getGray(int rows, int cols) {
+        return create(gray, rows, cols, CvType.CV_8UC1);
+    }
+
+    Mat getPhotoContour(int rows, int cols) {
+        return create(photoContour, rows, cols, CvType.CV_8UC1);
+    }
+
+    Mat getPerspective(PaperDimension dimension) {
+        Mat perspective = getPaperMats(dimension.height, dimension.width).perspective;
+        return create(perspective, dimension.height, dimension.width, CvType.CV_8UC1);
+    }
+
+    Mat getPyramidLevel(int index, int rows, int cols, int type) {
+        return create(pyramidLevels[index], rows, cols, type);
+    }
+
+    Mat getPaperPhoto(PaperDimension dimension, int type) {
+        Mat photo = getPaperMats(dimension.height, dimension.width).photo;
+        return create(photo, dimension.height, dimension.width, type);
+    }
+
+    Mat getCornerWindow() {
+        return cornerWindow;
+    }
+
+    MatOfPoint2f getCorner() {
+        return corner;
+    }
+
+    Mat getPaperContour(int rows, int cols) {
+        Mat contour = getPaperMats(rows, cols).contour;
+        return create(contour, rows, cols, CvType.CV_8UC1);
+    }
+
+    /**
+     * Get the 3 channels Mat to draw the processed answer sheet of the given paper
+     * dimension on
+     *
+     * @param dimension
+     *            paper dimension of the answer sheet
+     * @return Mat owned by this context
+     */
+    public Mat getOutputDraw(PaperDimension dimension) {
+        Mat outputDraw = getPaperMats(dimension.height, dimension.width).outputDraw;
+        return create(outputDraw, dimension.height, dimension.width, CvType.CV_8UC3);
+    }
+
+    Mat getHierarchy() {
+        return hierarchy;
+    }
+
+    MatOfPoint2f getCurve() {
+        return curve;
+    }
+
+    MatOfPoint2f getApprox() {
+        return approx;
+    }
+
+    MatOfPoint getApproxPoints() {
+        return approxPoints;
+    }
+
+    /**
+     * Release all native memory of this context. The context can still be used
+     * afterwards, the Mats will be allocated again when needed.
+     */
+    public void release() {
+        gray.release();
+        photoContour.release();
+        for (Mat pyramidLevel : pyramidLevels) {
+            pyramidLevel.release();
+        }
+        for (PaperMats mats : paperMats.values()) {
+            mats.release();
+        }
+        paperMats.clear();
+        hierarchy.release();
+        curve.release();
+        approx.release();
+        approxPoints.release();
+        cornerWindow.release();
+        corner.release();
+    }
+
+    /**
+     * Count native memory allocated outside of this context for the current sheet
+     */
+    void addAllocatedBytes(long bytes) {
+        allocatedBytes += bytes;
+    }
+
+    /**
+     * @return native memory allocated since the last call, in bytes
+     */
+    long takeAllocatedBytes() {
+        long bytes = allocatedBytes;
+        allocatedBytes = 0;
+        return bytes;
+    }
+
+    private Mat create(Mat mat, int rows, int cols, int type) {
+        if (mat.rows() != rows || mat.cols() != cols || mat.type() != type) {
+            allocatedBytes += (long) rows * cols * CvType.ELEM_SIZE(type);
+            mat.create(rows, cols, type);
+        }
+        return mat;
+    }
+
+    private PaperMats getPaperMats(int rows, int cols) {
+        Size size = new Size(cols, rows);
+        PaperMats mats = paperMats.get(size);
+        if (mats == null) {
+            mats = new PaperMats();
+            paperMats.put(size, mats);
+        }
+        return mats;
+    }
+}
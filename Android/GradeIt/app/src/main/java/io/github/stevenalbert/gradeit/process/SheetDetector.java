@@ -0,0 +1,251 @@
+package io.github.stevenalbert.gradeit.process;
+
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfPoint;
+import org.opencv.core.MatOfPoint2f;
+import org.opencv.core.Point;
+import org.opencv.core.Rect;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+import java.util.ArrayList;
+
+import io.github.stevenalbert.gradeit.model.AnswerSheetMetadata;
+import io.github.stevenalbert.gradeit.model.AnswerSheetMetadata.PaperDimension;
+import io.github.stevenalbert.gradeit.model.AnswerSheetMetadata.Value;
+
+/**
+ * Cheap answer sheet detector for camera preview frames. The frame is scaled down
+ * to at most {@link #MAX_DETECTION_PIXELS} pixels, the paper is found the same way
+ * as {@link AnswerSheetScorer} does, then the paper is warped to a small image to
+ * count its black anchor squares. A sheet is reported as ready to grade once it is
+ * fully visible, has its anchors and has not moved for {@link #STABLE_FRAMES}
+ * frames. After that the detector waits until the sheet is taken away (or moved)
+ * before it reports the next sheet, so every sheet of a stack is graded once.
+ *
+ * A detector keeps scratch Mats between frames, call {@link #release()} when the
+ * camera stops. It is not thread safe.
+ */
+public class SheetDetector {
+
+    public enum State {
+        /** No paper in the frame */
+        NOT_FOUND,
+        /** The paper touches the border of the frame */
+        NOT_VISIBLE,
+        /** The paper is still moving */
+        MOVING,
+        /** The paper does not have enough anchor squares */
+        NO_ANCHORS,
+        /** The sheet is stable, grade the current frame */
+        READY,
+        /** The sheet has been reported, waiting for the next sheet */
+        WAITING
+    }
+
+    // Maximum pixels of the pyramid level used to find the paper
+    public static final long MAX_DETECTION_PIXELS = 320 * 240;
+
+    // Adaptive threshold block size on the pyramid level, about the same part of the
+    // paper as the block size of the scorer on a full resolution photo
+    private static final int DETECTION_BLOCK_SIZE = 17;
+
+    // Number of consecutive frames the paper must stay still
+    public static final int STABLE_FRAMES = 3;
+
+    // Corner movement allowed between frames, relative to the frame width
+    private static final double STABLE_TOLERANCE = 0.015;
+
+    // Distance the corners must keep from the frame border, relative to the frame size
+    private static final double BORDER_MARGIN = 0.01;
+
+    // Side length of an anchor square on the warped paper, in pixels
+    private static final int ANCHOR_SQUARE_SIZE = 8;
+
+    // Part of the anchor squares which must be found
+    private static final double MIN_ANCHOR_RATIO = 0.75;
+
+    private final PaperDimension dimension;
+    private final int paperWidth, paperHeight;
+    private final int requiredAnchors;
+
+    private final ScoringContext context = new ScoringContext();
+    private final Mat paper = new Mat();
+
+    private Point[] corners = null;
+    private int stableCount = 0;
+    private boolean reported = false;
+
+    public SheetDetector(AnswerSheetMetadata metadata) {
+        dimension = metadata.getDimension();
+        double scale = (double) ANCHOR_SQUARE_SIZE / Math.min(dimension.squareWidth, dimension.squareHeight);
+        paperWidth = (int) Math.round(dimension.width * scale);
+        paperHeight = (int) Math.round(dimension.height * scale);
+
+        // Anchors are the left column and the bottom row, which share the corner square
+        int verticalAnchors = 0, horizontalAnchors = 0;
+        for (int i = 0; i < metadata.getValueLength(); i++) {
+            Value value = metadata.getValue(i);
+            verticalAnchors = Math.max(verticalAnchors, value.endVerticalIndex + 1);
+            horizontalAnchors = Math.max(horizontalAnchors, value.endHorizontalIndex + 1);
+        }
+        requiredAnchors = (int) Math.ceil((verticalAnchors + horizontalAnchors - 1) * MIN_ANCHOR_RATIO);
+    }
+
+    /**
+     * Detect the answer sheet on the next preview frame
+     *
+     * @param frame
+     *            - grayscale preview frame
+     * @return state of the sheet, {@link State#READY} is returned once per sheet
+     */
+    public State detect(Mat frame) {
+        if (frame == null) {
+            throw new IllegalArgumentException("Argument cannot be null");
+        }
+
+        // Go down the image pyramid until the frame is small enough
+        Mat level = frame;
+        int scale = 1, levelIndex = 0;
+        while (level.total() > MAX_DETECTION_PIXELS) {
+            Mat nextLevel = context.getPyramidLevel(levelIndex, (level.rows() + 1) / 2, (level.cols() + 1) / 2,
+                    level.type());
+            levelIndex = 1 - levelIndex;
+            Imgproc.pyrDown(level, nextLevel);
+            level = nextLevel;
+            scale *= 2;
+        }
+
+        Mat binary = context.getGray(level.rows(), level.cols());
+        AnswerSheetScorer.toGray(level, binary);
+        Imgproc.blur(binary, binary, new Size(3, 3));
+        Imgproc.adaptiveThreshold(binary, binary, 255, Imgproc.ADAPTIVE_THRESH_GAUSSIAN_C, Imgproc.THRESH_BINARY,
+                DETECTION_BLOCK_SIZE, AnswerSheetScorer.ADAPTIVE_C);
+
+        double approxEpsilon = 0.02 * Math.min(level.rows(), level.cols());
+        Point[] levelCorners = AnswerSheetScorer.findPaperCorners(binary, approxEpsilon, context);
+        if (levelCorners == null) {
+            return reset(null, State.NOT_FOUND);
+        }
+
+        Point[] frameCorners = new Point[levelCorners.length];
+        for (int i = 0; i < levelCorners.length; i++) {
+            frameCorners[i] = new Point(levelCorners[i].x * scale, levelCorners[i].y * scale);
+        }
+
+        // Every corner must be inside the frame, away from its border
+        double marginX = BORDER_MARGIN * frame.cols(), marginY = BORDER_MARGIN * frame.rows();
+        for (Point corner : frameCorners) {
+            if (corner.x < marginX || corner.x > frame.cols() - 1 - marginX || corner.y < marginY
+                    || corner.y > frame.rows() - 1 - marginY) {
+                return reset(frameCorners, State.NOT_VISIBLE);
+            }
+        }
+
+        // The paper must stay at the same place for a few frames
+        boolean moved = (corners == null);
+        double tolerance = STABLE_TOLERANCE * frame.cols();
+        for (int i = 0; !moved && i < frameCorners.length; i++) {
+            moved = Math.hypot(frameCorners[i].x - corners[i].x, frameCorners[i].y - corners[i].y) > tolerance;
+        }
+        if (moved) {
+            return reset(frameCorners, State.MOVING);
+        }
+        corners = frameCorners;
+        if (reported) {
+            return State.WAITING;
+        }
+        if (++stableCount < STABLE_FRAMES) {
+            return State.MOVING;
+        }
+
+        // Only a stable paper is warped to look for its anchors
+        if (countAnchors(level, levelCorners) < requiredAnchors) {
+            return State.NO_ANCHORS;
+        }
+
+        reported = true;
+        return State.READY;
+    }
+
+    /**
+     * @return corners of the paper on the last frame (top left, top right, bottom
+     *         right, bottom left), or null if the paper was not found
+     */
+    public Point[] getCorners() {
+        return corners;
+    }
+
+    /**
+     * Report the current sheet again, e.g. after its frame could not be graded
+     */
+    public void retry() {
+        reported = false;
+        stableCount = 0;
+    }
+
+    /**
+     * Release all native memory of this detector
+     */
+    public void release() {
+        context.release();
+        paper.release();
+    }
+
+    private State reset(Point[] frameCorners, State state) {
+        corners = frameCorners;
+        stableCount = 0;
+        reported = false;
+        return state;
+    }
+
+    /**
+     * Count the black squares with the size of an anchor on the paper warped to a
+     * small image
+     */
+    private int countAnchors(Mat level, Point[] levelCorners) {
+        Mat gray = context.getPhotoContour(level.rows(), level.cols());
+        AnswerSheetScorer.toGray(level, gray);
+        AnswerSheetScorer.warpToPaper(gray, paper, levelCorners, paperWidth, paperHeight);
+        int blockSize = Math.max(3, (AnswerSheetScorer.ADAPTIVE_BLOCK_SIZE * paperWidth / dimension.width) | 1);
+        Imgproc.adaptiveThreshold(paper, paper, 255, Imgproc.ADAPTIVE_THRESH_GAUSSIAN_C, Imgproc.THRESH_BINARY,
+                blockSize, AnswerSheetScorer.ADAPTIVE_C);
+
+        ArrayList<MatOfPoint> contours = new ArrayList<>();
+        Mat copyForContour = context.getPaperContour(paperHeight, paperWidth);
+        paper.copyTo(copyForContour);
+        Imgproc.findContours(copyForContour, contours, context.getHierarchy(), Imgproc.RETR_LIST,
+                Imgproc.CHAIN_APPROX_SIMPLE);
+
+        int minArea = ANCHOR_SQUARE_SIZE * ANCHOR_SQUARE_SIZE / 2, maxArea = ANCHOR_SQUARE_SIZE * ANCHOR_SQUARE_SIZE * 3;
+        MatOfPoint2f curve = context.getCurve(), approx = context.getApprox();
+        MatOfPoint approxPoints = context.getApproxPoints();
+        int anchors = 0;
+        for (MatOfPoint contour : contours) {
+            contour.convertTo(curve, CvType.CV_32F);
+            contour.release();
+            Imgproc.approxPolyDP(curve, approx, Imgproc.arcLength(curve, true) * 0.08, true);
+
+            double area = Math.abs(Imgproc.contourArea(approx));
+            if (approx.total() != 4 || area < minArea || area > maxArea)
+                continue;
+            approx.convertTo(approxPoints, CvType.CV_32S);
+            if (!Imgproc.isContourConvex(approxPoints))
+                continue;
+
+            // Same black percentage as the black squares of the scorer
+            Rect rect = Imgproc.boundingRect(approxPoints);
+            Mat square = paper.submat(rect);
+            int white = Core.countNonZero(square);
+            square.release();
+            if (white < 0.2 * rect.area()) {
+                anchors++;
+            }
+        }
+        contours.clear();
+
+        return anchors;
+    }
+}
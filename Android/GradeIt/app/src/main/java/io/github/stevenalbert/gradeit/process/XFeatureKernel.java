@@ -0,0 +1,359 @@
+package io.github.stevenalbert.gradeit.process;
+
+import org.opencv.core.Mat;
+
+/**
+ * Allocation free version of {@link FeatureExtractor#getFeatureX(Mat)}. All the
+ * steps (crop, F9 normalization, center search, shift and masking) are done on
+ * primitive scratch buffers which are reused for every cell, so the only native
+ * call per cell is the bulk read of its pixels.
+ *
+ * The result is the same as {@link FeatureExtractor#getFeatureX(Mat)}, including
+ * the moment arithmetic of Imgproc.moments(mat, true). An instance is not thread
+ * safe, use one instance per thread.
+ */
+public class XFeatureKernel {
+    private static final int X_NORM_SIZE = 11;
+    private static final int CENTER_SIZE = 5;
+    private static final int MOMENTS_TILE_SIZE = 32;
+
+    private static final int[] MASK_CENTER = new int[] {
+            2, 1, 0, 1, 2,
+            1, 4, 3, 4, 1,
+            0, 3, 6, 3, 0,
+            1, 4, 3, 4, 1,
+            2, 1, 0, 1, 2 };
+
+    /**
+     * Same values as the mask created in FeatureExtractor.createNewMaskX11()
+     */
+    private static final int[] MASK_X11 = new int[] {
+            2, 1, -1, -7, -15, -15, -15, -7, -1, 1, 2,
+            1, 2, 1, -1, -7, -15, -7, -1, 1, 2, 1,
+            -1, 1, 2, 1, -1, -7, -1, 1, 2, 1, -1,
+            -7, -1, 1, 2, 1, -1, 1, 2, 1, -1, -7,
+            -15, -7, -1, 1, 2, 1, 2, 1, -1, -7, -15,
+            -15, -15, -7, -1, 1, 2, 1, -1, -7, -15, -15,
+            -15, -7, -1, 1, 2, 1, 2, 1, -1, -7, -15,
+            -7, -1, 1, 2, 1, -1, 1, 2, 1, -1, -7,
+            -1, 1, 2, 1, -1, -7, -1, 1, 2, 1, -1,
+            1, 2, 1, -1, -7, -15, -7, -1, 1, 2, 1,
+            2, 1, -1, -7, -15, -15, -15, -7, -1, 1, 2 };
+
+    // Scratch buffers
+    private byte[] pixels = new byte[0];
+    private int[] rowProjection = new int[0];
+    private int[] colProjection = new int[0];
+    private final int[] whitePixels = new int[X_NORM_SIZE * X_NORM_SIZE];
+    private final int[] totalPixels = new int[X_NORM_SIZE * X_NORM_SIZE];
+    private final int[] normalized = new int[X_NORM_SIZE * X_NORM_SIZE];
+
+    // Raw moments of the cropped image
+    private double m00, m10, m01, m20, m02;
+
+    /**
+     * get a number indicating whether the given image contains an X or not.
+     *
+     * @param imgThreshold
+     *            single channel 8-bit image to be checked whether it contains an X
+     *            or not
+     * @return the same value as {@link FeatureExtractor#getFeatureX(Mat)}
+     */
+    public double getFeatureX(Mat imgThreshold) {
+        int rows = imgThreshold.rows(), cols = imgThreshold.cols();
+        if (pixels.length < rows * cols)
+            pixels = new byte[rows * cols];
+        imgThreshold.get(0, 0, pixels);
+        return getFeatureX(pixels, rows, cols);
+    }
+
+    /**
+     * get a number indicating whether the given image contains an X or not.
+     *
+     * @param imgThreshold
+     *            pixels of a single channel 8-bit image in row major order
+     * @param rows
+     *            number of rows of the image
+     * @param cols
+     *            number of columns of the image
+     * @return the same value as {@link FeatureExtractor#getFeatureX(Mat)}
+     */
+    public double getFeatureX(byte[] imgThreshold, int rows, int cols) {
+        // =======================================================
+        // crop only the character without excess white background
+        // =======================================================
+        if (rowProjection.length < rows)
+            rowProjection = new int[rows];
+        if (colProjection.length < cols)
+            colProjection = new int[cols];
+        for (int i = 0; i < rows; i++)
+            rowProjection[i] = 0;
+        for (int ii = 0; ii < cols; ii++)
+            colProjection[ii] = 0;
+        // count the black pixels (<= 150) in each row and column
+        for (int i = 0, idx = 0; i < rows; i++) {
+            for (int ii = 0; ii < cols; ii++, idx++) {
+                if ((imgThreshold[idx] & 0xFF) <= 150) {
+                    rowProjection[i]++;
+                    colProjection[ii]++;
+                }
+            }
+        }
+        int idxTop = 0, idxBottom = rows - 1;
+        while (idxTop < rows && rowProjection[idxTop] == cols)
+            idxTop++;
+        while (idxBottom >= 0 && rowProjection[idxBottom] == cols)
+            idxBottom--;
+        int idxLeft = 0, idxRight = cols - 1;
+        while (idxLeft < cols && colProjection[idxLeft] == rows)
+            idxLeft++;
+        while (idxRight >= 0 && colProjection[idxRight] == rows)
+            idxRight--;
+
+        int cropTop = 0, cropLeft = 0, cropRows = rows, cropCols = cols;
+        if (idxTop < idxBottom && idxLeft < idxRight) {
+            cropTop = idxTop;
+            cropLeft = idxLeft;
+            cropRows = idxBottom + 1 - idxTop;
+            cropCols = idxRight + 1 - idxLeft;
+        }
+
+        // ================================
+        // normalize using F9 Normalization
+        // ================================
+        if (!normalizationF9(imgThreshold, cols, cropTop, cropLeft, cropRows, cropCols))
+            return 0;
+
+        // ==============================
+        // for masking to find the center
+        // ==============================
+        // index for masking (adjustment by +1 and -1 to get the center)
+        int idxStartCenterRow = (X_NORM_SIZE + 1) / 2 - 1 - CENTER_SIZE / 2;
+        int idxEndCenterRow = (X_NORM_SIZE + 1) / 2 - 1 + CENTER_SIZE / 2;
+        int idxStartCenterCol = (X_NORM_SIZE + 1) / 2 - 1 - CENTER_SIZE / 2;
+        int idxEndCenterCol = (X_NORM_SIZE + 1) / 2 - 1 + CENTER_SIZE / 2;
+        int idxCenterRow = 0;
+        int idxCenterCol = 0;
+        int dotMax = 0, dotTemp;
+        int distXTemp = CENTER_SIZE, distYTemp = CENTER_SIZE;
+
+        // searching the center of the character
+        for (int ii = idxStartCenterRow; ii <= idxEndCenterRow; ii++) {
+            for (int iii = idxStartCenterCol; iii <= idxEndCenterCol; iii++) {
+                dotTemp = 0;
+                for (int r = 0; r < CENTER_SIZE; r++) {
+                    int normOffset = (ii - CENTER_SIZE / 2 + r) * X_NORM_SIZE + iii - CENTER_SIZE / 2;
+                    for (int c = 0; c < CENTER_SIZE; c++) {
+                        dotTemp += normalized[normOffset + c] * MASK_CENTER[r * CENTER_SIZE + c];
+                    }
+                }
+                if (dotMax < dotTemp) {
+                    dotMax = dotTemp;
+                    idxCenterRow = ii;
+                    idxCenterCol = iii;
+                    distXTemp = Math.abs(idxCenterCol - X_NORM_SIZE / 2);
+                    distYTemp = Math.abs(idxCenterRow - X_NORM_SIZE / 2);
+                } else if (dotMax == dotTemp) {
+                    int distX = Math.abs((iii - X_NORM_SIZE / 2));
+                    int distY = Math.abs((ii - X_NORM_SIZE / 2));
+                    if (distX + distY < distXTemp + distYTemp) {
+                        idxCenterRow = ii;
+                        idxCenterCol = iii;
+                        distXTemp = Math.abs(idxCenterCol - X_NORM_SIZE / 2);
+                        distYTemp = Math.abs(idxCenterRow - X_NORM_SIZE / 2);
+                    }
+                }
+            }
+        }
+
+        // =====================================================
+        // shift the image according to the new found center and
+        // dot it with the X-mask
+        // =====================================================
+        int shiftCol = X_NORM_SIZE / 2 - idxCenterCol;
+        int shiftRow = X_NORM_SIZE / 2 - idxCenterRow;
+        int result = 0;
+        for (int i = 0; i < X_NORM_SIZE; i++) {
+            int srcRow = i - shiftRow;
+            if (srcRow < 0 || srcRow >= X_NORM_SIZE)
+                continue;
+            for (int ii = 0; ii < X_NORM_SIZE; ii++) {
+                int srcCol = ii - shiftCol;
+                if (srcCol < 0 || srcCol >= X_NORM_SIZE)
+                    continue;
+                result += normalized[srcRow * X_NORM_SIZE + srcCol] * MASK_X11[i * X_NORM_SIZE + ii];
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Primitive version of GrayImgProc.normalizationF9(in, 11, 11) followed by the
+     * threshold to 1. The result is written to normalized.
+     *
+     * @return false if the region of interest is empty, which means the normalized
+     *         image only contains zeros
+     */
+    private boolean normalizationF9(byte[] img, int step, int top, int left, int rows, int cols) {
+        float r1, r2;
+        int rowsOfInterest, colsOfInterest;
+        int startingNewRowIndex, startingNewColIndex;
+
+        // calculate the moment of the original image
+        binaryMoments(img, step, top, left, rows, cols);
+        double invM00 = Math.abs(m00) > 1e-8 ? 1. / m00 : 0;
+        double mu20 = m20 - m10 * (m10 * invM00);
+        double mu02 = m02 - m01 * (m01 * invM00);
+        double centerXOri = m10 / m00;
+        double centerYOri = m01 / m00;
+        double miu20 = Math.sqrt(mu20 / m00);
+        double miu02 = Math.sqrt(mu02 / m00);
+
+        // expand/trim the dimension of the original image using moment (the start index
+        // is inclusive while the end is exclusive). Pixels outside the cropped image are 0
+        int startingOriRowIndex = (int) Math.round(centerYOri - 2 * miu02),
+                startingOriColIndex = (int) Math.round(centerXOri - 2 * miu20);
+        int endOriRowIndex = (int) Math.round(centerYOri + 2 * miu02),
+                endOriColIndex = (int) Math.round(centerXOri + 2 * miu20);
+        int inRows = endOriRowIndex - startingOriRowIndex;
+        int inCols = endOriColIndex - startingOriColIndex;
+        if (inRows <= 0 || inCols <= 0)
+            return false;
+
+        // adjust the center x and y of the original image with the new dimension
+        centerXOri = centerXOri - startingOriColIndex;
+        centerYOri = centerYOri - startingOriRowIndex;
+
+        // Calculate the new dimension for the output matrix
+        if (inRows < inCols) {
+            r1 = (float) inRows / inCols;
+            r2 = (float) Math.cbrt(r1);
+            colsOfInterest = X_NORM_SIZE;
+            startingNewColIndex = 0;
+            rowsOfInterest = (int) Math.round(r2 * colsOfInterest);
+            startingNewRowIndex = (int) Math.round((float) (X_NORM_SIZE - rowsOfInterest) / 2);
+        } else {
+            r1 = (float) inCols / inRows;
+            r2 = (float) Math.cbrt(r1);
+            rowsOfInterest = X_NORM_SIZE;
+            startingNewRowIndex = 0;
+            colsOfInterest = (int) Math.round(r2 * rowsOfInterest);
+            startingNewColIndex = (int) Math.round((float) (X_NORM_SIZE - colsOfInterest) / 2);
+        }
+        // calculate the center of the normalized image
+        int centerXNorm = colsOfInterest / 2, centerYNorm = rowsOfInterest / 2;
+
+        // Calculate the transformation
+        float alpha, betha;
+        alpha = (float) colsOfInterest / inCols;
+        betha = (float) rowsOfInterest / inRows;
+
+        // Normalize by discretization
+        int totalOfInterest = rowsOfInterest * colsOfInterest;
+        for (int i = 0; i < totalOfInterest; i++) {
+            whitePixels[i] = 0;
+            totalPixels[i] = 0;
+        }
+
+        int currentNewRowIndex, currentNewColIndex, nextNewRowIndex, nextNewColIndex;
+        // scan through the original image
+        for (int i = 0; i < inRows; i++) {
+            // indexing for the normalized image
+            currentNewRowIndex = (int) Math.round((i - centerYOri) * betha + centerYNorm);
+            if (currentNewRowIndex < 0)
+                currentNewRowIndex = 0;
+            else if (currentNewRowIndex >= rowsOfInterest)
+                currentNewRowIndex = rowsOfInterest - 1;
+
+            nextNewRowIndex = (int) Math.round((i + 1 - centerYOri) * betha + centerYNorm);
+            if (nextNewRowIndex < 0)
+                nextNewRowIndex = 0;
+            else if (nextNewRowIndex >= rowsOfInterest)
+                nextNewRowIndex = rowsOfInterest - 1;
+
+            int imgRow = i + startingOriRowIndex;
+            boolean isRowInside = imgRow >= 0 && imgRow < rows;
+            for (int ii = 0; ii < inCols; ii++) {
+                // indexing for the normalized image
+                currentNewColIndex = (int) Math.round((ii - centerXOri) * alpha + centerXNorm);
+                if (currentNewColIndex < 0)
+                    currentNewColIndex = 0;
+                else if (currentNewColIndex >= colsOfInterest)
+                    currentNewColIndex = colsOfInterest - 1;
+
+                nextNewColIndex = (int) Math.round((ii + 1 - centerXOri) * alpha + centerXNorm);
+                if (nextNewColIndex < 0)
+                    nextNewColIndex = 0;
+                else if (nextNewColIndex >= colsOfInterest)
+                    nextNewColIndex = colsOfInterest - 1;
+
+                // current color
+                int imgCol = ii + startingOriColIndex;
+                int currVal = (isRowInside && imgCol >= 0 && imgCol < cols
+                        && img[(top + imgRow) * step + left + imgCol] != 0) ? 1 : 0;
+                // for each pixel between the indices, update them with the value at (i,ii)
+                for (int iii = currentNewRowIndex; iii <= nextNewRowIndex; iii++) {
+                    for (int iiii = currentNewColIndex; iiii <= nextNewColIndex; iiii++) {
+                        // add current color to output matrix section
+                        whitePixels[iii * colsOfInterest + iiii] += currVal;
+                        totalPixels[iii * colsOfInterest + iiii]++;
+                    }
+                } // end of for (updating normalized image)
+            }
+        } // end of for (scanning original image's)
+
+        // copy the region of interest to the center of the output, white is 1
+        for (int i = 0; i < normalized.length; i++)
+            normalized[i] = 0;
+        for (int i = 0; i < rowsOfInterest; i++) {
+            for (int ii = 0; ii < colsOfInterest; ii++) {
+                int idx = i * colsOfInterest + ii;
+                if (whitePixels[idx] + whitePixels[idx] >= totalPixels[idx])
+                    normalized[(startingNewRowIndex + i) * X_NORM_SIZE + startingNewColIndex + ii] = 1;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Raw moments of the binary image (non zero pixel is counted as 1), computed the
+     * same way as Imgproc.moments(mat, true): integer sums per tile of 32x32 pixels
+     * scaled by 1/255 and accumulated with the tile offset.
+     */
+    private void binaryMoments(byte[] img, int step, int top, int left, int rows, int cols) {
+        final double s = 1. / 255;
+        m00 = m10 = m01 = m20 = m02 = 0;
+        for (int y = 0; y < rows; y += MOMENTS_TILE_SIZE) {
+            int tileRows = Math.min(MOMENTS_TILE_SIZE, rows - y);
+            for (int x = 0; x < cols; x += MOMENTS_TILE_SIZE) {
+                int tileCols = Math.min(MOMENTS_TILE_SIZE, cols - x);
+                int mom0 = 0, mom1 = 0, mom2 = 0, mom3 = 0, mom5 = 0;
+                for (int ty = 0; ty < tileRows; ty++) {
+                    int offset = (top + y + ty) * step + left + x;
+                    int x0 = 0, x1 = 0, x2 = 0;
+                    for (int tx = 0; tx < tileCols; tx++) {
+                        if (img[offset + tx] != 0) {
+                            x0 += 255;
+                            x1 += tx * 255;
+                            x2 += tx * 255 * tx;
+                        }
+                    }
+                    mom0 += x0;
+                    mom1 += x1;
+                    mom2 += ty * x0;
+                    mom3 += x2;
+                    mom5 += x0 * (ty * ty);
+                }
+                double tileM00 = mom0 * s, tileM10 = mom1 * s, tileM01 = mom2 * s;
+                double tileM20 = mom3 * s, tileM02 = mom5 * s;
+                double xm = x * tileM00, ym = y * tileM00;
+                m00 += tileM00;
+                m10 += tileM10 + xm;
+                m01 += tileM01 + ym;
+                m20 += tileM20 + x * (tileM10 * 2 + xm);
+                m02 += tileM02 + y * (tileM01 * 2 + ym);
+            }
+        }
+    }
+}
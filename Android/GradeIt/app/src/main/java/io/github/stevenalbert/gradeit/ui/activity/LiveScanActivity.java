@@ -0,0 +1,255 @@
+package io.github.stevenalbert.gradeit.ui.activity;
+
+import android.content.pm.ActivityInfo;
+import android.os.Bundle;
+import android.util.Log;
+import android.view.SurfaceView;
+import android.view.WindowManager;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import org.opencv.android.BaseLoaderCallback;
+import org.opencv.android.CameraBridgeViewBase;
+import org.opencv.android.LoaderCallbackInterface;
+import org.opencv.android.OpenCVLoader;
+import org.opencv.core.Mat;
+import org.opencv.core.Point;
+import org.opencv.core.Scalar;
+import org.opencv.imgproc.Imgproc;
+
+import java.io.IOException;
+
+import io.github.stevenalbert.gradeit.GradeItApplication;
+import io.github.stevenalbert.gradeit.R;
+import io.github.stevenalbert.gradeit.database.GradingStore;
+import io.github.stevenalbert.gradeit.model.AnswerKey;
+import io.github.stevenalbert.gradeit.model.AnswerSheet;
+import io.github.stevenalbert.gradeit.model.AnswerSheetMetadata;
+import io.github.stevenalbert.gradeit.process.GradingPipeline;
+import io.github.stevenalbert.gradeit.process.SheetDetector;
+import io.github.stevenalbert.gradeit.util.AppSharedPreference;
+import io.github.stevenalbert.gradeit.util.MetadataRegistry;
+
+/**
+ * Grade answer sheets straight from the camera preview. Every few preview frames
+ * are checked by {@link SheetDetector}, once a sheet is stable the frame is sent to
+ * a {@link GradingPipeline} and saved, so a stack of sheets is graded by flipping
+ * them while the previous sheets are still being graded.
+ */
+public class LiveScanActivity extends BaseActivity implements CameraBridgeViewBase.CvCameraViewListener2 {
+
+    // TAG
+    private static final String TAG = LiveScanActivity.class.getSimpleName();
+
+    // Only one of this many preview frames is checked for an answer sheet
+    private static final int DETECTION_INTERVAL = 2;
+
+    // Colors of the paper outline, RGBA
+    private static final Scalar DETECTING_COLOR = new Scalar(255, 200, 0, 255);
+    private static final Scalar DETECTED_COLOR = new Scalar(0, 200, 0, 255);
+
+    // Camera
+    private CameraBridgeViewBase cameraView;
+    private TextView statusText;
+    private TextView resultText;
+
+    // Metadata of the chosen form format
+    private AnswerSheetMetadata metadata;
+
+    // Only used on the camera thread
+    private SheetDetector sheetDetector;
+    private SheetDetector.State detectorState;
+    private int frameCount = 0;
+
+    // The grading pipeline asks the camera thread to retry the current sheet
+    private volatile boolean isRetryNeeded = false;
+
+    // Grading pipeline of the preview frames
+    private GradingPipeline<Mat> gradingPipeline;
+    private int gradedCount = 0;
+
+    private BaseLoaderCallback mLoaderCallback = new BaseLoaderCallback(this) {
+        @Override
+        public void onManagerConnected(int status) {
+            switch (status) {
+                case BaseLoaderCallback.SUCCESS:
+                    Log.i(TAG, "OpenCV Loaded successfully");
+                    cameraView.enableView();
+                    break;
+                default:
+                    super.onManagerConnected(status);
+            }
+        }
+    };
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        // Camera frames are always landscape
+        setRequestedOrientation(ActivityInfo.SCREEN_ORIENTATION_LANDSCAPE);
+        getWindow().addFlags(WindowManager.LayoutParams.FLAG_KEEP_SCREEN_ON);
+        setContentView(R.layout.activity_live_scan);
+        setTitle(R.string.live_scan_title);
+
+        statusText = findViewById(R.id.live_scan_status);
+        resultText = findViewById(R.id.live_scan_result);
+        resultText.setText(getString(R.string.live_scan_graded_count, gradedCount));
+
+        cameraView = findViewById(R.id.camera_view);
+        cameraView.setVisibility(SurfaceView.VISIBLE);
+        cameraView.setCvCameraViewListener(this);
+
+        try {
+            metadata = MetadataRegistry.getInstance(this).get(AppSharedPreference.getSavedMetadataString(this));
+        } catch (IOException | IllegalArgumentException e) {
+            Log.e(TAG, "Metadata can't be read", e);
+            Toast.makeText(this, R.string.failed_grade_notification, Toast.LENGTH_SHORT).show();
+            finish();
+            return;
+        }
+    }
+
+    @Override
+    public void onResume() {
+        super.onResume();
+        if (!OpenCVLoader.initDebug()) {
+            Log.d(TAG, "Internal OpenCV library not found. Using OpenCV Manager for initialization");
+            OpenCVLoader.initAsync(OpenCVLoader.OPENCV_VERSION, this, mLoaderCallback);
+        } else {
+            Log.d(TAG, "OpenCV library found inside package. Using it!");
+            mLoaderCallback.onManagerConnected(LoaderCallbackInterface.SUCCESS);
+        }
+    }
+
+    @Override
+    public void onPause() {
+        super.onPause();
+        cameraView.disableView();
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        cameraView.disableView();
+        if (gradingPipeline != null) {
+            // The sheets which have been detected are still graded and saved
+            gradingPipeline.shutdown();
+        }
+        GradeItApplication.of(this).logPipelineMetrics();
+    }
+
+    @Override
+    public void onCameraViewStarted(int width, int height) {
+        // OpenCV is loaded once the camera starts
+        if (gradingPipeline == null) {
+            // Preview frames are already images, they are released by the pipeline
+            gradingPipeline = new GradingPipeline<>(metadata, (frame) -> frame,
+                    new GradingStore(getApplication()), gradingListener,
+                    GradeItApplication.of(this).getPipelineMetrics());
+        }
+        sheetDetector = new SheetDetector(metadata);
+        detectorState = null;
+    }
+
+    @Override
+    public void onCameraViewStopped() {
+        if (sheetDetector != null) {
+            sheetDetector.release();
+            sheetDetector = null;
+        }
+    }
+
+    @Override
+    public Mat onCameraFrame(CameraBridgeViewBase.CvCameraViewFrame inputFrame) {
+        Mat rgba = inputFrame.rgba();
+        if (isRetryNeeded) {
+            isRetryNeeded = false;
+            sheetDetector.retry();
+        }
+
+        // Skip frames, the next sheet is looked for while the previous ones are graded
+        if (frameCount++ % DETECTION_INTERVAL == 0) {
+            SheetDetector.State state = sheetDetector.detect(inputFrame.gray());
+            if (state == SheetDetector.State.READY) {
+                Mat photo = rgba.clone();
+                if (!gradingPipeline.offer(photo)) {
+                    photo.release();
+                    sheetDetector.retry();
+                }
+            }
+            updateStatus(state);
+        }
+
+        drawPaper(rgba, sheetDetector.getCorners(), detectorState == SheetDetector.State.READY
+                || detectorState == SheetDetector.State.WAITING ? DETECTED_COLOR : DETECTING_COLOR);
+        return rgba;
+    }
+
+    private void updateStatus(SheetDetector.State state) {
+        if (state == detectorState)
+            return;
+        detectorState = state;
+
+        final int message;
+        switch (state) {
+            case NOT_VISIBLE:
+                message = R.string.live_scan_not_visible;
+                break;
+            case MOVING:
+                message = R.string.live_scan_moving;
+                break;
+            case NO_ANCHORS:
+                message = R.string.live_scan_no_anchors;
+                break;
+            case READY:
+                message = R.string.live_scan_grading;
+                break;
+            case WAITING:
+                message = R.string.live_scan_waiting;
+                break;
+            default:
+                message = R.string.live_scan_not_found;
+        }
+        runOnUiThread(() -> statusText.setText(message));
+    }
+
+    private void drawPaper(Mat rgba, Point[] corners, Scalar color) {
+        if (corners == null)
+            return;
+        for (int i = 0; i < corners.length; i++) {
+            Imgproc.line(rgba, corners[i], corners[(i + 1) % corners.length], color, 3);
+        }
+    }
+
+    private final GradingPipeline.Listener<Mat> gradingListener = new GradingPipeline.Listener<Mat>() {
+        @Override
+        public void onGraded(Mat frame, AnswerSheet answerSheet) {
+            final String result;
+            if (AnswerKey.isAnswerKey(answerSheet)) {
+                result = getString(R.string.live_scan_graded_key, answerSheet.getMCodeString());
+            } else {
+                result = getString(R.string.live_scan_graded_sheet, answerSheet.getExCodeString(),
+                        answerSheet.getMCodeString(), answerSheet.getTotalCorrect(), answerSheet.getTotalAnswer());
+            }
+            runOnUiThread(() -> {
+                if (!AnswerKey.isAnswerKey(answerSheet)) {
+                    gradedCount++;
+                }
+                resultText.setText(getString(R.string.live_scan_graded_count, gradedCount));
+                Toast.makeText(LiveScanActivity.this, result, Toast.LENGTH_SHORT).show();
+            });
+        }
+
+        @Override
+        public void onFailed(Mat frame, AnswerSheet answerSheet, Exception e) {
+            Log.d(TAG, "Frame can't be graded: " + e.getMessage());
+            if (answerSheet == null) {
+                // Look at the same sheet again
+                isRetryNeeded = true;
+            } else {
+                String result = getString(R.string.no_answer_key_error_message, answerSheet.getMCodeString());
+                runOnUiThread(() -> Toast.makeText(LiveScanActivity.this, result, Toast.LENGTH_SHORT).show());
+            }
+        }
+    };
+}
@@ -134,6 +134,11 @@ public class MainActivity extends TabActivity implements
         startActivity(processIntent);
     }
 
+    @Override
+    public void onLiveScanStarted() {
+        startActivity(new Intent(this, LiveScanActivity.class));
+    }
+
     @Override
     public void onFinishDownloadAnswerSheet(File downloadFolder) {
         Snackbar snackbar = Snackbar.make(parentLayout, getString(R.string.success_download_answer_sheet, downloadFolder.getPath()), Snackbar.LENGTH_LONG);
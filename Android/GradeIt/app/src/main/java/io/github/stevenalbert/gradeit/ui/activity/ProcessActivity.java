@@ -14,6 +14,7 @@ import org.opencv.android.BaseLoaderCallback;
 import org.opencv.android.LoaderCallbackInterface;
 import org.opencv.android.OpenCVLoader;
 
+import io.github.stevenalbert.gradeit.GradeItApplication;
 import io.github.stevenalbert.gradeit.R;
 import io.github.stevenalbert.gradeit.model.AnswerKey;
 import io.github.stevenalbert.gradeit.model.AnswerSheet;
@@ -134,7 +135,8 @@ public class ProcessActivity extends LayoutToolbarActivity implements ProcessFra
 
         @Override
         protected Void doInBackground(Void... voids) {
-            AnswerSheetScorer.scoreAnswerSheet(answerSheet, answerKey);
+            AnswerSheetScorer.scoreAnswerSheet(answerSheet, answerKey,
+                    GradeItApplication.of(ProcessActivity.this).getPipelineMetrics());
             return null;
         }
 
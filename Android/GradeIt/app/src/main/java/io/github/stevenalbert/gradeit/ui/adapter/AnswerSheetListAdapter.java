@@ -1,8 +1,13 @@
 package io.github.stevenalbert.gradeit.ui.adapter;
 
+import android.arch.paging.AsyncPagedListDiffer;
+import android.arch.paging.PagedList;
 import android.content.Context;
 import android.support.annotation.NonNull;
 import android.support.v4.content.ContextCompat;
+import android.support.v7.recyclerview.extensions.AsyncDifferConfig;
+import android.support.v7.util.DiffUtil;
+import android.support.v7.util.ListUpdateCallback;
 import android.support.v7.widget.CardView;
 import android.support.v7.widget.RecyclerView;
 import android.view.LayoutInflater;
@@ -18,6 +23,10 @@ import io.github.stevenalbert.gradeit.model.AnswerSheetCode;
 
 /**
  * Created by Steven Albert on 7/5/2018.
+ *
+ * The answer keys are shown first, then the answer sheets. The answer sheets are a
+ * paged list, compared with the previous list on a background thread, so only the
+ * changed rows are bound again.
  */
 public class AnswerSheetListAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
 
@@ -27,8 +36,68 @@ public class AnswerSheetListAdapter extends RecyclerView.Adapter<RecyclerView.Vi
 
     private OnSelectListener listener;
     private LayoutInflater layoutInflater;
-    private List<AnswerSheetCode> answerSheets;
+    private AsyncPagedListDiffer<AnswerSheetCode> answerSheets;
     private List<AnswerKeyCode> answerKeys;
+    private boolean isEmptyShown = true;
+
+    private static final DiffUtil.ItemCallback<AnswerSheetCode> ANSWER_SHEET_DIFF = new DiffUtil.ItemCallback<AnswerSheetCode>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull AnswerSheetCode oldItem, @NonNull AnswerSheetCode newItem) {
+            return oldItem.exCode == newItem.exCode && oldItem.mCode == newItem.mCode;
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull AnswerSheetCode oldItem, @NonNull AnswerSheetCode newItem) {
+            return oldItem.totalCorrect == newItem.totalCorrect && oldItem.totalNumber == newItem.totalNumber;
+        }
+    };
+
+    /**
+     * Changes of the answer sheets, moved after the answer keys
+     */
+    private final ListUpdateCallback answerSheetUpdateCallback = new ListUpdateCallback() {
+        @Override
+        public void onInserted(int position, int count) {
+            if(!updateEmptyView()) notifyItemRangeInserted(getAnswerKeyCount() + position, count);
+        }
+
+        @Override
+        public void onRemoved(int position, int count) {
+            if(!updateEmptyView()) notifyItemRangeRemoved(getAnswerKeyCount() + position, count);
+        }
+
+        @Override
+        public void onMoved(int fromPosition, int toPosition) {
+            notifyItemMoved(getAnswerKeyCount() + fromPosition, getAnswerKeyCount() + toPosition);
+        }
+
+        @Override
+        public void onChanged(int position, int count, Object payload) {
+            notifyItemRangeChanged(getAnswerKeyCount() + position, count, payload);
+        }
+    };
+
+    private final ListUpdateCallback answerKeyUpdateCallback = new ListUpdateCallback() {
+        @Override
+        public void onInserted(int position, int count) {
+            if(!updateEmptyView()) notifyItemRangeInserted(position, count);
+        }
+
+        @Override
+        public void onRemoved(int position, int count) {
+            if(!updateEmptyView()) notifyItemRangeRemoved(position, count);
+        }
+
+        @Override
+        public void onMoved(int fromPosition, int toPosition) {
+            notifyItemMoved(fromPosition, toPosition);
+        }
+
+        @Override
+        public void onChanged(int position, int count, Object payload) {
+            notifyItemRangeChanged(position, count, payload);
+        }
+    };
 
     public interface OnSelectListener {
         void onSelectAnswerSheet(AnswerSheetCode answerSheetCode);
@@ -38,6 +107,8 @@ public class AnswerSheetListAdapter extends RecyclerView.Adapter<RecyclerView.Vi
     public AnswerSheetListAdapter(Context context, OnSelectListener listener) {
         layoutInflater = LayoutInflater.from(context);
         this.listener = listener;
+        answerSheets = new AsyncPagedListDiffer<>(answerSheetUpdateCallback,
+                new AsyncDifferConfig.Builder<>(ANSWER_SHEET_DIFF).build());
     }
 
     @NonNull
@@ -66,12 +137,13 @@ public class AnswerSheetListAdapter extends RecyclerView.Adapter<RecyclerView.Vi
                 position -= answerKeys.size();
 
                 AnswerSheetViewHolder viewHolder = (AnswerSheetViewHolder) holder;
-                AnswerSheetCode answerSheet = answerSheets.get(position);
+                // Null while its page is loaded
+                AnswerSheetCode answerSheet = answerSheets.getItem(position);
 
                 viewHolder.cardView.setCardBackgroundColor(ContextCompat.getColor(layoutInflater.getContext(), R.color.blue));
-                viewHolder.exCodeTextView.setText(answerSheet.getExCodeString());
-                viewHolder.mCodeTextView.setText(answerSheet.getMCodeString());
-                viewHolder.scoreTextView.setText(answerSheet.getScore());
+                viewHolder.exCodeTextView.setText(answerSheet != null ? answerSheet.getExCodeString() : "");
+                viewHolder.mCodeTextView.setText(answerSheet != null ? answerSheet.getMCodeString() : "");
+                viewHolder.scoreTextView.setText(answerSheet != null ? answerSheet.getScore() : "");
                 break;
             }
             case EMPTY_VIEW_TYPE:
@@ -79,29 +151,73 @@ public class AnswerSheetListAdapter extends RecyclerView.Adapter<RecyclerView.Vi
         }
     }
 
-    public void setAnswerSheets(List<AnswerSheetCode> answerSheets) {
-        this.answerSheets = answerSheets;
-        notifyDataSetChanged();
+    /**
+     * Show the paged answer sheets, the difference to the shown list is found on a
+     * background thread
+     */
+    public void setAnswerSheets(PagedList<AnswerSheetCode> answerSheets) {
+        this.answerSheets.submitList(answerSheets);
     }
 
-    public void setAnswerKeys(List<AnswerKeyCode> answerKeys) {
+    public void setAnswerKeys(final List<AnswerKeyCode> answerKeys) {
+        final List<AnswerKeyCode> oldAnswerKeys = this.answerKeys;
         this.answerKeys = answerKeys;
+        // Few answer keys, compared on this thread
+        DiffUtil.calculateDiff(new DiffUtil.Callback() {
+            @Override
+            public int getOldListSize() {
+                return oldAnswerKeys == null ? 0 : oldAnswerKeys.size();
+            }
+
+            @Override
+            public int getNewListSize() {
+                return answerKeys == null ? 0 : answerKeys.size();
+            }
+
+            @Override
+            public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+                return oldAnswerKeys.get(oldItemPosition).mCode == answerKeys.get(newItemPosition).mCode;
+            }
+
+            @Override
+            public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+                return true;
+            }
+        }, false).dispatchUpdatesTo(answerKeyUpdateCallback);
+    }
+
+    private int getAnswerKeyCount() {
+        return answerKeys == null ? 0 : answerKeys.size();
+    }
+
+    private boolean isEmpty() {
+        return getAnswerKeyCount() == 0 && answerSheets.getItemCount() == 0;
+    }
+
+    /**
+     * The empty view is the only row of an empty list, when it is shown or hidden
+     * all rows change
+     *
+     * @return true if all rows are notified
+     */
+    private boolean updateEmptyView() {
+        boolean isEmpty = isEmpty();
+        if(isEmpty == isEmptyShown) return false;
+        isEmptyShown = isEmpty;
         notifyDataSetChanged();
+        return true;
     }
 
     @Override
     public int getItemCount() {
-        int count = 0;
-        if(answerKeys != null) count += answerKeys.size();
-        if(answerSheets != null) count += answerSheets.size();
+        int count = getAnswerKeyCount() + answerSheets.getItemCount();
         return count == 0 ? 1 : count;
     }
 
     @Override
     public int getItemViewType(int position) {
-        if((answerKeys == null || answerKeys.size() == 0) &&
-                (answerSheets == null || answerSheets.size() == 0)) return EMPTY_VIEW_TYPE;
-        if(answerKeys != null && position < answerKeys.size()) return ANSWER_KEY_VIEW_TYPE;
+        if(isEmpty()) return EMPTY_VIEW_TYPE;
+        if(position < getAnswerKeyCount()) return ANSWER_KEY_VIEW_TYPE;
         else return ANSWER_SHEET_VIEW_TYPE;
     }
 
@@ -119,9 +235,11 @@ public class AnswerSheetListAdapter extends RecyclerView.Adapter<RecyclerView.Vi
             mCodeTextView = itemView.findViewById(R.id.m_code_text);
             scoreTextView = itemView.findViewById(R.id.score_text);
             cardView.setOnClickListener((v) -> {
-                if(listener != null) {
-                    int adapterPosition = getAdapterPosition() - (answerKeys != null ? answerKeys.size() : 0);
-                    listener.onSelectAnswerSheet(answerSheets.get(adapterPosition));
+                if(getAdapterPosition() == RecyclerView.NO_POSITION) return;
+                int adapterPosition = getAdapterPosition() - getAnswerKeyCount();
+                AnswerSheetCode answerSheet = answerSheets.getItem(adapterPosition);
+                if(listener != null && answerSheet != null) {
+                    listener.onSelectAnswerSheet(answerSheet);
                 }
             });
         }
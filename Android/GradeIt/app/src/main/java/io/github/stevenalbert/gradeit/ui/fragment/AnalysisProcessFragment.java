@@ -9,41 +9,29 @@ import android.os.Environment;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.v4.app.Fragment;
-import android.support.v4.content.ContextCompat;
 import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.Button;
 import android.widget.LinearLayout;
-import android.widget.TableLayout;
-import android.widget.TableRow;
-import android.widget.TextView;
 import android.widget.Toast;
 
-import com.itextpdf.text.Document;
-import com.itextpdf.text.DocumentException;
-import com.itextpdf.text.Element;
-import com.itextpdf.text.Font;
-import com.itextpdf.text.PageSize;
-import com.itextpdf.text.Phrase;
-import com.itextpdf.text.pdf.PdfPCell;
-import com.itextpdf.text.pdf.PdfPTable;
-import com.itextpdf.text.pdf.PdfWriter;
-
+import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
+import java.io.FileWriter;
 import java.io.IOException;
-import java.io.PrintWriter;
-import java.util.ArrayList;
-import java.util.Arrays;
+import java.io.Writer;
 import java.util.List;
 
 import io.github.stevenalbert.gradeit.R;
 import io.github.stevenalbert.gradeit.model.AnswerKey;
 import io.github.stevenalbert.gradeit.model.AnswerSheet;
+import io.github.stevenalbert.gradeit.process.AnalysisPdfWriter;
 import io.github.stevenalbert.gradeit.process.AnalysisProcess;
+import io.github.stevenalbert.gradeit.process.AnalysisSummary;
+import io.github.stevenalbert.gradeit.ui.view.AnalysisTableView;
 import io.github.stevenalbert.gradeit.viewmodel.AnswerKeyViewModel;
 import io.github.stevenalbert.gradeit.viewmodel.AnswerSheetViewModel;
 
@@ -56,14 +44,15 @@ public class AnalysisProcessFragment extends Fragment {
     private static final String M_CODE_KEY = "m_code";
 
     private LinearLayout progressBarLayout;
-    private TableLayout tableLayout;
+    private AnalysisTableView tableView;
     private Button saveButtonCsv;
     private Button saveButtonPdf;
 
+    private AnswerSheetViewModel answerSheetViewModel;
     private AnswerKey answerKeyReceived;
     private List<AnswerSheet> answerSheetList;
 
-    private String analysisString;
+    private AnalysisSummary analysisSummary;
 
     private OnAnalysisListener listener;
 
@@ -93,12 +82,12 @@ public class AnalysisProcessFragment extends Fragment {
         int mCode = bundle.getInt(M_CODE_KEY);
 
         progressBarLayout = view.findViewById(R.id.progress_bar_layout);
-        tableLayout = view.findViewById(R.id.analysis_table_layout);
+        tableView = view.findViewById(R.id.analysis_table_view);
         saveButtonCsv = view.findViewById(R.id.save_button_csv);
         saveButtonPdf = view.findViewById(R.id.save_button_pdf);
 
         AnswerKeyViewModel answerKeyViewModel = ViewModelProviders.of(this).get(AnswerKeyViewModel.class);
-        AnswerSheetViewModel answerSheetViewModel = ViewModelProviders.of(this).get(AnswerSheetViewModel.class);
+        answerSheetViewModel = ViewModelProviders.of(this).get(AnswerSheetViewModel.class);
 
         answerKeyViewModel.getAnswerKeyByMCode(mCode).observe(this, (answerKey) -> {
             answerKeyReceived = answerKey;
@@ -135,6 +124,7 @@ public class AnalysisProcessFragment extends Fragment {
     }
 
     private void saveAnalysisCsv() {
+        if(analysisSummary == null) return;
         String filename = getString(R.string.analysis_save_filename, answerKeyReceived.getMCodeString()) + ".csv";
         File storageDir = Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_DOCUMENTS);
         File analysisFile = new File(storageDir, filename);
@@ -144,10 +134,11 @@ public class AnalysisProcessFragment extends Fragment {
             e.printStackTrace();
         }
 
-        new SaveAsyncTask(analysisFile).execute(analysisString);
+        new SaveAsyncTask(analysisFile, analysisSummary).execute();
     }
 
     private void saveAnalysisPdf() {
+        if(analysisSummary == null) return;
         String filename = getString(R.string.analysis_save_filename, answerKeyReceived.getMCodeString()) + ".pdf";
         File storageDir = Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_DOCUMENTS);
         File analysisFile = new File(storageDir, filename);
@@ -157,7 +148,7 @@ public class AnalysisProcessFragment extends Fragment {
             e.printStackTrace();
         }
 
-        new SaveAsyncTask(analysisFile).execute(analysisString);
+        new SaveAsyncTask(analysisFile, analysisSummary).execute();
     }
 
     private void onFinishSave(File file, Boolean isSaved) {
@@ -181,44 +172,33 @@ public class AnalysisProcessFragment extends Fragment {
         }
     }
 
-    private void fillTable() {
-        tableLayout.removeAllViews();
-
-        String[] lines = analysisString.split("\n");
-        ArrayList<String[]> cellPerLines = new ArrayList<>();
-        int maxColumns = 0;
+    private void showTable(final AnalysisSummary summary) {
+        tableView.setAdapter(new AnalysisTableView.Adapter() {
+            @Override
+            public int getRowCount() {
+                return summary.getRowCount();
+            }
 
-        for(String line : lines) {
-            String[] cols = line.split(",");
-            cellPerLines.add(cols);
-            maxColumns = Math.max(maxColumns, cols.length);
-        }
+            @Override
+            public int getColumnCount() {
+                return summary.getColumnCount();
+            }
 
-        int paddingPixel = getContext().getResources().getDimensionPixelSize(R.dimen.analysis_table_cell_padding);
-        int row = 0;
-        for(String[] cellPerLine : cellPerLines) {
-            TableRow tableRow = new TableRow(getContext());
-            for(int i = 0; i < maxColumns; i++) {
-                TextView textView = new TextView(getContext());
-                textView.setBackgroundResource(R.drawable.cell);
-                textView.setTextAlignment(View.TEXT_ALIGNMENT_CENTER);
-                textView.setTextColor(ContextCompat.getColor(getContext(), android.R.color.black));
-                if(i < cellPerLine.length) textView.setText(cellPerLine[i]);
-                textView.setPadding(paddingPixel, paddingPixel, paddingPixel, paddingPixel);
-                tableRow.addView(textView);
+            @Override
+            public String getCell(int row, int column) {
+                return summary.getCell(row, column);
             }
 
-            tableRow.setBackgroundColor(ContextCompat.getColor(getContext(), (row == 0 ? android.R.color.holo_blue_dark :
-                    row == 1 ? android.R.color.darker_gray :
-                    android.R.color.white)));
-            tableLayout.addView(tableRow);
-            row++;
-        }
+            @Override
+            public String getLongestCell(int column) {
+                return summary.getLongestCell(column);
+            }
+        }, AnalysisSummary.HEADER_ROWS, AnalysisSummary.FIXED_COLUMNS);
     }
 
-    private void onAnalysisReceived(String analysisString) {
-        this.analysisString = analysisString;
-        fillTable();
+    private void onAnalysisReceived(AnalysisSummary analysisSummary) {
+        this.analysisSummary = analysisSummary;
+        showTable(analysisSummary);
         progressBarLayout.setVisibility(View.GONE);
     }
 
@@ -228,29 +208,30 @@ public class AnalysisProcessFragment extends Fragment {
         }
     }
 
-    private class GetAnalysisAsyncTask extends AsyncTask<Integer, Void, String> {
+    private class GetAnalysisAsyncTask extends AsyncTask<Integer, Void, AnalysisSummary> {
 
-        private boolean isSuccess = true;
+        private String failureMessage;
 
         @Override
-        protected String doInBackground(Integer... integers) {
+        protected AnalysisSummary doInBackground(Integer... integers) {
             try {
-                return AnalysisProcess.getAnswersSummary(answerSheetList, answerKeyReceived);
+                return AnalysisProcess.getAnalysisSummary(answerSheetList, answerKeyReceived,
+                        answerSheetViewModel.getItemStatistics(integers[0]));
             } catch (Exception e) {
-                isSuccess = false;
-                return e.getMessage();
+                failureMessage = e.getMessage();
+                return null;
             }
         }
 
         @Override
-        protected void onPostExecute(String s) {
-            super.onPostExecute(s);
-            if(isSuccess) onAnalysisReceived(s);
-            else onFailedReceiveAnalysis(s);
+        protected void onPostExecute(AnalysisSummary summary) {
+            super.onPostExecute(summary);
+            if(summary != null) onAnalysisReceived(summary);
+            else onFailedReceiveAnalysis(failureMessage);
         }
     }
 
-    private class SaveAsyncTask extends AsyncTask<String, Void, Boolean> {
+    private class SaveAsyncTask extends AsyncTask<Void, Void, Boolean> {
 
         private static final int NOT_SUPPORTED_TYPE = 0;
         private static final int CSV_FILE = 1;
@@ -258,9 +239,11 @@ public class AnalysisProcessFragment extends Fragment {
 
         private int fileType;
         private File file;
+        private AnalysisSummary summary;
 
-        private SaveAsyncTask(File file) {
+        private SaveAsyncTask(File file, AnalysisSummary summary) {
             this.file = file;
+            this.summary = summary;
             String ext = file.getName().substring(file.getName().lastIndexOf('.') + 1);
             switch (ext) {
                 case "csv":
@@ -282,68 +265,34 @@ public class AnalysisProcessFragment extends Fragment {
         }
 
         @Override
-        protected Boolean doInBackground(String... strings) {
-            if(strings.length == 0) return false;
-
-            String analysisResult = strings[0];
-
+        protected Boolean doInBackground(Void... voids) {
             switch (fileType) {
                 case CSV_FILE: {
+                    Writer writer = null;
                     try {
                         file.createNewFile();
-                        PrintWriter writer = new PrintWriter(file);
-                        // Write to file
-                        writer.write(analysisResult);
-                        writer.flush();
-                        writer.close();
-                    } catch (IOException e) {
+                        writer = new BufferedWriter(new FileWriter(file));
+                        // Write to file a row at a time
+                        AnalysisProcess.writeAnswersSummary(summary, writer);
+                    } catch (Exception e) {
                         e.printStackTrace();
+                        return false;
+                    } finally {
+                        if(writer != null) {
+                            try {
+                                writer.close();
+                            } catch (IOException e) {
+                                e.printStackTrace();
+                            }
+                        }
                     }
                 } break;
                 case PDF_FILE: {
-
                     try {
-                        FileOutputStream outputStream = new FileOutputStream(file);
-                        Document document = new Document(PageSize.A3.rotate());
-                        PdfWriter.getInstance(document, outputStream);
-                        document.open();
-
-                        Font font = new Font(Font.FontFamily.TIMES_ROMAN, 7);
-
-                        String[] lines = analysisString.split("\n");
-                        ArrayList<String[]> cellPerLines = new ArrayList<>();
-                        int[] colsWidth;
-                        int maxColumns = 0;
-                        for(String line : lines) {
-                            String[] cols = line.split(",");
-                            cellPerLines.add(cols);
-                            maxColumns = Math.max(maxColumns, cols.length);
-                        }
-
-                        colsWidth = new int[maxColumns];
-                        Arrays.fill(colsWidth, 1);
-                        colsWidth[0] = colsWidth[1] = colsWidth[maxColumns - 1] = 2;
-
-                        PdfPTable table = new PdfPTable(maxColumns);
-                        table.setWidths(colsWidth);
-                        table.setHeaderRows(2);
-                        for(String[] cellPerLine : cellPerLines) {
-                            for(String cellContent : cellPerLine) {
-                                PdfPCell cell = new PdfPCell(new Phrase(cellContent, font));
-                                cell.setFixedHeight(25);
-                                cell.setHorizontalAlignment(Element.ALIGN_CENTER);
-                                cell.setVerticalAlignment(Element.ALIGN_MIDDLE);
-                                table.addCell(cell);
-                            }
-                            table.completeRow();
-                        }
-
-                        document.add(table);
-                        document.close();
-                    } catch (FileNotFoundException e) {
-                        e.printStackTrace();
-                    } catch (DocumentException e) {
+                        AnalysisPdfWriter.write(summary, new FileOutputStream(file));
+                    } catch (Exception e) {
                         e.printStackTrace();
+                        return false;
                     }
                 } break;
                 default: return false;
@@ -2,6 +2,7 @@ package io.github.stevenalbert.gradeit.ui.fragment;
 
 import android.Manifest;
 import android.app.Activity;
+import android.arch.lifecycle.ViewModelProviders;
 import android.content.Context;
 import android.content.Intent;
 import android.content.pm.PackageManager;
@@ -22,6 +23,7 @@ import android.widget.AdapterView;
 import android.widget.ArrayAdapter;
 import android.widget.Button;
 import android.widget.Spinner;
+import android.widget.TextView;
 import android.widget.Toast;
 
 import java.io.File;
@@ -33,6 +35,7 @@ import io.github.stevenalbert.gradeit.R;
 import io.github.stevenalbert.gradeit.util.AppSharedPreference;
 import io.github.stevenalbert.gradeit.util.FileUtils;
 import io.github.stevenalbert.gradeit.util.MetadataUtils;
+import io.github.stevenalbert.gradeit.viewmodel.GradingViewModel;
 
 /**
  * A simple {@link Fragment} subclass.
@@ -48,6 +51,7 @@ public class GetMarkFragment extends Fragment {
     private static final int READ_EXTERNAL_STORAGE_PERMISSION_CODE = 101;
     private static final int CAMERA_PERMISSION_CODE = 102;
     private static final int WRITE_EXTERNAL_STORAGE_PERMISSION_CODE = 103;
+    private static final int LIVE_SCAN_PERMISSION_CODE = 104;
 
     // Action Request Code
     private static final int PHOTO_REQUEST = 1000;
@@ -60,6 +64,10 @@ public class GetMarkFragment extends Fragment {
     // Metadata
     private List<String> metadataFormatsFilename;
 
+    // Taken photos are graded in the background while the next photo is taken
+    private GradingViewModel gradingViewModel;
+    private TextView gradingStatusText;
+
     public GetMarkFragment() {
     }
 
@@ -77,13 +85,24 @@ public class GetMarkFragment extends Fragment {
 
         Button takePhotoButton;
         Button fromGalleryButton;
+        Button liveScanButton;
         Button downloadAnswerSheet;
         Spinner formFormatSpinner;
 
         takePhotoButton = view.findViewById(R.id.photo);
         fromGalleryButton = view.findViewById(R.id.gallery);
+        liveScanButton = view.findViewById(R.id.live_scan);
         downloadAnswerSheet = view.findViewById(R.id.download_answer_sheet);
         formFormatSpinner = view.findViewById(R.id.metadata_format_spinner);
+        gradingStatusText = view.findViewById(R.id.grading_status);
+
+        gradingViewModel = ViewModelProviders.of(getActivity()).get(GradingViewModel.class);
+        gradingViewModel.getPendingCount().observe(this, (pendingCount) -> updateGradingStatus());
+        gradingViewModel.getGradedCount().observe(this, (gradedCount) -> updateGradingStatus());
+        gradingViewModel.getFailureMessage().observe(this, (message) -> {
+            if(message != null)
+                Toast.makeText(getContext(), message, Toast.LENGTH_LONG).show();
+        });
 
         takePhotoButton.setOnClickListener((v) ->
                 // Take picture from camera
@@ -93,6 +112,10 @@ public class GetMarkFragment extends Fragment {
                 // Take picture from gallery
                 getImageFromGallery());
 
+        liveScanButton.setOnClickListener((v) ->
+                // Grade from the camera preview
+                startLiveScan());
+
         downloadAnswerSheet.setOnClickListener((v) ->
                 // Download to "Download" directory
                 downloadAnswerSheet());
@@ -176,6 +199,17 @@ public class GetMarkFragment extends Fragment {
         startActivityForResult(galleryIntent, GALLERY_REQUEST);
     }
 
+    private void startLiveScan() {
+        if(ContextCompat.checkSelfPermission(getContext(), Manifest.permission.CAMERA) != PackageManager.PERMISSION_GRANTED) {
+            requestPermissions(new String[] {Manifest.permission.CAMERA},
+                    LIVE_SCAN_PERMISSION_CODE);
+            return;
+        }
+
+        if(mListener != null)
+            mListener.onLiveScanStarted();
+    }
+
     private void downloadAnswerSheet() {
         if(ContextCompat.checkSelfPermission(getContext(), Manifest.permission.WRITE_EXTERNAL_STORAGE) != PackageManager.PERMISSION_GRANTED) {
             requestPermissions(new String[] {
@@ -195,6 +229,26 @@ public class GetMarkFragment extends Fragment {
         mListener.onFinishDownloadAnswerSheet(storageDir);
     }
 
+    private void gradeTakenPhoto(Uri uri) {
+        if(gradingViewModel.submit(uri, AppSharedPreference.getSavedMetadataString(getContext()))) {
+            // Take the next photo while this one is graded, cancel the camera to stop
+            getPhotoByCamera();
+        } else {
+            Toast.makeText(getContext(), R.string.grading_queue_full, Toast.LENGTH_SHORT).show();
+        }
+    }
+
+    private void updateGradingStatus() {
+        Integer pendingCount = gradingViewModel.getPendingCount().getValue();
+        Integer gradedCount = gradingViewModel.getGradedCount().getValue();
+        if(pendingCount == null || gradedCount == null || pendingCount + gradedCount == 0) {
+            gradingStatusText.setVisibility(View.GONE);
+        } else {
+            gradingStatusText.setVisibility(View.VISIBLE);
+            gradingStatusText.setText(getString(R.string.grading_status, pendingCount, gradedCount));
+        }
+    }
+
     private void processImage(Uri uri) {
         if(uri == null) {
             Toast.makeText(getContext(), R.string.no_image_chosen, Toast.LENGTH_SHORT).show();
@@ -222,6 +276,7 @@ public class GetMarkFragment extends Fragment {
 
     public interface GetMarkListener {
         void onProcessImageTaken(Uri uri);
+        void onLiveScanStarted();
         void onFinishDownloadAnswerSheet(File downloadFolder);
     }
 
@@ -233,7 +288,7 @@ public class GetMarkFragment extends Fragment {
             // Send to next activity for processing answer sheet
             // Log.d(TAG, "Activity result: " + imageUri.answerToString());
             MediaScannerConnection.scanFile(getContext(), new String[]{imageUri.getPath()}, null, ((path, uri1) -> Log.d(TAG, path + " | " + uri1)));
-            processImage(imageUri);
+            gradeTakenPhoto(imageUri);
         }
         if(requestCode == GALLERY_REQUEST && resultCode == Activity.RESULT_OK) {
             imageUri = data.getData();
@@ -269,5 +324,12 @@ public class GetMarkFragment extends Fragment {
                 Toast.makeText(getContext(), R.string.camera_restrict_message, Toast.LENGTH_SHORT).show();
             }
         }
+        if(requestCode == LIVE_SCAN_PERMISSION_CODE) {
+            if(grantResults.length == 1 && grantResults[0] == PackageManager.PERMISSION_GRANTED) {
+                startLiveScan();
+            } else {
+                Toast.makeText(getContext(), R.string.camera_restrict_message, Toast.LENGTH_SHORT).show();
+            }
+        }
     }
 }
@@ -11,6 +11,7 @@ import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.v4.app.Fragment;
 import android.support.v4.content.ContextCompat;
+import android.util.DisplayMetrics;
 import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -22,22 +23,23 @@ import android.widget.TextView;
 import android.widget.Toast;
 
 import org.opencv.android.Utils;
-import org.opencv.core.CvType;
 import org.opencv.core.Mat;
 
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.util.ArrayList;
 
+import io.github.stevenalbert.gradeit.GradeItApplication;
 import io.github.stevenalbert.gradeit.R;
 import io.github.stevenalbert.gradeit.model.AnswerMat;
 import io.github.stevenalbert.gradeit.model.AnswerSheet;
 import io.github.stevenalbert.gradeit.model.AnswerSheetMetadata;
 import io.github.stevenalbert.gradeit.process.AnswerSheetScorer;
+import io.github.stevenalbert.gradeit.process.CellWorkerPool;
+import io.github.stevenalbert.gradeit.process.PipelineMetrics;
+import io.github.stevenalbert.gradeit.process.ScoringContext;
 import io.github.stevenalbert.gradeit.util.AppSharedPreference;
 import io.github.stevenalbert.gradeit.util.BitmapProcess;
-import io.github.stevenalbert.gradeit.util.MetadataUtils;
+import io.github.stevenalbert.gradeit.util.MetadataRegistry;
 
 /**
  * A simple {@link Fragment} subclass.
@@ -72,6 +74,16 @@ public class ProcessFragment extends Fragment {
     // Metadata Filename
     private String chosenMetadata;
 
+    // Worker pool for the cells of the answer sheet
+    private CellWorkerPool cellWorkerPool;
+
+    // Scratch Mats of the grading session, only used by the running ProcessAsyncTask
+    private ScoringContext scoringContext;
+    private boolean isDestroyed = false;
+
+    // Stage timings and counters, summed by the application over all graded answer sheets
+    private PipelineMetrics pipelineMetrics;
+
     public interface OnProcessFinishListener {
         void onFinish(AnswerSheet answerSheet);
     }
@@ -140,6 +152,7 @@ public class ProcessFragment extends Fragment {
     @Override
     public void onAttach(Context context) {
         super.onAttach(context);
+        pipelineMetrics = GradeItApplication.of(context).getPipelineMetrics();
         if(context instanceof OnProcessFinishListener) {
             this.onProcessFinishListener = (OnProcessFinishListener) context;
         } else {
@@ -154,6 +167,28 @@ public class ProcessFragment extends Fragment {
         cancelProcessImage();
     }
 
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        GradeItApplication.of(getContext()).logPipelineMetrics();
+        // A running task releases the context and the pool when it ends
+        isDestroyed = true;
+        if(processAsyncTask == null || processAsyncTask.getStatus() == AsyncTask.Status.FINISHED) {
+            releaseScoringResources();
+        }
+    }
+
+    private void releaseScoringResources() {
+        if(cellWorkerPool != null) {
+            cellWorkerPool.shutdown();
+            cellWorkerPool = null;
+        }
+        if(scoringContext != null) {
+            scoringContext.release();
+            scoringContext = null;
+        }
+    }
+
     public static ProcessFragment newInstance(Uri imageUri) {
         if(imageUri == null) return null;
 
@@ -167,7 +202,15 @@ public class ProcessFragment extends Fragment {
 
     private void insertScaledImage() {
         Uri imageUri = Uri.parse(getArguments().getString(IMAGE_URI));
-        Bitmap bitmapImage = BitmapProcess.getExifRotatedBitmap(getContext(), imageUri);
+        int width = imageWidth;
+        int height = imageHeight;
+        if(width <= 0 || height <= 0) {
+            // Not measured yet, the image is at most as large as the screen
+            DisplayMetrics displayMetrics = getResources().getDisplayMetrics();
+            width = displayMetrics.widthPixels;
+            height = displayMetrics.heightPixels;
+        }
+        Bitmap bitmapImage = BitmapProcess.getExifRotatedBitmap(getContext(), imageUri, width, height);
         updateImage(imageView, bitmapImage);
     }
 
@@ -179,6 +222,14 @@ public class ProcessFragment extends Fragment {
     }
 
     private void startProcessImage() {
+        if(cellWorkerPool == null) {
+            cellWorkerPool = new CellWorkerPool();
+        }
+        if(scoringContext == null) {
+            scoringContext = new ScoringContext();
+            scoringContext.setPyramidDetection(true);
+            scoringContext.setMetrics(pipelineMetrics);
+        }
         ProcessAsyncTask task = new ProcessAsyncTask();
         processAsyncTask = task;
         task.execute(Uri.parse(getArguments().getString(IMAGE_URI)));
@@ -214,58 +265,62 @@ public class ProcessFragment extends Fragment {
         @Override
         protected AnswerSheet doInBackground(Uri... uris) {
             if(uris.length == 0) return null;
-            Long startTime = System.nanoTime(), endTime, sectionStartTime, sectionEndTime;
-            Bitmap image = BitmapProcess.getExifRotatedBitmap(getContext(), uris[0]);
-            Mat imageMat = new Mat();
-            Utils.bitmapToMat(image, imageMat, true);
-
-            InputStream metadataInputStream = null;
+            // Parsed once and shared by every answer sheet of the batch
+            AnswerSheetMetadata metadata = null;
             try {
-                metadataInputStream = new FileInputStream(MetadataUtils.metadataFile(chosenMetadata));
-            } catch (IOException e) {
+                metadata = MetadataRegistry.getInstance(getContext()).get(chosenMetadata);
+            } catch (IOException | IllegalArgumentException e) {
                 e.printStackTrace();
             }
 
-            if(metadataInputStream == null) return null;
+            if(metadata == null) return null;
+
+            // Decoded only as large as the paper dimension needs
+            Mat photoMat = BitmapProcess.getExifOrientedMat(getContext(), uris[0], metadata.getDimension());
+            if(photoMat == null) return null;
 
             String[] processNames = getResources().getStringArray(R.array.grade_process);
+            ArrayList<AnswerMat> matSquares = null;
             try {
-                AnswerSheetMetadata metadata = new AnswerSheetMetadata(metadataInputStream);
-
                 publishProgress(Integer.valueOf(1));
-                sectionStartTime = System.nanoTime();
                 publishProgress(processNames[0]);
-                imageMat = AnswerSheetScorer.convertAnswerSheet(imageMat, metadata);
-                sectionEndTime = System.nanoTime();
-                image = Bitmap.createBitmap(imageMat.cols(), imageMat.rows(), Bitmap.Config.ARGB_8888);
+                Mat imageMat = AnswerSheetScorer.convertAnswerSheet(photoMat, metadata, scoringContext);
+                photoMat.release();
+                Bitmap image = Bitmap.createBitmap(imageMat.cols(), imageMat.rows(), Bitmap.Config.ARGB_8888);
                 Utils.matToBitmap(imageMat, image, true);
                 publishProgress(image);
-                publishProgress(sectionEndTime - sectionStartTime);
 
                 publishProgress(Integer.valueOf(2));
-                sectionStartTime = System.nanoTime();
                 publishProgress(processNames[1]);
-                Mat updateImageMat = new Mat(imageMat.rows(), imageMat.cols(), CvType.CV_8UC3);
-                ArrayList<AnswerMat> matSquares = AnswerSheetScorer.processAnswerSheet(imageMat, updateImageMat, metadata);
-                sectionEndTime = System.nanoTime();
+                Mat updateImageMat = scoringContext.getOutputDraw(metadata.getDimension());
+                matSquares = AnswerSheetScorer.processAnswerSheet(imageMat, updateImageMat, metadata,
+                        scoringContext, cellWorkerPool);
                 Utils.matToBitmap(updateImageMat, image, true);
                 publishProgress(image);
-                publishProgress(sectionEndTime - sectionStartTime);
-                updateImageMat.release();
 
                 publishProgress(Integer.valueOf(3));
-                sectionStartTime = System.nanoTime();
                 publishProgress(processNames[2]);
-                AnswerSheet answerSheet = AnswerSheetScorer.recognizeAnswerSheet(matSquares);
-                sectionEndTime = System.nanoTime();
-                publishProgress(sectionEndTime - sectionStartTime);
-
-                endTime = System.nanoTime();
-                publishProgress(endTime - startTime);
+                AnswerSheet answerSheet = AnswerSheetScorer.recognizeAnswerSheet(matSquares, cellWorkerPool,
+                        pipelineMetrics);
 
                 return answerSheet;
             } catch (Exception e) {
                 return null;
+            } finally {
+                photoMat.release();
+                if(matSquares != null) {
+                    for(AnswerMat answerMat : matSquares) {
+                        answerMat.release();
+                    }
+                }
+            }
+        }
+
+        @Override
+        protected void onCancelled(AnswerSheet answerSheet) {
+            super.onCancelled(answerSheet);
+            if(isDestroyed) {
+                releaseScoringResources();
             }
         }
 
@@ -277,8 +332,6 @@ public class ProcessFragment extends Fragment {
                 else if(value instanceof Bitmap) {
                     Bitmap bitmap = (Bitmap) value;
                     updateImage(imageView, bitmap);
-                } else if(value instanceof Long) {
-                    Log.d(TAG, "Elapsed process time = " + ((Long) value).doubleValue() / 1e9);
                 } else if(value instanceof Integer) {
                     updateProgressBar((Integer) value);
                 }
@@ -288,6 +341,9 @@ public class ProcessFragment extends Fragment {
         @Override
         protected void onPostExecute(AnswerSheet answerSheet) {
             super.onPostExecute(answerSheet);
+            if(isDestroyed) {
+                releaseScoringResources();
+            }
             if(answerSheet != null) {
                 Toast.makeText(getActivity(), R.string.success_grade_notification, Toast.LENGTH_SHORT).show();
             }
@@ -3,6 +3,7 @@ package io.github.stevenalbert.gradeit.ui.fragment;
 import android.arch.lifecycle.LiveData;
 import android.arch.lifecycle.Observer;
 import android.arch.lifecycle.ViewModelProviders;
+import android.arch.paging.PagedList;
 import android.content.Context;
 import android.os.Bundle;
 import android.support.annotation.NonNull;
@@ -56,7 +57,7 @@ public class ViewMarksFragment extends Fragment implements AnswerSheetListAdapte
     private AnswerKeyViewModel answerKeyViewModel;
     // List
     private LiveData<List<AnswerKeyCode>> answerKeyList;
-    private LiveData<List<AnswerSheetCode>> answerSheetList;
+    private LiveData<PagedList<AnswerSheetCode>> answerSheetList;
 
     private Observer<List<AnswerKeyCode>> answerKeyObserver = new Observer<List<AnswerKeyCode>>() {
         @Override
@@ -77,9 +78,9 @@ public class ViewMarksFragment extends Fragment implements AnswerSheetListAdapte
         }
     };
 
-    private Observer<List<AnswerSheetCode>> answerSheetObserver = new Observer<List<AnswerSheetCode>>() {
+    private Observer<PagedList<AnswerSheetCode>> answerSheetObserver = new Observer<PagedList<AnswerSheetCode>>() {
         @Override
-        public void onChanged(@Nullable List<AnswerSheetCode> answerSheetCodes) {
+        public void onChanged(@Nullable PagedList<AnswerSheetCode> answerSheetCodes) {
             adapter.setAnswerSheets(answerSheetCodes);
         }
     };
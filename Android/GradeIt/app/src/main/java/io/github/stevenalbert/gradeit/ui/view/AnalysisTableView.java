@@ -0,0 +1,250 @@
+package io.github.stevenalbert.gradeit.ui.view;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.support.annotation.Nullable;
+import android.support.v4.content.ContextCompat;
+import android.util.AttributeSet;
+import android.util.TypedValue;
+import android.view.GestureDetector;
+import android.view.MotionEvent;
+import android.view.View;
+import android.widget.OverScroller;
+
+import io.github.stevenalbert.gradeit.R;
+
+/**
+ * Table scrolled on both axes, only the cells on the screen are drawn, so the size
+ * of the table does not matter. The first rows and columns stay on the screen while
+ * the others are scrolled. The cells are drawn from the {@link Adapter} without a
+ * view per cell.
+ */
+public class AnalysisTableView extends View {
+
+    private static final float TEXT_SIZE_SP = 14;
+    private static final float GRID_WIDTH_DP = 1;
+
+    public interface Adapter {
+        int getRowCount();
+        int getColumnCount();
+        String getCell(int row, int column);
+        /**
+         * @return the longest text of the column, it sets the width of the column
+         */
+        String getLongestCell(int column);
+    }
+
+    private final Paint textPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint gridPaint = new Paint();
+    private final Paint backgroundPaint = new Paint();
+    private final OverScroller scroller;
+    private final GestureDetector gestureDetector;
+    private final int cellPadding;
+    private final int headerColor;
+    private final int answerKeyColor;
+    private final int cellColor;
+
+    private Adapter adapter;
+    private int frozenRowCount;
+    private int frozenColumnCount;
+    // Left of every column from the left of the table, the last is the width of the table
+    private float[] columnLefts = new float[1];
+    private float rowHeight;
+    private float textBaseline;
+    private int offsetX;
+    private int offsetY;
+
+    public AnalysisTableView(Context context) {
+        this(context, null);
+    }
+
+    public AnalysisTableView(Context context, @Nullable AttributeSet attrs) {
+        this(context, attrs, 0);
+    }
+
+    public AnalysisTableView(Context context, @Nullable AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+
+        cellPadding = getResources().getDimensionPixelSize(R.dimen.analysis_table_cell_padding);
+        headerColor = ContextCompat.getColor(context, android.R.color.holo_blue_dark);
+        answerKeyColor = ContextCompat.getColor(context, android.R.color.darker_gray);
+        cellColor = ContextCompat.getColor(context, android.R.color.white);
+
+        textPaint.setColor(ContextCompat.getColor(context, android.R.color.black));
+        textPaint.setTextAlign(Paint.Align.CENTER);
+        textPaint.setTextSize(TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP, TEXT_SIZE_SP,
+                getResources().getDisplayMetrics()));
+        gridPaint.setColor(ContextCompat.getColor(context, android.R.color.black));
+        gridPaint.setStyle(Paint.Style.STROKE);
+        gridPaint.setStrokeWidth(TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, GRID_WIDTH_DP,
+                getResources().getDisplayMetrics()));
+        backgroundPaint.setStyle(Paint.Style.FILL);
+
+        Paint.FontMetrics fontMetrics = textPaint.getFontMetrics();
+        rowHeight = fontMetrics.descent - fontMetrics.ascent + 2 * cellPadding;
+        textBaseline = cellPadding - fontMetrics.ascent;
+
+        scroller = new OverScroller(context);
+        gestureDetector = new GestureDetector(context, new GestureDetector.SimpleOnGestureListener() {
+            @Override
+            public boolean onDown(MotionEvent e) {
+                scroller.forceFinished(true);
+                return true;
+            }
+
+            @Override
+            public boolean onScroll(MotionEvent e1, MotionEvent e2, float distanceX, float distanceY) {
+                getParent().requestDisallowInterceptTouchEvent(true);
+                scrollTable(offsetX + (int) distanceX, offsetY + (int) distanceY);
+                return true;
+            }
+
+            @Override
+            public boolean onFling(MotionEvent e1, MotionEvent e2, float velocityX, float velocityY) {
+                scroller.fling(offsetX, offsetY, (int) -velocityX, (int) -velocityY,
+                        0, getMaxOffsetX(), 0, getMaxOffsetY());
+                postInvalidateOnAnimation();
+                return true;
+            }
+        });
+    }
+
+    /**
+     * @param frozenRowCount
+     *            - number of first rows staying on the screen
+     * @param frozenColumnCount
+     *            - number of first columns staying on the screen
+     */
+    public void setAdapter(Adapter adapter, int frozenRowCount, int frozenColumnCount) {
+        this.adapter = adapter;
+        this.frozenRowCount = Math.min(frozenRowCount, adapter.getRowCount());
+        this.frozenColumnCount = Math.min(frozenColumnCount, adapter.getColumnCount());
+
+        int columnCount = adapter.getColumnCount();
+        columnLefts = new float[columnCount + 1];
+        for(int column = 0; column < columnCount; column++) {
+            float width = textPaint.measureText(adapter.getLongestCell(column)) + 2 * cellPadding;
+            columnLefts[column + 1] = columnLefts[column] + (float) Math.ceil(width);
+        }
+
+        scroller.forceFinished(true);
+        scrollTable(offsetX, offsetY);
+        requestLayout();
+        invalidate();
+    }
+
+    private float getTableWidth() {
+        return columnLefts[columnLefts.length - 1];
+    }
+
+    private float getTableHeight() {
+        return adapter == null ? 0 : adapter.getRowCount() * rowHeight;
+    }
+
+    private int getMaxOffsetX() {
+        return Math.max(0, (int) Math.ceil(getTableWidth()) - getWidth());
+    }
+
+    private int getMaxOffsetY() {
+        return Math.max(0, (int) Math.ceil(getTableHeight()) - getHeight());
+    }
+
+    private void scrollTable(int x, int y) {
+        offsetX = Math.max(0, Math.min(x, getMaxOffsetX()));
+        offsetY = Math.max(0, Math.min(y, getMaxOffsetY()));
+        invalidate();
+    }
+
+    @Override
+    public void computeScroll() {
+        if(scroller.computeScrollOffset()) {
+            scrollTable(scroller.getCurrX(), scroller.getCurrY());
+            if(!scroller.isFinished()) postInvalidateOnAnimation();
+        }
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        return gestureDetector.onTouchEvent(event) || super.onTouchEvent(event);
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        setMeasuredDimension(
+                resolveSize((int) Math.ceil(getTableWidth()) + getPaddingLeft() + getPaddingRight(), widthMeasureSpec),
+                resolveSize((int) Math.ceil(getTableHeight()) + getPaddingTop() + getPaddingBottom(), heightMeasureSpec));
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        scrollTable(offsetX, offsetY);
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        if(adapter == null || adapter.getRowCount() == 0 || adapter.getColumnCount() == 0) return;
+
+        int width = getWidth();
+        int height = getHeight();
+        float frozenWidth = columnLefts[frozenColumnCount];
+        float frozenHeight = frozenRowCount * rowHeight;
+
+        // Scrolled rows and columns on the screen
+        int firstRow = Math.max(frozenRowCount, (int) ((frozenHeight + offsetY) / rowHeight));
+        int lastRow = Math.min(adapter.getRowCount() - 1, (int) ((height + offsetY) / rowHeight));
+        int firstColumn = Math.max(frozenColumnCount, columnAt(frozenWidth + offsetX));
+        int lastColumn = columnAt(width + offsetX);
+
+        canvas.save();
+        canvas.clipRect(frozenWidth, frozenHeight, width, height);
+        drawCells(canvas, firstRow, lastRow, firstColumn, lastColumn, offsetX, offsetY);
+        canvas.restore();
+
+        canvas.save();
+        canvas.clipRect(0, frozenHeight, frozenWidth, height);
+        drawCells(canvas, firstRow, lastRow, 0, frozenColumnCount - 1, 0, offsetY);
+        canvas.restore();
+
+        canvas.save();
+        canvas.clipRect(frozenWidth, 0, width, frozenHeight);
+        drawCells(canvas, 0, frozenRowCount - 1, firstColumn, lastColumn, offsetX, 0);
+        canvas.restore();
+
+        drawCells(canvas, 0, frozenRowCount - 1, 0, frozenColumnCount - 1, 0, 0);
+    }
+
+    private void drawCells(Canvas canvas, int firstRow, int lastRow, int firstColumn, int lastColumn,
+                           int shiftX, int shiftY) {
+        for(int row = firstRow; row <= lastRow; row++) {
+            float top = row * rowHeight - shiftY;
+            backgroundPaint.setColor(row == 0 ? headerColor : row < frozenRowCount ? answerKeyColor : cellColor);
+            for(int column = firstColumn; column <= lastColumn; column++) {
+                float left = columnLefts[column] - shiftX;
+                float right = columnLefts[column + 1] - shiftX;
+                canvas.drawRect(left, top, right, top + rowHeight, backgroundPaint);
+                canvas.drawRect(left, top, right, top + rowHeight, gridPaint);
+                String cell = adapter.getCell(row, column);
+                if(cell != null && !cell.isEmpty())
+                    canvas.drawText(cell, (left + right) / 2, top + textBaseline, textPaint);
+            }
+        }
+    }
+
+    /**
+     * @return column at the x from the left of the table, the last column if the
+     *         table ends before x
+     */
+    private int columnAt(float x) {
+        int low = 0;
+        int high = columnLefts.length - 2;
+        while(low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if(columnLefts[middle] <= x) low = middle;
+            else high = middle - 1;
+        }
+        return low;
+    }
+}
@@ -8,54 +8,87 @@ import android.net.Uri;
 import android.support.media.ExifInterface;
 import android.util.Log;
 
+import org.opencv.android.Utils;
+import org.opencv.core.Core;
+import org.opencv.core.Mat;
+
+import java.io.BufferedInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 
+import io.github.stevenalbert.gradeit.model.AnswerSheetMetadata.PaperDimension;
+
 /**
  * Created by Steven Albert on 6/27/2018.
  */
 public final class BitmapProcess {
 
-    public static Bitmap getBitmap(Context context, Uri uri) {
-        InputStream imageStream = getInputStream(context, uri);
+    // The EXIF and the size are read within this many bytes, then the stream is read again from the start
+    private static final int HEADER_READ_LIMIT = 1 << 20;
+    // The paper is taken to cover at least half of the photo on each side
+    private static final double MIN_PAPER_FILL = 0.5;
 
-        if(imageStream == null)
-            return null;
+    /**
+     * Sample size of a photo from its stored size and its EXIF orientation
+     */
+    private interface SampleSizer {
+        int getSampleSize(int width, int height, int orientation);
+    }
 
-        Bitmap bitmap = BitmapFactory.decodeStream(imageStream);
+    private static final class DecodedImage {
+        final Bitmap bitmap;
+        final int orientation;
 
-        try {
-            imageStream.close();
-        } catch (IOException e) {
-            e.printStackTrace();
+        DecodedImage(Bitmap bitmap, int orientation) {
+            this.bitmap = bitmap;
+            this.orientation = orientation;
         }
-
-        return bitmap;
     }
 
-    public static Bitmap getExifRotatedBitmap(Context context, Uri uri) {
+    public static Bitmap getBitmap(Context context, Uri uri) {
         InputStream imageStream = getInputStream(context, uri);
 
         if(imageStream == null)
             return null;
 
-        ExifInterface exifInterface = null;
+        Bitmap bitmap = BitmapFactory.decodeStream(imageStream);
+
         try {
-            exifInterface = new ExifInterface(imageStream);
             imageStream.close();
         } catch (IOException e) {
             e.printStackTrace();
         }
 
-        if(exifInterface == null)
+        return bitmap;
+    }
+
+    /**
+     * Decode the photo turned upright by its EXIF orientation, for a preview of the
+     * given size. The photo is decoded at the largest power of 2 sample size which
+     * still keeps it at least as large as it is shown, and only that bitmap is
+     * rotated.
+     *
+     * @param maxWidth
+     *            - width the photo is shown in, the photo is decoded at full size if
+     *            it is not known
+     * @param maxHeight
+     *            - height the photo is shown in
+     */
+    public static Bitmap getExifRotatedBitmap(Context context, Uri uri, final int maxWidth, final int maxHeight) {
+        DecodedImage image = decode(context, uri, new SampleSizer() {
+            @Override
+            public int getSampleSize(int width, int height, int orientation) {
+                if(isRotatedSideways(orientation))
+                    return getFitSampleSize(width, height, maxHeight, maxWidth);
+                return getFitSampleSize(width, height, maxWidth, maxHeight);
+            }
+        });
+        if(image == null)
             return null;
 
         int rotation = 0;
-        int orientation = exifInterface.getAttributeInt(ExifInterface.TAG_ORIENTATION,
-                ExifInterface.ORIENTATION_NORMAL);
-
-        switch(orientation) {
+        switch(image.orientation) {
             case ExifInterface.ORIENTATION_ROTATE_90:
                 rotation = 90;
                 break;
@@ -70,14 +103,169 @@ public final class BitmapProcess {
                 break;
         }
 
+        Bitmap bitmap = image.bitmap;
+        if(rotation == 0)
+            return bitmap;
+
         Matrix matrix = new Matrix();
         matrix.postRotate(rotation);
 
-        Bitmap bitmap = getBitmap(context, uri);
-        bitmap = Bitmap.createBitmap(bitmap, 0, 0, bitmap.getWidth(),
+        Bitmap rotatedBitmap = Bitmap.createBitmap(bitmap, 0, 0, bitmap.getWidth(),
                 bitmap.getHeight(), matrix, true);
+        if(rotatedBitmap != bitmap)
+            bitmap.recycle();
 
-        return bitmap;
+        return rotatedBitmap;
+    }
+
+    /**
+     * Decode the photo of an answer sheet to an RGBA Mat turned upright by its EXIF
+     * orientation. The photo is read from one stream, and decoded at the largest
+     * power of 2 sample size which still keeps the paper at least at the paper
+     * dimension. The photo is rotated in the Mat, no rotated copy of the bitmap is
+     * made.
+     *
+     * @param dimension
+     *            - paper dimension the answer sheet is warped to
+     * @return the photo, or null if it can't be decoded
+     */
+    public static Mat getExifOrientedMat(Context context, Uri uri, final PaperDimension dimension) {
+        DecodedImage image = decode(context, uri, dimension == null ? null : new SampleSizer() {
+            @Override
+            public int getSampleSize(int width, int height, int orientation) {
+                return BitmapProcess.getSampleSize(width, height, dimension);
+            }
+        });
+        if(image == null)
+            return null;
+
+        Mat photoMat = new Mat();
+        Utils.bitmapToMat(image.bitmap, photoMat, true);
+        image.bitmap.recycle();
+
+        int rotateCode;
+        switch(image.orientation) {
+            case ExifInterface.ORIENTATION_ROTATE_90:
+                rotateCode = Core.ROTATE_90_CLOCKWISE;
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_180:
+                rotateCode = Core.ROTATE_180;
+                break;
+            case ExifInterface.ORIENTATION_ROTATE_270:
+                rotateCode = Core.ROTATE_90_COUNTERCLOCKWISE;
+                break;
+            case ExifInterface.ORIENTATION_NORMAL:
+            default:
+                return photoMat;
+        }
+
+        Mat rotatedMat = new Mat();
+        Core.rotate(photoMat, rotatedMat, rotateCode);
+        photoMat.release();
+        return rotatedMat;
+    }
+
+    /**
+     * @return sample size of the photo, 1 if the paper dimension is not known
+     */
+    static int getSampleSize(int width, int height, PaperDimension dimension) {
+        if(dimension == null || width <= 0 || height <= 0)
+            return 1;
+
+        double minLongSide = Math.max(dimension.width, dimension.height) / MIN_PAPER_FILL;
+        double minShortSide = Math.min(dimension.width, dimension.height) / MIN_PAPER_FILL;
+        int longSide = Math.max(width, height);
+        int shortSide = Math.min(width, height);
+
+        int sampleSize = 1;
+        while(longSide / (sampleSize * 2) >= minLongSide && shortSide / (sampleSize * 2) >= minShortSide) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    /**
+     * @return sample size of a photo shown scaled to fit the maximum size, 1 if the
+     *         maximum size is not known
+     */
+    static int getFitSampleSize(int width, int height, int maxWidth, int maxHeight) {
+        if(maxWidth <= 0 || maxHeight <= 0 || width <= 0 || height <= 0)
+            return 1;
+
+        double scale = Math.min((double) maxWidth / width, (double) maxHeight / height);
+        int fitWidth = (int) Math.ceil(width * scale);
+        int fitHeight = (int) Math.ceil(height * scale);
+
+        int sampleSize = 1;
+        while(width / (sampleSize * 2) >= fitWidth && height / (sampleSize * 2) >= fitHeight) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    private static boolean isRotatedSideways(int orientation) {
+        return orientation == ExifInterface.ORIENTATION_ROTATE_90
+                || orientation == ExifInterface.ORIENTATION_ROTATE_270;
+    }
+
+    /**
+     * Read the EXIF orientation, the size and the pixels of the photo from one
+     * stream, the stream is reset to its start after the EXIF and the size. It is
+     * opened again only if they are longer than {@link #HEADER_READ_LIMIT}.
+     *
+     * @param sampleSizer
+     *            - sample size of the photo, or null to decode it at full size
+     */
+    private static DecodedImage decode(Context context, Uri uri, SampleSizer sampleSizer) {
+        InputStream imageStream = getInputStream(context, uri);
+        if(imageStream == null)
+            return null;
+
+        BufferedInputStream bufferedStream = new BufferedInputStream(imageStream);
+        try {
+            bufferedStream.mark(HEADER_READ_LIMIT);
+            ExifInterface exifInterface = new ExifInterface(bufferedStream);
+            int orientation = exifInterface.getAttributeInt(ExifInterface.TAG_ORIENTATION,
+                    ExifInterface.ORIENTATION_NORMAL);
+            bufferedStream = rewind(context, uri, bufferedStream);
+
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            if(sampleSizer != null) {
+                options.inJustDecodeBounds = true;
+                bufferedStream.mark(HEADER_READ_LIMIT);
+                BitmapFactory.decodeStream(bufferedStream, null, options);
+                bufferedStream = rewind(context, uri, bufferedStream);
+                options.inJustDecodeBounds = false;
+                options.inSampleSize = sampleSizer.getSampleSize(options.outWidth, options.outHeight, orientation);
+            }
+
+            Bitmap bitmap = BitmapFactory.decodeStream(bufferedStream, null, options);
+            return bitmap == null ? null : new DecodedImage(bitmap, orientation);
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        } finally {
+            try {
+                bufferedStream.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private static BufferedInputStream rewind(Context context, Uri uri, BufferedInputStream bufferedStream)
+            throws IOException {
+        try {
+            bufferedStream.reset();
+            return bufferedStream;
+        } catch (IOException e) {
+            // Read past the mark, open the photo again
+            bufferedStream.close();
+            InputStream imageStream = getInputStream(context, uri);
+            if(imageStream == null)
+                throw new FileNotFoundException(uri + " can't be opened again");
+            return new BufferedInputStream(imageStream);
+        }
     }
 
     public static Bitmap getScaledFitBitmap(Bitmap bitmap, int maxWidth, int maxHeight) {
@@ -0,0 +1,142 @@
+package io.github.stevenalbert.gradeit.util;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+
+import io.github.stevenalbert.gradeit.model.AnswerSheetMetadata;
+
+/**
+ * Answer sheet metadata read once per .asmf file. A metadata is parsed, validated
+ * and compiled to its layout the first time it is asked for, then the same instance
+ * is given until the file is changed, which costs one stat of the file instead of
+ * reading and parsing it for every answer sheet.
+ * <p>
+ * The parsed metadata is also written in its binary form to the cache directory,
+ * so after a restart it is read back without parsing the text again. The cached
+ * form is only used while the modification time and length of the file are the
+ * ones it was written from.
+ */
+public class MetadataRegistry {
+
+    private static final String TAG = MetadataRegistry.class.getSimpleName();
+
+    private static final String CACHE_DIRECTORY_NAME = "metadata";
+    private static final String CACHE_EXTENSION = ".bin";
+
+    private static volatile MetadataRegistry instance;
+
+    private final File cacheDirectory;
+    private final HashMap<String, Entry> entries = new HashMap<>();
+
+    private static class Entry {
+        final long lastModified;
+        final long length;
+        final AnswerSheetMetadata metadata;
+
+        Entry(long lastModified, long length, AnswerSheetMetadata metadata) {
+            this.lastModified = lastModified;
+            this.length = length;
+            this.metadata = metadata;
+        }
+    }
+
+    private MetadataRegistry(File cacheDirectory) {
+        this.cacheDirectory = cacheDirectory;
+    }
+
+    public static MetadataRegistry getInstance(final Context context) {
+        if(instance == null) {
+            synchronized (MetadataRegistry.class) {
+                if(instance == null) {
+                    instance = new MetadataRegistry(new File(context.getApplicationContext().getCacheDir(),
+                            CACHE_DIRECTORY_NAME));
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * @param filename
+     *            - metadata filename without extension
+     * @return metadata of the file, with its layout compiled
+     * @throws IOException
+     *             if the file can't be read
+     * @throws IllegalArgumentException
+     *             if the file is not a valid metadata
+     */
+    public synchronized AnswerSheetMetadata get(String filename) throws IOException {
+        File metadataFile = MetadataUtils.metadataFile(filename);
+        long lastModified = metadataFile.lastModified();
+        long length = metadataFile.length();
+        if(lastModified == 0L)
+            throw new FileNotFoundException(metadataFile.getPath() + " is not found");
+
+        Entry entry = entries.get(filename);
+        if(entry != null && entry.lastModified == lastModified && entry.length == length)
+            return entry.metadata;
+
+        File cacheFile = new File(cacheDirectory, filename + CACHE_EXTENSION);
+        AnswerSheetMetadata metadata = readCache(cacheFile, lastModified, length);
+        if(metadata == null) {
+            try (InputStream metadataInputStream = new FileInputStream(metadataFile)) {
+                metadata = new AnswerSheetMetadata(metadataInputStream);
+            }
+            writeCache(cacheFile, lastModified, length, metadata);
+        }
+
+        metadata.getLayout();
+        entries.put(filename, new Entry(lastModified, length, metadata));
+        return metadata;
+    }
+
+    /**
+     * @return cached metadata, or null if there is none for this version of the file
+     */
+    private AnswerSheetMetadata readCache(File cacheFile, long lastModified, long length) {
+        if(!cacheFile.isFile()) return null;
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)))) {
+            if(input.readLong() != lastModified || input.readLong() != length)
+                return null;
+            return AnswerSheetMetadata.readFrom(input);
+        } catch (IOException e) {
+            Log.w(TAG, "Cached metadata " + cacheFile.getName() + " can't be read", e);
+            return null;
+        }
+    }
+
+    private void writeCache(File cacheFile, long lastModified, long length, AnswerSheetMetadata metadata) {
+        if(!cacheDirectory.isDirectory() && !cacheDirectory.mkdirs()) {
+            Log.w(TAG, "Metadata cache directory can't be made");
+            return;
+        }
+
+        // Written next to the cache file then renamed, so a cut write is never read
+        File tempFile = new File(cacheDirectory, cacheFile.getName() + ".tmp");
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+            output.writeLong(lastModified);
+            output.writeLong(length);
+            metadata.writeTo(output);
+        } catch (IOException e) {
+            Log.w(TAG, "Metadata " + cacheFile.getName() + " can't be cached", e);
+            tempFile.delete();
+            return;
+        }
+        if(!tempFile.renameTo(cacheFile)) {
+            Log.w(TAG, "Metadata " + cacheFile.getName() + " can't be cached");
+            tempFile.delete();
+        }
+    }
+}
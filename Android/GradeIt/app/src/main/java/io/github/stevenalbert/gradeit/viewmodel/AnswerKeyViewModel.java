@@ -8,6 +8,7 @@ import android.support.annotation.NonNull;
 import java.util.List;
 
 import io.github.stevenalbert.gradeit.database.AnswerKeyRepository;
+import io.github.stevenalbert.gradeit.database.AnswerSheetRepository;
 import io.github.stevenalbert.gradeit.model.AnswerKey;
 import io.github.stevenalbert.gradeit.model.AnswerKeyCode;
 
@@ -17,6 +18,7 @@ import io.github.stevenalbert.gradeit.model.AnswerKeyCode;
 public class AnswerKeyViewModel extends AndroidViewModel {
 
     private AnswerKeyRepository repository;
+    private AnswerSheetRepository answerSheetRepository;
     private LiveData<List<AnswerKeyCode>> answerKeysMetadata;
     private LiveData<List<AnswerKey>> answerKeys;
     private LiveData<AnswerKey> answerKeyByMCode;
@@ -24,6 +26,7 @@ public class AnswerKeyViewModel extends AndroidViewModel {
     public AnswerKeyViewModel(@NonNull Application application) {
         super(application);
         repository = new AnswerKeyRepository(application);
+        answerSheetRepository = new AnswerSheetRepository(application);
     }
 
     public LiveData<List<AnswerKeyCode>> getAnswerKeysMetadata() {
@@ -41,8 +44,12 @@ public class AnswerKeyViewModel extends AndroidViewModel {
         return answerKeyByMCode;
     }
 
+    /**
+     * Insert the answer key, then score the saved answer sheets of its MCode with it
+     */
     public void insert(AnswerKey answerKey) {
         repository.insert(answerKey);
+        answerSheetRepository.rescore(answerKey);
     }
 
     public void delete(AnswerKey answerKey) {
@@ -3,6 +3,7 @@ package io.github.stevenalbert.gradeit.viewmodel;
 import android.app.Application;
 import android.arch.lifecycle.AndroidViewModel;
 import android.arch.lifecycle.LiveData;
+import android.arch.paging.PagedList;
 import android.support.annotation.NonNull;
 
 import java.util.List;
@@ -10,6 +11,7 @@ import java.util.List;
 import io.github.stevenalbert.gradeit.database.AnswerSheetRepository;
 import io.github.stevenalbert.gradeit.model.AnswerSheet;
 import io.github.stevenalbert.gradeit.model.AnswerSheetCode;
+import io.github.stevenalbert.gradeit.process.ItemStatistics;
 
 /**
  * Created by Steven Albert on 7/5/2018.
@@ -17,7 +19,7 @@ import io.github.stevenalbert.gradeit.model.AnswerSheetCode;
 public class AnswerSheetViewModel extends AndroidViewModel {
 
     private AnswerSheetRepository repository;
-    private LiveData<List<AnswerSheetCode>> answerSheetsMetadata;
+    private LiveData<PagedList<AnswerSheetCode>> answerSheetsMetadata;
     private LiveData<List<AnswerSheet>> answerSheets;
     private LiveData<AnswerSheet> answerSheet;
 
@@ -26,12 +28,12 @@ public class AnswerSheetViewModel extends AndroidViewModel {
         repository = new AnswerSheetRepository(application);
     }
 
-    public LiveData<List<AnswerSheetCode>> getAnswerSheetsMetadata() {
+    public LiveData<PagedList<AnswerSheetCode>> getAnswerSheetsMetadata() {
         answerSheetsMetadata = repository.getAnswerSheetsMetadata(AnswerSheetRepository.ALL_MCODE);
         return answerSheetsMetadata;
     }
 
-    public LiveData<List<AnswerSheetCode>> getAnswerSheetsMetadataByMCode(int mCode) {
+    public LiveData<PagedList<AnswerSheetCode>> getAnswerSheetsMetadataByMCode(int mCode) {
         answerSheetsMetadata = repository.getAnswerSheetsMetadata(mCode);
         return answerSheetsMetadata;
     }
@@ -51,6 +53,14 @@ public class AnswerSheetViewModel extends AndroidViewModel {
         return answerSheet;
     }
 
+    /**
+     * Statistics of the saved answer sheets of the MCode, it must not be called on
+     * the main thread
+     */
+    public ItemStatistics getItemStatistics(int mCode) {
+        return repository.getItemStatistics(mCode);
+    }
+
     public void insert(AnswerSheet answerSheet) {
         repository.insert(answerSheet);
     }
@@ -0,0 +1,155 @@
+package io.github.stevenalbert.gradeit.viewmodel;
+
+import android.app.Application;
+import android.arch.lifecycle.AndroidViewModel;
+import android.arch.lifecycle.LiveData;
+import android.arch.lifecycle.MutableLiveData;
+import android.net.Uri;
+import android.support.annotation.NonNull;
+import android.util.Log;
+
+import org.opencv.android.OpenCVLoader;
+import org.opencv.core.Mat;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.github.stevenalbert.gradeit.GradeItApplication;
+import io.github.stevenalbert.gradeit.R;
+import io.github.stevenalbert.gradeit.database.GradingStore;
+import io.github.stevenalbert.gradeit.model.AnswerSheet;
+import io.github.stevenalbert.gradeit.model.AnswerSheetMetadata;
+import io.github.stevenalbert.gradeit.model.AnswerSheetMetadata.PaperDimension;
+import io.github.stevenalbert.gradeit.process.GradingPipeline;
+import io.github.stevenalbert.gradeit.util.BitmapProcess;
+import io.github.stevenalbert.gradeit.util.MetadataRegistry;
+
+/**
+ * Grades the taken photos in the background with a {@link GradingPipeline}, so the
+ * next photo can be taken while the previous ones are graded. Graded answer sheets
+ * are saved to the database, so they show up in the marks list as they finish.
+ */
+public class GradingViewModel extends AndroidViewModel {
+
+    // TAG
+    private static final String TAG = GradingViewModel.class.getSimpleName();
+
+    private GradingStore store;
+    private GradingPipeline<Uri> pipeline;
+    private String pipelineMetadata;
+
+    private AtomicInteger pending = new AtomicInteger();
+    private AtomicInteger graded = new AtomicInteger();
+    private MutableLiveData<Integer> pendingCount = new MutableLiveData<>();
+    private MutableLiveData<Integer> gradedCount = new MutableLiveData<>();
+    private MutableLiveData<String> failureMessage = new MutableLiveData<>();
+
+    public GradingViewModel(@NonNull Application application) {
+        super(application);
+        store = new GradingStore(application);
+        pendingCount.setValue(0);
+        gradedCount.setValue(0);
+    }
+
+    /**
+     * Grade the photo after the photos which have been submitted before
+     *
+     * @param imageUri
+     *            - photo of the answer sheet
+     * @param metadataFilename
+     *            - form format of the answer sheet
+     * @return false if the photo can't be graded now
+     */
+    public boolean submit(Uri imageUri, String metadataFilename) {
+        if(pipeline == null || !metadataFilename.equals(pipelineMetadata)) {
+            if(pipeline != null) {
+                pipeline.shutdown();
+                pipeline = null;
+            }
+            AnswerSheetMetadata metadata = readMetadata(metadataFilename);
+            if(metadata == null || !OpenCVLoader.initDebug())
+                return false;
+            pipeline = new GradingPipeline<>(metadata, createDecoder(metadata.getDimension()), store, listener,
+                    GradeItApplication.of(getApplication()).getPipelineMetrics());
+            pipelineMetadata = metadataFilename;
+        }
+
+        if(!pipeline.offer(imageUri))
+            return false;
+        pendingCount.setValue(pending.incrementAndGet());
+        return true;
+    }
+
+    public LiveData<Integer> getPendingCount() {
+        return pendingCount;
+    }
+
+    public LiveData<Integer> getGradedCount() {
+        return gradedCount;
+    }
+
+    /**
+     * @return message of the last photo which failed to be graded
+     */
+    public LiveData<String> getFailureMessage() {
+        return failureMessage;
+    }
+
+    @Override
+    protected void onCleared() {
+        super.onCleared();
+        // The submitted photos are still graded and saved
+        if(pipeline != null) {
+            pipeline.shutdown();
+            pipeline = null;
+        }
+    }
+
+    private AnswerSheetMetadata readMetadata(String metadataFilename) {
+        try {
+            return MetadataRegistry.getInstance(getApplication()).get(metadataFilename);
+        } catch (IOException | IllegalArgumentException e) {
+            Log.e(TAG, "Metadata can't be read", e);
+            return null;
+        }
+    }
+
+    /**
+     * @param dimension
+     *            - paper dimension of the metadata, the photos are decoded only as
+     *            large as it needs
+     */
+    private GradingPipeline.Decoder<Uri> createDecoder(final PaperDimension dimension) {
+        return new GradingPipeline.Decoder<Uri>() {
+            @Override
+            public Mat decode(Uri imageUri) {
+                return BitmapProcess.getExifOrientedMat(getApplication(), imageUri, dimension);
+            }
+        };
+    }
+
+    private final GradingPipeline.Listener<Uri> listener = new GradingPipeline.Listener<Uri>() {
+        @Override
+        public void onGraded(Uri imageUri, AnswerSheet answerSheet) {
+            onFinished();
+            gradedCount.postValue(graded.incrementAndGet());
+        }
+
+        @Override
+        public void onFailed(Uri imageUri, AnswerSheet answerSheet, Exception e) {
+            Log.d(TAG, imageUri + " can't be graded: " + e.getMessage());
+            onFinished();
+            failureMessage.postValue(answerSheet != null ?
+                    getApplication().getString(R.string.no_answer_key_error_message, answerSheet.getMCodeString()) :
+                    getApplication().getString(R.string.failed_grade_notification));
+        }
+
+        private void onFinished() {
+            int pendingPhotos = pending.decrementAndGet();
+            pendingCount.postValue(pendingPhotos);
+            // The photos taken so far are all graded
+            if(pendingPhotos == 0)
+                GradeItApplication.of(getApplication()).logPipelineMetrics();
+        }
+    };
+}
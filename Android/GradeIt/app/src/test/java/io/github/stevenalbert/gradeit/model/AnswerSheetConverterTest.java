@@ -0,0 +1,154 @@
+package io.github.stevenalbert.gradeit.model;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+/**
+ * Binary and text forms of the answers and verdicts of an answer sheet
+ */
+public class AnswerSheetConverterTest {
+
+    private static final int ALL_OPTIONS = (1 << Option.values().length) - 1;
+
+    @Test
+    public void packedAnswers_roundTrip() {
+        Random random = new Random(16);
+        for(int size : new int[] {0, 1, 7, 8, 9, 40, 100, 257}) {
+            PackedAnswers answers = randomAnswers(random, size);
+            byte[] bytes = AnswerSheetConverter.packedAnswersToBytes(answers);
+            assertEquals(5 + size, bytes.length);
+            assertEquals(answers, AnswerSheetConverter.packedAnswersFromBytes(bytes));
+        }
+    }
+
+    @Test
+    public void verdicts_roundTrip() {
+        Random random = new Random(16);
+        for(int size : new int[] {0, 1, 3, 4, 5, 40, 100, 257}) {
+            int[] verdicts = new int[size];
+            for(int i = 0; i < size; i++) {
+                verdicts[i] = random.nextInt(4);
+            }
+            byte[] bytes = AnswerSheetConverter.verdictsToBytes(verdicts);
+            assertEquals(5 + (size + 3) / 4, bytes.length);
+            assertArrayEquals(verdicts, AnswerSheetConverter.verdictsFromBytes(bytes));
+        }
+    }
+
+    @Test
+    public void null_staysNull() {
+        assertNull(AnswerSheetConverter.packedAnswersToBytes(null));
+        assertNull(AnswerSheetConverter.packedAnswersFromBytes(null));
+        assertNull(AnswerSheetConverter.verdictsToBytes(null));
+        assertNull(AnswerSheetConverter.verdictsFromBytes(null));
+    }
+
+    @Test
+    public void unknownVersion_isRejected() {
+        byte[] answers = AnswerSheetConverter.packedAnswersToBytes(randomAnswers(new Random(16), 40));
+        answers[0] = 2;
+        assertRejectedAnswers(answers);
+        byte[] verdicts = AnswerSheetConverter.verdictsToBytes(new int[40]);
+        verdicts[0] = 0;
+        assertRejectedVerdicts(verdicts);
+    }
+
+    @Test
+    public void wrongLength_isRejected() {
+        byte[] answers = AnswerSheetConverter.packedAnswersToBytes(randomAnswers(new Random(16), 40));
+        assertRejectedAnswers(copyOf(answers, answers.length - 1));
+        assertRejectedAnswers(copyOf(answers, answers.length + 1));
+        assertRejectedAnswers(copyOf(answers, 4));
+        assertRejectedAnswers(new byte[0]);
+
+        byte[] verdicts = AnswerSheetConverter.verdictsToBytes(new int[41]);
+        assertRejectedVerdicts(copyOf(verdicts, verdicts.length - 1));
+        assertRejectedVerdicts(copyOf(verdicts, verdicts.length + 1));
+        assertRejectedVerdicts(copyOf(verdicts, 4));
+
+        // A size far larger than the data must not be allocated
+        byte[] hugeSize = AnswerSheetConverter.verdictsToBytes(new int[4]);
+        hugeSize[1] = 0x7F;
+        assertRejectedVerdicts(hugeSize);
+
+        // A negative size rounds to no verdict byte, so only the size can reject it
+        byte[] negativeSize = AnswerSheetConverter.verdictsToBytes(new int[0]);
+        negativeSize[1] = (byte) 0xFF;
+        negativeSize[2] = (byte) 0xFF;
+        negativeSize[3] = (byte) 0xFF;
+        negativeSize[4] = (byte) 0xFF;
+        assertRejectedVerdicts(negativeSize);
+        assertRejectedAnswers(negativeSize);
+    }
+
+    @Test
+    public void packedAnswersFromString_keepsTrailingEmptyAnswers() {
+        // Text of the answers column before version 2, numbers 3 and 4 without answer
+        PackedAnswers answers = AnswerSheetConverter.packedAnswersFromString("A,BE,,");
+        assertEquals(4, answers.size());
+        assertEquals(Answer.maskOf(Option.A), answers.getBits(0));
+        assertEquals(Answer.maskOf(Option.B) | Answer.maskOf(Option.E), answers.getBits(1));
+        assertEquals(0, answers.getBits(2));
+        assertEquals(0, answers.getBits(3));
+
+        assertEquals(3, AnswerSheetConverter.packedAnswersFromString(",,").size());
+        assertEquals("A,BE,,", AnswerSheetConverter.packedAnswersToString(answers));
+    }
+
+    @Test
+    public void packedAnswersString_roundTrip() {
+        Random random = new Random(16);
+        for(int size : new int[] {1, 8, 9, 40, 100}) {
+            PackedAnswers answers = randomAnswers(random, size);
+            String string = AnswerSheetConverter.packedAnswersToString(answers);
+            assertEquals(answers, AnswerSheetConverter.packedAnswersFromString(string));
+        }
+    }
+
+    @Test
+    public void verdictsString_toBytes() {
+        // The migration to version 2 converts the text of every row this way
+        int[] verdicts = AnswerSheetConverter.verdictsFromString("0123321");
+        assertArrayEquals(new int[] {0, 1, 2, 3, 3, 2, 1}, verdicts);
+        assertArrayEquals(verdicts,
+                AnswerSheetConverter.verdictsFromBytes(AnswerSheetConverter.verdictsToBytes(verdicts)));
+    }
+
+    static PackedAnswers randomAnswers(Random random, int size) {
+        PackedAnswers answers = new PackedAnswers(size);
+        for(int i = 0; i < size; i++) {
+            answers.setBits(i, random.nextInt(ALL_OPTIONS + 1));
+        }
+        return answers;
+    }
+
+    private static byte[] copyOf(byte[] bytes, int length) {
+        byte[] copy = new byte[length];
+        System.arraycopy(bytes, 0, copy, 0, Math.min(length, bytes.length));
+        return copy;
+    }
+
+    private static void assertRejectedAnswers(byte[] bytes) {
+        try {
+            AnswerSheetConverter.packedAnswersFromBytes(bytes);
+            fail("Answers of " + bytes.length + " bytes are read");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+    }
+
+    private static void assertRejectedVerdicts(byte[] bytes) {
+        try {
+            AnswerSheetConverter.verdictsFromBytes(bytes);
+            fail("Verdicts of " + bytes.length + " bytes are read");
+        } catch (IllegalArgumentException e) {
+            // Expected
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package io.github.stevenalbert.gradeit.model;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Packed answers and the scoring on their words, against the scoring one option at
+ * a time they replaced
+ */
+public class AnswerSheetScoringTest {
+
+    private static final Option[] OPTIONS = Option.values();
+    private static final int ANSWER_TRUE = 1;
+    private static final int ANSWER_FALSE = 0;
+    private static final int ANSWER_MULTIPLE = 2;
+
+    @Test
+    public void packedAnswers_setAndGetEveryNumber() {
+        Random random = new Random(14);
+        PackedAnswers answers = new PackedAnswers(100);
+        int[] expected = new int[100];
+        for(int round = 0; round < 1000; round++) {
+            int index = random.nextInt(expected.length);
+            expected[index] = random.nextInt(1 << OPTIONS.length);
+            answers.setBits(index, expected[index]);
+            for(int i = 0; i < expected.length; i++) {
+                assertEquals(expected[i], answers.getBits(i));
+            }
+        }
+    }
+
+    @Test
+    public void packedAnswers_setChosen() {
+        PackedAnswers answers = new PackedAnswers(9);
+        answers.setChosen(8, Option.B, true);
+        answers.setChosen(8, Option.E, true);
+        assertTrue(answers.isChosen(8, Option.B));
+        assertTrue(answers.isChosen(8, Option.E));
+        assertFalse(answers.isChosen(8, Option.A));
+        assertEquals(0, answers.getBits(7));
+        answers.setChosen(8, Option.B, false);
+        assertEquals(Answer.maskOf(Option.E), answers.getBits(8));
+    }
+
+    @Test
+    public void answer_isViewOfItsNumber() {
+        AnswerSheet answerSheet = new AnswerSheet(1, 1, 10);
+        Answer answer = answerSheet.getAnswerOn(10);
+        answer.setOptionChosen(Option.C, true);
+        assertTrue(answerSheet.getAnswerOn(10).isOptionChosen(Option.C));
+        assertFalse(answer.isOptionChosen(null));
+        assertEquals(Answer.maskOf(Option.C), answerSheet.getAnswers().getBits(9));
+    }
+
+    @Test
+    public void scoreAnswerSheet_sameAsEveryOption() {
+        Random random = new Random(14);
+        for(int round = 0; round < 2000; round++) {
+            int size = 1 + random.nextInt(120);
+            int mCode = random.nextInt(1000);
+            AnswerKey answerKey = new AnswerKey(mCode, size);
+            for(int number = 1; number <= size; number++) {
+                // Some numbers of the key are left without option
+                if(random.nextInt(10) > 0)
+                    answerKey.setAnswerKey(number, OPTIONS[random.nextInt(OPTIONS.length)]);
+            }
+            answerKey.setTotalNumber(random.nextBoolean() ? size : 1 + random.nextInt(size));
+
+            AnswerSheet answerSheet = randomAnswerSheet(random, 1 + random.nextInt(999), mCode, answerKey, size);
+            AnswerSheet expected = new AnswerSheet(answerSheet.getExCode(), mCode,
+                    new PackedAnswers(answerSheet.getAnswers().size(), answerSheet.getAnswers().getWords().clone()),
+                    answerSheet.getVerdicts().clone(), answerSheet.getTotalCorrect());
+
+            answerSheet.scoreAnswerSheet(answerKey);
+            scoreEveryOption(expected, answerKey);
+
+            assertEquals(expected.getTotalNumber(), answerSheet.getTotalNumber());
+            assertEquals(expected.getTotalCorrect(), answerSheet.getTotalCorrect());
+            assertArrayEquals(expected.getVerdicts(), answerSheet.getVerdicts());
+        }
+    }
+
+    @Test
+    public void copy_isScoredWithoutChangingOriginal() {
+        AnswerSheet answerSheet = new AnswerSheet(1, 5, 2);
+        answerSheet.setAnswerOn(1, Option.A, true);
+        answerSheet.setAnswerOn(2, Option.C, true);
+        answerSheet.scoreAnswerSheet(new AnswerKey(5, new Option[] {Option.A, Option.B}, 2));
+        int[] verdicts = answerSheet.getVerdicts().clone();
+
+        // The key of number 2 is changed after the answer sheet is scored
+        AnswerSheet copy = new AnswerSheet(answerSheet);
+        copy.scoreAnswerSheet(new AnswerKey(5, new Option[] {Option.A, Option.C}, 2));
+        assertEquals(2, copy.getTotalCorrect());
+        assertEquals(1, answerSheet.getTotalCorrect());
+        assertArrayEquals(verdicts, answerSheet.getVerdicts());
+        assertEquals(answerSheet.getAnswers(), copy.getAnswers());
+    }
+
+    @Test
+    public void scoreAnswerSheet_otherMCodeIsNotScored() {
+        AnswerKey answerKey = new AnswerKey(5, new Option[] {Option.A, Option.B}, 2);
+        AnswerSheet answerSheet = new AnswerSheet(1, 6, 2);
+        answerSheet.setAnswerOn(1, Option.A, true);
+        int[] verdicts = answerSheet.getVerdicts().clone();
+        answerSheet.scoreAnswerSheet(answerKey);
+        assertArrayEquals(verdicts, answerSheet.getVerdicts());
+        assertEquals(0, answerSheet.getTotalCorrect());
+    }
+
+    @Test
+    public void fromAnswerSheet_takesFirstChosenOption() {
+        Random random = new Random(14);
+        for(int round = 0; round < 500; round++) {
+            int size = 1 + random.nextInt(120);
+            AnswerSheet answerSheet = new AnswerSheet(AnswerKey.ANSWER_KEY_EX_CODE, random.nextInt(1000), size);
+            for(int i = 0; i < size; i++) {
+                if(random.nextInt(4) > 0)
+                    answerSheet.getAnswers().setBits(i, random.nextInt(1 << OPTIONS.length));
+            }
+
+            AnswerKey answerKey = AnswerKey.fromAnswerSheet(answerSheet);
+            int totalNumber = 0;
+            for(int number = 1; number <= size; number++) {
+                Option expected = null;
+                for(Option option : OPTIONS) {
+                    if(answerSheet.getAnswerOn(number).isOptionChosen(option)) {
+                        expected = option;
+                        break;
+                    }
+                }
+                if(expected != null) totalNumber = number;
+                assertEquals(expected, answerKey.getAnswerKey(number));
+            }
+            assertEquals(totalNumber, answerKey.getTotalNumber());
+        }
+    }
+
+    private static AnswerSheet randomAnswerSheet(Random random, int exCode, int mCode, AnswerKey answerKey, int size) {
+        AnswerSheet answerSheet = new AnswerSheet(exCode, mCode, size);
+        for(int number = 1; number <= size; number++) {
+            int kind = random.nextInt(4);
+            Option key = answerKey.getAnswerKey(number);
+            if(kind == 0 && key != null) {
+                // Only the key
+                answerSheet.setAnswerOn(number, key, true);
+            } else if(kind == 1 && key != null) {
+                // The key and another option
+                answerSheet.setAnswerOn(number, key, true);
+                answerSheet.setAnswerOn(number, OPTIONS[(key.ordinal() + 1 + random.nextInt(OPTIONS.length - 1))
+                        % OPTIONS.length], true);
+            } else {
+                answerSheet.getAnswers().setBits(number - 1, random.nextInt(1 << OPTIONS.length));
+            }
+        }
+        return answerSheet;
+    }
+
+    /**
+     * Scoring of an answer sheet as it was before the answers were packed
+     */
+    private static void scoreEveryOption(AnswerSheet answerSheet, AnswerKey answerKey) {
+        answerSheet.setTotalNumber(answerKey.getTotalNumber());
+        int totalCorrect = 0;
+        for(int number = 1; number <= answerSheet.getTotalAnswer(); number++) {
+            Option keyOption = answerKey.getAnswerKey(number);
+            Answer answer = answerSheet.getAnswerOn(number);
+            if(answer.isOptionChosen(keyOption)) {
+                answerSheet.setAnswerVerdict(number, ANSWER_TRUE);
+                totalCorrect++;
+                for(Option option : OPTIONS) {
+                    if(!option.equals(keyOption) && answer.isOptionChosen(option)) {
+                        answerSheet.setAnswerVerdict(number, ANSWER_MULTIPLE);
+                        totalCorrect--;
+                        break;
+                    }
+                }
+            } else {
+                answerSheet.setAnswerVerdict(number, ANSWER_FALSE);
+            }
+        }
+        answerSheet.totalCorrect = totalCorrect;
+    }
+}
@@ -0,0 +1,178 @@
+package io.github.stevenalbert.gradeit.process;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import io.github.stevenalbert.gradeit.model.AnswerKey;
+import io.github.stevenalbert.gradeit.model.AnswerKeyConverter;
+import io.github.stevenalbert.gradeit.model.AnswerSheet;
+import io.github.stevenalbert.gradeit.model.AnswerSheetConverter;
+import io.github.stevenalbert.gradeit.model.Option;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Summary rows made from the statistics, against the CSV text the analysis built
+ * with String.format before
+ */
+public class AnalysisProcessTest {
+
+    private Locale defaultLocale;
+
+    @Before
+    public void setUp() {
+        defaultLocale = Locale.getDefault();
+        Locale.setDefault(Locale.US);
+    }
+
+    @After
+    public void tearDown() {
+        Locale.setDefault(defaultLocale);
+    }
+
+    @Test
+    public void answersSummary_sameAsFormattedText() throws Exception {
+        Random random = new Random(20);
+        for(int round = 0; round < 200; round++) {
+            AnswerKey answerKey = ItemStatisticsTest.randomAnswerKey(random, random.nextInt(1000), 2 + random.nextInt(60));
+            List<AnswerSheet> answerSheets = randomAnswerSheets(random, answerKey, 1 + random.nextInt(40));
+
+            String summary = AnalysisProcess.getAnswersSummary(answerSheets, answerKey);
+            assertEquals(formattedSummary(answerSheets, answerKey), summary);
+
+            StringWriter writer = new StringWriter();
+            AnalysisProcess.writeAnswersSummary(AnalysisProcess.getAnalysisSummary(answerSheets, answerKey,
+                    ItemStatistics.of(answerKey.getMCode(), answerSheets)), writer);
+            assertEquals(summary, writer.toString());
+        }
+    }
+
+    @Test
+    public void answersSummary_quotesDecimalComma() throws Exception {
+        Locale.setDefault(new Locale("in", "ID"));
+        Random random = new Random(20);
+        AnswerKey answerKey = ItemStatisticsTest.randomAnswerKey(random, 7, 10);
+        List<AnswerSheet> answerSheets = randomAnswerSheets(random, answerKey, 10);
+        ItemStatistics statistics = ItemStatistics.of(7, answerSheets);
+
+        // A cell of "0,50" used to split into two columns
+        StringBuilder difficultyLevel = new StringBuilder(",Difficulty level,");
+        for(int number = 1; number <= answerKey.getTotalNumber(); number++) {
+            difficultyLevel.append('"').append(String.format("%.2f", statistics.getDifficultyLevel(number))).append("\",");
+        }
+        String summary = AnalysisProcess.getAnswersSummary(answerSheets, answerKey);
+        assertTrue(summary.contains("\n" + difficultyLevel + "\n"));
+    }
+
+    @Test
+    public void formatDecimal_sameAsFormat() {
+        double[] values = {0, -0.0, 0.125, 1.005, 2.675, 0.995, -0.995, -0.001, -0.005, 123.456,
+                1e-9, -1e-9, 0.5, 1.0 / 3, -2.0 / 3, Double.NaN, Double.POSITIVE_INFINITY,
+                Double.NEGATIVE_INFINITY};
+        for(double value : values) {
+            assertEquals("Format of " + value, String.format("%.2f", value), AnalysisProcess.formatDecimal(value, '.'));
+        }
+
+        Random random = new Random(20);
+        for(int i = 0; i < 100000; i++) {
+            double value = random.nextDouble() * 4 - 2;
+            // Values ending in 5 on the third decimal are the ones rounding can break
+            if(random.nextBoolean()) value = Math.round(value * 1000) / 1000.0;
+            assertEquals("Format of " + value, String.format("%.2f", value), AnalysisProcess.formatDecimal(value, '.'));
+        }
+    }
+
+    @Test
+    public void formatDecimal_usesDecimalSeparator() {
+        Locale locale = new Locale("in", "ID");
+        assertEquals(String.format(locale, "%.2f", 0.5), AnalysisProcess.formatDecimal(0.5, ','));
+        assertEquals(String.format(locale, "%.2f", -1.005), AnalysisProcess.formatDecimal(-1.005, ','));
+    }
+
+    private static List<AnswerSheet> randomAnswerSheets(Random random, AnswerKey answerKey, int count) {
+        List<AnswerSheet> answerSheets = new ArrayList<>(count);
+        for(int sheet = 0; sheet < count; sheet++) {
+            answerSheets.add(ItemStatisticsTest.randomAnswerSheet(random, 1 + sheet, answerKey));
+        }
+        return answerSheets;
+    }
+
+    /**
+     * Summary as the analysis wrote it before the rows were streamed, every decimal
+     * formatted by String.format
+     */
+    private static String formattedSummary(List<AnswerSheet> answerSheets, AnswerKey answerKey) {
+        int totalNumber = answerKey.getTotalNumber();
+        int sheetCount = answerSheets.size();
+        ItemStatistics statistics = ItemStatistics.of(answerKey.getMCode(), answerSheets);
+        StringBuilder builder = new StringBuilder();
+
+        cell(builder, "MCode");
+        cell(builder, "ExCode");
+        for(int number = 1; number <= totalNumber; number++) {
+            cell(builder, String.valueOf(number));
+        }
+        cell(builder, "Result").append('\n');
+
+        cell(builder, answerKey.getMCodeString());
+        cell(builder, "000");
+        String options = AnswerKeyConverter.optionsToString(answerKey.getAnswerKeys());
+        for(int i = 0; i < totalNumber; i++) {
+            cell(builder, String.valueOf(options.charAt(i)));
+        }
+        cell(builder, "KEY").append('\n');
+
+        for(AnswerSheet answerSheet : answerSheets) {
+            cell(builder, answerSheet.getMCodeString());
+            cell(builder, answerSheet.getExCodeString());
+            int result = 0;
+            for(int number = 1; number <= totalNumber; number++) {
+                cell(builder, AnswerSheetConverter.answerToString(answerSheet.getAnswerOn(number)));
+                result += answerSheet.isAnswerTrue(number) ? 1 : 0;
+            }
+            cell(builder, String.valueOf(result)).append('\n');
+        }
+
+        cell(builder, "");
+        cell(builder, "Validity score");
+        for(int number = 1; number <= totalNumber; number++) {
+            double validity = statistics.getValidity(number);
+            cell(builder, Double.isNaN(validity) ? "---" : String.format(Locale.getDefault(), "%.2f", validity));
+        }
+        cell(builder, "").append('\n');
+
+        cell(builder, "");
+        cell(builder, "Difficulty level");
+        for(int number = 1; number <= totalNumber; number++) {
+            cell(builder, String.format("%.2f", 1.0 - statistics.getCorrectCount(number) / (double) sheetCount));
+        }
+        builder.append("\n\n\n");
+
+        cell(builder, "");
+        cell(builder, "Reliability score");
+        cell(builder, String.format("%.2f", statistics.getReliability(totalNumber))).append('\n');
+
+        builder.append('\n');
+        for(Option option : Option.values()) {
+            cell(builder, "");
+            cell(builder, "Total " + option.getOption());
+            for(int number = 1; number <= totalNumber; number++) {
+                cell(builder, String.valueOf(statistics.getOptionCount(number, option)));
+            }
+            cell(builder, "").append('\n');
+        }
+        return builder.toString();
+    }
+
+    private static StringBuilder cell(StringBuilder builder, String cell) {
+        return builder.append(cell).append(',');
+    }
+}
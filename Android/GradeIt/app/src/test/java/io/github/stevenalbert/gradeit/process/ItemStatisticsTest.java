@@ -0,0 +1,160 @@
+package io.github.stevenalbert.gradeit.process;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import io.github.stevenalbert.gradeit.model.AnswerKey;
+import io.github.stevenalbert.gradeit.model.AnswerSheet;
+import io.github.stevenalbert.gradeit.model.Option;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Running statistics of an MCode, against the statistics computed again from all
+ * its answer sheets as the analysis did before
+ */
+public class ItemStatisticsTest {
+
+    private static final Option[] OPTIONS = Option.values();
+    private static final double DELTA = 1e-9;
+
+    @Test
+    public void addAndRemove_sameAsFromAnswerSheets() throws Exception {
+        Random random = new Random(19);
+        for(int round = 0; round < 200; round++) {
+            int mCode = random.nextInt(1000);
+            AnswerKey answerKey = randomAnswerKey(random, mCode, 5 + random.nextInt(60));
+            List<AnswerSheet> answerSheets = new ArrayList<>();
+            ItemStatistics statistics = new ItemStatistics(mCode);
+            int count = 2 + random.nextInt(40);
+            for(int sheet = 0; sheet < count + 5; sheet++) {
+                AnswerSheet answerSheet = randomAnswerSheet(random, 1 + sheet, answerKey);
+                answerSheets.add(answerSheet);
+                statistics.add(answerSheet);
+            }
+            for(int sheet = 0; sheet < 5; sheet++) {
+                statistics.remove(answerSheets.remove(random.nextInt(answerSheets.size())));
+            }
+
+            assertSameAsAnswerSheets(answerSheets, answerKey, statistics);
+            assertEquals(AnalysisProcess.getAnswersSummary(answerSheets, answerKey),
+                    AnalysisProcess.getAnswersSummary(answerSheets, answerKey, statistics));
+        }
+    }
+
+    @Test
+    public void copy_isNotChangedByOriginal() {
+        Random random = new Random(19);
+        AnswerKey answerKey = randomAnswerKey(random, 7, 40);
+        ItemStatistics statistics = new ItemStatistics(7);
+        statistics.add(randomAnswerSheet(random, 1, answerKey));
+        ItemStatistics copy = new ItemStatistics(statistics);
+        statistics.add(randomAnswerSheet(random, 2, answerKey));
+        assertEquals(1, copy.getAnswerSheetCount());
+        assertEquals(2, statistics.getAnswerSheetCount());
+    }
+
+    @Test
+    public void of_skipsOtherMCode() {
+        Random random = new Random(19);
+        List<AnswerSheet> answerSheets = new ArrayList<>();
+        answerSheets.add(randomAnswerSheet(random, 1, randomAnswerKey(random, 7, 40)));
+        answerSheets.add(randomAnswerSheet(random, 2, randomAnswerKey(random, 8, 40)));
+        assertEquals(1, ItemStatistics.of(7, answerSheets).getAnswerSheetCount());
+    }
+
+    static AnswerKey randomAnswerKey(Random random, int mCode, int totalNumber) {
+        AnswerSheet keySheet = new AnswerSheet(AnswerKey.ANSWER_KEY_EX_CODE, mCode, totalNumber);
+        for(int number = 1; number <= totalNumber; number++) {
+            keySheet.setAnswerOn(number, OPTIONS[random.nextInt(OPTIONS.length)], true);
+        }
+        return AnswerKey.fromAnswerSheet(keySheet);
+    }
+
+    /**
+     * @return scored answer sheet, with numbers without answer and with more than
+     *         one option
+     */
+    static AnswerSheet randomAnswerSheet(Random random, int exCode, AnswerKey answerKey) {
+        AnswerSheet answerSheet = new AnswerSheet(exCode, answerKey.getMCode(), answerKey.getTotalNumber());
+        for(int number = 1; number <= answerKey.getTotalNumber(); number++) {
+            if(random.nextInt(8) > 0)
+                answerSheet.setAnswerOn(number, OPTIONS[random.nextInt(OPTIONS.length)], true);
+            if(random.nextInt(10) == 0)
+                answerSheet.setAnswerOn(number, OPTIONS[random.nextInt(OPTIONS.length)], true);
+        }
+        answerSheet.scoreAnswerSheet(answerKey);
+        return answerSheet;
+    }
+
+    /**
+     * Compare with the verdict matrix, correlation, variance and KR-20 the analysis
+     * computed from the answer sheets
+     */
+    private static void assertSameAsAnswerSheets(List<AnswerSheet> answerSheets, AnswerKey answerKey,
+                                                 ItemStatistics statistics) {
+        int totalNumber = answerKey.getTotalNumber();
+        int sheetCount = answerSheets.size();
+        assertEquals(sheetCount, statistics.getAnswerSheetCount());
+
+        int[][] verdicts = new int[totalNumber][sheetCount];
+        int[] scores = new int[sheetCount];
+        for(int sheet = 0; sheet < sheetCount; sheet++) {
+            for(int number = 1; number <= totalNumber; number++) {
+                verdicts[number - 1][sheet] = answerSheets.get(sheet).isAnswerTrue(number) ? 1 : 0;
+            }
+            scores[sheet] = answerSheets.get(sheet).getTotalCorrect();
+        }
+
+        double sumOfPQ = 0;
+        for(int number = 1; number <= totalNumber; number++) {
+            int correct = 0;
+            for(int verdict : verdicts[number - 1]) {
+                correct += verdict;
+            }
+            assertEquals(correct, statistics.getCorrectCount(number));
+            assertEquals(1.0 - ((double) correct) / sheetCount, statistics.getDifficultyLevel(number), DELTA);
+            assertEquals(correlation(verdicts[number - 1], scores), statistics.getValidity(number), DELTA);
+            double p = ((double) correct) / sheetCount;
+            sumOfPQ += p * (1 - p);
+
+            for(Option option : OPTIONS) {
+                int chosen = 0;
+                for(AnswerSheet answerSheet : answerSheets) {
+                    chosen += answerSheet.getAnswerOn(number).isOptionChosen(option) ? 1 : 0;
+                }
+                assertEquals(chosen, statistics.getOptionCount(number, option));
+            }
+        }
+        double variance = variance(scores);
+        assertEquals(variance, statistics.getScoreVariance(), DELTA);
+        assertEquals((((double) totalNumber) / (totalNumber - 1)) * (1 - sumOfPQ / variance),
+                statistics.getReliability(totalNumber), DELTA);
+    }
+
+    private static double correlation(int[] x, int[] y) {
+        double sumOfXY = 0, sumOfX = 0, sumOfY = 0, sumOfSquareX = 0, sumOfSquareY = 0, n = x.length;
+        for(int i = 0; i < n; i++) {
+            sumOfXY += x[i] * y[i];
+            sumOfX += x[i];
+            sumOfY += y[i];
+            sumOfSquareX += x[i] * x[i];
+            sumOfSquareY += y[i] * y[i];
+        }
+        return (n * sumOfXY - sumOfX * sumOfY) /
+                Math.sqrt((n * sumOfSquareX - sumOfX * sumOfX) * (n * sumOfSquareY - sumOfY * sumOfY));
+    }
+
+    private static double variance(int[] x) {
+        double sum = 0, sumOfSquare = 0;
+        for(int v : x) {
+            sum += v;
+            sumOfSquare += v * v;
+        }
+        double mean = sum / x.length;
+        return sumOfSquare / x.length - mean * mean;
+    }
+}
@@ -0,0 +1,141 @@
+package io.github.stevenalbert.gradeit.process;
+
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Feature X of the kernel against {@link FeatureExtractor#getFeatureX(Mat)} on the
+ * same thresholded cells. The features must be exactly equal, the answers are
+ * chosen by comparing them. It needs the desktop OpenCV library on
+ * java.library.path, without it the tests are skipped.
+ */
+public class XFeatureKernelTest {
+
+    private static final byte BLACK = 0;
+    private static final byte WHITE = (byte) 255;
+
+    @BeforeClass
+    public static void loadLibrary() {
+        try {
+            System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+        } catch (UnsatisfiedLinkError e) {
+            Assume.assumeNoException(e);
+        }
+    }
+
+    @Test
+    public void randomCells_sameAsFeatureExtractor() {
+        Random random = new Random(2);
+        XFeatureKernel kernel = new XFeatureKernel();
+        for(int round = 0; round < 500; round++) {
+            int rows = 5 + random.nextInt(60);
+            int cols = 5 + random.nextInt(60);
+            byte[] pixels = new byte[rows * cols];
+            double density = random.nextDouble();
+            for(int i = 0; i < pixels.length; i++) {
+                pixels[i] = random.nextDouble() < density ? WHITE : BLACK;
+            }
+            assertSameFeature(kernel, pixels, rows, cols);
+        }
+    }
+
+    @Test
+    public void markedCells_sameAsFeatureExtractor() {
+        Random random = new Random(2);
+        XFeatureKernel kernel = new XFeatureKernel();
+        for(int round = 0; round < 500; round++) {
+            int rows = 9 + random.nextInt(50);
+            int cols = 9 + random.nextInt(50);
+            byte background = random.nextBoolean() ? WHITE : BLACK;
+            byte ink = background == WHITE ? BLACK : WHITE;
+            byte[] pixels = new byte[rows * cols];
+            Arrays.fill(pixels, background);
+            // An X of some thickness, off the center, with a border which is cropped
+            int border = random.nextInt(4);
+            int thickness = 1 + random.nextInt(4);
+            int shift = random.nextInt(5) - 2;
+            for(int row = border; row < rows - border; row++) {
+                int col = border + (row - border) * (cols - 2 * border) / Math.max(1, rows - 2 * border);
+                for(int t = 0; t < thickness; t++) {
+                    set(pixels, rows, cols, row, col + t + shift, ink);
+                    set(pixels, rows, cols, row, cols - 1 - col - t + shift, ink);
+                }
+            }
+            for(int i = 0; i < border * cols; i++) {
+                pixels[i] = BLACK;
+                pixels[pixels.length - 1 - i] = BLACK;
+            }
+            assertSameFeature(kernel, pixels, rows, cols);
+        }
+    }
+
+    @Test
+    public void edgeCells_sameAsFeatureExtractor() {
+        XFeatureKernel kernel = new XFeatureKernel();
+        int[][] sizes = {{7, 9}, {9, 7}, {13, 13}, {21, 17}, {31, 33}, {33, 35}, {45, 31}, {64, 65}};
+        for(int[] size : sizes) {
+            int rows = size[0], cols = size[1];
+            byte[] pixels = new byte[rows * cols];
+
+            Arrays.fill(pixels, WHITE);
+            assertSameFeature(kernel, pixels, rows, cols);
+            Arrays.fill(pixels, BLACK);
+            assertSameFeature(kernel, pixels, rows, cols);
+
+            // Single pixel marks at the corners and the center
+            int[] positions = {0, cols - 1, (rows / 2) * cols + cols / 2, (rows - 1) * cols, rows * cols - 1};
+            for(int position : positions) {
+                Arrays.fill(pixels, BLACK);
+                pixels[position] = WHITE;
+                assertSameFeature(kernel, pixels, rows, cols);
+                Arrays.fill(pixels, WHITE);
+                pixels[position] = BLACK;
+                assertSameFeature(kernel, pixels, rows, cols);
+            }
+        }
+    }
+
+    @Test
+    public void reusedKernel_sameAsNewKernel() {
+        // The scratch buffers of a large cell must not leak into a smaller one
+        Random random = new Random(2);
+        XFeatureKernel kernel = new XFeatureKernel();
+        for(int round = 0; round < 200; round++) {
+            int rows = 5 + random.nextInt(60);
+            int cols = 5 + random.nextInt(60);
+            byte[] pixels = new byte[rows * cols];
+            for(int i = 0; i < pixels.length; i++) {
+                pixels[i] = random.nextBoolean() ? WHITE : BLACK;
+            }
+            double feature = kernel.getFeatureX(pixels, rows, cols);
+            assertEquals(new XFeatureKernel().getFeatureX(pixels, rows, cols), feature, 0);
+        }
+    }
+
+    private static void set(byte[] pixels, int rows, int cols, int row, int col, byte value) {
+        if(row >= 0 && row < rows && col >= 0 && col < cols)
+            pixels[row * cols + col] = value;
+    }
+
+    private static void assertSameFeature(XFeatureKernel kernel, byte[] pixels, int rows, int cols) {
+        Mat cell = new Mat(rows, cols, CvType.CV_8UC1);
+        try {
+            cell.put(0, 0, pixels);
+            double expected = FeatureExtractor.getFeatureX(cell);
+            String message = "Feature X of a " + rows + "x" + cols + " cell";
+            assertEquals(message, expected, kernel.getFeatureX(cell), 0);
+            assertEquals(message, expected, kernel.getFeatureX(pixels.clone(), rows, cols), 0);
+        } finally {
+            cell.release();
+        }
+    }
+}
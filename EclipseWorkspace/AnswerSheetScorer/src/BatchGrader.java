@@ -0,0 +1,295 @@
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.opencv.core.Mat;
+import org.opencv.imgcodecs.Imgcodecs;
+
+import model.Answer;
+import model.AnswerKey;
+import model.AnswerMat;
+import model.AnswerSheet;
+import model.AnswerSheetMetadata;
+import model.Option;
+import process.AnswerSheetScorer;
+import process.BulkScorer;
+import process.DebugWriter;
+import process.PipelineMetrics;
+import process.PipelineMetricsHistogram;
+
+/**
+ * Grades a directory of scanned answer sheets. The photos are recognized
+ * concurrently on a pool of workers, sized to the processors and to the memory one
+ * photo needs. The answer keys are taken from all recognized sheets
+ * before any sheet is scored, so an answer key can be anywhere in the directory. The
+ * sheets of one MCode are then scored together by {@link BulkScorer}.
+ *
+ * The output directory gets a file for every photo, in the format of result.txt,
+ * and results.csv with one line for every photo in the order of the file names.
+ * Debug images of the chosen photos are written to the debug directory in it.
+ */
+public class BatchGrader {
+
+    private static final String RESULTS_FILE = "results.csv";
+    private static final String DEBUG_DIRECTORY = "debug";
+
+    // Only this part of the free memory is used by the workers
+    private static final double MEMORY_USAGE = 0.5;
+
+    // Native images of one photo while it is converted, in photos
+    private static final int PHOTO_COPIES = 3;
+
+    // Native images of one converted answer sheet, in answer sheets
+    private static final int PAPER_COPIES = 5;
+
+    private final File inputDirectory;
+    private final File outputDirectory;
+    private final AnswerSheetMetadata metadata;
+    private final int workerCount;
+    private final DebugWriter debugWriter;
+
+    /**
+     * @param workerCount
+     *            - number of workers, or 0 to size it to the processors and memory
+     * @param debugWriter
+     *            - writer of the debug images, closed when the batch is graded
+     */
+    public BatchGrader(File inputDirectory, File outputDirectory, File metadataFile, int workerCount,
+            DebugWriter debugWriter) throws IOException {
+        if (!inputDirectory.isDirectory())
+            throw new IllegalArgumentException("Input " + inputDirectory + " is not a directory");
+        this.inputDirectory = inputDirectory;
+        this.outputDirectory = outputDirectory;
+        try (InputStream in = new FileInputStream(metadataFile)) {
+            this.metadata = new AnswerSheetMetadata(in);
+        }
+        this.workerCount = workerCount;
+        this.debugWriter = debugWriter;
+    }
+
+    public void run() throws IOException, InterruptedException {
+        try {
+            grade();
+        } finally {
+            // The queued debug images are written even if the batch fails
+            debugWriter.close();
+        }
+        if (debugWriter.getLevel() != DebugWriter.Level.OFF)
+            System.out.println(debugWriter.getWrittenCount() + " debug images are written");
+        if (debugWriter.getDroppedCount() > 0)
+            System.out.println(debugWriter.getDroppedCount()
+                    + " debug images of unfinished sheets are dropped, they took too much memory");
+    }
+
+    private void grade() throws IOException, InterruptedException {
+        File[] files = inputDirectory.listFiles();
+        ArrayList<File> photos = new ArrayList<>();
+        if (files != null) {
+            Arrays.sort(files);
+            for (File file : files) {
+                String name = file.getName().toLowerCase(Locale.US);
+                if (file.isFile() && (name.endsWith(".jpg") || name.endsWith(".jpeg") || name.endsWith(".png")))
+                    photos.add(file);
+            }
+        }
+        if (photos.isEmpty()) {
+            System.out.println("There is no photo in " + inputDirectory);
+            return;
+        }
+        outputDirectory.mkdirs();
+
+        int workers = workerCount > 0 ? workerCount : workerCount(photos.get(0));
+        System.out.println("Grade " + photos.size() + " photos of " + inputDirectory + " on " + workers + " workers");
+
+        final PipelineMetricsHistogram metrics = new PipelineMetricsHistogram();
+        long startTime = System.nanoTime();
+
+        // Recognize all photos, the futures are in the order of the files
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        ArrayList<Future<AnswerSheet>> futures = new ArrayList<>();
+        for (final File photo : photos) {
+            futures.add(executor.submit(new Callable<AnswerSheet>() {
+                @Override
+                public AnswerSheet call() throws Exception {
+                    return recognize(photo, metrics);
+                }
+            }));
+        }
+        executor.shutdown();
+
+        AnswerSheet[] answerSheets = new AnswerSheet[photos.size()];
+        String[] errors = new String[photos.size()];
+        HashMap<Integer, AnswerKey> answerKeys = new HashMap<>();
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                answerSheets[i] = futures.get(i).get();
+                if (AnswerKey.isAnswerKey(answerSheets[i]) && !answerKeys.containsKey(answerSheets[i].getMCode())) {
+                    answerKeys.put(answerSheets[i].getMCode(), AnswerKey.fromAnswerSheet(answerSheets[i]));
+                    System.out.println("Answer key of MCode " + answerSheets[i].getMCodeString() + " is "
+                            + photos.get(i).getName());
+                }
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                errors[i] = cause.getMessage() != null ? cause.getMessage() : cause.toString();
+            }
+            if ((i + 1) % 100 == 0)
+                System.out.println((i + 1) + " of " + photos.size() + " photos are recognized");
+        }
+        long recognizedTime = System.nanoTime();
+
+        // Score all answer sheets of an MCode at once
+        HashMap<Integer, ArrayList<AnswerSheet>> cohorts = new HashMap<>();
+        for (AnswerSheet answerSheet : answerSheets) {
+            if (answerSheet != null && !AnswerKey.isAnswerKey(answerSheet)) {
+                ArrayList<AnswerSheet> cohort = cohorts.get(answerSheet.getMCode());
+                if (cohort == null) {
+                    cohort = new ArrayList<>();
+                    cohorts.put(answerSheet.getMCode(), cohort);
+                }
+                cohort.add(answerSheet);
+            }
+        }
+        for (Integer mCode : cohorts.keySet()) {
+            if (answerKeys.containsKey(mCode))
+                BulkScorer.scoreAnswerSheets(answerKeys.get(mCode), cohorts.get(mCode));
+        }
+        long scoredTime = System.nanoTime();
+
+        // Write in the order of the files
+        int graded = 0, keySheets = 0, failed = 0;
+        try (PrintWriter results = new PrintWriter(new File(outputDirectory, RESULTS_FILE))) {
+            results.println("file,excode,mcode,correct,total,status");
+            for (int i = 0; i < answerSheets.length; i++) {
+                String name = photos.get(i).getName();
+                AnswerSheet answerSheet = answerSheets[i];
+                if (answerSheet == null) {
+                    results.println(name + ",,,,," + csv(errors[i]));
+                    failed++;
+                    continue;
+                }
+
+                String status;
+                AnswerKey answerKey = answerKeys.get(answerSheet.getMCode());
+                if (AnswerKey.isAnswerKey(answerSheet)) {
+                    status = "answer key";
+                    keySheets++;
+                } else if (answerKey == null) {
+                    status = "no answer key";
+                    failed++;
+                } else {
+                    status = "graded";
+                    graded++;
+                }
+                results.println(name + "," + answerSheet.getExCodeString() + "," + answerSheet.getMCodeString() + ","
+                        + answerSheet.getTotalCorrect() + "," + answerSheet.getTotalAnswer() + "," + status);
+                writeResult(answerSheet, new File(outputDirectory, name.substring(0, name.lastIndexOf('.')) + ".txt"));
+            }
+        }
+        long endTime = System.nanoTime();
+
+        double seconds = (endTime - startTime) / 1e9;
+        System.out.println(String.format(Locale.US,
+                "%d photos in %.1f s (%.1f sheets/s): %d graded, %d answer key sheets, %d failed,"
+                        + " recognition %.1f s, scoring %.1f ms",
+                photos.size(), seconds, photos.size() / seconds, graded, keySheets, failed,
+                (recognizedTime - startTime) / 1e9, (scoredTime - recognizedTime) / 1e6));
+        System.out.println("Pipeline metrics of " + inputDirectory.getName());
+        metrics.dump(System.out);
+    }
+
+    private AnswerSheet recognize(File file, PipelineMetrics metrics) throws Exception {
+        String name = file.getName().substring(0, file.getName().lastIndexOf('.'));
+        DebugWriter.Sheet debug = debugWriter.begin(new File(new File(outputDirectory, DEBUG_DIRECTORY), name),
+                file.getName());
+        boolean failed = true;
+        // Released however the sheet ends, a failed sheet must not keep its native memory
+        Mat photo = null;
+        Mat converted = null;
+        ArrayList<AnswerMat> answerMats = null;
+        try {
+            photo = Imgcodecs.imread(file.getAbsolutePath());
+            if (photo.empty())
+                throw new Exception("Photo cannot be read");
+            converted = AnswerSheetScorer.convertAnswerSheet(photo, metadata, debug.in("0-Preprocess"), metrics);
+            photo.release();
+            if (converted == null)
+                throw new Exception("Paper not found");
+            answerMats = AnswerSheetScorer.processAnswerSheet(converted, metadata,
+                    debug.in("1-Retrieve squares content"), metrics);
+            converted.release();
+            AnswerSheet answerSheet = AnswerSheetScorer.recognizeAnswerSheet(answerMats,
+                    debug.in("2-Normalization and Detection"), metrics);
+            failed = false;
+            return answerSheet;
+        } finally {
+            if (photo != null)
+                photo.release();
+            if (converted != null)
+                converted.release();
+            if (answerMats != null) {
+                for (AnswerMat answerMat : answerMats) {
+                    answerMat.release();
+                }
+            }
+            debug.finish(failed);
+        }
+    }
+
+    /**
+     * Number of workers whose photos fit in the memory, at most one for every
+     * processor. The size of the photos is taken from the first photo.
+     */
+    // getFreePhysicalMemorySize is deprecated for getFreeMemorySize since Java 14, the
+    // project is built on Java 8
+    @SuppressWarnings("deprecation")
+    private int workerCount(File firstPhoto) {
+        int processors = Runtime.getRuntime().availableProcessors();
+        Mat photo = Imgcodecs.imread(firstPhoto.getAbsolutePath());
+        long photoBytes = photo.total() * photo.elemSize();
+        photo.release();
+        long paperBytes = (long) metadata.getDimension().width * metadata.getDimension().height;
+        long bytesPerWorker = PHOTO_COPIES * photoBytes + PAPER_COPIES * paperBytes;
+
+        long memory = Runtime.getRuntime().maxMemory();
+        OperatingSystemMXBean system = ManagementFactory.getOperatingSystemMXBean();
+        if (system instanceof com.sun.management.OperatingSystemMXBean) {
+            // The images are native memory, not on the Java heap
+            memory = ((com.sun.management.OperatingSystemMXBean) system).getFreePhysicalMemorySize();
+        }
+        long memoryWorkers = bytesPerWorker > 0 ? (long) (memory * MEMORY_USAGE / bytesPerWorker) : processors;
+        return (int) Math.max(1, Math.min(processors, memoryWorkers));
+    }
+
+    private static void writeResult(AnswerSheet answerSheet, File file) throws IOException {
+        try (PrintWriter pw = new PrintWriter(file)) {
+            pw.println(answerSheet.getExCodeString());
+            pw.println(answerSheet.getMCodeString());
+            Option[] options = Option.values();
+            for (int number = 1; number <= answerSheet.getTotalAnswer(); number++) {
+                Answer answer = answerSheet.getAnswerOn(number);
+                for (Option option : options) {
+                    if (answer.isOptionChosen(option))
+                        pw.print(option.getOption());
+                }
+                pw.println();
+            }
+        }
+    }
+
+    private static String csv(String value) {
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+}
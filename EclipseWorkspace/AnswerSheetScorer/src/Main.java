@@ -7,6 +7,7 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.Locale;
 
 import org.opencv.core.Core;
 import org.opencv.core.Mat;
@@ -19,17 +20,41 @@ import model.AnswerSheet;
 import model.AnswerSheetMetadata;
 import model.Option;
 import process.AnswerSheetScorer;
+import process.DebugWriter;
 import process.FeatureExtractor;
+import process.PipelineMetricsHistogram;
 
 public class Main {
 
     public static final String RES_DIR = "res";
     private static AnswerKey answerKey;
     
-    public static void main(String[] args) {
+    /**
+     * Without arguments, process the test directory with debug output. With
+     * arguments, grade a directory of photos:
+     * 
+     * <pre>
+     * Main input-directory output-directory metadata.asmf [workers] [debug]
+     * </pre>
+     * 
+     * where debug is off (default), failures, full or sampled:N
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
         // load OpenCV library
         System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
 
+        if (args.length > 0) {
+            if (args.length < 3) {
+                System.err.println("Usage: Main input-directory output-directory metadata.asmf [workers] "
+                        + "[off|failures|full|sampled:N]");
+                System.exit(1);
+            }
+            new BatchGrader(new File(args[0]), new File(args[1]), new File(args[2]),
+                    args.length > 3 ? Integer.parseInt(args[3]) : 0,
+                    createDebugWriter(args.length > 4 ? args[4] : "off")).run();
+            return;
+        }
+
         // read directory
         File resDirectory = new File(RES_DIR);
         File ansSheetDirectory = new File(resDirectory, "Test-MCode-649");
@@ -61,10 +86,11 @@ public class Main {
     }
 
     private static void processDirectory(File directory, File outputDirectory, boolean recognize) {
-        long startTime, endTime;
         if (!directory.isDirectory())
             return;
 
+        PipelineMetricsHistogram metrics = new PipelineMetricsHistogram();
+
         InputStream in = null;
         try {
             in = new FileInputStream(new File(RES_DIR, "P-40.asmf"));
@@ -103,24 +129,18 @@ public class Main {
 
             // process the image
             System.out.println("Start find paper => " + files[i].getName());
-            startTime = System.nanoTime();
             File output = new File(outputDirectory, files[i].getName().replace(".jpg", ""));
             output.mkdirs();
             File preprocessOutput = new File(output, "0-Preprocess");
             preprocessOutput.mkdirs();
-            Mat process = AnswerSheetScorer.convertAnswerSheet(mat, metadata, preprocessOutput, files[i].getName(),
-                    true);
-            endTime = System.nanoTime();
-            System.out.println("Converting image in " + ((double) (endTime - startTime)) / (double) 1e9);
+            Mat process = AnswerSheetScorer.convertAnswerSheet(mat, metadata,
+                    DebugWriter.direct(preprocessOutput, files[i].getName()), metrics);
 
             File p = new File(output, "1-Retrieve squares content");
             p.mkdirs();
             System.out.println("Process answer sheet");
-            startTime = System.nanoTime();
-            ArrayList<AnswerMat> answerMats = AnswerSheetScorer.processAnswerSheet(process, metadata, p,
-                    files[i].getName(), true);
-            endTime = System.nanoTime();
-            System.out.println("Processing answer sheet in " + ((double) (endTime - startTime)) / (double) 1e9);
+            ArrayList<AnswerMat> answerMats = AnswerSheetScorer.processAnswerSheet(process, metadata,
+                    DebugWriter.direct(p, files[i].getName()), metrics);
 
             
             File scoringDirectory = new File(output, "2-Normalization and Detection");
@@ -146,17 +166,15 @@ public class Main {
                             + (nskok >= oldKernelThreshold ? 1 : 0) + "\t" + (nsknk >= newKernelThreshold ? 1 : 0) + "\t");
                 }
             } else {
-                startTime = System.nanoTime();
-                AnswerSheet answerSheet = AnswerSheetScorer.recognizeAnswerSheet(answerMats, scoringDirectory);
-                endTime = System.nanoTime();
-                System.out.println("Scoring answer sheet in " + ((double) (endTime - startTime)) / (double) 1e9);
+                AnswerSheet answerSheet = AnswerSheetScorer.recognizeAnswerSheet(answerMats,
+                        DebugWriter.direct(scoringDirectory, null), metrics);
                 
                 boolean scored = false;
                 
                 if(AnswerKey.isAnswerKey(answerSheet)) {
                     answerKey = AnswerKey.fromAnswerSheet(answerSheet);
                 } else if(answerKey != null) {
-                    AnswerSheetScorer.scoreAnswerSheet(answerSheet, answerKey);
+                    AnswerSheetScorer.scoreAnswerSheet(answerSheet, answerKey, metrics);
                     scored = true;
                 }
                 
@@ -195,6 +213,16 @@ public class Main {
         }
 
         if(recognize) printWriter.close();
+
+        System.out.println("Pipeline metrics of " + directory.getName());
+        metrics.dump(System.out);
+    }
+
+    private static DebugWriter createDebugWriter(String debug) {
+        String[] values = debug.split(":");
+        DebugWriter.Level level = DebugWriter.Level.valueOf(values[0].toUpperCase(Locale.US));
+        int sampleInterval = values.length > 1 ? Integer.parseInt(values[1]) : 1;
+        return new DebugWriter(level, sampleInterval, DebugWriter.DEFAULT_CAPACITY);
     }
 
     private static void copyFileUsingStream(File source, File dest) throws IOException {
@@ -0,0 +1,103 @@
+package generator;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import org.opencv.core.Core;
+
+import model.Answer;
+import model.AnswerSheet;
+import model.AnswerSheetMetadata;
+import model.Option;
+
+/**
+ * Writes a corpus of generated answer sheets in the layout read by the benchmarks:
+ *
+ * <pre>
+ * output/
+ *     F-40.asmf
+ *     F-40/1600x1200/sheet-0000.jpg
+ *     F-40/1600x1200/sheet-0000.txt
+ *     ...
+ * </pre>
+ *
+ * The first sheet is the answer key. Every photo has a text file of the expected
+ * answer sheet, in the format of the result.txt written by Main: ExCode, MCode,
+ * then the chosen options of every number on its own line.
+ *
+ * Usage: GenerateSheets metadata.asmf output [count] [seed] [width x height]
+ */
+public class GenerateSheets {
+
+    private static final int DEFAULT_COUNT = 50;
+    private static final long DEFAULT_SEED = 1;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: GenerateSheets metadata.asmf output [count] [seed] [width x height]");
+            System.exit(1);
+        }
+        // load OpenCV library
+        System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+
+        File metadataFile = new File(args[0]);
+        File outputDirectory = new File(args[1]);
+        int count = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_COUNT;
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : DEFAULT_SEED;
+        int width = SheetGenerator.DEFAULT_PHOTO_WIDTH, height = SheetGenerator.DEFAULT_PHOTO_HEIGHT;
+        if (args.length > 4) {
+            String[] size = args[4].split("x");
+            width = Integer.parseInt(size[0]);
+            height = Integer.parseInt(size[1]);
+        }
+
+        AnswerSheetMetadata metadata;
+        try (InputStream in = new FileInputStream(metadataFile)) {
+            metadata = new AnswerSheetMetadata(in);
+        }
+        SheetGenerator generator = new SheetGenerator(metadata, seed);
+        generator.setPhotoSize(width, height);
+
+        String form = metadataFile.getName().replace(".asmf", "");
+        File sheetDirectory = new File(new File(outputDirectory, form), width + "x" + height);
+        sheetDirectory.mkdirs();
+        Files.copy(metadataFile.toPath(), new File(outputDirectory, metadataFile.getName()).toPath(),
+                StandardCopyOption.REPLACE_EXISTING);
+
+        long startTime = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            SheetGenerator.Sheet sheet = i == 0 ? generator.generateAnswerKey() : generator.generate(i);
+            String name = String.format("sheet-%04d", i);
+            try (OutputStream out = new FileOutputStream(new File(sheetDirectory, name + ".jpg"))) {
+                out.write(sheet.getJpeg());
+            }
+            writeExpected(sheet.getExpected(), new File(sheetDirectory, name + ".txt"));
+            sheet.release();
+        }
+        System.out.println(count + " sheets of " + form + " with MCode " + generator.getMCode() + " are written to "
+                + sheetDirectory + " in " + (System.nanoTime() - startTime) / 1000000 + " ms");
+    }
+
+    private static void writeExpected(AnswerSheet answerSheet, File file) throws IOException {
+        try (PrintWriter pw = new PrintWriter(file)) {
+            pw.println(answerSheet.getExCodeString());
+            pw.println(answerSheet.getMCodeString());
+            Option[] options = Option.values();
+            for (int number = 1; number <= answerSheet.getTotalAnswer(); number++) {
+                Answer answer = answerSheet.getAnswerOn(number);
+                for (Option option : options) {
+                    if (answer.isOptionChosen(option))
+                        pw.print(option.getOption());
+                }
+                pw.println();
+            }
+        }
+    }
+}
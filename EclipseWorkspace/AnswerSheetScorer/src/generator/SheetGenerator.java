@@ -0,0 +1,564 @@
+package generator;
+
+import java.util.Random;
+
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfByte;
+import org.opencv.core.MatOfInt;
+import org.opencv.core.MatOfPoint;
+import org.opencv.core.MatOfPoint2f;
+import org.opencv.core.Point;
+import org.opencv.core.Scalar;
+import org.opencv.core.Size;
+import org.opencv.imgcodecs.Imgcodecs;
+import org.opencv.imgproc.Imgproc;
+
+import model.AnswerKey;
+import model.AnswerSheet;
+import model.AnswerSheetMetadata;
+import model.AnswerSheetMetadata.PaperDimension;
+import model.AnswerSheetMetadata.Value;
+import model.Option;
+
+/**
+ * Renders synthetic photos of answer sheets with known answers, for load and
+ * accuracy tests of the scorer. The form is drawn from any answer sheet metadata:
+ * the black anchor squares on the left and bottom edges and a grid of answer boxes
+ * for every metadata value. Random X marks are drawn on the boxes, then the paper
+ * is put on a background with a random perspective, lighting, shadow, blur, noise
+ * and JPEG compression.
+ *
+ * The metadata only tells which anchors bound every grid, so the distance between
+ * the boxes is chosen to fill the paper. The paper edge is the border of the form,
+ * like a form which is cut to the dimension of the metadata.
+ *
+ * Every sheet is generated from the seed of the generator and the index of the
+ * sheet only, so the same sheets are generated on every run and on any thread.
+ */
+public class SheetGenerator {
+
+    /**
+     * Generated photo of an answer sheet and the answer sheet expected from it
+     */
+    public static class Sheet {
+        private final Mat photo;
+        private final byte[] jpeg;
+        private final AnswerSheet expected;
+
+        private Sheet(Mat photo, byte[] jpeg, AnswerSheet expected) {
+            this.photo = photo;
+            this.jpeg = jpeg;
+            this.expected = expected;
+        }
+
+        /**
+         * @return decoded JPEG photo, BGR
+         */
+        public Mat getPhoto() {
+            return photo;
+        }
+
+        /**
+         * @return JPEG file content of the photo
+         */
+        public byte[] getJpeg() {
+            return jpeg;
+        }
+
+        public AnswerSheet getExpected() {
+            return expected;
+        }
+
+        public void release() {
+            photo.release();
+        }
+    }
+
+    public static final int DEFAULT_PHOTO_WIDTH = 1600;
+    public static final int DEFAULT_PHOTO_HEIGHT = 1200;
+
+    // Distances on the paper, in squares of the metadata
+    private static final double MARGIN_SQUARES = 1.5;
+    private static final double GAP_SQUARES = 1.5;
+    private static final double MIN_PITCH_SQUARES = 1.5;
+    private static final double MAX_PITCH_SQUARES = 2.0;
+
+    // Answers of the students
+    private static final double CORRECT_CHANCE = 0.6;
+    private static final double BLANK_CHANCE = 0.05;
+    private static final double MULTIPLE_CHANCE = 0.03;
+
+    // Photo distortion
+    private static final double MIN_PAPER_FILL = 0.6;
+    private static final double MAX_PAPER_FILL = 0.8;
+    private static final double MAX_ROTATION_DEGREE = 4.0;
+    private static final double MAX_CORNER_JITTER = 0.02;
+    private static final double MAX_LIGHT_FALLOFF = 0.35;
+    private static final double SHADOW_CHANCE = 0.5;
+    private static final double MAX_SHADOW_DARKNESS = 0.35;
+    private static final double MIN_BLUR_SIGMA = 0.3;
+    private static final double MAX_BLUR_SIGMA = 1.5;
+    private static final double MAX_NOISE_SIGMA = 8.0;
+    private static final int MIN_JPEG_QUALITY = 60;
+    private static final int MAX_JPEG_QUALITY = 95;
+
+    // Mixes the index of a sheet into the seed
+    private static final long SEED_INCREMENT = 0x9E3779B97F4A7C15L;
+
+    private final AnswerSheetMetadata metadata;
+    private final long seed;
+    private final double[] horizontalCenters;
+    private final double[] verticalCenters;
+    private final int totalAnswer;
+    private final Option[][] numberOptions;
+    private final Option[] answerKey;
+    private int mCode;
+    private int photoWidth = DEFAULT_PHOTO_WIDTH;
+    private int photoHeight = DEFAULT_PHOTO_HEIGHT;
+    private boolean isDistorted = true;
+
+    /**
+     * @param metadata
+     *            - form of the generated answer sheets
+     * @param seed
+     *            - seed of the answer key, the MCode and all generated sheets
+     */
+    public SheetGenerator(AnswerSheetMetadata metadata, long seed) {
+        if (metadata == null) {
+            throw new IllegalArgumentException("Argument cannot be null");
+        }
+        this.metadata = metadata;
+        this.seed = seed;
+
+        PaperDimension dimension = metadata.getDimension();
+        int horizontalCount = 0, verticalCount = 0, total = 0;
+        for (int i = 0; i < metadata.getValueLength(); i++) {
+            Value value = metadata.getValue(i);
+            horizontalCount = Math.max(horizontalCount, value.endHorizontalIndex + 1);
+            verticalCount = Math.max(verticalCount, value.endVerticalIndex + 1);
+            if (isAnswer(value))
+                total = Math.max(total, value.startRowInteger + value.rowCount - 1);
+        }
+        this.totalAnswer = total;
+        this.horizontalCenters = placeAnchors(horizontalCount, true, dimension.width, dimension.squareWidth);
+        this.verticalCenters = placeAnchors(verticalCount, false, dimension.height, dimension.squareHeight);
+
+        // Options which can be chosen on every number
+        this.numberOptions = new Option[totalAnswer + 1][];
+        for (int i = 0; i < metadata.getValueLength(); i++) {
+            Value value = metadata.getValue(i);
+            if (!isAnswer(value))
+                continue;
+            Option[] options = new Option[value.columnCount];
+            for (int j = 0; j < value.columnCount; j++) {
+                options[j] = Option.getOption((char) (value.startColumnChar + j));
+            }
+            for (int row = 0; row < value.rowCount; row++) {
+                numberOptions[value.startRowInteger + row] = options;
+            }
+        }
+
+        Random random = new Random(seed);
+        this.mCode = 1 + random.nextInt(999);
+        this.answerKey = new Option[totalAnswer + 1];
+        for (int number = 1; number <= totalAnswer; number++) {
+            if (numberOptions[number] != null)
+                answerKey[number] = numberOptions[number][random.nextInt(numberOptions[number].length)];
+        }
+    }
+
+    /**
+     * @param mCode
+     *            - MCode of all generated sheets, by default chosen from the seed
+     */
+    public void setMCode(int mCode) {
+        if (mCode < 0 || mCode > 999) {
+            throw new IllegalArgumentException("MCode must be between 0 and 999");
+        }
+        this.mCode = mCode;
+    }
+
+    public int getMCode() {
+        return mCode;
+    }
+
+    public void setPhotoSize(int width, int height) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("Photo size must be positive");
+        }
+        this.photoWidth = width;
+        this.photoHeight = height;
+    }
+
+    /**
+     * @param isDistorted
+     *            - false to put the paper straight on the photo, without lighting,
+     *            shadow, blur and noise
+     */
+    public void setDistorted(boolean isDistorted) {
+        this.isDistorted = isDistorted;
+    }
+
+    public AnswerSheetMetadata getMetadata() {
+        return metadata;
+    }
+
+    /**
+     * Generate the answer key of the generated sheets, its ExCode is 000
+     */
+    public Sheet generateAnswerKey() {
+        Random random = new Random(seed);
+        AnswerSheet expected = new AnswerSheet(AnswerKey.ANSWER_KEY_EX_CODE, mCode, totalAnswer);
+        for (int number = 1; number <= totalAnswer; number++) {
+            if (answerKey[number] != null)
+                expected.setAnswerOn(number, answerKey[number], true);
+        }
+        return render(expected, random);
+    }
+
+    /**
+     * Generate the answer sheet of a student
+     *
+     * @param index
+     *            - index of the sheet, the same index always generates the same sheet
+     */
+    public Sheet generate(int index) {
+        Random random = new Random(seed + (index + 1) * SEED_INCREMENT);
+        AnswerSheet expected = new AnswerSheet(1 + random.nextInt(999), mCode, totalAnswer);
+        for (int number = 1; number <= totalAnswer; number++) {
+            Option[] options = numberOptions[number];
+            if (options == null)
+                continue;
+            double chance = random.nextDouble();
+            if (chance < BLANK_CHANCE)
+                continue;
+            Option option = random.nextDouble() < CORRECT_CHANCE ? answerKey[number]
+                    : options[random.nextInt(options.length)];
+            expected.setAnswerOn(number, option, true);
+            if (chance < BLANK_CHANCE + MULTIPLE_CHANCE)
+                expected.setAnswerOn(number, options[random.nextInt(options.length)], true);
+        }
+        return render(expected, random);
+    }
+
+    private Sheet render(AnswerSheet expected, Random random) {
+        Mat paper = renderPaper(expected, random);
+        Mat photo = isDistorted ? distort(paper, random) : straight(paper);
+        paper.release();
+
+        int quality = isDistorted ? MIN_JPEG_QUALITY + random.nextInt(MAX_JPEG_QUALITY - MIN_JPEG_QUALITY + 1)
+                : MAX_JPEG_QUALITY;
+        MatOfByte buffer = new MatOfByte();
+        Imgcodecs.imencode(".jpg", photo, buffer, new MatOfInt(Imgcodecs.IMWRITE_JPEG_QUALITY, quality));
+        photo.release();
+        byte[] jpeg = buffer.toArray();
+        Mat decoded = Imgcodecs.imdecode(buffer, Imgcodecs.IMREAD_COLOR);
+        buffer.release();
+        return new Sheet(decoded, jpeg, expected);
+    }
+
+    /**
+     * Draw the form and the X marks of the answer sheet on a paper of the dimension
+     * of the metadata
+     */
+    private Mat renderPaper(AnswerSheet expected, Random random) {
+        PaperDimension dimension = metadata.getDimension();
+        int paperColor = 225 + random.nextInt(31);
+        Mat paper = new Mat(dimension.height, dimension.width, CvType.CV_8UC3,
+                new Scalar(paperColor - random.nextInt(10), paperColor, paperColor));
+        Scalar black = new Scalar(20, 20, 20);
+
+        // Anchors: a column on the left and a row on the bottom
+        double left = margin(dimension.squareWidth) + dimension.squareWidth / 2.0;
+        double bottom = dimension.height - margin(dimension.squareHeight) - dimension.squareHeight / 2.0;
+        for (double y : verticalCenters) {
+            fillSquare(paper, left, y, dimension, black);
+        }
+        for (double x : horizontalCenters) {
+            fillSquare(paper, x, bottom, dimension, black);
+        }
+
+        // Answer boxes, with X marks of the expected answer sheet
+        String exCode = expected.getExCodeString();
+        String mCode = expected.getMCodeString();
+        Scalar pen = random.nextBoolean() ? new Scalar(110 + random.nextInt(40), 40, 20)
+                : new Scalar(30, 30, 30);
+        for (int i = 0; i < metadata.getValueLength(); i++) {
+            Value value = metadata.getValue(i);
+            double startY = verticalCenters[value.startVerticalIndex];
+            double startX = horizontalCenters[value.startHorizontalIndex];
+            double rowPitch = (verticalCenters[value.endVerticalIndex] - startY) / Math.max(1, value.rowCount - 1);
+            double columnPitch = (horizontalCenters[value.endHorizontalIndex] - startX)
+                    / Math.max(1, value.columnCount - 1);
+            for (int row = 0; row < value.rowCount; row++) {
+                for (int column = 0; column < value.columnCount; column++) {
+                    double x = startX + column * columnPitch;
+                    double y = startY + row * rowPitch;
+                    drawBox(paper, x, y, dimension, black);
+                    if (isChosen(expected, exCode, mCode, value, row, column))
+                        drawX(paper, x, y, dimension, pen, random);
+                }
+            }
+        }
+        return paper;
+    }
+
+    private boolean isChosen(AnswerSheet expected, String exCode, String mCode, Value value, int row,
+            int column) {
+        if (isAnswer(value)) {
+            Option option = Option.getOption((char) (value.startColumnChar + column));
+            return option != null && expected.getAnswerOn(value.startRowInteger + row).isOptionChosen(option);
+        }
+        String code = value.label.equals("ExCode") ? exCode : mCode;
+        int position = value.startColumnChar + column - '1';
+        return position >= 0 && position < code.length()
+                && code.charAt(position) - '0' == value.startRowInteger + row;
+    }
+
+    /**
+     * Put the paper on a photo with a random perspective and lighting
+     */
+    private Mat distort(Mat paper, Random random) {
+        Mat photo = background(random);
+        double scale = Math.min(photoWidth / (double) paper.cols(), photoHeight / (double) paper.rows())
+                * (MIN_PAPER_FILL + random.nextDouble() * (MAX_PAPER_FILL - MIN_PAPER_FILL));
+        double angle = Math.toRadians((random.nextDouble() * 2 - 1) * MAX_ROTATION_DEGREE);
+        double offsetX = (random.nextDouble() - 0.5) * (photoWidth - paper.cols() * scale) / 2;
+        double offsetY = (random.nextDouble() - 0.5) * (photoHeight - paper.rows() * scale) / 2;
+        double[] jitter = new double[8];
+        for (int i = 0; i < jitter.length; i++) {
+            jitter[i] = (random.nextDouble() * 2 - 1) * MAX_CORNER_JITTER;
+        }
+
+        // Shrink the paper until all corners are on the photo
+        Point[] corners;
+        do {
+            corners = paperCorners(paper, scale, angle, offsetX, offsetY, jitter);
+            scale *= 0.9;
+        } while (!isInside(corners));
+
+        warp(paper, photo, corners);
+
+        // Uneven light over the photo and a soft shadow across it
+        Mat gain = new Mat();
+        Mat light = new Mat(3, 3, CvType.CV_32FC1);
+        for (int i = 0; i < 3; i++) {
+            for (int j = 0; j < 3; j++) {
+                light.put(i, j, 1 - random.nextDouble() * MAX_LIGHT_FALLOFF);
+            }
+        }
+        Imgproc.resize(light, gain, new Size(photoWidth, photoHeight), 0, 0, Imgproc.INTER_CUBIC);
+        light.release();
+        if (random.nextDouble() < SHADOW_CHANCE) {
+            Mat shadow = new Mat(photoHeight, photoWidth, CvType.CV_32FC1, new Scalar(1));
+            Imgproc.fillConvexPoly(shadow, new MatOfPoint(shadowPolygon(random)),
+                    new Scalar(1 - MAX_SHADOW_DARKNESS * (0.5 + random.nextDouble() / 2)));
+            int softness = (int) (Math.min(photoWidth, photoHeight) * 0.02) | 1;
+            Imgproc.GaussianBlur(shadow, shadow, new Size(softness, softness), 0);
+            Core.multiply(gain, shadow, gain);
+            shadow.release();
+        }
+
+        Mat image = new Mat();
+        photo.convertTo(image, CvType.CV_32FC3);
+        Mat gain3 = new Mat();
+        Imgproc.cvtColor(gain, gain3, Imgproc.COLOR_GRAY2BGR);
+        Core.multiply(image, gain3, image);
+        gain.release();
+        gain3.release();
+
+        double sigma = MIN_BLUR_SIGMA + random.nextDouble() * (MAX_BLUR_SIGMA - MIN_BLUR_SIGMA);
+        Imgproc.GaussianBlur(image, image, new Size(0, 0), sigma);
+
+        // The noise comes from the RNG of OpenCV, which is seeded for this thread
+        Mat noise = new Mat(image.size(), image.type());
+        Core.setRNGSeed(random.nextInt());
+        Core.randn(noise, 0, random.nextDouble() * MAX_NOISE_SIGMA);
+        Core.add(image, noise, image);
+        noise.release();
+
+        image.convertTo(photo, CvType.CV_8UC3);
+        image.release();
+        return photo;
+    }
+
+    /**
+     * Put the paper on the middle of the photo as it is
+     */
+    private Mat straight(Mat paper) {
+        Mat photo = new Mat(photoHeight, photoWidth, CvType.CV_8UC3, new Scalar(60, 60, 60));
+        double scale = Math.min(photoWidth / (double) paper.cols(), photoHeight / (double) paper.rows())
+                * MAX_PAPER_FILL;
+        warp(paper, photo, paperCorners(paper, scale, 0, 0, 0, new double[8]));
+        return photo;
+    }
+
+    private Mat background(Random random) {
+        int base = 40 + random.nextInt(80);
+        Mat photo = new Mat(photoHeight, photoWidth, CvType.CV_8UC3, new Scalar(base - random.nextInt(20),
+                base - random.nextInt(20), base));
+        return photo;
+    }
+
+    private void warp(Mat paper, Mat photo, Point[] corners) {
+        MatOfPoint2f src = new MatOfPoint2f(new Point(0, 0), new Point(paper.cols(), 0),
+                new Point(paper.cols(), paper.rows()), new Point(0, paper.rows()));
+        MatOfPoint2f dst = new MatOfPoint2f(corners);
+        Mat transform = Imgproc.getPerspectiveTransform(src, dst);
+        Imgproc.warpPerspective(paper, photo, transform, photo.size(), Imgproc.INTER_LINEAR,
+                Core.BORDER_TRANSPARENT, new Scalar(0));
+        transform.release();
+        src.release();
+        dst.release();
+    }
+
+    /**
+     * @return top left, top right, bottom right and bottom left corner of the paper
+     *         on the photo
+     */
+    private Point[] paperCorners(Mat paper, double scale, double angle, double offsetX, double offsetY,
+            double[] jitter) {
+        double halfWidth = paper.cols() * scale / 2, halfHeight = paper.rows() * scale / 2;
+        double jitterSize = Math.min(halfWidth, halfHeight) * 2;
+        double[][] corners = { { -halfWidth, -halfHeight }, { halfWidth, -halfHeight }, { halfWidth, halfHeight },
+                { -halfWidth, halfHeight } };
+        double cos = Math.cos(angle), sin = Math.sin(angle);
+        Point[] points = new Point[4];
+        for (int i = 0; i < 4; i++) {
+            double x = corners[i][0] + jitter[2 * i] * jitterSize;
+            double y = corners[i][1] + jitter[2 * i + 1] * jitterSize;
+            points[i] = new Point(photoWidth / 2.0 + offsetX + x * cos - y * sin,
+                    photoHeight / 2.0 + offsetY + x * sin + y * cos);
+        }
+        return points;
+    }
+
+    private boolean isInside(Point[] points) {
+        for (Point point : points) {
+            if (point.x < 1 || point.y < 1 || point.x >= photoWidth - 1 || point.y >= photoHeight - 1)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return polygon of a shadow which comes from a random edge of the photo
+     */
+    private Point[] shadowPolygon(Random random) {
+        double width = photoWidth, height = photoHeight;
+        double start = random.nextDouble(), end = random.nextDouble();
+        double depth = 0.2 + random.nextDouble() * 0.4;
+        switch (random.nextInt(4)) {
+            case 0:
+                return new Point[] { new Point(0, 0), new Point(width, 0), new Point(width, height * depth * end),
+                        new Point(0, height * depth * start) };
+            case 1:
+                return new Point[] { new Point(width, 0), new Point(width, height),
+                        new Point(width * (1 - depth * end), height), new Point(width * (1 - depth * start), 0) };
+            case 2:
+                return new Point[] { new Point(0, height), new Point(width, height),
+                        new Point(width, height * (1 - depth * end)), new Point(0, height * (1 - depth * start)) };
+            default:
+                return new Point[] { new Point(0, 0), new Point(width * depth * start, 0),
+                        new Point(width * depth * end, height), new Point(0, height) };
+        }
+    }
+
+    private void fillSquare(Mat paper, double x, double y, PaperDimension dimension, Scalar color) {
+        Imgproc.rectangle(paper, new Point(x - dimension.squareWidth / 2.0, y - dimension.squareHeight / 2.0),
+                new Point(x + dimension.squareWidth / 2.0 - 1, y + dimension.squareHeight / 2.0 - 1), color,
+                Core.FILLED);
+    }
+
+    private void drawBox(Mat paper, double x, double y, PaperDimension dimension, Scalar color) {
+        // The border is drawn on the middle of the line, so the box is as big as an anchor
+        double border = dimension.squareAnswerBorder;
+        Imgproc.rectangle(paper,
+                new Point(x - (dimension.squareWidth - border) / 2.0, y - (dimension.squareHeight - border) / 2.0),
+                new Point(x + (dimension.squareWidth - border) / 2.0 - 1,
+                        y + (dimension.squareHeight - border) / 2.0 - 1),
+                color, dimension.squareAnswerBorder);
+    }
+
+    private void drawX(Mat paper, double x, double y, PaperDimension dimension, Scalar color, Random random) {
+        double halfWidth = dimension.squareWidth / 2.0 - dimension.squareAnswerBorder;
+        double halfHeight = dimension.squareHeight / 2.0 - dimension.squareAnswerBorder;
+        int thickness = Math.max(2, dimension.squareWidth / 12 + random.nextInt(3) - 1);
+        for (int stroke = 0; stroke < 2; stroke++) {
+            double direction = stroke == 0 ? 1 : -1;
+            double size = 0.55 + random.nextDouble() * 0.35;
+            Point start = new Point(x - halfWidth * (size + jitter(random)),
+                    y - direction * halfHeight * (size + jitter(random)));
+            Point end = new Point(x + halfWidth * (size + jitter(random)),
+                    y + direction * halfHeight * (size + jitter(random)));
+            Imgproc.line(paper, start, end, color, thickness, Imgproc.LINE_AA, 0);
+        }
+    }
+
+    private double jitter(Random random) {
+        return (random.nextDouble() * 2 - 1) * 0.1;
+    }
+
+    /**
+     * Place the anchors of one edge. Two anchors which bound the same grid are as
+     * far apart as the boxes of the grid, the other anchors are a gap apart. The
+     * distance between the boxes is as big as the paper allows.
+     *
+     * @param isHorizontal
+     *            - true for the anchors on the bottom edge, placed on the right of
+     *            the left anchors
+     * @return center of every anchor, x for horizontal and y for vertical anchors
+     */
+    private double[] placeAnchors(int count, boolean isHorizontal, int paperLength, int squareLength) {
+        // Number of box distances and gaps between every two consecutive anchors
+        int[] boxes = new int[Math.max(0, count - 1)];
+        for (int i = 0; i < metadata.getValueLength(); i++) {
+            Value value = metadata.getValue(i);
+            int start = isHorizontal ? value.startHorizontalIndex : value.startVerticalIndex;
+            int end = isHorizontal ? value.endHorizontalIndex : value.endVerticalIndex;
+            int length = (isHorizontal ? value.columnCount : value.rowCount) - 1;
+            if (end == start)
+                continue;
+            if (end != start + 1) {
+                throw new IllegalArgumentException("Grid of " + value.label + " must be bounded by two consecutive "
+                        + (isHorizontal ? "horizontal" : "vertical") + " anchors");
+            }
+            boxes[start] = Math.max(boxes[start], length);
+        }
+        int totalBoxes = 0, gaps = 0;
+        for (int box : boxes) {
+            if (box > 0)
+                totalBoxes += box;
+            else
+                gaps++;
+        }
+
+        // Margins on both sides, the anchors on the other edge, a gap from them and
+        // the half of the first and the last anchor
+        double gap = GAP_SQUARES * squareLength;
+        double available = paperLength - 2 * margin(squareLength) - 2 * squareLength - gap - gaps * gap;
+        double pitch = Math.min(MAX_PITCH_SQUARES * squareLength, available / Math.max(1, totalBoxes));
+        if (pitch < MIN_PITCH_SQUARES * squareLength) {
+            throw new IllegalArgumentException("Paper dimension is too small for the grids of the metadata");
+        }
+        double start = available - pitch * totalBoxes;
+        start = isHorizontal ? margin(squareLength) + squareLength + gap + squareLength / 2.0 + start / 2
+                : margin(squareLength) + squareLength / 2.0 + start / 2;
+
+        double[] centers = new double[count];
+        for (int i = 0; i < count; i++) {
+            centers[i] = i == 0 ? start : centers[i - 1] + (boxes[i - 1] > 0 ? boxes[i - 1] * pitch : gap);
+        }
+        return centers;
+    }
+
+    private static double margin(int squareLength) {
+        return MARGIN_SQUARES * squareLength;
+    }
+
+    private static boolean isAnswer(Value value) {
+        return !value.label.equals("ExCode") && !value.label.equals("MCode");
+    }
+}
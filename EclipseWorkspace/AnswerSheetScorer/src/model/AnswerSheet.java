@@ -17,12 +17,12 @@ public class AnswerSheet {
     protected long id;
     protected int exCode;
     protected int mCode;
-    protected Answer[] answers;
+    protected PackedAnswers answers;
     protected int[] verdicts;
     protected int totalCorrect;
     protected int totalNumber = -1;
 
-    public AnswerSheet(int exCode, int mCode, Answer[] answers, int[] verdicts, int totalCorrect) {
+    public AnswerSheet(int exCode, int mCode, PackedAnswers answers, int[] verdicts, int totalCorrect) {
         setExCode(exCode);
         setMCode(mCode);
         setAnswers(answers);
@@ -30,6 +30,10 @@ public class AnswerSheet {
         this.totalCorrect = totalCorrect;
     }
 
+    public AnswerSheet(int exCode, int mCode, Answer[] answers, int[] verdicts, int totalCorrect) {
+        this(exCode, mCode, answers == null ? null : new PackedAnswers(answers), verdicts, totalCorrect);
+    }
+
     public AnswerSheet(int exCode, int mCode, int totalAnswer) {
         setExCode(exCode);
         setMCode(mCode);
@@ -40,8 +44,8 @@ public class AnswerSheet {
     public AnswerSheet(int exCode, int mCode, Answer[] answers) {
         setExCode(exCode);
         setMCode(mCode);
-        setAnswers(answers);
-        createAnswerVerdicts(this.answers.length);
+        setAnswers(answers == null ? null : new PackedAnswers(answers));
+        createAnswerVerdicts(this.answers.size());
     }
 
     public AnswerSheet(int totalAnswer) {
@@ -65,25 +69,43 @@ public class AnswerSheet {
     }
 
     public void scoreAnswerSheet(AnswerKey answerKey) {
+        scoreAnswerSheet(answerKey, answerKey.toPackedAnswers());
+    }
+
+    /**
+     * Score eight numbers at once on the packed words of the answers and the
+     * answer key
+     *
+     * @param packedKey
+     *            - answer key packed by {@link AnswerKey#toPackedAnswers()}, it can
+     *            be shared by all answer sheets scored with the answer key
+     */
+    public void scoreAnswerSheet(AnswerKey answerKey, PackedAnswers packedKey) {
         if(this.getMCode() == answerKey.getMCode()) {
-            int totalCorrect = 0;
-            Option[] options = Option.values();
             this.totalNumber = answerKey.getTotalNumber();
-            for(int number = 1; number <= answerKey.getTotalNumber(); number++) {
-                Option keyOption = answerKey.getAnswerKey(number);
-                Answer answer = getAnswerOn(number);
-                if(answer.isOptionChosen(keyOption)) {
-                    setAnswerVerdict(number, ANSWER_TRUE);
-                    totalCorrect++;
-                    for(Option option : options) {
-                        if(!option.equals(keyOption) && answer.isOptionChosen(option)) {
-                            setAnswerVerdict(number, ANSWER_MULTIPLE);
-                            totalCorrect--;
-                            break;
-                        }
-                    }
-                } else {
-                    setAnswerVerdict(number, ANSWER_FALSE);
+            int numberCount = answerKey.getTotalNumber();
+            if(numberCount > answers.size())
+                throw new IndexOutOfBoundsException("Number starts from 1 to " + answers.size());
+            long[] words = answers.getWords();
+            long[] keyWords = packedKey.getWords();
+            int totalCorrect = 0;
+            for(int word = 0; word * PackedAnswers.NUMBERS_PER_WORD < numberCount; word++) {
+                long numbers = PackedAnswers.numbersBefore(word, numberCount);
+                long keyChosen = PackedAnswers.chosenNumbers(words[word] & keyWords[word]);
+                long otherChosen = PackedAnswers.chosenNumbers(words[word] & ~keyWords[word]);
+                long correct = keyChosen & ~otherChosen & numbers;
+                long multiple = keyChosen & otherChosen & numbers;
+                totalCorrect += Long.bitCount(correct);
+
+                int first = word * PackedAnswers.NUMBERS_PER_WORD;
+                for(int i = 0; i < PackedAnswers.NUMBERS_PER_WORD && first + i < numberCount; i++) {
+                    int shift = i * PackedAnswers.BITS_PER_NUMBER;
+                    if(((correct >>> shift) & 1) != 0)
+                        verdicts[first + i] = ANSWER_TRUE;
+                    else if(((multiple >>> shift) & 1) != 0)
+                        verdicts[first + i] = ANSWER_MULTIPLE;
+                    else
+                        verdicts[first + i] = ANSWER_FALSE;
                 }
             }
             this.totalCorrect = totalCorrect;
@@ -112,7 +134,7 @@ public class AnswerSheet {
             this.mCode = MINIMUM_M_CODE;
     }
 
-    private void setAnswers(Answer[] answers) {
+    private void setAnswers(PackedAnswers answers) {
         if (answers == null)
             createEmptyAnswers(DEFAULT_TOTAL_ANSWER);
         else
@@ -122,7 +144,7 @@ public class AnswerSheet {
     private void setVerdicts(int[] verdicts) {
         if (verdicts == null)
             if(answers == null) createAnswerVerdicts(DEFAULT_TOTAL_ANSWER);
-            else createAnswerVerdicts(answers.length);
+            else createAnswerVerdicts(answers.size());
         else
             this.verdicts = verdicts;
     }
@@ -131,11 +153,7 @@ public class AnswerSheet {
         if (totalAnswer < 0)
             totalAnswer = DEFAULT_TOTAL_ANSWER;
 
-        this.answers = new Answer[totalAnswer];
-
-        for (int i = 0; i < this.answers.length; i++) {
-            this.answers[i] = new Answer();
-        }
+        this.answers = new PackedAnswers(totalAnswer);
     }
 
     private void createAnswerVerdicts(int totalAnswer) {
@@ -148,31 +166,31 @@ public class AnswerSheet {
     }
 
     public void setAnswerOn(int number, Answer answer) {
-        if (number >= 1 && number <= this.answers.length) {
-            this.answers[number - 1] = answer;
-        } else throw new IndexOutOfBoundsException("Number starts from 1 to " + answers.length);
+        if (number >= 1 && number <= this.answers.size()) {
+            this.answers.setBits(number - 1, answer.getBits());
+        } else throw new IndexOutOfBoundsException("Number starts from 1 to " + answers.size());
     }
 
     public void setAnswerOn(int number, Option option, boolean isChosen) {
-        if (number >= 1 && number <= this.answers.length) {
-            this.answers[number - 1].setOptionChosen(option, isChosen);
-        } else throw new IndexOutOfBoundsException("Number starts from 1 to " + answers.length);
+        if (number >= 1 && number <= this.answers.size()) {
+            this.answers.setChosen(number - 1, option, isChosen);
+        } else throw new IndexOutOfBoundsException("Number starts from 1 to " + answers.size());
     }
 
     public void setAnswerVerdict(int number, int verdict) {
-        if (number >= 1 && number <= this.answers.length) {
+        if (number >= 1 && number <= this.answers.size()) {
             this.verdicts[number - 1] = verdict;
-        } else throw new IndexOutOfBoundsException("Number starts from 1 to " + answers.length);
+        } else throw new IndexOutOfBoundsException("Number starts from 1 to " + answers.size());
     }
 
     public Answer getAnswerOn(int number) {
-        if (number >= 1 && number <= this.answers.length) {
-            return this.answers[number - 1];
-        } else throw new IndexOutOfBoundsException("Number starts from 1 to " + answers.length);
+        if (number >= 1 && number <= this.answers.size()) {
+            return new Answer(this.answers, number - 1);
+        } else throw new IndexOutOfBoundsException("Number starts from 1 to " + answers.size());
     }
 
     public int getTotalAnswer() {
-        return totalNumber == -1 ? answers.length : totalNumber;
+        return totalNumber == -1 ? answers.size() : totalNumber;
     }
 
     public int getExCode() {
@@ -198,9 +216,9 @@ public class AnswerSheet {
     }
 
     public int getAnswerVerdict(int number) {
-        if (number >= 1 && number <= this.answers.length) {
+        if (number >= 1 && number <= this.answers.size()) {
             return this.verdicts[number - 1];
-        } else throw new IndexOutOfBoundsException("Number starts from 1 to " + answers.length);
+        } else throw new IndexOutOfBoundsException("Number starts from 1 to " + answers.size());
     }
 
     public boolean isAnswerTrue(int number) {
@@ -227,7 +245,7 @@ public class AnswerSheet {
         return id;
     }
 
-    public Answer[] getAnswers() {
+    public PackedAnswers getAnswers() {
         return answers;
     }
 
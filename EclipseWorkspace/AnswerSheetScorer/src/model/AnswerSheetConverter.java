@@ -6,15 +6,11 @@ package model;
 public class AnswerSheetConverter {
 
     private static final String SEPARATOR = ",";
+    private static final Option[] OPTIONS = Option.values();
 
     public static String answerToString(Answer answer) {
         StringBuilder builder = new StringBuilder();
-        Option[] options = Option.values();
-        for (Option option : options) {
-            if (answer.isOptionChosen(option))
-                builder.append(option.getOption());
-        }
-
+        appendBits(builder, answer.getBits());
         return builder.toString();
     }
 
@@ -46,6 +42,37 @@ public class AnswerSheetConverter {
         return answers;
     }
 
+    public static String packedAnswersToString(PackedAnswers answers) {
+        StringBuilder builder = new StringBuilder();
+        int length = answers.size();
+        for(int i = 0; i < length; i++) {
+            appendBits(builder, answers.getBits(i));
+            if(i < length - 1) builder.append(SEPARATOR);
+        }
+        return builder.toString();
+    }
+
+    public static PackedAnswers packedAnswersFromString(String string) {
+        // Keep the trailing numbers without chosen option
+        String[] values = string.split(SEPARATOR, -1);
+        PackedAnswers answers = new PackedAnswers(values.length);
+        for(int i = 0; i < values.length; i++) {
+            int bits = 0;
+            for(int j = 0; j < values[i].length(); j++) {
+                bits |= Answer.maskOf(Option.getOption(values[i].charAt(j)));
+            }
+            answers.setBits(i, bits);
+        }
+        return answers;
+    }
+
+    private static void appendBits(StringBuilder builder, int bits) {
+        for(Option option : OPTIONS) {
+            if((bits & Answer.maskOf(option)) != 0)
+                builder.append(option.getOption());
+        }
+    }
+
     public static String verdictsToString(int[] verdicts) {
         StringBuilder builder = new StringBuilder();
         for(int i : verdicts) {
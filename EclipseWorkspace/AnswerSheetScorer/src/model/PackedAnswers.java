@@ -0,0 +1,134 @@
+package model;
+
+import java.util.Arrays;
+
+/**
+ * Chosen options of all numbers of an answer sheet, packed as bits. The options of
+ * one number are one byte, bit i is set if the option with ordinal i is chosen.
+ * Eight numbers are packed in a long, the first number in the lowest byte.
+ */
+public final class PackedAnswers {
+
+    static final int NUMBERS_PER_WORD = 8;
+    static final int BITS_PER_NUMBER = 8;
+    static final long NUMBER_MASK = 0xFFL;
+    static final long LOWEST_BITS = 0x0101010101010101L;
+
+    private final long[] words;
+    private final int size;
+
+    /**
+     * @param size
+     *            - number of numbers, all without chosen option
+     */
+    public PackedAnswers(int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Size cannot be negative");
+        }
+        this.size = size;
+        this.words = new long[(size + NUMBERS_PER_WORD - 1) / NUMBERS_PER_WORD];
+    }
+
+    public PackedAnswers(Answer[] answers) {
+        this(answers.length);
+        for (int i = 0; i < answers.length; i++) {
+            setBits(i, answers[i].getBits());
+        }
+    }
+
+    /**
+     * @param words
+     *            - packed words as returned by {@link #getWords()}, not copied
+     */
+    PackedAnswers(int size, long[] words) {
+        if (size < 0 || words.length != (size + NUMBERS_PER_WORD - 1) / NUMBERS_PER_WORD) {
+            throw new IllegalArgumentException("Words do not fit " + size + " numbers");
+        }
+        this.size = size;
+        this.words = words;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param index
+     *            - index of the number, starts from 0
+     * @return chosen options of the number as bits
+     */
+    public int getBits(int index) {
+        checkIndex(index);
+        return (int) ((words[index / NUMBERS_PER_WORD] >>> shiftOf(index)) & NUMBER_MASK);
+    }
+
+    public void setBits(int index, int bits) {
+        checkIndex(index);
+        int shift = shiftOf(index);
+        int word = index / NUMBERS_PER_WORD;
+        words[word] = (words[word] & ~(NUMBER_MASK << shift)) | ((bits & NUMBER_MASK) << shift);
+    }
+
+    public boolean isChosen(int index, Option option) {
+        return (getBits(index) & Answer.maskOf(option)) != 0;
+    }
+
+    public void setChosen(int index, Option option, boolean isChosen) {
+        int bits = getBits(index);
+        setBits(index, isChosen ? bits | Answer.maskOf(option) : bits & ~Answer.maskOf(option));
+    }
+
+    /**
+     * @return the packed words themselves, eight numbers in every word
+     */
+    long[] getWords() {
+        return words;
+    }
+
+    /**
+     * @param word
+     *            - packed word of eight numbers
+     * @return the lowest bit of the byte of every number set if the number has any
+     *         bit set, the other bits cleared
+     */
+    static long chosenNumbers(long word) {
+        word |= word >>> 4;
+        word |= word >>> 2;
+        word |= word >>> 1;
+        return word & LOWEST_BITS;
+    }
+
+    /**
+     * @return the lowest bit of the byte of the numbers from the first number of
+     *         the word to the number before end, as {@link #chosenNumbers(long)}
+     */
+    static long numbersBefore(int word, int end) {
+        int count = end - word * NUMBERS_PER_WORD;
+        if (count >= NUMBERS_PER_WORD)
+            return LOWEST_BITS;
+        return count <= 0 ? 0 : LOWEST_BITS & ((1L << (count * BITS_PER_NUMBER)) - 1);
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size)
+            throw new IndexOutOfBoundsException("Number starts from 1 to " + size);
+    }
+
+    private static int shiftOf(int index) {
+        return (index % NUMBERS_PER_WORD) * BITS_PER_NUMBER;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj instanceof PackedAnswers) {
+            PackedAnswers answers = (PackedAnswers) obj;
+            return size == answers.size && Arrays.equals(words, answers.words);
+        }
+        return false;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * size + Arrays.hashCode(words);
+    }
+}
@@ -18,7 +18,6 @@ import org.opencv.core.Range;
 import org.opencv.core.Rect;
 import org.opencv.core.Scalar;
 import org.opencv.core.Size;
-import org.opencv.imgcodecs.Imgcodecs;
 import org.opencv.imgproc.Imgproc;
 
 import model.AnswerKey;
@@ -35,8 +34,9 @@ import model.label.MCodeLabel;
 
 public class AnswerSheetScorer {
 
-    private static int count = 0;
-    private static File currentFolder;
+    // Feature values this close to the X threshold are counted as ambiguous
+    private static final double AMBIGUOUS_MARGIN = 5.0;
+
     /**
      * Convert answer sheet photo image to processable answer sheet image
      * 
@@ -46,16 +46,49 @@ public class AnswerSheetScorer {
      */
     public static Mat convertAnswerSheet(Mat src, AnswerSheetMetadata metadata, File file, String fileName,
             boolean debugOutput) {
+        return convertAnswerSheet(src, metadata,
+                debugOutput ? DebugWriter.direct(file, fileName) : DebugWriter.DISABLED);
+    }
+
+    /**
+     * Convert answer sheet photo image to processable answer sheet image
+     * 
+     * @param src
+     *            - answer sheet photo image
+     * @param debug
+     *            - debug images of the answer sheet
+     * @return processable answer sheet image
+     */
+    public static Mat convertAnswerSheet(Mat src, AnswerSheetMetadata metadata, DebugWriter.Sheet debug) {
+        return convertAnswerSheet(src, metadata, debug, null);
+    }
+
+    /**
+     * Convert answer sheet photo image to processable answer sheet image
+     * 
+     * @param src
+     *            - answer sheet photo image
+     * @param debug
+     *            - debug images of the answer sheet
+     * @param metrics
+     *            - listener of the stage timings and counters, or null
+     * @return processable answer sheet image
+     */
+    public static Mat convertAnswerSheet(Mat src, AnswerSheetMetadata metadata, DebugWriter.Sheet debug,
+            PipelineMetrics metrics) {
         // Check whether the argument is valid
         if (src == null) {
             throw new IllegalArgumentException("Argument cannot be null");
         }
 
         // Declare variables
+        long startTime = System.nanoTime();
         Mat result = new Mat(src.rows(), src.cols(), CvType.CV_8UC1);
+        long nativeBytes = bytesOf(result);
         int counter = 1;
         // Turn the photo image to grayscale image
         Imgproc.cvtColor(src, result, Imgproc.COLOR_RGB2GRAY);
+        startTime = onStage(metrics, PipelineMetrics.Stage.GRAYSCALE, startTime);
         // Imgcodecs.imwrite(new File(file, (counter++) +
         // "-gray.jpg").getAbsolutePath(), result);
         // Black and white
@@ -73,22 +106,25 @@ public class AnswerSheetScorer {
         // Adaptive Mean Thresholding
         // Imgproc.adaptiveThreshold(result, result, 255,
         // Imgproc.ADAPTIVE_THRESH_MEAN_C, Imgproc.THRESH_BINARY, 69, 25);
+        startTime = onStage(metrics, PipelineMetrics.Stage.THRESHOLD, startTime);
 
         // DEBUG
-        if(debugOutput) {
-            Imgcodecs.imwrite(new File(file, (counter++) + "-thres.jpg").getAbsolutePath(), result);
+        if(debug.isEnabled()) {
+            debug.write((counter++) + "-thres.jpg", result);
         }
 
         // Find all contour on mat
         ArrayList<MatOfPoint> contours = new ArrayList<>();
         Mat hierarchy = new Mat();
         Imgproc.findContours(result, contours, hierarchy, Imgproc.RETR_LIST, Imgproc.CHAIN_APPROX_SIMPLE);
+        onCounter(metrics, PipelineMetrics.Counter.PAPER_CONTOURS_FOUND, contours.size());
+        nativeBytes += bytesOf(contours);
 
-        if (debugOutput) {
+        if (debug.isEnabled()) {
             Mat drawSquareMat = new Mat(result, Range.all());
             Imgproc.cvtColor(drawSquareMat, drawSquareMat, Imgproc.COLOR_GRAY2RGB);
             Imgproc.drawContours(drawSquareMat, contours, -1, new Scalar(0, 0, 255), 10);
-            Imgcodecs.imwrite(new File(file, (counter++) + "-contours.jpg").getAbsolutePath(), drawSquareMat);
+            debug.write((counter++) + "-contours.jpg", drawSquareMat);
         }
 
         ArrayList<MatOfPoint> squares = new ArrayList<>();
@@ -131,16 +167,19 @@ public class AnswerSheetScorer {
             }
         }
 
-        if (secondMaxIdx < 0 && maxIdx < 0)
+        if (secondMaxIdx < 0 && maxIdx < 0) {
+            onStage(metrics, PipelineMetrics.Stage.CONTOURS, startTime);
+            onCounter(metrics, PipelineMetrics.Counter.NATIVE_BYTES_ALLOCATED, nativeBytes);
             return null;
+        }
         System.out.println("Draw second max area square");
         int idx = (secondMaxIdx > -1 ? secondMaxIdx : (maxIdx > -1 ? maxIdx : -1));
 
-        if (debugOutput) {
+        if (debug.isEnabled()) {
             Mat drawSquareMat = new Mat(result, Range.all());
             Imgproc.cvtColor(drawSquareMat, drawSquareMat, Imgproc.COLOR_GRAY2RGB);
             Imgproc.drawContours(drawSquareMat, squares, idx, new Scalar(0, 0, 255), 10);
-            Imgcodecs.imwrite(new File(file, (counter++) + "-bw-getsquare.jpg").getAbsolutePath(), drawSquareMat);
+            debug.write((counter++) + "-bw-getsquare.jpg", drawSquareMat);
         }
 
         // Find sorted 4 points : top left, top right, bottom right, bottom left
@@ -183,6 +222,7 @@ public class AnswerSheetScorer {
         }
 
         assert topLeftPoint != null && topRightPoint != null && bottomLeftPoint != null && bottomRightPoint != null;
+        startTime = onStage(metrics, PipelineMetrics.Stage.CONTOURS, startTime);
 
         int perspectiveWidth, perspectiveHeight;
         perspectiveHeight = metadata.getDimension().height;
@@ -197,9 +237,11 @@ public class AnswerSheetScorer {
         Imgproc.warpPerspective(result, perspective, transform, new Size(perspective.cols(), perspective.rows()));
         Imgproc.adaptiveThreshold(perspective, perspective, 255, Imgproc.ADAPTIVE_THRESH_GAUSSIAN_C,
                 Imgproc.THRESH_BINARY, blockSize, C);
+        onStage(metrics, PipelineMetrics.Stage.WARP, startTime);
+        onCounter(metrics, PipelineMetrics.Counter.NATIVE_BYTES_ALLOCATED, nativeBytes + bytesOf(perspective));
 
-        if (debugOutput)
-            Imgcodecs.imwrite(new File(file, (counter++) + "-transform.jpg").getAbsolutePath(), perspective);
+        if (debug.isEnabled())
+            debug.write((counter++) + "-transform.jpg", perspective);
 
         return perspective;
     }
@@ -213,21 +255,55 @@ public class AnswerSheetScorer {
      */
     public static ArrayList<AnswerMat> processAnswerSheet(Mat src, AnswerSheetMetadata metadata, File file,
             String fileName, boolean debugOutput) {
+        return processAnswerSheet(src, metadata,
+                debugOutput ? DebugWriter.direct(file, fileName) : DebugWriter.DISABLED);
+    }
+
+    /**
+     * Process converted answer sheet image to get identity and all the answers
+     * 
+     * @param src
+     *            - answer sheet photo image
+     * @param debug
+     *            - debug images of the answer sheet
+     * @return
+     */
+    public static ArrayList<AnswerMat> processAnswerSheet(Mat src, AnswerSheetMetadata metadata,
+            DebugWriter.Sheet debug) {
+        return processAnswerSheet(src, metadata, debug, null);
+    }
+
+    /**
+     * Process converted answer sheet image to get identity and all the answers
+     * 
+     * @param src
+     *            - answer sheet photo image
+     * @param debug
+     *            - debug images of the answer sheet
+     * @param metrics
+     *            - listener of the stage timings and counters, or null
+     * @return
+     */
+    public static ArrayList<AnswerMat> processAnswerSheet(Mat src, AnswerSheetMetadata metadata,
+            DebugWriter.Sheet debug, PipelineMetrics metrics) {
         // Check whether the argument is valid
         if (src == null)
             throw new IllegalArgumentException("Argument src cannot be null");
 
         int counter = 1;
+        long startTime = System.nanoTime();
         
         // Find all contours
         ArrayList<MatOfPoint> contours = new ArrayList<>();
         Imgproc.findContours(src.clone(), contours, new Mat(), Imgproc.RETR_LIST, Imgproc.CHAIN_APPROX_SIMPLE);
+        onCounter(metrics, PipelineMetrics.Counter.CONTOURS_FOUND, contours.size());
+        long nativeBytes = bytesOf(src) + bytesOf(contours);
 
-        if (debugOutput) {
+        if (debug.isEnabled()) {
             Mat drawSquareMat = src.clone();
             Imgproc.cvtColor(drawSquareMat, drawSquareMat, Imgproc.COLOR_GRAY2RGB);
             Imgproc.drawContours(drawSquareMat, contours, -1, new Scalar(0, 0, 255), 4);
-            Imgcodecs.imwrite(new File(file, "2-" + (counter++) + "-contours.jpg").getAbsolutePath(), drawSquareMat);
+            debug.write("2-" + (counter++) + "-contours.jpg", drawSquareMat);
         }
 
         // Find the fit squares
@@ -248,6 +324,7 @@ public class AnswerSheetScorer {
 
         // Fill output DEBUG Mat with corresponding colors
         Mat res = new Mat(src.rows(), src.cols(), CvType.CV_8UC3);
+        nativeBytes += bytesOf(res);
         for (int i = 0; i < src.rows(); i++) {
             for (int j = 0; j < src.cols(); j++) {
                 double data = src.get(i, j)[0];
@@ -266,7 +343,7 @@ public class AnswerSheetScorer {
             if (percentage > 0.8) {
                 blackSquaresRect.add(rect);
                 // DEBUG OUTPUT
-                if (debugOutput) {
+                if (debug.isEnabled()) {
                     MatOfPoint matOfPoint = new MatOfPoint(new Point(rect.x, rect.y),
                             new Point(rect.x + rect.width, rect.y),
                             new Point(rect.x + rect.width, rect.y + rect.height),
@@ -276,16 +353,19 @@ public class AnswerSheetScorer {
             }
         }
 
+        onCounter(metrics, PipelineMetrics.Counter.BLACK_SQUARES_ACCEPTED, blackSquaresRect.size());
+
         // DEBUG OUTPUT
-        if (debugOutput) {
-            Imgcodecs.imwrite(new File(file, "2-" + (counter++) + "-key-squares.jpg").getAbsolutePath(), res);
+        if (debug.isEnabled()) {
+            debug.write("2-" + (counter++) + "-key-squares.jpg", res);
         }
 
         if (blackSquaresRect.size() == 0) {
-            if (debugOutput) {
+            if (debug.isEnabled()) {
                 Imgproc.drawContours(res, contours, -1, new Scalar(0, 255, 255), 3);
-                Imgcodecs.imwrite(new File(file, fileName.substring(0, fileName.lastIndexOf('.')) + "-fail-contour.jpg")
-                        .getAbsolutePath(), res);
+                String name = debug.getName();
+                debug.write((name.lastIndexOf('.') > 0 ? name.substring(0, name.lastIndexOf('.')) : name)
+                        + "-fail-contour.jpg", res);
             }
             throw new RuntimeException("Black squares found is 0 from " + contours.size() + " contours.");
         }
@@ -323,7 +403,7 @@ public class AnswerSheetScorer {
         }
 
         // RESET MAT DEBUG
-        if (debugOutput) {
+        if (debug.isEnabled()) {
             for (int i = 0; i < src.rows(); i++) {
                 for (int j = 0; j < src.cols(); j++) {
                     double data = src.get(i, j)[0];
@@ -355,7 +435,7 @@ public class AnswerSheetScorer {
                     }
                 }
             }
-            Imgcodecs.imwrite(new File(file, "2-" + (counter++) + "-v-h-key.jpg").getAbsolutePath(), res);
+            debug.write("2-" + (counter++) + "-v-h-key.jpg", res);
         }
         Collections.sort(verticalSquares, new Comparator<Rect>() {
             @Override
@@ -384,18 +464,17 @@ public class AnswerSheetScorer {
         }
         averageWidth = averageWidth / horizontalSquares.size() + (averageWidth % horizontalSquares.size() * 2 >= horizontalSquares.size() ? 1 : 0);
 //        averageWidth = averageWidth * 96 / 100;
+        startTime = onStage(metrics, PipelineMetrics.Stage.ANCHOR_SEARCH, startTime);
 
-        // Create debug folder
-        File folder = new File(file, "Content");
-        currentFolder = folder;
-        if (debugOutput)
-            folder.mkdirs();
+        // Debug folder of the cells
+        DebugWriter.Sheet contentDebug = debug.in("Content");
 
         ArrayList<AnswerMat> answerMats = new ArrayList<>();
         // Get all rectangles using meta data
         for (int i = 0; i < metadata.getValueLength(); i++) {
+            // Only the first cell of the answer sheet is written for debug
             answerMats.addAll(findAllRect(src, res, verticalSquares, horizontalSquares, metadata.getValue(i),
-                    averageWidth, averageHeight, metadata.getDimension()));
+                    averageWidth, averageHeight, metadata.getDimension(), i == 0 ? debug : DebugWriter.DISABLED));
         }
 
         // Filter Noise AnswerMat
@@ -417,35 +496,81 @@ public class AnswerSheetScorer {
             answerMatContours.clear();
             filledContours.clear();
         }
+        onStage(metrics, PipelineMetrics.Stage.CELL_LOCATE, startTime);
+
+        // Every cell is cropped, then inverted by AnswerMat
+        for (AnswerMat answerMat : answerMats) {
+            nativeBytes += 2 * bytesOf(answerMat);
+        }
+        onCounter(metrics, PipelineMetrics.Counter.NATIVE_BYTES_ALLOCATED, nativeBytes);
 
         // Write to file for debug
-        if (debugOutput) {
+        if (debug.isEnabled()) {
             for (AnswerMat answerMat : answerMats) {
                 StringBuilder builder = new StringBuilder();
                 builder.append(answerMat.getLabel().toString());
                 Mat outputAnswerMat = new Mat(answerMat.rows(), answerMat.cols(), answerMat.type());
                 Core.bitwise_not(answerMat, outputAnswerMat);
-                Imgcodecs.imwrite(new File(folder, answerMat.getLabel().toString() + "-content.jpg").getAbsolutePath(),
-                        outputAnswerMat);
+                contentDebug.write(answerMat.getLabel().toString() + "-content.jpg", outputAnswerMat);
+                outputAnswerMat.release();
             }
-            Imgcodecs.imwrite(new File(file, "overall-content.jpg").getAbsolutePath(), res);
+            debug.write("overall-content.jpg", res);
         }
         // End draw
         Collections.sort(answerMats);
         return answerMats;
     }
 
+    /**
+     * Recognize the X marks of all cells
+     * 
+     * @param dir
+     *            - directory of the debug images of every cell, or null to write none
+     */
     public static AnswerSheet recognizeAnswerSheet(ArrayList<AnswerMat> answerMats, File dir) {
-        final int TOTAL_ANSWER = 40;
-        AnswerSheet answerSheet = new AnswerSheet(TOTAL_ANSWER);
+        return recognizeAnswerSheet(answerMats, dir == null ? DebugWriter.DISABLED : DebugWriter.direct(dir, null));
+    }
+
+    /**
+     * Recognize the X marks of all cells
+     * 
+     * @param debug
+     *            - debug images of the answer sheet, three images for every cell
+     */
+    public static AnswerSheet recognizeAnswerSheet(ArrayList<AnswerMat> answerMats, DebugWriter.Sheet debug) {
+        return recognizeAnswerSheet(answerMats, debug, null);
+    }
+
+    /**
+     * Recognize the X marks of all cells
+     * 
+     * @param debug
+     *            - debug images of the answer sheet, three images for every cell
+     * @param metrics
+     *            - listener of the recognition time and ambiguous cells, or null
+     */
+    public static AnswerSheet recognizeAnswerSheet(ArrayList<AnswerMat> answerMats, DebugWriter.Sheet debug,
+            PipelineMetrics metrics) {
+        long startTime = System.nanoTime();
+        int ambiguousCells = 0;
+        int totalAnswer = 0;
+        for (AnswerMat answerMat : answerMats) {
+            if (answerMat.getLabel() instanceof AnswerLabel) {
+                totalAnswer = Math.max(totalAnswer, ((AnswerLabel) answerMat.getLabel()).getNumber());
+            }
+        }
+        AnswerSheet answerSheet = new AnswerSheet(totalAnswer);
         StringBuilder mCode = new StringBuilder("000");
         StringBuilder exCode = new StringBuilder("000");
 
         for (AnswerMat answerMat : answerMats) {
-            int value = (int) FeatureExtractor.getFeatureX(answerMat, true, true, dir.getAbsolutePath() + "/" + answerMat.getLabel().toString());
+            int value = (int) FeatureExtractor.getFeatureX(answerMat, true, true, debug,
+                    answerMat.getLabel().toString());
             double zVal = BigDecimal.valueOf((double) value).round(new MathContext(3)).doubleValue();
             final double zThreshold = 15.0;
             boolean isX = (zVal >= zThreshold);
+            if (Math.abs(zVal - zThreshold) < AMBIGUOUS_MARGIN)
+                ambiguousCells++;
 
             AnswerSheetLabel label = answerMat.getLabel();
             if (label instanceof AnswerLabel) {
@@ -469,26 +594,40 @@ public class AnswerSheetScorer {
         answerSheet.setExCode(exCode.toString());
         answerSheet.setMCode(mCode.toString());
 
+        onStage(metrics, PipelineMetrics.Stage.RECOGNIZE, startTime);
+        onCounter(metrics, PipelineMetrics.Counter.AMBIGUOUS_CELLS, ambiguousCells);
+
         return answerSheet;
     }
 
     public static void scoreAnswerSheet(AnswerSheet answerSheet, AnswerKey answerKey) {
+        scoreAnswerSheet(answerSheet, answerKey, null);
+    }
+
+    /**
+     * @param metrics
+     *            - listener of the scoring time, or null
+     */
+    public static void scoreAnswerSheet(AnswerSheet answerSheet, AnswerKey answerKey, PipelineMetrics metrics) {
+        long startTime = System.nanoTime();
         answerSheet.scoreAnswerSheet(answerKey);
+        onStage(metrics, PipelineMetrics.Stage.SCORE, startTime);
     }
 
     private static ArrayList<AnswerMat> findAllRect(Mat src, Mat drawOn, ArrayList<Rect> vertical,
-            ArrayList<Rect> horizontal, Value metadataValue, int width, int height, PaperDimension paperDimension) {
+            ArrayList<Rect> horizontal, Value metadataValue, int width, int height, PaperDimension paperDimension,
+            DebugWriter.Sheet debug) {
         return findAllRect(src, drawOn, vertical.get(metadataValue.startVerticalIndex),
                 vertical.get(metadataValue.endVerticalIndex), horizontal.get(metadataValue.startHorizontalIndex),
                 horizontal.get(metadataValue.endHorizontalIndex), metadataValue.rowCount, metadataValue.columnCount,
                 width, height, metadataValue.label, metadataValue.startRowInteger, metadataValue.startColumnChar,
-                paperDimension);
+                paperDimension, debug);
     }
 
     private static ArrayList<AnswerMat> findAllRect(Mat src, Mat drawOn, Rect firstVerticalRect,
             Rect secondVerticalRect, Rect firstHorizontalRect, Rect secondHorizontalRect, int numberOfRows,
             int numberOfCols, int averageWidth, int averageHeight, String firstname, int firstExt, int secondExt,
-            PaperDimension paperDimension) {
+            PaperDimension paperDimension, DebugWriter.Sheet debug) {
         final int RADIUS = 3;
         ArrayList<AnswerMat> answerMats = new ArrayList<>();
         Point centerStartVerticalPoint = getCenter(firstVerticalRect);
@@ -518,7 +657,8 @@ public class AnswerSheetScorer {
 //                System.out.print(label.toString());
                 Mat mat = findSquareFromCenter(src, drawOn, (int) Math.round(startCenterX),
                         (int) Math.round(startCenterY), averageWidth, averageHeight, paperDimension,
-                        firstname + "-" + String.valueOf(firstExt + i) + "-" + (char) (secondExt + j));
+                        firstname + "-" + String.valueOf(firstExt + i) + "-" + (char) (secondExt + j),
+                        i == 0 && j == 0 ? debug : DebugWriter.DISABLED);
 
                 answerMats.add(new AnswerMat(mat, label));
             }
@@ -528,7 +668,7 @@ public class AnswerSheetScorer {
     }
 
     private static Mat findSquareFromCenter(Mat src, Mat drawOn, int x, int y, int width, int height,
-            PaperDimension dimension, String filename) {
+            PaperDimension dimension, String filename, DebugWriter.Sheet debug) {
         Point currentCenter = new Point(x, y);
 
         /*
@@ -545,10 +685,7 @@ public class AnswerSheetScorer {
         Mat square = src.submat(currentRect);
         Mat sqDrawOn = drawOn.submat(currentRect);
 
-        if(count == 0) {
-            Imgcodecs.imwrite(new File(currentFolder, "../interest-square.jpg").getAbsolutePath(), sqDrawOn);
-            count++;
-        }
+        debug.write("interest-square.jpg", sqDrawOn);
         
         // Find the most fit rectangle
         int border = dimension.squareAnswerBorder;
@@ -559,11 +696,6 @@ public class AnswerSheetScorer {
          * currentRect = scaleRectOnCenter(currentRect, 1 - 2.5 * (double)
          * dimension.squareAnswerBorder / (double) Math.min(width, height));
          */
-        if(count == 1) {
-            Imgcodecs.imwrite(new File(currentFolder, "../interest-square.jpg").getAbsolutePath(), sqDrawOn);
-            count++;
-        }
-
         int contentPadding = border;
         currentRect = new Rect((int) (rectStartPoint.x + contentPadding), (int) (rectStartPoint.y + contentPadding),
                 width - 2 * contentPadding, height - 2 * contentPadding);
@@ -657,6 +789,35 @@ public class AnswerSheetScorer {
      * dy2 = pt2.y - pt0.y; return (dx1 * dx2 + dy1 * dy2) / Math.sqrt((dx1 * dx1 +
      * dy1 * dy1) * (dx2 * dx2 + dy2 * dy2) + 1e-10); }
      */
+    /**
+     * Report the time since startTime to the metrics
+     * 
+     * @return current time, the start time of the next stage
+     */
+    private static long onStage(PipelineMetrics metrics, PipelineMetrics.Stage stage, long startTime) {
+        long endTime = System.nanoTime();
+        if (metrics != null)
+            metrics.onStage(stage, endTime - startTime);
+        return endTime;
+    }
+
+    private static void onCounter(PipelineMetrics metrics, PipelineMetrics.Counter counter, long value) {
+        if (metrics != null)
+            metrics.onCounter(counter, value);
+    }
+
+    private static long bytesOf(Mat mat) {
+        return mat.total() * mat.elemSize();
+    }
+
+    private static long bytesOf(ArrayList<MatOfPoint> mats) {
+        long bytes = 0;
+        for (Mat mat : mats) {
+            bytes += bytesOf(mat);
+        }
+        return bytes;
+    }
+
     private static Point getCenter(Rect rect) {
         if (rect == null)
             return null;
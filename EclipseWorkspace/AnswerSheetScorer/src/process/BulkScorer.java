@@ -0,0 +1,115 @@
+package process;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import model.AnswerKey;
+import model.AnswerSheet;
+import model.PackedAnswers;
+
+/**
+ * Scores many answer sheets with one answer key, e.g. all answer sheets of an MCode
+ * of a batch. The answer key is packed once and every answer sheet is scored eight
+ * numbers at a time on the packed words. Large lists are split into one range for
+ * every processor, scored in parallel.
+ */
+public class BulkScorer {
+
+    // Below this many answer sheets the workers cost more than they save
+    public static final int MINIMUM_PARALLEL_SHEETS = 512;
+
+    /**
+     * Score the answer sheets on the calling thread, or on a temporary pool if
+     * there are at least {@link #MINIMUM_PARALLEL_SHEETS} answer sheets
+     *
+     * @return number of answer sheets with the MCode of the answer key, only those
+     *         are scored
+     */
+    public static int scoreAnswerSheets(AnswerKey answerKey, List<AnswerSheet> answerSheets) {
+        if (answerSheets.size() < MINIMUM_PARALLEL_SHEETS)
+            return scoreAnswerSheets(answerKey, answerSheets, null);
+
+        ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        try {
+            return scoreAnswerSheets(answerKey, answerSheets, executor);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * @param executor
+     *            - workers of large lists, or null to score on the calling thread
+     * @return number of answer sheets with the MCode of the answer key, only those
+     *         are scored
+     */
+    public static int scoreAnswerSheets(AnswerKey answerKey, List<AnswerSheet> answerSheets,
+            ExecutorService executor) {
+        PackedAnswers packedKey = answerKey.toPackedAnswers();
+        int size = answerSheets.size();
+        if (executor == null || size < MINIMUM_PARALLEL_SHEETS) {
+            scoreRange(answerKey, packedKey, answerSheets, 0, size);
+        } else {
+            int rangeCount = Runtime.getRuntime().availableProcessors();
+            ArrayList<Future<?>> futures = new ArrayList<>(rangeCount);
+            for (int i = 0; i < rangeCount; i++) {
+                futures.add(executor.submit(newRange(answerKey, packedKey, answerSheets,
+                        (int) ((long) size * i / rangeCount), (int) ((long) size * (i + 1) / rangeCount))));
+            }
+            waitForAll(futures);
+        }
+
+        int scored = 0;
+        for (AnswerSheet answerSheet : answerSheets) {
+            if (answerSheet.getMCode() == answerKey.getMCode())
+                scored++;
+        }
+        return scored;
+    }
+
+    private static Runnable newRange(final AnswerKey answerKey, final PackedAnswers packedKey,
+            final List<AnswerSheet> answerSheets, final int start, final int end) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                scoreRange(answerKey, packedKey, answerSheets, start, end);
+            }
+        };
+    }
+
+    private static void scoreRange(AnswerKey answerKey, PackedAnswers packedKey, List<AnswerSheet> answerSheets,
+            int start, int end) {
+        for (int i = start; i < end; i++) {
+            answerSheets.get(i).scoreAnswerSheet(answerKey, packedKey);
+        }
+    }
+
+    private static void waitForAll(ArrayList<Future<?>> futures) {
+        RuntimeException failure = null;
+        boolean interrupted = false;
+        for (Future<?> future : futures) {
+            while (true) {
+                try {
+                    future.get();
+                    break;
+                } catch (ExecutionException e) {
+                    if (failure == null) {
+                        failure = e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause()
+                                : new RuntimeException(e.getCause());
+                    }
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+        if (failure != null)
+            throw failure;
+    }
+}
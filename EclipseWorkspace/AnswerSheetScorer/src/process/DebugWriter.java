@@ -0,0 +1,318 @@
+package process;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.opencv.core.Mat;
+import org.opencv.imgcodecs.Imgcodecs;
+
+/**
+ * Writes the debug images of {@link AnswerSheetScorer} and {@link FeatureExtractor}
+ * on a background thread. The scorer only copies an image into a bounded queue,
+ * the image is encoded and written by the writer thread. The scorer waits only if
+ * the queue is full, so the images are never dropped.
+ *
+ * The level chooses the answer sheets whose images are written:
+ * <ul>
+ * <li>{@link Level#OFF}: none, the scorer does not even draw them</li>
+ * <li>{@link Level#FAILURES}: the sheets which are finished as failed, the images
+ * of the other sheets are kept in memory until the sheet is finished, then
+ * released. At most {@link #DEFAULT_RETAINED_BYTES} of images are kept at once,
+ * the images past it are dropped and counted</li>
+ * <li>{@link Level#SAMPLED}: one of every N sheets</li>
+ * <li>{@link Level#FULL}: all sheets</li>
+ * </ul>
+ */
+public class DebugWriter {
+
+    public enum Level {
+        OFF,
+        /**
+         * Costs as much as {@link #FULL} while grading: every sheet is drawn,
+         * including the per pixel feature images of {@link FeatureExtractor}, and
+         * every image is copied and kept until the sheet is finished. Only the
+         * encoding and writing are saved for the sheets which do not fail.
+         */
+        FAILURES,
+        SAMPLED,
+        FULL
+    }
+
+    public static final int DEFAULT_CAPACITY = 64;
+    // Images of unfinished sheets kept by Level.FAILURES, over all threads
+    public static final long DEFAULT_RETAINED_BYTES = 128L << 20;
+
+    /**
+     * Debug images of one answer sheet, used on one thread only
+     */
+    public static class Sheet {
+        private final DebugWriter writer;
+        private final File directory;
+        private final String name;
+        private final boolean isEnabled;
+        private final ArrayList<Image> pending;
+
+        private Sheet(DebugWriter writer, File directory, String name, boolean isEnabled,
+                ArrayList<Image> pending) {
+            this.writer = writer;
+            this.directory = directory;
+            this.name = name;
+            this.isEnabled = isEnabled;
+            this.pending = pending;
+        }
+
+        /**
+         * @return false if the images are not written, so they need not be drawn
+         */
+        public boolean isEnabled() {
+            return isEnabled;
+        }
+
+        /**
+         * @return name of the answer sheet, e.g. the file name of the photo
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return the same sheet, writing into a subdirectory
+         */
+        public Sheet in(String subdirectory) {
+            if (!isEnabled)
+                return this;
+            return new Sheet(writer, new File(directory, subdirectory), name, true, pending);
+        }
+
+        /**
+         * Write a copy of the image, the image can be changed after this call
+         *
+         * @param fileName
+         *            - file name in the directory of the sheet, with the extension
+         */
+        public void write(String fileName, Mat image) {
+            if (!isEnabled)
+                return;
+            if (pending != null && !writer.retain(Image.bytesOf(image))) {
+                writer.droppedCount.incrementAndGet();
+                return;
+            }
+            Image copy = new Image(new File(directory, fileName), image.clone());
+            if (writer == null) {
+                // Written right away on this thread
+                copy.write();
+            } else if (pending != null) {
+                pending.add(copy);
+            } else {
+                writer.put(copy);
+            }
+        }
+
+        /**
+         * Finish the answer sheet. On {@link Level#FAILURES}, the images are only
+         * written if the sheet failed.
+         */
+        public void finish(boolean failed) {
+            if (pending == null)
+                return;
+            for (Image image : pending) {
+                writer.retainedBytes.addAndGet(-Image.bytesOf(image.mat));
+                if (failed) {
+                    writer.put(image);
+                } else {
+                    image.mat.release();
+                }
+            }
+            pending.clear();
+        }
+    }
+
+    /**
+     * Sheet whose images are not written
+     */
+    public static final Sheet DISABLED = new Sheet(null, null, null, false, null);
+
+    private static class Image {
+        private final File file;
+        private final Mat mat;
+
+        private Image(File file, Mat mat) {
+            this.file = file;
+            this.mat = mat;
+        }
+
+        private static long bytesOf(Mat mat) {
+            return mat.total() * mat.elemSize();
+        }
+
+        private void write() {
+            try {
+                File parent = file.getParentFile();
+                if (parent != null)
+                    parent.mkdirs();
+                Imgcodecs.imwrite(file.getAbsolutePath(), mat);
+            } finally {
+                mat.release();
+            }
+        }
+    }
+
+    private final Level level;
+    private final int sampleInterval;
+    private final long maxRetainedBytes;
+    private final AtomicLong retainedBytes = new AtomicLong();
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final BlockingQueue<Image> queue;
+    private final Image endOfImages = new Image(null, null);
+    private final AtomicLong sheetCount = new AtomicLong();
+    private final AtomicLong writtenCount = new AtomicLong();
+    private final Thread thread;
+
+    public DebugWriter(Level level) {
+        this(level, 1, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param sampleInterval
+     *            - N of {@link Level#SAMPLED}, the first sheet and every N-th sheet
+     *            after it are written
+     * @param capacity
+     *            - images waiting to be written before the scorer waits
+     */
+    public DebugWriter(Level level, int sampleInterval, int capacity) {
+        this(level, sampleInterval, capacity, DEFAULT_RETAINED_BYTES);
+    }
+
+    /**
+     * @param maxRetainedBytes
+     *            - bytes of the images kept by {@link Level#FAILURES} until their
+     *            sheets are finished, the images past it are dropped
+     */
+    public DebugWriter(Level level, int sampleInterval, int capacity, long maxRetainedBytes) {
+        if (level == null) {
+            throw new IllegalArgumentException("Argument cannot be null");
+        }
+        if (sampleInterval < 1 || capacity < 1 || maxRetainedBytes < 1) {
+            throw new IllegalArgumentException("Sample interval, capacity and retained bytes must be positive");
+        }
+        this.level = level;
+        this.sampleInterval = sampleInterval;
+        this.maxRetainedBytes = maxRetainedBytes;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        if (level == Level.OFF) {
+            thread = null;
+            return;
+        }
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while (true) {
+                        Image image = queue.take();
+                        if (image == endOfImages)
+                            return;
+                        // One image which can't be written must not stop the writer, the
+                        // scorer would wait forever on the full queue
+                        try {
+                            image.write();
+                            writtenCount.incrementAndGet();
+                        } catch (RuntimeException e) {
+                            System.err.println("Error: " + image.file + " cannot be written: " + e.getMessage());
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, "debug-writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Sheet whose images are written on the calling thread, as the scorer used to
+     * write them
+     *
+     * @param directory
+     *            - directory of the images
+     */
+    public static Sheet direct(File directory, String name) {
+        return new Sheet(null, directory, name, true, null);
+    }
+
+    /**
+     * Start the debug images of the next answer sheet
+     *
+     * @param directory
+     *            - directory of the images of this sheet
+     * @param name
+     *            - name of the sheet, e.g. the file name of the photo
+     */
+    public Sheet begin(File directory, String name) {
+        long index = sheetCount.getAndIncrement();
+        switch (level) {
+            case FULL:
+                return new Sheet(this, directory, name, true, null);
+            case SAMPLED:
+                return index % sampleInterval == 0 ? new Sheet(this, directory, name, true, null) : DISABLED;
+            case FAILURES:
+                return new Sheet(this, directory, name, true, new ArrayList<Image>());
+            default:
+                return DISABLED;
+        }
+    }
+
+    public Level getLevel() {
+        return level;
+    }
+
+    /**
+     * @return number of images which have been written
+     */
+    public long getWrittenCount() {
+        return writtenCount.get();
+    }
+
+    /**
+     * @return number of images of {@link Level#FAILURES} which are not kept, because
+     *         the images of the unfinished sheets already took the retained bytes
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * Write the images in the queue, then stop the writer thread
+     */
+    public void close() throws InterruptedException {
+        if (thread == null)
+            return;
+        queue.put(endOfImages);
+        thread.join();
+    }
+
+    /**
+     * @return false if the image would take the retained bytes over the maximum
+     */
+    private boolean retain(long bytes) {
+        while (true) {
+            long retained = retainedBytes.get();
+            if (retained + bytes > maxRetainedBytes)
+                return false;
+            if (retainedBytes.compareAndSet(retained, retained + bytes))
+                return true;
+        }
+    }
+
+    private void put(Image image) {
+        try {
+            queue.put(image);
+        } catch (InterruptedException e) {
+            image.mat.release();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package process;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -9,7 +10,6 @@ import org.opencv.core.CvType;
 import org.opencv.core.Mat;
 import org.opencv.core.MatOfPoint;
 import org.opencv.core.Scalar;
-import org.opencv.imgcodecs.Imgcodecs;
 import org.opencv.imgproc.Imgproc;
 
 /**
@@ -470,6 +470,24 @@ public class FeatureExtractor {
      *         more positive it is, the higher the chance
      */
     public static double getFeatureX(Mat imgThreshold, boolean newKernel, boolean newShiftKernel, String temp) {
+        if (temp == null)
+            return getFeatureX(imgThreshold, newKernel, newShiftKernel, DebugWriter.DISABLED, null);
+        File file = new File(temp);
+        return getFeatureX(imgThreshold, newKernel, newShiftKernel,
+                DebugWriter.direct(file.getParentFile(), null), file.getName());
+    }
+
+    /**
+     * get a number indicating whether the given image contains an X or not, see
+     * {@link #getFeatureX(Mat, boolean, boolean, String)}
+     * 
+     * @param debug
+     *            - debug images of the answer sheet
+     * @param name
+     *            - prefix of the debug images of this cell
+     */
+    public static double getFeatureX(Mat imgThreshold, boolean newKernel, boolean newShiftKernel,
+            DebugWriter.Sheet debug, String name) {
         // =============
         // preprocessing
         // =============
@@ -605,21 +623,21 @@ public class FeatureExtractor {
         double result = imgShifted.dot(mask);
 
         // ============================================================================================
-        // drawing the image
+        // drawing the image, only if it is written
 
-        if (true) {
+        if (debug.isEnabled()) {
             Core.bitwise_not(imgCropped, imgCropped);
-            Imgcodecs.imwrite(temp + "-1crop.jpg", imgCropped);
+            debug.write(name + "-1crop.jpg", imgCropped);
             imgNorm.convertTo(imgNorm, CvType.CV_8UC1);
             Imgproc.threshold(imgNorm, imgNorm, 0, 255, Imgproc.THRESH_BINARY);
             Core.bitwise_not(imgNorm, imgNorm);
-            Imgcodecs.imwrite(temp + "-norm.jpg", imgNorm);
+            debug.write(name + "-norm.jpg", imgNorm);
             // Core.bitwise_not(imgNorm, imgNorm);
             // GrayImgProc.matToTxt(imgNorm, temp + "-2norm.txt");
             imgShifted.convertTo(imgShifted, CvType.CV_8UC1);
             Imgproc.threshold(imgShifted, imgShifted, 0, 255, Imgproc.THRESH_BINARY);
             Core.bitwise_not(imgShifted, imgShifted);
-            Imgcodecs.imwrite(temp + "-shifted.jpg", imgShifted);
+            debug.write(name + "-shifted.jpg", imgShifted);
             // Core.bitwise_not(imgShifted, imgShifted);
             // GrayImgProc.matToTxt(imgShifted, temp + "-shifted.txt");
         }
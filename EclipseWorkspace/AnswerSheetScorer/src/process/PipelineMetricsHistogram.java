@@ -0,0 +1,111 @@
+package process;
+
+import java.io.PrintStream;
+import java.util.Locale;
+
+/**
+ * {@link PipelineMetrics} which keeps a histogram of every stage and counter. The
+ * buckets are powers of two: stage timings in microseconds, counters in their own
+ * unit. Bucket i holds the values from 2^(i-1) (inclusive) to 2^i (exclusive), bucket
+ * 0 holds 0.
+ */
+public class PipelineMetricsHistogram implements PipelineMetrics {
+
+    private static final int BUCKET_COUNT = 64;
+    private static final int BAR_WIDTH = 40;
+
+    private final long[][] stageBuckets = new long[Stage.values().length][BUCKET_COUNT];
+    private final long[] stageCounts = new long[Stage.values().length];
+    private final long[] stageTotals = new long[Stage.values().length];
+    private final long[] stageMaxima = new long[Stage.values().length];
+
+    private final long[][] counterBuckets = new long[Counter.values().length][BUCKET_COUNT];
+    private final long[] counterCounts = new long[Counter.values().length];
+    private final long[] counterTotals = new long[Counter.values().length];
+    private final long[] counterMaxima = new long[Counter.values().length];
+
+    @Override
+    public synchronized void onStage(Stage stage, long nanos) {
+        int index = stage.ordinal();
+        long micros = nanos / 1000;
+        stageBuckets[index][bucketOf(micros)]++;
+        stageCounts[index]++;
+        stageTotals[index] += micros;
+        stageMaxima[index] = Math.max(stageMaxima[index], micros);
+    }
+
+    @Override
+    public synchronized void onCounter(Counter counter, long value) {
+        int index = counter.ordinal();
+        counterBuckets[index][bucketOf(value)]++;
+        counterCounts[index]++;
+        counterTotals[index] += value;
+        counterMaxima[index] = Math.max(counterMaxima[index], value);
+    }
+
+    /**
+     * Print the histogram of every stage and counter which has been reported
+     *
+     * @param out
+     *            - output stream, e.g. System.out
+     */
+    public synchronized void dump(PrintStream out) {
+        for (Stage stage : Stage.values()) {
+            int index = stage.ordinal();
+            dump(out, stage.name(), "us", stageBuckets[index], stageCounts[index], stageTotals[index],
+                    stageMaxima[index]);
+        }
+        for (Counter counter : Counter.values()) {
+            int index = counter.ordinal();
+            dump(out, counter.name(), "", counterBuckets[index], counterCounts[index], counterTotals[index],
+                    counterMaxima[index]);
+        }
+    }
+
+    private static void dump(PrintStream out, String name, String unit, long[] buckets, long count, long total,
+            long max) {
+        if (count == 0)
+            return;
+        out.println(String.format(Locale.US, "%s: n=%d avg=%.1f%s p50<%d%s p90<%d%s p99<%d%s max=%d%s", name, count,
+                (double) total / count, unit, percentile(buckets, count, 0.5), unit,
+                percentile(buckets, count, 0.9), unit, percentile(buckets, count, 0.99), unit, max, unit));
+
+        long maxBucket = 0;
+        int first = BUCKET_COUNT, last = -1;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            if (buckets[i] > 0) {
+                maxBucket = Math.max(maxBucket, buckets[i]);
+                first = Math.min(first, i);
+                last = i;
+            }
+        }
+        for (int i = first; i <= last; i++) {
+            StringBuilder bar = new StringBuilder();
+            for (long j = 0, length = buckets[i] * BAR_WIDTH / maxBucket; j < length; j++) {
+                bar.append('#');
+            }
+            out.println(String.format(Locale.US, "  <%12d%-2s %8d %s", upperBound(i), unit, buckets[i], bar));
+        }
+    }
+
+    /**
+     * @return upper bound of the bucket containing the percentile
+     */
+    private static long percentile(long[] buckets, long count, double percentile) {
+        long rank = (long) Math.ceil(count * percentile), seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += buckets[i];
+            if (seen >= rank)
+                return upperBound(i);
+        }
+        return upperBound(BUCKET_COUNT - 1);
+    }
+
+    private static int bucketOf(long value) {
+        return (value <= 0 ? 0 : 64 - Long.numberOfLeadingZeros(value));
+    }
+
+    private static long upperBound(int bucket) {
+        return (bucket >= 63 ? Long.MAX_VALUE : 1L << bucket);
+    }
+}
@@ -0,0 +1,179 @@
+package benchmark;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.opencv.core.Mat;
+
+import io.github.stevenalbert.gradeit.model.AnswerMat;
+import io.github.stevenalbert.gradeit.model.AnswerSheet;
+import io.github.stevenalbert.gradeit.model.AnswerSheetMetadata;
+import io.github.stevenalbert.gradeit.process.AnswerSheetScorer;
+import io.github.stevenalbert.gradeit.process.BlackPixelIntegral;
+import io.github.stevenalbert.gradeit.process.CellWorkerPool;
+import io.github.stevenalbert.gradeit.process.ScoringContext;
+import io.github.stevenalbert.gradeit.process.XFeatureKernel;
+
+/**
+ * Benchmark of the scorer of the Android app on the same corpus as
+ * {@link PipelineBenchmark}. The stages run as the app runs them: with the scratch
+ * Mats of one {@link ScoringContext}, the compiled cell layout of the metadata and,
+ * when parallelism is more than 1, the cells on a {@link CellWorkerPool}. The black
+ * pixel integral image and the X feature kernel are also measured by themselves.
+ *
+ * The context is not thread safe, so every benchmark thread has its own state.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(2)
+public class AppScorerBenchmark {
+
+    @State(Scope.Thread)
+    public static class Sheets {
+
+        @Param({ "F-40", "F-100" })
+        public String form;
+
+        @Param({ "1600x1200", "3264x2448" })
+        public String resolution;
+
+        @Param({ "false", "true" })
+        public boolean pyramidDetection;
+
+        @Param({ "1", "4" })
+        public int parallelism;
+
+        SheetCorpus corpus;
+        AnswerSheetMetadata metadata;
+        ScoringContext context;
+        CellWorkerPool pool;
+        Mat[] converted;
+        ArrayList<ArrayList<AnswerMat>> cells;
+        private int next = 0;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            corpus = new SheetCorpus(form, resolution);
+            try (InputStream metadataInputStream = new FileInputStream(corpus.getMetadataFile())) {
+                metadata = new AnswerSheetMetadata(metadataInputStream);
+            } catch (IOException e) {
+                throw new IllegalArgumentException("Metadata of form " + form + " cannot be read", e);
+            }
+            context = new ScoringContext();
+            context.setPyramidDetection(pyramidDetection);
+            pool = (parallelism > 1 ? new CellWorkerPool(parallelism) : null);
+
+            converted = new Mat[corpus.size()];
+            cells = new ArrayList<>(corpus.size());
+            for (int i = 0; i < corpus.size(); i++) {
+                Mat perspective = AnswerSheetScorer.convertAnswerSheet(corpus.getPhoto(i), metadata, context);
+                if (perspective == null)
+                    throw new IllegalStateException("Paper is not found in " + corpus.getName(i));
+                // The converted sheet is owned by the context until the next sheet
+                converted[i] = perspective.clone();
+                cells.add(AnswerSheetScorer.processAnswerSheet(converted[i],
+                        context.getOutputDraw(metadata.getDimension()), metadata, context, pool));
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            for (Mat mat : converted) {
+                mat.release();
+            }
+            for (ArrayList<AnswerMat> answerMats : cells) {
+                SheetCorpus.release(answerMats);
+            }
+            if (pool != null)
+                pool.shutdown();
+            context.release();
+            corpus.release();
+        }
+
+        int nextIndex() {
+            int index = next;
+            next = (next + 1) % corpus.size();
+            return index;
+        }
+    }
+
+    @Benchmark
+    public int convertAnswerSheet(Sheets sheets) {
+        int index = sheets.nextIndex();
+        Mat converted = AnswerSheetScorer.convertAnswerSheet(sheets.corpus.getPhoto(index), sheets.metadata,
+                sheets.context);
+        return converted.rows();
+    }
+
+    @Benchmark
+    public int processAnswerSheet(Sheets sheets) throws Exception {
+        int index = sheets.nextIndex();
+        ArrayList<AnswerMat> answerMats = AnswerSheetScorer.processAnswerSheet(sheets.converted[index],
+                sheets.context.getOutputDraw(sheets.metadata.getDimension()), sheets.metadata, sheets.context,
+                sheets.pool);
+        int size = answerMats.size();
+        SheetCorpus.release(answerMats);
+        return size;
+    }
+
+    /**
+     * The X feature kernel only reads the cells, so the cells of the trial are used
+     * as they are
+     */
+    @Benchmark
+    public AnswerSheet recognizeAnswerSheet(Sheets sheets) {
+        return AnswerSheetScorer.recognizeAnswerSheet(sheets.cells.get(sheets.nextIndex()), sheets.pool);
+    }
+
+    @Benchmark
+    public AnswerSheet endToEnd(Sheets sheets) throws Exception {
+        int index = sheets.nextIndex();
+        Mat converted = AnswerSheetScorer.convertAnswerSheet(sheets.corpus.getPhoto(index), sheets.metadata,
+                sheets.context);
+        ArrayList<AnswerMat> answerMats = AnswerSheetScorer.processAnswerSheet(converted,
+                sheets.context.getOutputDraw(sheets.metadata.getDimension()), sheets.metadata, sheets.context,
+                sheets.pool);
+        AnswerSheet answerSheet = AnswerSheetScorer.recognizeAnswerSheet(answerMats, sheets.pool);
+        SheetCorpus.release(answerMats);
+        return answerSheet;
+    }
+
+    @Benchmark
+    public int blackPixelIntegral(Sheets sheets) {
+        Mat converted = sheets.converted[sheets.nextIndex()];
+        BlackPixelIntegral blackPixel = new BlackPixelIntegral(converted);
+        return blackPixel.count(0, 0, converted.cols(), converted.rows());
+    }
+
+    /**
+     * Feature of all cells of one sheet on one thread, the kernel is reused for every
+     * cell as a worker of recognizeAnswerSheet does
+     */
+    @Benchmark
+    public double xFeatureKernel(Sheets sheets) {
+        XFeatureKernel featureKernel = new XFeatureKernel();
+        double sum = 0;
+        for (AnswerMat answerMat : sheets.cells.get(sheets.nextIndex())) {
+            sum += featureKernel.getFeatureX(answerMat);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,83 @@
+package benchmark;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.opencv.core.Mat;
+
+import model.AnswerMat;
+import process.DebugWriter;
+import process.FeatureExtractor;
+import process.GrayImgProc;
+
+/**
+ * Benchmark of the cell recognition kernels on the cells of the corpus.
+ * getFeatureX writes on its input, so it is measured on a fresh copy of all cells
+ * of a sheet per invocation. normalizationF9 does not, it is measured per cell.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(2)
+public class FeatureBenchmark {
+
+    private static final int X_NORM_SIZE = 11;
+
+    /**
+     * All cells of all sheets, in sheet order
+     */
+    @State(Scope.Thread)
+    public static class AllCells {
+
+        ArrayList<AnswerMat> answerMats;
+        private int next = 0;
+
+        @Setup(Level.Trial)
+        public void setUp(PipelineBenchmark.Sheets sheets) {
+            answerMats = new ArrayList<>();
+            for (ArrayList<AnswerMat> cells : sheets.cells) {
+                answerMats.addAll(cells);
+            }
+        }
+
+        Mat nextCell() {
+            Mat cell = answerMats.get(next);
+            next = (next + 1) % answerMats.size();
+            return cell;
+        }
+    }
+
+    /**
+     * Feature of all cells of one sheet, with the same kernel as recognizeAnswerSheet
+     * and without its debug images
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public double getFeatureX(PipelineBenchmark.Cells cells) {
+        double sum = 0;
+        for (AnswerMat answerMat : cells.answerMats) {
+            sum += FeatureExtractor.getFeatureX(answerMat, true, true, DebugWriter.DISABLED, null);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int normalizationF9(AllCells cells) {
+        Mat normalized = GrayImgProc.normalizationF9(cells.nextCell(), X_NORM_SIZE, X_NORM_SIZE);
+        int rows = normalized.rows();
+        normalized.release();
+        return rows;
+    }
+}
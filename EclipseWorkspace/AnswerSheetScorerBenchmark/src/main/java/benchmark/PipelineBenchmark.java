@@ -0,0 +1,184 @@
+package benchmark;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.opencv.core.Mat;
+
+import model.AnswerKey;
+import model.AnswerMat;
+import model.AnswerSheet;
+import model.AnswerSheetMetadata;
+import model.Option;
+import process.AnswerSheetScorer;
+import process.DebugWriter;
+
+/**
+ * Benchmark of every stage of the AnswerSheetScorer pipeline and of the end to end
+ * scoring of one answer sheet photo. Each invocation works on the next sheet of the
+ * corpus, so a measurement covers all sheets of the form and resolution.
+ *
+ * The stages after convertAnswerSheet start from the output of the previous stage,
+ * which is computed once for every sheet when the trial starts. No debug image is
+ * written, so only the scorer itself is measured.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.AverageTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 10, time = 2)
+@Fork(2)
+public class PipelineBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Sheets {
+
+        @Param({ "F-40", "F-100" })
+        public String form;
+
+        @Param({ "1600x1200", "3264x2448" })
+        public String resolution;
+
+        SheetCorpus corpus;
+        AnswerSheetMetadata metadata;
+        Mat[] converted;
+        ArrayList<ArrayList<AnswerMat>> cells;
+        AnswerKey[] answerKeys;
+        private int next = 0;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            corpus = new SheetCorpus(form, resolution);
+            metadata = corpus.getMetadata();
+
+            converted = new Mat[corpus.size()];
+            cells = new ArrayList<>(corpus.size());
+            answerKeys = new AnswerKey[corpus.size()];
+            for (int i = 0; i < corpus.size(); i++) {
+                converted[i] = AnswerSheetScorer.convertAnswerSheet(corpus.getPhoto(i), metadata, null,
+                        corpus.getName(i), false);
+                if (converted[i] == null)
+                    throw new IllegalStateException("Paper is not found in " + corpus.getName(i));
+                cells.add(AnswerSheetScorer.processAnswerSheet(converted[i], metadata, null, corpus.getName(i),
+                        false));
+
+                ArrayList<AnswerMat> answerMats = SheetCorpus.copyCells(cells.get(i));
+                answerKeys[i] = createAnswerKey(AnswerSheetScorer.recognizeAnswerSheet(answerMats,
+                        DebugWriter.DISABLED));
+                SheetCorpus.release(answerMats);
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            for (Mat mat : converted) {
+                mat.release();
+            }
+            for (ArrayList<AnswerMat> answerMats : cells) {
+                SheetCorpus.release(answerMats);
+            }
+            corpus.release();
+        }
+
+        int nextIndex() {
+            int index = next;
+            next = (next + 1) % corpus.size();
+            return index;
+        }
+
+        /**
+         * Answer key with the same MCode as the sheet so the sheet is really scored
+         */
+        private static AnswerKey createAnswerKey(AnswerSheet answerSheet) {
+            AnswerSheet keySheet = new AnswerSheet(AnswerKey.ANSWER_KEY_EX_CODE, answerSheet.getMCode(),
+                    answerSheet.getTotalAnswer());
+            Option[] options = Option.values();
+            for (int number = 1; number <= answerSheet.getTotalAnswer(); number++) {
+                keySheet.setAnswerOn(number, options[number % options.length], true);
+            }
+            return AnswerKey.fromAnswerSheet(keySheet);
+        }
+    }
+
+    /**
+     * Fresh copy of the cells of the next sheet, the feature extraction writes on
+     * the cells
+     */
+    @State(Scope.Thread)
+    public static class Cells {
+
+        ArrayList<AnswerMat> answerMats;
+        int index;
+
+        @Setup(Level.Invocation)
+        public void setUp(Sheets sheets) {
+            index = sheets.nextIndex();
+            answerMats = SheetCorpus.copyCells(sheets.cells.get(index));
+        }
+
+        @TearDown(Level.Invocation)
+        public void tearDown() {
+            SheetCorpus.release(answerMats);
+            answerMats = null;
+        }
+    }
+
+    @Benchmark
+    public int convertAnswerSheet(Sheets sheets) {
+        int index = sheets.nextIndex();
+        Mat converted = AnswerSheetScorer.convertAnswerSheet(sheets.corpus.getPhoto(index), sheets.metadata, null,
+                sheets.corpus.getName(index), false);
+        int rows = converted.rows();
+        converted.release();
+        return rows;
+    }
+
+    @Benchmark
+    public int processAnswerSheet(Sheets sheets) {
+        int index = sheets.nextIndex();
+        ArrayList<AnswerMat> answerMats = AnswerSheetScorer.processAnswerSheet(sheets.converted[index],
+                sheets.metadata, null, sheets.corpus.getName(index), false);
+        int size = answerMats.size();
+        SheetCorpus.release(answerMats);
+        return size;
+    }
+
+    @Benchmark
+    public AnswerSheet recognizeAnswerSheet(Cells cells) {
+        return AnswerSheetScorer.recognizeAnswerSheet(cells.answerMats, DebugWriter.DISABLED);
+    }
+
+    @Benchmark
+    public AnswerSheet scoreAnswerSheet(Sheets sheets, Cells cells) {
+        AnswerSheet answerSheet = AnswerSheetScorer.recognizeAnswerSheet(cells.answerMats, DebugWriter.DISABLED);
+        AnswerSheetScorer.scoreAnswerSheet(answerSheet, sheets.answerKeys[cells.index]);
+        return answerSheet;
+    }
+
+    @Benchmark
+    public AnswerSheet endToEnd(Sheets sheets) {
+        int index = sheets.nextIndex();
+        String name = sheets.corpus.getName(index);
+        Mat converted = AnswerSheetScorer.convertAnswerSheet(sheets.corpus.getPhoto(index), sheets.metadata, null,
+                name, false);
+        ArrayList<AnswerMat> answerMats = AnswerSheetScorer.processAnswerSheet(converted, sheets.metadata, null,
+                name, false);
+        AnswerSheet answerSheet = AnswerSheetScorer.recognizeAnswerSheet(answerMats, DebugWriter.DISABLED);
+        AnswerSheetScorer.scoreAnswerSheet(answerSheet, sheets.answerKeys[index]);
+        SheetCorpus.release(answerMats);
+        converted.release();
+        return answerSheet;
+    }
+}
@@ -0,0 +1,102 @@
+package benchmark;
+
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import model.AnswerKey;
+import model.AnswerSheet;
+import model.Option;
+import process.BulkScorer;
+
+/**
+ * Benchmark of scoring a cohort of answer sheets again with one answer key, as
+ * after the answer key is changed. The answer sheets are random, so no corpus or
+ * OpenCV is needed.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+@State(Scope.Benchmark)
+public class ScoringBenchmark {
+
+    private static final long SEED = 1;
+
+    @Param({ "1000", "10000" })
+    public int sheetCount;
+
+    @Param({ "40", "100" })
+    public int numberCount;
+
+    private AnswerKey answerKey;
+    private ArrayList<AnswerSheet> answerSheets;
+    private ExecutorService executor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(SEED);
+        Option[] options = Option.values();
+        AnswerSheet keySheet = new AnswerSheet(AnswerKey.ANSWER_KEY_EX_CODE, 0, numberCount);
+        for (int number = 1; number <= numberCount; number++) {
+            keySheet.setAnswerOn(number, options[random.nextInt(options.length)], true);
+        }
+        answerKey = AnswerKey.fromAnswerSheet(keySheet);
+        answerSheets = new ArrayList<>(sheetCount);
+        for (int i = 0; i < sheetCount; i++) {
+            AnswerSheet answerSheet = new AnswerSheet(1 + i % 999, 0, numberCount);
+            for (int number = 1; number <= numberCount; number++) {
+                answerSheet.setAnswerOn(number, options[random.nextInt(options.length)], true);
+                if (random.nextInt(20) == 0)
+                    answerSheet.setAnswerOn(number, options[random.nextInt(options.length)], true);
+            }
+            answerSheets.add(answerSheet);
+        }
+        executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    /**
+     * One answer sheet after the other, the answer key is packed for every sheet
+     */
+    @Benchmark
+    public int scoreEach() {
+        int totalCorrect = 0;
+        for (AnswerSheet answerSheet : answerSheets) {
+            answerSheet.scoreAnswerSheet(answerKey);
+            totalCorrect += answerSheet.getTotalCorrect();
+        }
+        return totalCorrect;
+    }
+
+    @Benchmark
+    public int bulk() {
+        return BulkScorer.scoreAnswerSheets(answerKey, answerSheets, null);
+    }
+
+    @Benchmark
+    public int bulkParallel() {
+        return BulkScorer.scoreAnswerSheets(answerKey, answerSheets, executor);
+    }
+}
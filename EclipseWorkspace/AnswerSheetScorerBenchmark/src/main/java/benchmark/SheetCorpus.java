@@ -0,0 +1,144 @@
+package benchmark;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.opencv.core.Core;
+import org.opencv.core.Mat;
+import org.opencv.imgcodecs.Imgcodecs;
+
+import model.AnswerMat;
+import model.AnswerSheetMetadata;
+
+/**
+ * Fixed corpus of answer sheet photos used by the benchmarks. The corpus directory
+ * is given by the system property {@value #CORPUS_PROPERTY} (default
+ * {@value #DEFAULT_CORPUS}) and is laid out as
+ *
+ * <pre>
+ * corpus/
+ *     F-40.asmf
+ *     F-40/1600x1200/*.jpg
+ *     F-40/3264x2448/*.jpg
+ *     F-100.asmf
+ *     F-100/...
+ * </pre>
+ *
+ * The photos of a resolution directory are read in file name order, so every run
+ * measures the same sheets.
+ */
+public class SheetCorpus {
+
+    public static final String CORPUS_PROPERTY = "benchmark.corpus";
+    public static final String DEFAULT_CORPUS = "res/benchmark";
+
+    private static boolean libraryLoaded = false;
+
+    private final File metadataFile;
+    private final AnswerSheetMetadata metadata;
+    private final ArrayList<Mat> photos = new ArrayList<>();
+    private final ArrayList<String> names = new ArrayList<>();
+
+    /**
+     * Read the metadata and all photos of a form on a resolution
+     *
+     * @param form
+     *            - metadata form, e.g. F-40
+     * @param resolution
+     *            - resolution directory, e.g. 1600x1200
+     */
+    public SheetCorpus(String form, String resolution) {
+        loadLibrary();
+        File corpus = new File(System.getProperty(CORPUS_PROPERTY, DEFAULT_CORPUS));
+        metadataFile = new File(corpus, form + ".asmf");
+        try {
+            metadata = new AnswerSheetMetadata(new FileInputStream(metadataFile));
+        } catch (FileNotFoundException e) {
+            throw new IllegalArgumentException("Metadata of form " + form + " is not found in " + corpus, e);
+        }
+
+        File directory = new File(new File(corpus, form), resolution);
+        File[] files = directory.listFiles();
+        if (files == null)
+            throw new IllegalArgumentException("Directory " + directory + " is not found");
+        Arrays.sort(files);
+        for (File file : files) {
+            if (file.isDirectory() || !file.getName().endsWith(".jpg"))
+                continue;
+            Mat photo = Imgcodecs.imread(file.getAbsolutePath());
+            if (photo.empty())
+                throw new IllegalArgumentException("Photo " + file + " cannot be read");
+            photos.add(photo);
+            names.add(file.getName());
+        }
+        if (photos.isEmpty())
+            throw new IllegalArgumentException("There is no photo in " + directory);
+    }
+
+    public static synchronized void loadLibrary() {
+        if (!libraryLoaded) {
+            System.loadLibrary(Core.NATIVE_LIBRARY_NAME);
+            libraryLoaded = true;
+        }
+    }
+
+    public AnswerSheetMetadata getMetadata() {
+        return metadata;
+    }
+
+    /**
+     * @return the .asmf file of the form, to read it with the metadata class of the
+     *         app
+     */
+    public File getMetadataFile() {
+        return metadataFile;
+    }
+
+    public int size() {
+        return photos.size();
+    }
+
+    public Mat getPhoto(int index) {
+        return photos.get(index);
+    }
+
+    public String getName(int index) {
+        return names.get(index);
+    }
+
+    /**
+     * Copy the cells, the feature extraction writes on its input
+     *
+     * @param answerMats
+     *            - cells from processAnswerSheet
+     * @return new cells with the same content and labels
+     */
+    public static ArrayList<AnswerMat> copyCells(ArrayList<AnswerMat> answerMats) {
+        ArrayList<AnswerMat> copies = new ArrayList<>(answerMats.size());
+        for (AnswerMat answerMat : answerMats) {
+            // AnswerMat inverts its content, so give it the inverted cell back
+            Mat inverted = new Mat();
+            Core.bitwise_not(answerMat, inverted);
+            copies.add(new AnswerMat(inverted, answerMat.getLabel()));
+            inverted.release();
+        }
+        return copies;
+    }
+
+    public static void release(ArrayList<? extends Mat> mats) {
+        if (mats == null)
+            return;
+        for (Mat mat : mats) {
+            mat.release();
+        }
+    }
+
+    public void release() {
+        release(photos);
+        photos.clear();
+        names.clear();
+    }
+}